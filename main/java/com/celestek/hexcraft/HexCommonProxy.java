@@ -1,12 +1,17 @@
 package com.celestek.hexcraft;
 
 import com.celestek.hexcraft.init.*;
+import cpw.mods.fml.common.FMLCommonHandler;
 import cpw.mods.fml.common.Loader;
 import cpw.mods.fml.common.event.FMLInitializationEvent;
 import cpw.mods.fml.common.event.FMLPostInitializationEvent;
 import cpw.mods.fml.common.event.FMLPreInitializationEvent;
 import cpw.mods.fml.common.network.NetworkRegistry;
 import cpw.mods.fml.common.registry.GameRegistry;
+import com.celestek.hexcraft.util.HexPylon;
+import net.minecraftforge.common.MinecraftForge;
+
+import java.util.ArrayList;
 
 /**
  * @author Thorinair   <celestek@openmailbox.org>
@@ -34,6 +39,10 @@ public class HexCommonProxy {
     public void init(FMLInitializationEvent e) {
         GameRegistry.registerWorldGenerator(new HexWorldGen(), 0);
         NetworkRegistry.INSTANCE.registerGuiHandler(HexCraft.instance, new HexGui());
+        // Register the event handler on both event buses.
+        HexEventHandler eventHandler = new HexEventHandler();
+        FMLCommonHandler.instance().bus().register(eventHandler);
+        MinecraftForge.EVENT_BUS.register(eventHandler);
         if (HexConfig.cfgGeneralUseAchievements)
             HexAchievements.initializeAchievements();
         if (Loader.isModLoaded("ForgeMultipart")) {
@@ -50,4 +59,38 @@ public class HexCommonProxy {
     public void postInit(FMLPostInitializationEvent e) {
 
     }
+
+    /**** Client Hooks ****/
+
+    /**
+     * Passes the beams of a pylon on to the beam renderer. Does nothing on a dedicated server.
+     * @param x X coordinate of the pylon.
+     * @param y Y coordinate of the pylon.
+     * @param z Z coordinate of the pylon.
+     * @param monolith Monolith inserted into the pylon.
+     * @param links Pylons linked to the pylon.
+     */
+    public void updatePylonBeams(int x, int y, int z, int monolith, ArrayList<HexPylon> links) {
+
+    }
+
+    /**
+     * Removes the beams of a pylon from the beam renderer. Does nothing on a dedicated server.
+     * @param x X coordinate of the pylon.
+     * @param y Y coordinate of the pylon.
+     * @param z Z coordinate of the pylon.
+     */
+    public void removePylonBeams(int x, int y, int z) {
+
+    }
+
+    /**
+     * Queues a block for a render update. Does nothing on a dedicated server.
+     * @param x X coordinate of the block.
+     * @param y Y coordinate of the block.
+     * @param z Z coordinate of the block.
+     */
+    public void queueRenderUpdate(int x, int y, int z) {
+
+    }
 }
@@ -12,6 +12,7 @@ import net.minecraft.block.material.Material;
 import net.minecraft.client.renderer.texture.IIconRegister;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.IIcon;
+import net.minecraft.world.IBlockAccess;
 import net.minecraft.world.World;
 
 /**
@@ -49,6 +50,28 @@ public class BlockEnergyNodePortRF extends HexBlockContainer implements IBlockHe
         return new TileEnergyNodePortRF();
     }
 
+    /**
+     * Called when a block near is changed.
+     */
+    @Override
+    public void onNeighborBlockChange(World world, int x, int y, int z, Block block) {
+        // Look the RF receivers up again.
+        TileEntity tileEntity = world.getTileEntity(x, y, z);
+        if (tileEntity instanceof TileEnergyNodePortRF)
+            ((TileEnergyNodePortRF) tileEntity).invalidateReceivers();
+    }
+
+    /**
+     * Called when a tile entity near is changed.
+     */
+    @Override
+    public void onNeighborChange(IBlockAccess world, int x, int y, int z, int tileX, int tileY, int tileZ) {
+        // Look the RF receivers up again.
+        TileEntity tileEntity = world.getTileEntity(x, y, z);
+        if (tileEntity instanceof TileEnergyNodePortRF)
+            ((TileEnergyNodePortRF) tileEntity).invalidateReceivers();
+    }
+
     // Prepare the icons.
     @SideOnly(Side.CLIENT)
     private IIcon icon[];
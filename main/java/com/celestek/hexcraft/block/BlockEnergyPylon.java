@@ -7,6 +7,7 @@ import com.celestek.hexcraft.init.HexConfig;
 import com.celestek.hexcraft.init.HexItems;
 import com.celestek.hexcraft.tileentity.TileEnergyPylon;
 import com.celestek.hexcraft.util.HexPylon;
+import com.celestek.hexcraft.util.HexNetworkQueue;
 import com.celestek.hexcraft.util.HexUtils;
 import com.celestek.hexcraft.util.NetworkAnalyzer;
 import cpw.mods.fml.relauncher.Side;
@@ -318,7 +319,7 @@ public class BlockEnergyPylon extends HexBlockContainer {
             // Prepare the network analyzer.
             NetworkAnalyzer analyzer = new NetworkAnalyzer();
             // Call the analysis.
-            analyzer.analyzePylon(world, x, y, z, this);
+            analyzer.attachPylon(world, x, y, z, this);
         }
     }
 
@@ -419,21 +420,18 @@ public class BlockEnergyPylon extends HexBlockContainer {
             // Turn OFF.
             HexUtils.setMetaBit(META_STATE, true, HexUtils.META_NOTIFY_UPDATE, world, x, y, z);
             TileEnergyPylon tileEnergyPylon = (TileEnergyPylon) world.getTileEntity(x, y, z);
-            // Start analysis from all connected pylons.
+            // Start analysis from all connected pylons. Their beams read the state of this pylon when drawn, so they
+            // don't need to be updated.
             if (tileEnergyPylon != null) {
                 if (tileEnergyPylon.getPylons() != null)
                     for (HexPylon entry : tileEnergyPylon.getPylons()) {
-                        world.markBlockForUpdate(entry.x, entry.y, entry.z);
-
                         /* DO ANALYSIS */
-                        NetworkAnalyzer analyzer = new NetworkAnalyzer();
-                        analyzer.analyzePylon(world, entry.x, entry.y, entry.z, this);
+                        HexNetworkQueue.queueToggle(world, entry.x, entry.y, entry.z);
                     }
             }
 
             /* DO ANALYSIS */
-            NetworkAnalyzer analyzer = new NetworkAnalyzer();
-            analyzer.analyzePylon(world, x, y, z, this);
+            HexNetworkQueue.queueToggle(world, x, y, z);
 
         } 
         else if (!world.isBlockIndirectlyGettingPowered(x, y, z) && HexUtils.getMetaBit(META_STATE, world, x, y, z)) {
@@ -443,15 +441,9 @@ public class BlockEnergyPylon extends HexBlockContainer {
             
             // Turn ON.
             HexUtils.setMetaBit(META_STATE, false, HexUtils.META_NOTIFY_UPDATE, world, x, y, z);
-            TileEnergyPylon tileEnergyPylon = (TileEnergyPylon) world.getTileEntity(x, y, z);
-            if (tileEnergyPylon != null)
-                if (tileEnergyPylon.getPylons() != null)
-                    for (HexPylon entry : tileEnergyPylon.getPylons())
-                        world.markBlockForUpdate(entry.x, entry.y, entry.z);
 
             /* DO ANALYSIS */
-            NetworkAnalyzer analyzer = new NetworkAnalyzer();
-            analyzer.analyzePylon(world, x, y, z, this);
+            HexNetworkQueue.queueToggle(world, x, y, z);
         }
     }
 
@@ -630,6 +622,16 @@ public class BlockEnergyPylon extends HexBlockContainer {
             world.func_147453_f(x, y, z, block);
         }
 
+        if (!world.isRemote) {
+
+            if (HexConfig.cfgGeneralNetworkDebug)
+                System.out.println("[Energy Pylon] (" + x + ", " + y + ", " + z + "): Pylon destroyed, detaching!");
+
+            /* DO ANALYSIS */
+            NetworkAnalyzer analyzer = new NetworkAnalyzer();
+            analyzer.detachNode(world, x, y, z, block, meta);
+        }
+
         super.breakBlock(world, x, y, z, block, meta);
     }
 
@@ -4,6 +4,8 @@ import com.celestek.hexcraft.HexCraft;
 import com.celestek.hexcraft.client.renderer.HexModelRendererCable;
 import com.celestek.hexcraft.init.HexBlocks;
 import com.celestek.hexcraft.init.HexConfig;
+import com.celestek.hexcraft.util.HexNetworkGraph;
+import com.celestek.hexcraft.util.HexNetworkQueue;
 import com.celestek.hexcraft.util.NetworkAnalyzer;
 import cpw.mods.fml.relauncher.Side;
 import cpw.mods.fml.relauncher.SideOnly;
@@ -60,7 +62,7 @@ public class BlockHexoriumCable extends HexBlockModel {
 
             /* DO ANALYSIS */
             NetworkAnalyzer analyzer = new NetworkAnalyzer();
-            analyzer.analyzeCable(world, x, y, z, this);
+            analyzer.attachCable(world, x, y, z, this);
         }
     }
 
@@ -76,13 +78,33 @@ public class BlockHexoriumCable extends HexBlockModel {
                 || block instanceof IBlockHexEnergyDrain
                 || block instanceof BlockEnergyNodePortHEX) {
 
+            // Skip the analysis if the network graph has already handled the removal.
+            if (HexNetworkGraph.get(world).isNeighbourRemoved(world, x, y, z, block))
+                return;
+
             if (HexConfig.cfgGeneralNetworkDebug)
                 System.out.println("[Hexorium Cable] (" + x + ", " + y + ", " + z + "): Neighbour cable or machine destroyed, analyzing!");
 
+            /* DO ANALYSIS */
+            HexNetworkQueue.queueCable(world, x, y, z);
+        }
+    }
+
+    /**
+     * Called when the block is broken.
+     */
+    @Override
+    public void breakBlock(World world, int x, int y, int z, Block block, int meta) {
+        if (!world.isRemote) {
+
+            if (HexConfig.cfgGeneralNetworkDebug)
+                System.out.println("[Hexorium Cable] (" + x + ", " + y + ", " + z + "): Cable destroyed, detaching!");
+
             /* DO ANALYSIS */
             NetworkAnalyzer analyzer = new NetworkAnalyzer();
-            analyzer.analyzeCable(world, x, y, z, this);
+            analyzer.detachNode(world, x, y, z, block, meta);
         }
+        super.breakBlock(world, x, y, z, block, meta);
     }
 
     /**
@@ -6,6 +6,8 @@ import com.celestek.hexcraft.init.HexConfig;
 import com.celestek.hexcraft.init.HexGui;
 import com.celestek.hexcraft.init.HexItems;
 import com.celestek.hexcraft.tileentity.TileHexoriumGenerator;
+import com.celestek.hexcraft.util.HexNetworkGraph;
+import com.celestek.hexcraft.util.HexNetworkQueue;
 import com.celestek.hexcraft.util.HexUtils;
 import com.celestek.hexcraft.util.NetworkAnalyzer;
 import cpw.mods.fml.relauncher.Side;
@@ -81,7 +83,7 @@ public class BlockHexoriumGenerator extends HexBlockContainer implements IBlockH
 
             /* DO ANALYSIS, BASED ON ORIENTATION */
             NetworkAnalyzer analyzer = new NetworkAnalyzer();
-            analyzer.analyzeMachines(world, x, y, z, meta);
+            analyzer.attachMachines(world, x, y, z, meta);
         }
     }
 
@@ -111,12 +113,15 @@ public class BlockHexoriumGenerator extends HexBlockContainer implements IBlockH
                 || block instanceof BlockPylonBase
                 || block instanceof BlockEnergyNodePortHEX) {
 
+            // Skip the analysis if the network graph has already handled the removal.
+            if (HexNetworkGraph.get(world).isNeighbourRemoved(world, x, y, z, block))
+                return;
+
             if (HexConfig.cfgGeneralNetworkDebug)
                 System.out.println("[Hexorium Generator] (" + x + ", " + y + ", " + z + "): Neighbour cable destroyed, analyzing!");
 
             /* DO ANALYSIS, BASED ON ORIENTATION */
-            NetworkAnalyzer analyzer = new NetworkAnalyzer();
-            analyzer.analyzeMachines(world, x, y, z, world.getBlockMetadata(x, y, z));
+            HexNetworkQueue.queueMachines(world, x, y, z);
         }
     }
 
@@ -162,6 +167,12 @@ public class BlockHexoriumGenerator extends HexBlockContainer implements IBlockH
             }
             world.func_147453_f(x, y, z, block);
         }
+
+        // Detach the machine from the network.
+        if (!world.isRemote) {
+            NetworkAnalyzer analyzer = new NetworkAnalyzer();
+            analyzer.detachDevice(world, x, y, z, block);
+        }
         super.breakBlock(world, x, y, z, block, meta);
     }
 
@@ -6,6 +6,8 @@ import com.celestek.hexcraft.init.HexConfig;
 import com.celestek.hexcraft.init.HexGui;
 import com.celestek.hexcraft.init.HexItems;
 import com.celestek.hexcraft.tileentity.TileMatrixReconstructor;
+import com.celestek.hexcraft.util.HexNetworkGraph;
+import com.celestek.hexcraft.util.HexNetworkQueue;
 import com.celestek.hexcraft.util.HexUtils;
 import com.celestek.hexcraft.util.NetworkAnalyzer;
 import cpw.mods.fml.relauncher.Side;
@@ -81,7 +83,7 @@ public class BlockMatrixReconstructor extends HexBlockContainer implements IBloc
 
             /* DO ANALYSIS, BASED ON ORIENTATION */
             NetworkAnalyzer analyzer = new NetworkAnalyzer();
-            analyzer.analyzeMachines(world, x, y, z, meta);
+            analyzer.attachMachines(world, x, y, z, meta);
         }
     }
 
@@ -111,12 +113,15 @@ public class BlockMatrixReconstructor extends HexBlockContainer implements IBloc
                 || block instanceof BlockPylonBase
                 || block instanceof BlockEnergyNodePortHEX) {
 
+            // Skip the analysis if the network graph has already handled the removal.
+            if (HexNetworkGraph.get(world).isNeighbourRemoved(world, x, y, z, block))
+                return;
+
             if (HexConfig.cfgGeneralNetworkDebug)
                 System.out.println("[Matrix Reconstructor] (" + x + ", " + y + ", " + z + "): Neighbour cable destroyed, analyzing!");
 
             /* DO ANALYSIS, BASED ON ORIENTATION */
-            NetworkAnalyzer analyzer = new NetworkAnalyzer();
-            analyzer.analyzeMachines(world, x, y, z, world.getBlockMetadata(x, y, z));
+            HexNetworkQueue.queueMachines(world, x, y, z);
         }
     }
 
@@ -165,6 +170,12 @@ public class BlockMatrixReconstructor extends HexBlockContainer implements IBloc
             }
             world.func_147453_f(x, y, z, block);
         }
+
+        // Detach the machine from the network.
+        if (!world.isRemote) {
+            NetworkAnalyzer analyzer = new NetworkAnalyzer();
+            analyzer.detachDevice(world, x, y, z, block);
+        }
         super.breakBlock(world, x, y, z, block, meta);
     }
 
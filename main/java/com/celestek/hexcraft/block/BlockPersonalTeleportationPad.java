@@ -6,6 +6,8 @@ import com.celestek.hexcraft.init.HexConfig;
 import com.celestek.hexcraft.init.HexGui;
 import com.celestek.hexcraft.init.HexItems;
 import com.celestek.hexcraft.tileentity.TilePersonalTeleportationPad;
+import com.celestek.hexcraft.util.HexNetworkGraph;
+import com.celestek.hexcraft.util.HexNetworkQueue;
 import com.celestek.hexcraft.util.HexUtils;
 import com.celestek.hexcraft.util.NetworkAnalyzer;
 import cpw.mods.fml.relauncher.Side;
@@ -76,10 +78,10 @@ public class BlockPersonalTeleportationPad extends HexBlockContainer implements
 
             /* DO ANALYSIS, BASED ON ORIENTATION */
             NetworkAnalyzer analyzer1 = new NetworkAnalyzer();
-            analyzer1.analyzeMachines(world, x, y, z, meta);
+            analyzer1.attachMachines(world, x, y, z, meta);
 
             NetworkAnalyzer analyzer2 = new NetworkAnalyzer();
-            analyzer2.analyzeTeleport(world, x, y, z);
+            analyzer2.attachTeleport(world, x, y, z);
         }
     }
 
@@ -107,20 +109,18 @@ public class BlockPersonalTeleportationPad extends HexBlockContainer implements
     @Override
     public void onNeighborBlockChange(World world, int x, int y, int z, Block block) {
 
-        // Check if the changed block is a cable.
-        if (block instanceof BlockHexoriumCable
+        // Check if the changed block is a cable. Skip the analysis if the network graph has already handled the removal.
+        if ((block instanceof BlockHexoriumCable
                 || block instanceof BlockPylonBase
-                || block instanceof BlockEnergyNodePortHEX) {
+                || block instanceof BlockEnergyNodePortHEX)
+                && !HexNetworkGraph.get(world).isNeighbourRemoved(world, x, y, z, block)) {
 
             if (HexConfig.cfgGeneralNetworkDebug)
                 System.out.println("[Personal Teleportation Pad] (" + x + ", " + y + ", " + z + "): Neighbour cable destroyed, analyzing!");
 
             /* DO ANALYSIS, BASED ON ORIENTATION */
-            NetworkAnalyzer analyzer = new NetworkAnalyzer();
-            analyzer.analyzeMachines(world, x, y, z, world.getBlockMetadata(x, y, z));
-
-            NetworkAnalyzer analyzer2 = new NetworkAnalyzer();
-            analyzer2.analyzeTeleport(world, x, y, z);
+            HexNetworkQueue.queueMachines(world, x, y, z);
+            HexNetworkQueue.queueTeleport(world, x, y, z);
         }
 
         if (world.isBlockIndirectlyGettingPowered(x, y, z))
@@ -141,6 +141,12 @@ public class BlockPersonalTeleportationPad extends HexBlockContainer implements
         if (tilePersonalTeleportationPad != null) {
             world.func_147453_f(x, y, z, block);
         }
+
+        // Detach the teleport from the network.
+        if (!world.isRemote) {
+            NetworkAnalyzer analyzer = new NetworkAnalyzer();
+            analyzer.detachDevice(world, x, y, z, block);
+        }
         super.breakBlock(world, x, y, z, block, meta);
     }
 
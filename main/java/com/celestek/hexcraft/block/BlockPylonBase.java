@@ -3,6 +3,8 @@ package com.celestek.hexcraft.block;
 import com.celestek.hexcraft.HexCraft;
 import com.celestek.hexcraft.init.HexBlocks;
 import com.celestek.hexcraft.init.HexConfig;
+import com.celestek.hexcraft.util.HexNetworkGraph;
+import com.celestek.hexcraft.util.HexNetworkQueue;
 import com.celestek.hexcraft.util.HexUtils;
 import com.celestek.hexcraft.util.NetworkAnalyzer;
 import cpw.mods.fml.relauncher.Side;
@@ -88,7 +90,7 @@ public class BlockPylonBase extends Block {
 
             /* DO ANALYSIS */
             NetworkAnalyzer analyzer = new NetworkAnalyzer();
-            analyzer.analyzeCable(world, x, y, z, this);
+            analyzer.attachCable(world, x, y, z, this);
         }
     }
 
@@ -106,13 +108,33 @@ public class BlockPylonBase extends Block {
                 || block instanceof IBlockHexEnergyDrain
                 || block instanceof BlockEnergyNodePortHEX) {
 
+            // Skip the analysis if the network graph has already handled the removal.
+            if (block != HexBlocks.blockEnergyPylon && HexNetworkGraph.get(world).isNeighbourRemoved(world, x, y, z, block))
+                return;
+
             if (HexConfig.cfgGeneralNetworkDebug)
                 System.out.println("[Pylon Base] (" + x + ", " + y + ", " + z + "): Neighbour cable or machine destroyed or changed, analyzing!");
 
+            /* DO ANALYSIS */
+            HexNetworkQueue.queueCable(world, x, y, z);
+        }
+    }
+
+    /**
+     * Called when the block is broken.
+     */
+    @Override
+    public void breakBlock(World world, int x, int y, int z, Block block, int meta) {
+        if (!world.isRemote) {
+
+            if (HexConfig.cfgGeneralNetworkDebug)
+                System.out.println("[Pylon Base] (" + x + ", " + y + ", " + z + "): Pylon base destroyed, detaching!");
+
             /* DO ANALYSIS */
             NetworkAnalyzer analyzer = new NetworkAnalyzer();
-            analyzer.analyzeCable(world, x, y, z, this);
+            analyzer.detachNode(world, x, y, z, block, meta);
         }
+        super.breakBlock(world, x, y, z, block, meta);
     }
 
     // Prepare the icons.
@@ -5,12 +5,17 @@ import com.celestek.hexcraft.HexCraft;
 import com.celestek.hexcraft.client.renderer.*;
 import com.celestek.hexcraft.init.HexConfig;
 import com.celestek.hexcraft.util.HexColors;
+import com.celestek.hexcraft.util.HexPylon;
 import com.celestek.hexcraft.init.HexBlocks;
 import cpw.mods.fml.client.registry.RenderingRegistry;
+import cpw.mods.fml.common.FMLCommonHandler;
 import cpw.mods.fml.common.Loader;
 import cpw.mods.fml.common.event.FMLInitializationEvent;
 import cpw.mods.fml.common.event.FMLPostInitializationEvent;
 import cpw.mods.fml.common.event.FMLPreInitializationEvent;
+import net.minecraftforge.common.MinecraftForge;
+
+import java.util.ArrayList;
 
 /**
  * @author Thorinair   <celestek@openmailbox.org>
@@ -41,6 +46,14 @@ public class HexClientProxy extends HexCommonProxy {
     @Override
     public void init(FMLInitializationEvent e) {
         super.init(e);
+
+        // Register the renderer of pylon beams, which draws after the world.
+        MinecraftForge.EVENT_BUS.register(new HexPylonBeamRenderer(HexColors.BRIGHTNESS_BRIGHT));
+
+        // Register the queue of render updates on both event buses.
+        HexRenderQueue renderQueue = new HexRenderQueue();
+        FMLCommonHandler.instance().bus().register(renderQueue);
+        MinecraftForge.EVENT_BUS.register(renderQueue);
     }
 
     /**
@@ -51,6 +64,30 @@ public class HexClientProxy extends HexCommonProxy {
         super.postInit(e);
     }
 
+    /**
+     * Passes the beams of a pylon on to the beam renderer.
+     */
+    @Override
+    public void updatePylonBeams(int x, int y, int z, int monolith, ArrayList<HexPylon> links) {
+        HexPylonBeamRenderer.update(x, y, z, monolith, links);
+    }
+
+    /**
+     * Removes the beams of a pylon from the beam renderer.
+     */
+    @Override
+    public void removePylonBeams(int x, int y, int z) {
+        HexPylonBeamRenderer.remove(x, y, z);
+    }
+
+    /**
+     * Queues a block for a render update.
+     */
+    @Override
+    public void queueRenderUpdate(int x, int y, int z) {
+        HexRenderQueue.queue(x, y, z);
+    }
+
     /**
      * Registers renderers for all block.
      */
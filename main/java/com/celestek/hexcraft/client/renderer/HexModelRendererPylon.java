@@ -5,7 +5,6 @@ import com.celestek.hexcraft.block.BlockEnergyPylon;
 import com.celestek.hexcraft.client.HexClientProxy;
 import com.celestek.hexcraft.tileentity.TileEnergyPylon;
 import com.celestek.hexcraft.util.HexColors;
-import com.celestek.hexcraft.util.HexPylon;
 import com.celestek.hexcraft.util.HexUtils;
 import cpw.mods.fml.client.registry.ISimpleBlockRenderingHandler;
 import cpw.mods.fml.common.Loader;
@@ -13,7 +12,6 @@ import net.minecraft.block.Block;
 import net.minecraft.client.renderer.RenderBlocks;
 import net.minecraft.client.renderer.Tessellator;
 import net.minecraft.util.IIcon;
-import net.minecraft.util.Vec3;
 import net.minecraft.world.IBlockAccess;
 import org.lwjgl.opengl.GL11;
 
@@ -35,8 +33,6 @@ public class HexModelRendererPylon implements ISimpleBlockRenderingHandler {
     public static final float zBaseMin = 0F;
     public static final float zBaseMax = 1F;
     
-    private static final float beamRadius = 0.05F;
-
     private static final float invOffset = 0.4F;
 
     private static final float xMonoA = 0.1874F;
@@ -1631,230 +1627,6 @@ public class HexModelRendererPylon implements ISimpleBlockRenderingHandler {
                 tessellator.addVertexWithUV(yMonoBot, xPlatMin, zPlatMax, u, v); // A'
             }
 
-            // If there is a monolith...
-            if (monolith != 0 && state) {
-                /* Beams */
-                if (tileEnergyPylon.getPylons() != null) {
-                    // Prepare the icon variables.
-                    double u;
-                    double U;
-                    double v;
-                    double V;
-
-                    // Prepare the brightness.
-                    tessellator.setBrightness(brightness);
-
-                    // Go through each pylon entry.
-                    for (HexPylon entry : tileEnergyPylon.getPylons()) {
-                        int monolithEntry = monolith;
-                        if (HexUtils.checkChunk(tileEnergyPylon.getWorldObj(), entry.x, entry.z)) {
-                            TileEnergyPylon tileEnergyPylonEntry = (TileEnergyPylon) tileEnergyPylon.getWorldObj().getTileEntity(entry.x, entry.y, entry.z);
-                            if (tileEnergyPylonEntry != null)
-                                monolithEntry = tileEnergyPylonEntry.getMonolith();
-                        }
-
-                        // Check if the target pylon is ON.
-                        if (!HexUtils.getMetaBit(BlockEnergyPylon.META_STATE, world, entry.x, entry.y, entry.z)) {
-                            // Check if both of the pylons are rainbow.
-                            if (monolith == 18 && monolithEntry == 18) {
-                                // If they are, set the rainbow texture.
-                                tessellator.setColorOpaque_F(HexColors.COLOR_WHITE_R, HexColors.COLOR_WHITE_G, HexColors.COLOR_WHITE_B);
-                                c = block.getIcon(11, 0);
-                                u = c.getMinU();
-                                U = c.getMaxU();
-                                v = c.getMinV();
-                                V = c.getMaxV();
-                            }
-                            else if (monolith == 18) {
-                                // If this is rainbow and target is not, use target color.
-                                float tr = HexColors.COLOR_WHITE_R;
-                                float tg = HexColors.COLOR_WHITE_G;
-                                float tb = HexColors.COLOR_WHITE_B;
-                                if (monolithEntry == 1) {
-                                    tr = HexColors.COLOR_RED_R;
-                                    tg = HexColors.COLOR_RED_G;
-                                    tb = HexColors.COLOR_RED_B;
-                                }
-                                else if (monolithEntry == 2) {
-                                    tr = HexColors.COLOR_ORANGE_R;
-                                    tg = HexColors.COLOR_ORANGE_G;
-                                    tb = HexColors.COLOR_ORANGE_B;
-                                }
-                                else if (monolithEntry == 3) {
-                                    tr = HexColors.COLOR_YELLOW_R;
-                                    tg = HexColors.COLOR_YELLOW_G;
-                                    tb = HexColors.COLOR_YELLOW_B;
-                                }
-                                else if (monolithEntry == 4) {
-                                    tr = HexColors.COLOR_LIME_R;
-                                    tg = HexColors.COLOR_LIME_G;
-                                    tb = HexColors.COLOR_LIME_B;
-                                }
-                                else if (monolithEntry == 5) {
-                                    tr = HexColors.COLOR_GREEN_R;
-                                    tg = HexColors.COLOR_GREEN_G;
-                                    tb = HexColors.COLOR_GREEN_B;
-                                }
-                                else if (monolithEntry == 6) {
-                                    tr = HexColors.COLOR_TORQUOISE_R;
-                                    tg = HexColors.COLOR_TORQUOISE_G;
-                                    tb = HexColors.COLOR_TORQUOISE_B;
-                                }
-                                else if (monolithEntry == 7) {
-                                    tr = HexColors.COLOR_CYAN_R;
-                                    tg = HexColors.COLOR_CYAN_G;
-                                    tb = HexColors.COLOR_CYAN_B;
-                                }
-                                else if (monolithEntry == 8) {
-                                    tr = HexColors.COLOR_SKY_BLUE_R;
-                                    tg = HexColors.COLOR_SKY_BLUE_G;
-                                    tb = HexColors.COLOR_SKY_BLUE_B;
-                                }
-                                else if (monolithEntry == 9) {
-                                    tr = HexColors.COLOR_BLUE_R;
-                                    tg = HexColors.COLOR_BLUE_G;
-                                    tb = HexColors.COLOR_BLUE_B;
-                                }
-                                else if (monolithEntry == 10) {
-                                    tr = HexColors.COLOR_PURPLE_R;
-                                    tg = HexColors.COLOR_PURPLE_G;
-                                    tb = HexColors.COLOR_PURPLE_B;
-                                }
-                                else if (monolithEntry == 11) {
-                                    tr = HexColors.COLOR_MAGENTA_R;
-                                    tg = HexColors.COLOR_MAGENTA_G;
-                                    tb = HexColors.COLOR_MAGENTA_B;
-                                }
-                                else if (monolithEntry == 12) {
-                                    tr = HexColors.COLOR_PINK_R;
-                                    tg = HexColors.COLOR_PINK_G;
-                                    tb = HexColors.COLOR_PINK_B;
-                                }
-                                else if (monolithEntry == 13) {
-                                    tr = HexColors.COLOR_WHITE_R;
-                                    tg = HexColors.COLOR_WHITE_G;
-                                    tb = HexColors.COLOR_WHITE_B;
-                                }
-                                else if (monolithEntry == 14) {
-                                    tr = HexColors.COLOR_LIGHT_GRAY_R;
-                                    tg = HexColors.COLOR_LIGHT_GRAY_G;
-                                    tb = HexColors.COLOR_LIGHT_GRAY_B;
-                                }
-                                else if (monolithEntry == 15) {
-                                    tr = HexColors.COLOR_GRAY_R;
-                                    tg = HexColors.COLOR_GRAY_G;
-                                    tb = HexColors.COLOR_GRAY_B;
-                                }
-                                else if (monolithEntry == 16) {
-                                    tr = HexColors.COLOR_DARK_GRAY_R;
-                                    tg = HexColors.COLOR_DARK_GRAY_G;
-                                    tb = HexColors.COLOR_DARK_GRAY_B;
-                                }
-                                else if (monolithEntry == 17) {
-                                    tr = HexColors.COLOR_BLACK_R;
-                                    tg = HexColors.COLOR_BLACK_G;
-                                    tb = HexColors.COLOR_BLACK_B;
-                                }
-                                tessellator.setColorOpaque_F(tr, tg, tb);
-                                c = block.getIcon(10, 0);
-                                u = c.getMinU();
-                                U = c.getMaxU();
-                                v = c.getMinV();
-                                V = c.getMaxV();
-                            }
-                            else {
-                                // Otherwise, set the color normally.
-                                tessellator.setColorOpaque_F(r, g, b);
-                                c = block.getIcon(10, 0);
-                                u = c.getMinU();
-                                U = c.getMaxU();
-                                v = c.getMinV();
-                                V = c.getMaxV();
-                            }
-
-                            // Create the vector from pylon A to pylon B.
-                            Vec3 vec0 = Vec3.createVectorHelper(x, y, z).subtract(Vec3.createVectorHelper(entry.x, entry.y, entry.z));
-
-                            // Prepare additional vectors.
-                            Vec3 vec2;
-                            Vec3 vec3;
-                            Vec3 vec4;
-                            Vec3 vec5;
-
-                            // If the pylons are exactly above each other...
-                            if (vec0.xCoord == 0 && vec0.yCoord != 0 && vec0.zCoord == 0) {
-                                // Create start vectors.
-                                vec2 = Vec3.createVectorHelper(beamRadius, 0, 0); // A
-                                vec2 = centerVector(vec2);
-
-                                vec3 = Vec3.createVectorHelper(0, 0, beamRadius); // B
-                                vec3 = centerVector(vec3);
-
-                                vec4 = Vec3.createVectorHelper(-beamRadius, 0, 0); // C
-                                vec4 = centerVector(vec4);
-
-                                vec5 = Vec3.createVectorHelper(0, 0, -beamRadius); // D
-                                vec5 = centerVector(vec5);
-                            }
-                            else {
-                                // Create helper vector.
-                                Vec3 vec1 = Vec3.createVectorHelper(vec0.xCoord, vec0.yCoord, vec0.zCoord);
-                                vec1.rotateAroundY((float) -Math.PI / 2);
-                                vec1.yCoord = 0;
-
-                                // Create start vectors.
-                                vec2 = Vec3.createVectorHelper(vec1.xCoord, vec1.yCoord, vec1.zCoord); // A
-                                vec2 = vec2.normalize();
-                                vec2 = scaleVector(vec2, beamRadius / 2);
-                                vec2 = centerVector(vec2);
-
-                                vec3 = vec1.crossProduct(vec0); // B
-                                vec3 = vec3.normalize();
-                                vec3 = scaleVector(vec3, beamRadius / 2);
-                                vec3 = centerVector(vec3);
-
-                                vec4 = Vec3.createVectorHelper(vec1.xCoord, vec1.yCoord, vec1.zCoord); // C
-                                vec4 = vec4.normalize();
-                                vec4 = scaleVector(vec4, -beamRadius / 2);
-                                vec4 = centerVector(vec4);
-
-                                vec5 = vec1.crossProduct(vec0); // D
-                                vec5 = vec5.normalize();
-                                vec5 = scaleVector(vec5, -beamRadius / 2);
-                                vec5 = centerVector(vec5);
-                            }
-
-                            // Create destination vectors.
-                            Vec3 vec6 = vec2.addVector(vec0.xCoord, vec0.yCoord, vec0.zCoord); // A'
-                            Vec3 vec7 = vec3.addVector(vec0.xCoord, vec0.yCoord, vec0.zCoord); // B'
-                            Vec3 vec8 = vec4.addVector(vec0.xCoord, vec0.yCoord, vec0.zCoord); // C'
-                            Vec3 vec9 = vec5.addVector(vec0.xCoord, vec0.yCoord, vec0.zCoord); // D'
-
-                            // Draw the beam.
-                            tessellator.addVertexWithUV(vec2.xCoord, vec2.yCoord, vec2.zCoord, u, v); // A
-                            tessellator.addVertexWithUV(vec6.xCoord, vec6.yCoord, vec6.zCoord, U, v); // A'
-                            tessellator.addVertexWithUV(vec7.xCoord, vec7.yCoord, vec7.zCoord, U, V); // B'
-                            tessellator.addVertexWithUV(vec3.xCoord, vec3.yCoord, vec3.zCoord, u, V); // B
-
-                            tessellator.addVertexWithUV(vec3.xCoord, vec3.yCoord, vec3.zCoord, u, V); // B
-                            tessellator.addVertexWithUV(vec7.xCoord, vec7.yCoord, vec7.zCoord, U, V); // B'
-                            tessellator.addVertexWithUV(vec8.xCoord, vec8.yCoord, vec8.zCoord, U, v); // C'
-                            tessellator.addVertexWithUV(vec4.xCoord, vec4.yCoord, vec4.zCoord, u, v); // C
-
-                            tessellator.addVertexWithUV(vec4.xCoord, vec4.yCoord, vec4.zCoord, u, v); // C
-                            tessellator.addVertexWithUV(vec8.xCoord, vec8.yCoord, vec8.zCoord, U, v); // C'
-                            tessellator.addVertexWithUV(vec9.xCoord, vec9.yCoord, vec9.zCoord, U, V); // D'
-                            tessellator.addVertexWithUV(vec5.xCoord, vec5.yCoord, vec5.zCoord, u, V); // D
-
-                            tessellator.addVertexWithUV(vec5.xCoord, vec5.yCoord, vec5.zCoord, u, V); // D
-                            tessellator.addVertexWithUV(vec9.xCoord, vec9.yCoord, vec9.zCoord, U, V); // D'
-                            tessellator.addVertexWithUV(vec6.xCoord, vec6.yCoord, vec6.zCoord, U, v); // A'
-                            tessellator.addVertexWithUV(vec2.xCoord, vec2.yCoord, vec2.zCoord, u, v); // A
-                        }
-                    }
-                }
-            }
-
             tessellator.addTranslation(-x, -y, -z);
         }
         // If this is the second (transparent) render pass...
@@ -2169,24 +1941,4 @@ public class HexModelRendererPylon implements ISimpleBlockRenderingHandler {
     public boolean shouldRender3DInInventory(int i) {
         return true;
     }
-
-    /**
-     * Scales a normalized vector to a desired distance.
-     * @param vec Vector to scale.
-     * @param l Desired length.
-     */
-    private Vec3 scaleVector(Vec3 vec, double l) {
-        double x = vec.xCoord * l;
-        double y = vec.yCoord * l;
-        double z = vec.zCoord * l;
-        return Vec3.createVectorHelper(x, y, z);
-    }
-
-    /**
-     * Positions a vector at the center of a block.
-     * @param vec Vector to reposition.
-     */
-    private Vec3 centerVector(Vec3 vec) {
-        return vec.addVector(0.5, 0.5, 0.5);
-    }
 }
@@ -0,0 +1,377 @@
+package com.celestek.hexcraft.client.renderer;
+
+import com.celestek.hexcraft.block.BlockEnergyPylon;
+import com.celestek.hexcraft.init.HexBlocks;
+import com.celestek.hexcraft.util.HexColors;
+import com.celestek.hexcraft.util.HexPylon;
+import com.celestek.hexcraft.util.HexUtils;
+import cpw.mods.fml.common.Loader;
+import cpw.mods.fml.common.eventhandler.SubscribeEvent;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.Tessellator;
+import net.minecraft.client.renderer.culling.Frustrum;
+import net.minecraft.client.renderer.texture.TextureMap;
+import net.minecraft.entity.EntityLivingBase;
+import net.minecraft.util.IIcon;
+import net.minecraft.world.World;
+import net.minecraftforge.client.event.RenderWorldLastEvent;
+import net.minecraftforge.event.world.WorldEvent;
+import org.lwjgl.opengl.GL11;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * @author Thorinair   <celestek@openmailbox.org>
+ */
+
+/**
+ * Draws the beams between Energy Pylons in a separate render pass, instead of as part of the pylon blocks. The client
+ * keeps its own list of beams, which is filled from the pylon tile entities as they receive their data. Every frame,
+ * each beam is culled by its own bounds and all visible ones are drawn together, so changing a beam never rebuilds a
+ * chunk and beams stay visible even when the chunks of both pylons are out of view.
+ */
+public class HexPylonBeamRenderer {
+
+    /**** Static Values ****/
+
+    // Radius of the beam.
+    private static final double beamRadius = 0.05;
+
+    // Prepare all pylons known to the client, by packed coordinates.
+    private static final HashMap<Long, Pylon> pylons = new HashMap<Long, Pylon>();
+
+    /**** Variables ****/
+
+    private int brightness;
+    private Frustrum frustrum;
+
+    /**
+     * Constructor.
+     * @param brightness Intensity of the beam glow.
+     */
+    public HexPylonBeamRenderer(int brightness) {
+        if (Loader.isModLoaded("coloredlightscore"))
+            this.brightness = HexColors.BRIGHTNESS_CL;
+        else
+            this.brightness = brightness;
+        this.frustrum = new Frustrum();
+    }
+
+    /**
+     * Updates the beams of a pylon. Called when the pylon receives its data from the server.
+     * @param x X coordinate of the pylon.
+     * @param y Y coordinate of the pylon.
+     * @param z Z coordinate of the pylon.
+     * @param monolith ID of the monolith in the pylon.
+     * @param links The pylons linked to it, or null if there are none.
+     */
+    public static void update(int x, int y, int z, int monolith, ArrayList<HexPylon> links) {
+        long position = HexUtils.packCoordinates(x, y, z);
+        if (monolith == 0 || links == null || links.size() == 0) {
+            // Keep the monolith of pylons without beams, as their partners need it for the color.
+            if (monolith == 0)
+                pylons.remove(position);
+            else
+                pylons.put(position, new Pylon(monolith, new Beam[0]));
+            return;
+        }
+
+        Beam[] beams = new Beam[links.size()];
+        for (int i = 0; i < beams.length; i++) {
+            HexPylon entry = links.get(i);
+            beams[i] = new Beam(x, y, z, entry.x, entry.y, entry.z);
+        }
+        pylons.put(position, new Pylon(monolith, beams));
+    }
+
+    /**
+     * Removes the beams of a pylon. Called when the pylon is broken or its chunk is unloaded.
+     * @param x X coordinate of the pylon.
+     * @param y Y coordinate of the pylon.
+     * @param z Z coordinate of the pylon.
+     */
+    public static void remove(int x, int y, int z) {
+        pylons.remove(HexUtils.packCoordinates(x, y, z));
+    }
+
+    /**
+     * Draws all visible beams after the world has been rendered.
+     */
+    @SubscribeEvent
+    public void onRenderWorldLast(RenderWorldLastEvent event) {
+        if (pylons.isEmpty())
+            return;
+
+        Minecraft mc = Minecraft.getMinecraft();
+        World world = mc.theWorld;
+        EntityLivingBase view = mc.renderViewEntity;
+        if (world == null || view == null)
+            return;
+
+        // Find the position of the camera.
+        double cx = view.lastTickPosX + (view.posX - view.lastTickPosX) * event.partialTicks;
+        double cy = view.lastTickPosY + (view.posY - view.lastTickPosY) * event.partialTicks;
+        double cz = view.lastTickPosZ + (view.posZ - view.lastTickPosZ) * event.partialTicks;
+        frustrum.setPosition(cx, cy, cz);
+
+        IIcon iconBeam = HexBlocks.blockEnergyPylon.getIcon(10, 0);
+        IIcon iconRainbow = HexBlocks.blockEnergyPylon.getIcon(11, 0);
+
+        // Prepare the Tessellator.
+        Tessellator tessellator = Tessellator.instance;
+        boolean started = false;
+
+        // Go through each pylon and draw its beams. Beams between two known pylons are only drawn by the one with the
+        // lower position.
+        for (Long position : pylons.keySet()) {
+            Pylon pylon = pylons.get(position);
+            if (pylon.beams.length == 0)
+                continue;
+            int x = HexUtils.unpackX(position);
+            int y = HexUtils.unpackY(position);
+            int z = HexUtils.unpackZ(position);
+            if (!isOn(world, x, y, z))
+                continue;
+
+            for (Beam beam : pylon.beams) {
+                Pylon partner = pylons.get(beam.target);
+                if (partner != null && beam.target < position)
+                    continue;
+                if (!isOn(world, HexUtils.unpackX(beam.target), HexUtils.unpackY(beam.target), HexUtils.unpackZ(beam.target)))
+                    continue;
+                if (!frustrum.isBoxInFrustum(beam.minX, beam.minY, beam.minZ, beam.maxX, beam.maxY, beam.maxZ))
+                    continue;
+
+                if (!started) {
+                    // Set up the render state once, for all beams.
+                    GL11.glPushMatrix();
+                    GL11.glPushAttrib(GL11.GL_ENABLE_BIT);
+                    GL11.glTranslated(-cx, -cy, -cz);
+                    GL11.glDisable(GL11.GL_LIGHTING);
+                    GL11.glEnable(GL11.GL_CULL_FACE);
+                    mc.renderEngine.bindTexture(TextureMap.locationBlocksTexture);
+                    mc.entityRenderer.enableLightmap(event.partialTicks);
+                    tessellator.startDrawingQuads();
+                    tessellator.setBrightness(brightness);
+                    started = true;
+                }
+
+                int monolith = pylon.monolith;
+                int monolithEntry = partner != null ? partner.monolith : monolith;
+                IIcon c;
+                // Check if both of the pylons are rainbow.
+                if (monolith == 18 && monolithEntry == 18) {
+                    // If they are, set the rainbow texture.
+                    tessellator.setColorOpaque_F(HexColors.COLOR_WHITE_R, HexColors.COLOR_WHITE_G, HexColors.COLOR_WHITE_B);
+                    c = iconRainbow;
+                }
+                // If one is rainbow and the other is not, use the color of the other one.
+                else if (monolith == 18) {
+                    setColor(tessellator, monolithEntry);
+                    c = iconBeam;
+                }
+                else {
+                    setColor(tessellator, monolith);
+                    c = iconBeam;
+                }
+                beam.draw(tessellator, c.getMinU(), c.getMaxU(), c.getMinV(), c.getMaxV());
+            }
+        }
+
+        if (started) {
+            tessellator.draw();
+            mc.entityRenderer.disableLightmap(event.partialTicks);
+            GL11.glPopAttrib();
+            GL11.glPopMatrix();
+        }
+    }
+
+    /**
+     * Clears the list of beams when the client world unloads.
+     */
+    @SubscribeEvent
+    public void onWorldUnload(WorldEvent.Unload event) {
+        if (event.world.isRemote)
+            pylons.clear();
+    }
+
+    /**
+     * Checks if a pylon is ON.
+     */
+    private static boolean isOn(World world, int x, int y, int z) {
+        return world.getBlock(x, y, z) == HexBlocks.blockEnergyPylon
+                && !HexUtils.getMetaBit(BlockEnergyPylon.META_STATE, world, x, y, z);
+    }
+
+    /**
+     * Sets the color of a monolith to the Tessellator.
+     * @param tessellator The Tessellator to use.
+     * @param monolith ID of the monolith.
+     */
+    private static void setColor(Tessellator tessellator, int monolith) {
+        if (monolith == 1)
+            tessellator.setColorOpaque_F(HexColors.COLOR_RED_R, HexColors.COLOR_RED_G, HexColors.COLOR_RED_B);
+        else if (monolith == 2)
+            tessellator.setColorOpaque_F(HexColors.COLOR_ORANGE_R, HexColors.COLOR_ORANGE_G, HexColors.COLOR_ORANGE_B);
+        else if (monolith == 3)
+            tessellator.setColorOpaque_F(HexColors.COLOR_YELLOW_R, HexColors.COLOR_YELLOW_G, HexColors.COLOR_YELLOW_B);
+        else if (monolith == 4)
+            tessellator.setColorOpaque_F(HexColors.COLOR_LIME_R, HexColors.COLOR_LIME_G, HexColors.COLOR_LIME_B);
+        else if (monolith == 5)
+            tessellator.setColorOpaque_F(HexColors.COLOR_GREEN_R, HexColors.COLOR_GREEN_G, HexColors.COLOR_GREEN_B);
+        else if (monolith == 6)
+            tessellator.setColorOpaque_F(HexColors.COLOR_TORQUOISE_R, HexColors.COLOR_TORQUOISE_G, HexColors.COLOR_TORQUOISE_B);
+        else if (monolith == 7)
+            tessellator.setColorOpaque_F(HexColors.COLOR_CYAN_R, HexColors.COLOR_CYAN_G, HexColors.COLOR_CYAN_B);
+        else if (monolith == 8)
+            tessellator.setColorOpaque_F(HexColors.COLOR_SKY_BLUE_R, HexColors.COLOR_SKY_BLUE_G, HexColors.COLOR_SKY_BLUE_B);
+        else if (monolith == 9)
+            tessellator.setColorOpaque_F(HexColors.COLOR_BLUE_R, HexColors.COLOR_BLUE_G, HexColors.COLOR_BLUE_B);
+        else if (monolith == 10)
+            tessellator.setColorOpaque_F(HexColors.COLOR_PURPLE_R, HexColors.COLOR_PURPLE_G, HexColors.COLOR_PURPLE_B);
+        else if (monolith == 11)
+            tessellator.setColorOpaque_F(HexColors.COLOR_MAGENTA_R, HexColors.COLOR_MAGENTA_G, HexColors.COLOR_MAGENTA_B);
+        else if (monolith == 12)
+            tessellator.setColorOpaque_F(HexColors.COLOR_PINK_R, HexColors.COLOR_PINK_G, HexColors.COLOR_PINK_B);
+        else if (monolith == 14)
+            tessellator.setColorOpaque_F(HexColors.COLOR_LIGHT_GRAY_R, HexColors.COLOR_LIGHT_GRAY_G, HexColors.COLOR_LIGHT_GRAY_B);
+        else if (monolith == 15)
+            tessellator.setColorOpaque_F(HexColors.COLOR_GRAY_R, HexColors.COLOR_GRAY_G, HexColors.COLOR_GRAY_B);
+        else if (monolith == 16)
+            tessellator.setColorOpaque_F(HexColors.COLOR_DARK_GRAY_R, HexColors.COLOR_DARK_GRAY_G, HexColors.COLOR_DARK_GRAY_B);
+        else if (monolith == 17)
+            tessellator.setColorOpaque_F(HexColors.COLOR_BLACK_R, HexColors.COLOR_BLACK_G, HexColors.COLOR_BLACK_B);
+        else
+            tessellator.setColorOpaque_F(HexColors.COLOR_WHITE_R, HexColors.COLOR_WHITE_G, HexColors.COLOR_WHITE_B);
+    }
+
+    /**
+     * A pylon known to the client.
+     */
+    private static class Pylon {
+        private final int monolith;
+        private final Beam[] beams;
+
+        private Pylon(int monolith, Beam[] beams) {
+            this.monolith = monolith;
+            this.beams = beams;
+        }
+    }
+
+    /**
+     * A single beam, with its corners and bounds worked out in advance.
+     */
+    private static class Beam {
+        private final long target;
+
+        // Corners of the beam at the start (A, B, C, D) and at the target (A', B', C', D'), as X, Y and Z.
+        private final double[] corners;
+
+        private final double minX;
+        private final double minY;
+        private final double minZ;
+        private final double maxX;
+        private final double maxY;
+        private final double maxZ;
+
+        /**
+         * Constructor.
+         * x y z: Starting pylon.
+         * tx ty tz: Target pylon.
+         */
+        private Beam(int x, int y, int z, int tx, int ty, int tz) {
+            this.target = HexUtils.packCoordinates(tx, ty, tz);
+
+            // Create the vector from pylon A to pylon B.
+            double dx = tx - x;
+            double dy = ty - y;
+            double dz = tz - z;
+
+            // Create the offsets of the corners from the center of the pylon.
+            double ax, ay, az;
+            double bx, by, bz;
+            // If the pylons are exactly above each other...
+            if (dx == 0 && dz == 0) {
+                ax = beamRadius;
+                ay = 0;
+                az = 0;
+                bx = 0;
+                by = 0;
+                bz = beamRadius;
+            }
+            else {
+                // Helper vector, perpendicular to the beam on the horizontal plane.
+                double hx = -dz;
+                double hz = dx;
+                double l = Math.sqrt(hx * hx + hz * hz);
+                ax = hx / l * beamRadius / 2;
+                ay = 0;
+                az = hz / l * beamRadius / 2;
+
+                // Cross product of the helper vector and the beam.
+                double px = -hz * dy;
+                double py = hz * dx - hx * dz;
+                double pz = hx * dy;
+                l = Math.sqrt(px * px + py * py + pz * pz);
+                bx = px / l * beamRadius / 2;
+                by = py / l * beamRadius / 2;
+                bz = pz / l * beamRadius / 2;
+            }
+
+            double ox = x + 0.5;
+            double oy = y + 0.5;
+            double oz = z + 0.5;
+            this.corners = new double[] {
+                    ox + ax, oy + ay, oz + az, // A
+                    ox + bx, oy + by, oz + bz, // B
+                    ox - ax, oy - ay, oz - az, // C
+                    ox - bx, oy - by, oz - bz, // D
+                    ox + ax + dx, oy + ay + dy, oz + az + dz, // A'
+                    ox + bx + dx, oy + by + dy, oz + bz + dz, // B'
+                    ox - ax + dx, oy - ay + dy, oz - az + dz, // C'
+                    ox - bx + dx, oy - by + dy, oz - bz + dz  // D'
+            };
+
+            // Prepare the bounds of the beam, used for culling.
+            this.minX = Math.min(ox, ox + dx) - beamRadius;
+            this.minY = Math.min(oy, oy + dy) - beamRadius;
+            this.minZ = Math.min(oz, oz + dz) - beamRadius;
+            this.maxX = Math.max(ox, ox + dx) + beamRadius;
+            this.maxY = Math.max(oy, oy + dy) + beamRadius;
+            this.maxZ = Math.max(oz, oz + dz) + beamRadius;
+        }
+
+        /**
+         * Adds the beam to the Tessellator.
+         */
+        private void draw(Tessellator tessellator, double u, double U, double v, double V) {
+            vertex(tessellator, 0, u, v); // A
+            vertex(tessellator, 4, U, v); // A'
+            vertex(tessellator, 5, U, V); // B'
+            vertex(tessellator, 1, u, V); // B
+
+            vertex(tessellator, 1, u, V); // B
+            vertex(tessellator, 5, U, V); // B'
+            vertex(tessellator, 6, U, v); // C'
+            vertex(tessellator, 2, u, v); // C
+
+            vertex(tessellator, 2, u, v); // C
+            vertex(tessellator, 6, U, v); // C'
+            vertex(tessellator, 7, U, V); // D'
+            vertex(tessellator, 3, u, V); // D
+
+            vertex(tessellator, 3, u, V); // D
+            vertex(tessellator, 7, U, V); // D'
+            vertex(tessellator, 4, U, v); // A'
+            vertex(tessellator, 0, u, v); // A
+        }
+
+        /**
+         * Adds a single corner to the Tessellator.
+         */
+        private void vertex(Tessellator tessellator, int corner, double u, double v) {
+            tessellator.addVertexWithUV(corners[corner * 3], corners[corner * 3 + 1], corners[corner * 3 + 2], u, v);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.celestek.hexcraft.client.renderer;
+
+import com.celestek.hexcraft.init.HexConfig;
+import com.celestek.hexcraft.util.HexUtils;
+import cpw.mods.fml.common.eventhandler.SubscribeEvent;
+import cpw.mods.fml.common.gameevent.TickEvent;
+import net.minecraft.client.Minecraft;
+import net.minecraft.world.World;
+import net.minecraftforge.event.world.WorldEvent;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * @author Thorinair   <celestek@openmailbox.org>
+ */
+
+/**
+ * Queue of render updates on the client. Blocks which need to be redrawn are grouped by the 16x16x16 chunk section
+ * they are in, so that every section is rebuilt only once, and only a limited number of sections is rebuilt per frame.
+ * Used instead of marking blocks for update directly, which rebuilds the section right away.
+ */
+public class HexRenderQueue {
+
+    /**** Static Values ****/
+
+    // Prepare the sections waiting to be rebuilt, by packed section coordinates, in the order they were queued.
+    private static final LinkedHashSet<Long> sections = new LinkedHashSet<Long>();
+
+    /**
+     * Queues a block to be redrawn.
+     * @param x X coordinate of the block.
+     * @param y Y coordinate of the block.
+     * @param z Z coordinate of the block.
+     */
+    public static void queue(int x, int y, int z) {
+        sections.add(HexUtils.packCoordinates(x >> 4, y >> 4, z >> 4));
+    }
+
+    /**
+     * Rebuilds queued sections at the start of every frame.
+     */
+    @SubscribeEvent
+    public void onRenderTick(TickEvent.RenderTickEvent event) {
+        if (event.phase != TickEvent.Phase.START || sections.isEmpty())
+            return;
+
+        World world = Minecraft.getMinecraft().theWorld;
+        if (world == null) {
+            sections.clear();
+            return;
+        }
+
+        int count = 0;
+        Iterator<Long> iterator = sections.iterator();
+        while (iterator.hasNext() && count < HexConfig.cfgGeneralRenderUpdates) {
+            long section = iterator.next();
+            iterator.remove();
+            int x = HexUtils.unpackX(section) << 4;
+            int y = HexUtils.unpackY(section) << 4;
+            int z = HexUtils.unpackZ(section) << 4;
+            // The range is widened by one block on every side when marked, so keep it one block inside the section
+            // to avoid rebuilding the neighbouring ones.
+            world.markBlockRangeForRenderUpdate(x + 1, y + 1, z + 1, x + 14, y + 14, z + 14);
+            count++;
+        }
+    }
+
+    /**
+     * Clears the queue when the client world unloads.
+     */
+    @SubscribeEvent
+    public void onWorldUnload(WorldEvent.Unload event) {
+        if (event.world.isRemote)
+            sections.clear();
+    }
+}
@@ -13,7 +13,14 @@ public class HexConfig {
     public static boolean cfgGeneralNetworkDebug = false;
     public static boolean cfgGeneralVerboseNetworkDebug = false;
     public static boolean cfgGeneralMachineNetworkDebug = false;
+    public static boolean cfgGeneralAsyncNetworkAnalysis = false;
+    public static int cfgGeneralNetworkAnalysisMoves = 20000;
+    public static int cfgGeneralNetworkAnalysisTime = 10;
+    public static int cfgGeneralNetworkCacheSize = 32;
     public static int cfgGeneralPylonRange = 32;
+    public static int cfgGeneralPylonRetraceTime = 500;
+    public static int cfgGeneralPylonRetraceInterval = 100;
+    public static int cfgGeneralRenderUpdates = 8;
     public static boolean cfgGeneralUseAchievements = true;
     public static boolean cfgGeneralTransposerAttack = true;
     public static boolean cfgGeneralTransposerAttackPlayers = true;
@@ -360,7 +367,14 @@ public class HexConfig {
         cfgGeneralNetworkDebug = config.getBoolean("HEX Energy Network debugging", Configuration.CATEGORY_GENERAL, cfgGeneralNetworkDebug, "If set to true, will output the HEX Energy Network connections between machines to console\nupon scanning.\n");
         cfgGeneralVerboseNetworkDebug = config.getBoolean("HEX Energy Network debugging (verbose)", Configuration.CATEGORY_GENERAL, cfgGeneralVerboseNetworkDebug, "If set to true, will output extremely detailed path of machine scanning. HEX Energy Network\ndebugging needs to be enabled.\n");
         cfgGeneralMachineNetworkDebug = config.getBoolean("HEX Energy Network debugging (machines)", Configuration.CATEGORY_GENERAL, cfgGeneralMachineNetworkDebug, "If set to true, will output details about machine communication. Will get very spammy while\nenergy sources are being drained. HEX Energy Network debugging needs to be enabled.\n");
+        cfgGeneralAsyncNetworkAnalysis = config.getBoolean("Asynchronous HEX Energy Network analysis", Configuration.CATEGORY_GENERAL, cfgGeneralAsyncNetworkAnalysis, "If set to true, HEX Energy Networks will be analyzed on a separate thread using a copy of the\nblocks around them. Results are applied a few ticks later.\n");
+        cfgGeneralNetworkAnalysisMoves = config.getInt("HEX Energy Network analysis budget", Configuration.CATEGORY_GENERAL, cfgGeneralNetworkAnalysisMoves, 100, 10000000, "The maximum number of blocks HEX Energy Network analysis can visit per tick. Larger networks\nare analyzed over multiple ticks.\n");
+        cfgGeneralNetworkAnalysisTime = config.getInt("HEX Energy Network analysis time budget", Configuration.CATEGORY_GENERAL, cfgGeneralNetworkAnalysisTime, 1, 1000, "The maximum time in milliseconds HEX Energy Network analysis can take per tick. Larger\nnetworks are analyzed over multiple ticks.\n");
+        cfgGeneralNetworkCacheSize = config.getInt("HEX Energy Network analysis cache size", Configuration.CATEGORY_GENERAL, cfgGeneralNetworkCacheSize, 0, 1024, "The number of HEX Energy Network analysis results remembered per dimension. When an Energy\nPylon is toggled back to a state seen before, the remembered result is used instead of\nanalyzing the network again. Set to 0 to disable.\n");
         cfgGeneralPylonRange = config.getInt("Energy Pylon link range", Configuration.CATEGORY_GENERAL, cfgGeneralPylonRange, 2, 64, "The maximum range at which Energy Pylong can be linked.\n");
+        cfgGeneralPylonRetraceTime = config.getInt("Energy Pylon beam check time budget", Configuration.CATEGORY_GENERAL, cfgGeneralPylonRetraceTime, 50, 50000, "The maximum time in microseconds Energy Pylon beam checks can take per tick. Beams near\nchanged blocks are checked first, and any checks left over continue in the next tick.\n");
+        cfgGeneralPylonRetraceInterval = config.getInt("Energy Pylon beam check interval", Configuration.CATEGORY_GENERAL, cfgGeneralPylonRetraceInterval, 0, 72000, "The number of ticks over which every Energy Pylon beam is checked once, even if no blocks\nnear it have changed. The checks are spread evenly over this time. Set to 0 to only check beams\nnear changed blocks.\n");
+        cfgGeneralRenderUpdates = config.getInt("Render updates per frame", Configuration.CATEGORY_GENERAL, cfgGeneralRenderUpdates, 1, 1024, "The maximum number of chunk sections HexCraft blocks can ask to be redrawn per frame. Requests\nfor the same section are merged, and any left over are redrawn in the following frames.\n");
         cfgGeneralUseAchievements = config.getBoolean("Use achievements", Configuration.CATEGORY_GENERAL, cfgGeneralUseAchievements, "If set to true, HEXCraft will use an achievement system.\n");
         cfgGeneralTransposerAttack = config.getBoolean("Molecular Transposer can attack", Configuration.CATEGORY_GENERAL, cfgGeneralTransposerAttack, "Determines if the Molecular Transposer can be used to attack entities.\n");
         cfgGeneralTransposerAttackPlayers = config.getBoolean("Molecular Transposer can attack players", Configuration.CATEGORY_GENERAL, cfgGeneralTransposerAttackPlayers, "Determines if the Molecular Transposer can be used to attack players. Attacking of all\nentities has to be enabled first.\n");
@@ -0,0 +1,74 @@
+package com.celestek.hexcraft.init;
+
+import com.celestek.hexcraft.util.HexEnergySolver;
+import com.celestek.hexcraft.util.HexNetworkQueue;
+import com.celestek.hexcraft.util.HexPylonBeams;
+import com.celestek.hexcraft.util.HexPylonIndex;
+import com.celestek.hexcraft.util.HexTileReferences;
+import cpw.mods.fml.common.eventhandler.SubscribeEvent;
+import cpw.mods.fml.common.gameevent.TickEvent;
+import net.minecraftforge.event.world.ChunkEvent;
+import net.minecraftforge.event.world.WorldEvent;
+
+/**
+ * @author Thorinair   <celestek@openmailbox.org>
+ */
+
+public class HexEventHandler {
+    /**
+     * Fired at the start and end of every world tick.
+     */
+    @SubscribeEvent
+    public void onWorldTick(TickEvent.WorldTickEvent event) {
+        // Process the queued network analyses at the end of the server tick.
+        if (event.phase == TickEvent.Phase.END && !event.world.isRemote) {
+            // Retrace the pylon beams through changed sections first, so that any broken links are analyzed too.
+            HexPylonBeams.process(event.world);
+            HexNetworkQueue.process(event.world);
+
+            // Share the energy requested by drains during the tick.
+            HexEnergySolver.process(event.world);
+        }
+    }
+
+    /**
+     * Fired when a chunk is loaded.
+     */
+    @SubscribeEvent
+    public void onChunkLoad(ChunkEvent.Load event) {
+        // Resume network analyses which stopped at the border of this chunk.
+        if (!event.world.isRemote)
+            HexNetworkQueue.resume(event.world, event.getChunk().xPosition, event.getChunk().zPosition);
+    }
+
+    /**
+     * Fired when a chunk is unloaded.
+     */
+    @SubscribeEvent
+    public void onChunkUnload(ChunkEvent.Unload event) {
+        // Discard asynchronous network analyses which copied blocks from this chunk, and cached analysis results.
+        if (!event.world.isRemote)
+            HexNetworkQueue.unloadChunk(event.world, event.getChunk().xPosition, event.getChunk().zPosition);
+    }
+
+    /**
+     * Fired when a world is loaded.
+     */
+    @SubscribeEvent
+    public void onWorldLoad(WorldEvent.Load event) {
+        // Watch block changes along pylon beams.
+        HexPylonBeams.watch(event.world);
+    }
+
+    /**
+     * Fired when a world is unloaded.
+     */
+    @SubscribeEvent
+    public void onWorldUnload(WorldEvent.Unload event) {
+        HexNetworkQueue.unload(event.world);
+        HexEnergySolver.unload(event.world);
+        HexPylonBeams.unload(event.world);
+        HexPylonIndex.unload(event.world);
+        HexTileReferences.unload(event.world);
+    }
+}
@@ -5,11 +5,18 @@ import com.celestek.hexcraft.block.*;
 import com.celestek.hexcraft.init.HexAchievements;
 import com.celestek.hexcraft.init.HexBlocks;
 import com.celestek.hexcraft.init.HexConfig;
+import com.celestek.hexcraft.tileentity.ITileHexEnergyDrain;
 import com.celestek.hexcraft.tileentity.ITileHexEnergyPort;
 import com.celestek.hexcraft.tileentity.TileEnergyPylon;
 import com.celestek.hexcraft.tileentity.TileTankValve;
 import com.celestek.hexcraft.tileentity.TilePersonalTeleportationPad;
+import com.celestek.hexcraft.util.HexBeamTracer;
 import com.celestek.hexcraft.util.HexEnergyNode;
+import com.celestek.hexcraft.util.HexEnergySolver;
+import com.celestek.hexcraft.util.HexNetwork;
+import com.celestek.hexcraft.util.HexNetworkGraph;
+import com.celestek.hexcraft.util.HexNetworkQueue;
+import com.celestek.hexcraft.util.HexPylonIndex;
 import com.celestek.hexcraft.util.HexUtils;
 import com.celestek.hexcraft.util.NetworkAnalyzer;
 import cpw.mods.fml.relauncher.Side;
@@ -26,7 +33,6 @@ import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.ChatComponentTranslation;
 import net.minecraft.util.IIcon;
 import net.minecraft.util.MathHelper;
-import net.minecraft.util.Vec3;
 import net.minecraft.world.World;
 
 /**
@@ -94,6 +100,34 @@ public class ItemHexoriumManipulator extends Item {
                     block.dropBlockAsItem(world, x, y, z, world.getBlockMetadata(x, y, z), HexCraft.hexFortune);
                 }
 
+                // Change drain priority. Teleports use their top side, as the other sides rotate them.
+                else if (block == HexBlocks.blockHexoriumFurnace ||
+                        block == HexBlocks.blockCrystalSeparator ||
+                        block == HexBlocks.blockMatrixReconstructor ||
+                        (block == HexBlocks.blockPersonalTeleportationPad && side == 1)) {
+                    TileEntity tileEntity = world.getTileEntity(x, y, z);
+                    if (tileEntity instanceof ITileHexEnergyDrain) {
+                        ITileHexEnergyDrain drain = (ITileHexEnergyDrain) tileEntity;
+                        int priority = (drain.getDrainPriority() + 1) % HexEnergySolver.PRIORITY_COUNT;
+                        drain.setDrainPriority(priority);
+                        player.addChatMessage(new ChatComponentTranslation("msg.drainPriority" + (priority + 1) + ".txt"));
+                    }
+                }
+
+                // Change network policy.
+                else if (block instanceof BlockHexoriumCable) {
+                    HexNetworkGraph graph = HexNetworkGraph.get(world);
+                    HexNetwork network = graph.getNetwork(HexUtils.packCoordinates(x, y, z));
+                    if (network != null) {
+                        network.policy = (network.policy + 1) % HexEnergySolver.POLICY_COUNT;
+                        graph.markDirty();
+                        player.addChatMessage(new ChatComponentTranslation("msg.networkPolicy" + (network.policy + 1) + ".txt"));
+
+                        if (HexConfig.cfgGeneralNetworkDebug)
+                            System.out.println("[Hexorium Manipulator]: Network " + network.id + " policy changed. p: " + network.policy);
+                    }
+                }
+
                 // Rotate teleport.
                 else if (block == HexBlocks.blockPersonalTeleportationPad) {
                     int metaOld = world.getBlockMetadata(x, y, z);
@@ -101,6 +135,7 @@ public class ItemHexoriumManipulator extends Item {
                     // Rotate meta
                     HexUtils.rotateBlock(HexBlocks.META_MACHINE_ROTATION_0, HexBlocks.META_MACHINE_ROTATION_1, true,
                             HexUtils.META_NOTIFY_UPDATE, world, x, y, z);
+                    HexNetworkQueue.markChanged(world, x, y, z);
 
                     if (HexConfig.cfgGeneralNetworkDebug)
                         System.out.println("[Hexorium Manipulator]: Teleport rotated, analyzing!");
@@ -185,6 +220,11 @@ public class ItemHexoriumManipulator extends Item {
 
                     HexUtils.setMetaBitBiInt(HexEnergyNode.META_MODE_0, HexEnergyNode.META_MODE_1, mode, HexUtils.META_NOTIFY_UPDATE, world, x, y, z);
 
+                    // Let the port know about its new mode.
+                    TileEntity tileEntity = world.getTileEntity(x, y, z);
+                    if (tileEntity instanceof ITileHexEnergyPort)
+                        ((ITileHexEnergyPort) tileEntity).setPortMode(mode);
+
                     if (block == HexBlocks.blockEnergyNodePortHEX) {
 
                         int xc = x;
@@ -209,14 +249,11 @@ public class ItemHexoriumManipulator extends Item {
 
                         /* DO ANALYSIS */
                         if (mode != HexEnergyNode.PORT_MODE_INTERFACE) {
-                            NetworkAnalyzer analyzerCore = new NetworkAnalyzer();
-                            analyzerCore.analyzeCable(world, xc, yc, zc, world.getBlock(xc, yc, zc));
-                            NetworkAnalyzer analyzerPort = new NetworkAnalyzer();
-                            analyzerPort.analyzeCable(world, xp, yp, zp, world.getBlock(xp, yp, zp));
+                            HexNetworkQueue.queueCable(world, xc, yc, zc);
+                            HexNetworkQueue.queueCable(world, xp, yp, zp);
                         }
                         else {
-                            NetworkAnalyzer analyzerCore = new NetworkAnalyzer();
-                            analyzerCore.analyzeCable(world, xc, yc, zc, world.getBlock(xc, yc, zc));
+                            HexNetworkQueue.queueCable(world, xc, yc, zc);
                         }
                     }
                 }
@@ -266,14 +303,19 @@ public class ItemHexoriumManipulator extends Item {
                         int tz = stack.stackTagCompound.getInteger(NBT_PYLON_Z);
 
                         if (!(tx == x && ty == y && tz == z)) {
-                            // Determine length of the link.
-                            double len = Vec3.createVectorHelper(tx, ty, tz).subtract(Vec3.createVectorHelper(x, y, z)).lengthVector();
-
-                            // Perform ray tracing, if success, proceed.
-                            if (TileEnergyPylon.tracePylons(world, x, y, z, tx, ty, tz)) {
-
-                                // Check if pylons are within reach.
-                                if (len <= HexConfig.cfgGeneralPylonRange) {
+                            // Trace the beam, if nothing is in the way, proceed.
+                            long obstruction = HexBeamTracer.trace(world, x, y, z, tx, ty, tz);
+                            if (obstruction == HexBeamTracer.CLEAR) {
+
+                                // Check if pylons are within reach. The first pylon is looked up in the pylon index, so
+                                // that its chunk is not loaded again if it has been unloaded since.
+                                boolean reachable = false;
+                                long target = HexUtils.packCoordinates(tx, ty, tz);
+                                for (long position : HexPylonIndex.getPylonsInRange(world, x, y, z, HexConfig.cfgGeneralPylonRange))
+                                    if (position == target)
+                                        reachable = true;
+
+                                if (reachable) {
                                     // Fetch tile entities of pylons.
                                     TileEntity teA = world.getTileEntity(x, y, z);
                                     TileEntity teB = world.getTileEntity(tx, ty, tz);
@@ -288,7 +330,7 @@ public class ItemHexoriumManipulator extends Item {
                                         if ((monolithA != 0 && monolithB != 0) && (monolithA == 18 || monolithB == 18 || monolithA == monolithB)) {
 
                                             // Try to add pylons.
-                                            if (pylonA.addPylon(tx, ty, tz, false) && pylonB.addPylon(x, y, z, true)) {
+                                            if (pylonB.addPylon(x, y, z)) {
                                                 // If the pylons are not added yet, link them.
                                                 player.addChatMessage(new ChatComponentTranslation("msg.pylonLinkSuccess.txt"));
 
@@ -303,14 +345,10 @@ public class ItemHexoriumManipulator extends Item {
                                                     System.out.println("[Hexorium Manipulator]: Pylons linked, analyzing!");
 
                                             /* DO ANALYSIS */
-                                                // Prepare the network analyzer.
-                                                NetworkAnalyzer analyzer = new NetworkAnalyzer();
-                                                // Call the analysis.
-                                                analyzer.analyzePylon(world, tx, ty, tz, HexBlocks.blockEnergyPylon);
+                                                HexNetworkQueue.queuePylon(world, tx, ty, tz);
                                             }
                                             else {
                                                 // If the pylons were already added, unlink them.
-                                                pylonA.removePylon(tx, ty, tz);
                                                 pylonB.removePylon(x, y, z);
                                                 player.addChatMessage(new ChatComponentTranslation("msg.pylonLinkBreak.txt"));
                                             }
@@ -322,11 +360,14 @@ public class ItemHexoriumManipulator extends Item {
                                     else
                                         player.addChatMessage(new ChatComponentTranslation("msg.pylonLinkFail2.txt"));
                                 }
+                                else if (HexPylonIndex.isInRange(x, y, z, tx, ty, tz, HexConfig.cfgGeneralPylonRange))
+                                    player.addChatMessage(new ChatComponentTranslation("msg.pylonLinkFail2.txt"));
                                 else
                                     player.addChatMessage(new ChatComponentTranslation("msg.pylonLinkFail3.txt"));
                             }
                             else
-                                player.addChatMessage(new ChatComponentTranslation("msg.pylonLinkFail4.txt"));
+                                player.addChatMessage(new ChatComponentTranslation("msg.pylonLinkFail4.txt",
+                                        HexUtils.unpackX(obstruction), HexUtils.unpackY(obstruction), HexUtils.unpackZ(obstruction)));
 
                             stack.stackTagCompound.setBoolean(NBT_PYLON_LINKING, false);
                             stack.setItemDamage(0);
@@ -511,10 +552,8 @@ public class ItemHexoriumManipulator extends Item {
                                                             == HexEnergyNode.PORT_MODE_TUNNEL) {
 
                                                         /* DO ANALYSIS */
-                                                        NetworkAnalyzer analyzerCore = new NetworkAnalyzer();
-                                                        analyzerCore.analyzeCable(world, xc, yc, zc, world.getBlock(xc, yc, zc));
-                                                        NetworkAnalyzer analyzerPort = new NetworkAnalyzer();
-                                                        analyzerPort.analyzeCable(world, xp, yp, zp, world.getBlock(xp, yp, zp));
+                                                        HexNetworkQueue.queueCable(world, xc, yc, zc);
+                                                        HexNetworkQueue.queueCable(world, xp, yp, zp);
                                                     }
                                                 }
                                                 else {
@@ -581,6 +620,7 @@ public class ItemHexoriumManipulator extends Item {
                     // Rotate meta
                     HexUtils.rotateBlock(HexBlocks.META_MACHINE_ROTATION_0, HexBlocks.META_MACHINE_ROTATION_1, true,
                             HexUtils.META_NOTIFY_UPDATE, world, x, y, z);
+                    HexNetworkQueue.markChanged(world, x, y, z);
 
                     if (HexConfig.cfgGeneralNetworkDebug)
                         System.out.println("[Hexorium Manipulator]: Machine rotated, analyzing!");
@@ -746,113 +786,23 @@ public class ItemHexoriumManipulator extends Item {
 
         /* DO ANALYSIS */
 
-        // Perform an analysis in all directions around the base.
-        Block blockSurr = world.getBlock(x, y - 1, z);
-        if (blockSurr instanceof BlockHexoriumCable ||
-                blockSurr instanceof BlockPylonBase) {
-            NetworkAnalyzer analyzer = new NetworkAnalyzer();
-            analyzer.analyzeCable(world, x, y - 1, z, blockSurr);
-        }
-        else if (blockSurr == HexBlocks.blockHexoriumGenerator ||
-                blockSurr == HexBlocks.blockHexoriumFurnace ||
-                blockSurr == HexBlocks.blockCrystalSeparator ||
-                blockSurr == HexBlocks.blockMatrixReconstructor) {
-            NetworkAnalyzer analyzer = new NetworkAnalyzer();
-            analyzer.analyzeMachines(world, x, y - 1, z, world.getBlockMetadata(x, y - 1, z));
-        }
-        else if (blockSurr == HexBlocks.blockEnergyPylon) {
-            NetworkAnalyzer analyzer = new NetworkAnalyzer();
-            analyzer.analyzePylon(world, x, y - 1, z, blockSurr);
-        }
-
-        blockSurr = world.getBlock(x, y + 1, z);
-        if (blockSurr instanceof BlockHexoriumCable ||
-                blockSurr instanceof BlockPylonBase) {
-            NetworkAnalyzer analyzer = new NetworkAnalyzer();
-            analyzer.analyzeCable(world, x, y + 1, z, blockSurr);
-        }
-        else if (blockSurr == HexBlocks.blockHexoriumGenerator ||
-                blockSurr == HexBlocks.blockHexoriumFurnace ||
-                blockSurr == HexBlocks.blockCrystalSeparator ||
-                blockSurr == HexBlocks.blockMatrixReconstructor) {
-            NetworkAnalyzer analyzer = new NetworkAnalyzer();
-            analyzer.analyzeMachines(world, x, y + 1, z, world.getBlockMetadata(x, y + 1, z));
-        }
-        else if (blockSurr == HexBlocks.blockEnergyPylon) {
-            NetworkAnalyzer analyzer = new NetworkAnalyzer();
-            analyzer.analyzePylon(world, x, y + 1, z, blockSurr);
-        }
-
-        blockSurr = world.getBlock(x - 1, y, z);
-        if (blockSurr instanceof BlockHexoriumCable ||
-                blockSurr instanceof BlockPylonBase) {
-            NetworkAnalyzer analyzer = new NetworkAnalyzer();
-            analyzer.analyzeCable(world, x - 1, y, z, blockSurr);
-        }
-        else if (blockSurr == HexBlocks.blockHexoriumGenerator ||
-                blockSurr == HexBlocks.blockHexoriumFurnace ||
-                blockSurr == HexBlocks.blockCrystalSeparator ||
-                blockSurr == HexBlocks.blockMatrixReconstructor) {
-            NetworkAnalyzer analyzer = new NetworkAnalyzer();
-            analyzer.analyzeMachines(world, x - 1, y, z, world.getBlockMetadata(x - 1, y, z));
-        }
-        else if (blockSurr == HexBlocks.blockEnergyPylon) {
-            NetworkAnalyzer analyzer = new NetworkAnalyzer();
-            analyzer.analyzePylon(world, x - 1, y, z, blockSurr);
-        }
-
-        blockSurr = world.getBlock(x + 1, y, z);
-        if (blockSurr instanceof BlockHexoriumCable ||
-                blockSurr instanceof BlockPylonBase) {
-            NetworkAnalyzer analyzer = new NetworkAnalyzer();
-            analyzer.analyzeCable(world, x + 1, y, z, blockSurr);
-        }
-        else if (blockSurr == HexBlocks.blockHexoriumGenerator ||
-                blockSurr == HexBlocks.blockHexoriumFurnace ||
-                blockSurr == HexBlocks.blockCrystalSeparator ||
-                blockSurr == HexBlocks.blockMatrixReconstructor) {
-            NetworkAnalyzer analyzer = new NetworkAnalyzer();
-            analyzer.analyzeMachines(world, x + 1, y, z, world.getBlockMetadata(x + 1, y, z));
-        }
-        else if (blockSurr == HexBlocks.blockEnergyPylon) {
-            NetworkAnalyzer analyzer = new NetworkAnalyzer();
-            analyzer.analyzePylon(world, x + 1, y, z, blockSurr);
-        }
-
-        blockSurr = world.getBlock(x, y, z - 1);
-        if (blockSurr instanceof BlockHexoriumCable ||
-                blockSurr instanceof BlockPylonBase) {
-            NetworkAnalyzer analyzer = new NetworkAnalyzer();
-            analyzer.analyzeCable(world, x, y, z - 1, blockSurr);
-        }
-        else if (blockSurr == HexBlocks.blockHexoriumGenerator ||
-                blockSurr == HexBlocks.blockHexoriumFurnace ||
-                blockSurr == HexBlocks.blockCrystalSeparator ||
-                blockSurr == HexBlocks.blockMatrixReconstructor) {
-            NetworkAnalyzer analyzer = new NetworkAnalyzer();
-            analyzer.analyzeMachines(world, x, y, z - 1, world.getBlockMetadata(x, y, z - 1));
-        }
-        else if (blockSurr == HexBlocks.blockEnergyPylon) {
-            NetworkAnalyzer analyzer = new NetworkAnalyzer();
-            analyzer.analyzePylon(world, x, y, z - 1, blockSurr);
-        }
-
-        blockSurr = world.getBlock(x, y, z + 1);
-        if (blockSurr instanceof BlockHexoriumCable ||
-                blockSurr instanceof BlockPylonBase) {
-            NetworkAnalyzer analyzer = new NetworkAnalyzer();
-            analyzer.analyzeCable(world, x, y, z + 1, blockSurr);
-        }
-        else if (blockSurr == HexBlocks.blockHexoriumGenerator ||
-                blockSurr == HexBlocks.blockHexoriumFurnace ||
-                blockSurr == HexBlocks.blockCrystalSeparator ||
-                blockSurr == HexBlocks.blockMatrixReconstructor) {
-            NetworkAnalyzer analyzer = new NetworkAnalyzer();
-            analyzer.analyzeMachines(world, x, y, z + 1, world.getBlockMetadata(x, y, z + 1));
-        }
-        else if (blockSurr == HexBlocks.blockEnergyPylon) {
-            NetworkAnalyzer analyzer = new NetworkAnalyzer();
-            analyzer.analyzePylon(world, x, y, z + 1, blockSurr);
+        // Queue the blocks in all directions around the base, so that they are analyzed together.
+        int[][] sides = {{0, -1, 0}, {0, 1, 0}, {-1, 0, 0}, {1, 0, 0}, {0, 0, -1}, {0, 0, 1}};
+        for (int[] side : sides) {
+            int xs = x + side[0];
+            int ys = y + side[1];
+            int zs = z + side[2];
+            Block blockSurr = world.getBlock(xs, ys, zs);
+            if (blockSurr instanceof BlockHexoriumCable ||
+                    blockSurr instanceof BlockPylonBase)
+                HexNetworkQueue.queueCable(world, xs, ys, zs);
+            else if (blockSurr == HexBlocks.blockHexoriumGenerator ||
+                    blockSurr == HexBlocks.blockHexoriumFurnace ||
+                    blockSurr == HexBlocks.blockCrystalSeparator ||
+                    blockSurr == HexBlocks.blockMatrixReconstructor)
+                HexNetworkQueue.queueMachines(world, xs, ys, zs);
+            else if (blockSurr == HexBlocks.blockEnergyPylon)
+                HexNetworkQueue.queuePylon(world, xs, ys, zs);
         }
     }
 }
@@ -1,25 +1,40 @@
 package com.celestek.hexcraft.tileentity;
 
-import com.celestek.hexcraft.util.HexDevice;
 import net.minecraft.entity.player.EntityPlayer;
 
-import java.util.ArrayList;
-
 /**
  * @author Thorinair   <celestek@openmailbox.org>
  */
 public interface ITileHexEnergyDrain {
     /**
-     * Saves the ArrayList of energy sources.
-     * @param energySources The ArrayList to save.
+     * Saves the ID of the network whose sources this drain uses.
+     * @param network ID of the network.
      */
-    void setSources(ArrayList<HexDevice> energySources);
+    void setDrainNetwork(int network);
 
     /**
      * Called by sources to force drains to recheck them.
      */
     void recheckSources();
 
+    /**
+     * Called by the energy solver at the end of the tick to deliver the energy requested by the drain.
+     * @param amount The amount of energy delivered.
+     */
+    void receiveEnergy(float amount);
+
+    /**
+     * Called by the energy solver to decide which drains are served first when there isn't enough energy.
+     * @return The priority of the drain.
+     */
+    int getDrainPriority();
+
+    /**
+     * Called by Hexorium Manipulator to change the priority of the drain.
+     * @param priority The new priority.
+     */
+    void setDrainPriority(int priority);
+
     /**
      * Called by Hexorium Probe to display tile entity info to chat.
      * @param player Player to show the message to.
@@ -1,20 +1,17 @@
 package com.celestek.hexcraft.tileentity;
 
-import com.celestek.hexcraft.util.HexDevice;
 import net.minecraft.block.Block;
 import net.minecraft.entity.player.EntityPlayer;
 
-import java.util.ArrayList;
-
 /**
  * @author Thorinair   <celestek@openmailbox.org>
  */
 public interface ITileHexEnergyPort {
     /**
-     * Saves the ArrayList of energy ports.
-     * @param energyPorts The ArrayList to save.
+     * Saves the ID of the network connecting this port to other ports.
+     * @param network ID of the network.
      */
-    void setPorts(ArrayList<HexDevice> energyPorts);
+    void setPortNetwork(int network);
 
     /**
      * Called when setting up an Energy Node to set the tier.
@@ -34,6 +31,18 @@ public interface ITileHexEnergyPort {
      */
     int getPortType();
 
+    /**
+     * Called when retrieving the mode.
+     * @return Mode of the port.
+     */
+    int getPortMode();
+
+    /**
+     * Called by Hexorium Manipulator after it changes the mode of the port.
+     * @param portMode The new mode.
+     */
+    void setPortMode(int portMode);
+
     /**
      * Checks if ports are connected via network.
      * @param x X coordinate of the target port.
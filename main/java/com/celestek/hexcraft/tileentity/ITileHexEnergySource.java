@@ -1,19 +1,16 @@
 package com.celestek.hexcraft.tileentity;
 
-import com.celestek.hexcraft.util.HexDevice;
 import net.minecraft.entity.player.EntityPlayer;
 
-import java.util.ArrayList;
-
 /**
  * @author Thorinair   <celestek@openmailbox.org>
  */
 public interface ITileHexEnergySource {
     /**
-     * Saves the ArrayList of energy drains.
-     * @param energyDrains The ArrayList to save.
+     * Saves the ID of the network whose drains this source feeds.
+     * @param network ID of the network.
      */
-    void setDrains(ArrayList<HexDevice> energyDrains);
+    void setSourceNetwork(int network);
 
     /**
      * Called by drains to check if they can drain energy.
@@ -4,6 +4,11 @@ import com.celestek.hexcraft.init.HexBlocks;
 import com.celestek.hexcraft.init.HexConfig;
 import com.celestek.hexcraft.init.HexProcessingCrystalSeparator;
 import com.celestek.hexcraft.util.HexDevice;
+import com.celestek.hexcraft.util.HexEnergySolver;
+import com.celestek.hexcraft.util.HexNetwork;
+import com.celestek.hexcraft.util.HexNetworkGraph;
+import com.celestek.hexcraft.util.HexNetworkQueue;
+import com.celestek.hexcraft.util.HexTileReferences;
 import com.celestek.hexcraft.util.HexUtils;
 import cpw.mods.fml.relauncher.Side;
 import cpw.mods.fml.relauncher.SideOnly;
@@ -31,7 +36,8 @@ public class TileCrystalSeparator extends TileEntity implements ISidedInventory,
     private static final String INVENTORY_NAME = "hexcraft.container.crystalSeparator";
 
     // NBT Names
-    private static final String NBT_ENERGY_SOURCES = "energy_sources";
+    private static final String NBT_DRAIN_NETWORK = "drain_network";
+    private static final String NBT_DRAIN_PRIORITY = "drain_priority";
 
     private static final String NBT_ENERGY_TOTAL_DONE = "energy_total_done";
     private static final String NBT_ENERGY_DRAINED = "energy_drained";
@@ -44,8 +50,14 @@ public class TileCrystalSeparator extends TileEntity implements ISidedInventory,
 
     /**** Variables ****/
 
-    // Prepare sources list.
-    private ArrayList<HexDevice> energySources;
+    // Prepare the network ID.
+    private int drainNetwork;
+
+    // Prepare the priority of the drain.
+    private int drainPriority;
+
+    // Set if the tile entity was saved before it kept network IDs.
+    private boolean legacy;
 
     // Prepare energy variables.
     private int energyPerTick;
@@ -53,6 +65,10 @@ public class TileCrystalSeparator extends TileEntity implements ISidedInventory,
     private float energyTotalDone;
     private float energyDrained;
 
+    // Prepare the energy delivered by the solver, and whether it was requested.
+    private float energyReceived;
+    private boolean energyRequested;
+
     // Prepare GUI energy variables.
     private int guiEnergyTotalDone;
     private int guiEnergyDrained;
@@ -61,6 +77,10 @@ public class TileCrystalSeparator extends TileEntity implements ISidedInventory,
     private boolean isActive;
     private int usableSources;
 
+    // Set while the machine has nothing to process or no energy. The machine skips its ticks until it is woken up by
+    // an inventory change, a recheck of its sources or its GUI.
+    private boolean sleeping;
+
     // Define sides and slots.
     private static final int[] slotsTop = new int[] { 0 };
     private static final int[] slotsSide = new int[] { 1 };
@@ -70,6 +90,8 @@ public class TileCrystalSeparator extends TileEntity implements ISidedInventory,
     /**** Common TileEntity Methods ****/
 
     public TileCrystalSeparator() {
+        this.drainNetwork = HexNetworkGraph.NO_NETWORK;
+        this.drainPriority = HexEnergySolver.PRIORITY_NORMAL;
 
         this.energyPerTick = 32;
         this.energyTotal = 6400;
@@ -80,6 +102,7 @@ public class TileCrystalSeparator extends TileEntity implements ISidedInventory,
         this.guiEnergyDrained = 0;
 
         this.isActive = false;
+        this.sleeping = false;
         this.usableSources = 0;
 
         this.inventory = new ItemStack[3];
@@ -92,8 +115,9 @@ public class TileCrystalSeparator extends TileEntity implements ISidedInventory,
     public void writeToNBT(NBTTagCompound tagCompound) {
         super.writeToNBT(tagCompound);
 
-        // Write the drains.
-        HexUtils.writeHexDevicesArrayToNBT(tagCompound, NBT_ENERGY_SOURCES, energySources);
+        // Write the network ID.
+        tagCompound.setInteger(NBT_DRAIN_NETWORK, drainNetwork);
+        tagCompound.setInteger(NBT_DRAIN_PRIORITY, drainPriority);
 
         // Write the energy variables.
         tagCompound.setFloat(NBT_ENERGY_TOTAL_DONE, energyTotalDone);
@@ -118,8 +142,10 @@ public class TileCrystalSeparator extends TileEntity implements ISidedInventory,
     public void readFromNBT(NBTTagCompound tagCompound) {
         super.readFromNBT(tagCompound);
 
-        // Read the sources.
-        energySources = HexUtils.readHexDevicesArrayFromNBT(tagCompound, NBT_ENERGY_SOURCES);
+        // Read the network ID.
+        drainNetwork = tagCompound.hasKey(NBT_DRAIN_NETWORK) ? tagCompound.getInteger(NBT_DRAIN_NETWORK) : HexNetworkGraph.NO_NETWORK;
+        legacy = !tagCompound.hasKey(NBT_DRAIN_NETWORK);
+        drainPriority = tagCompound.hasKey(NBT_DRAIN_PRIORITY) ? tagCompound.getInteger(NBT_DRAIN_PRIORITY) : HexEnergySolver.PRIORITY_NORMAL;
 
         // Read the energy variables.
         energyTotalDone = tagCompound.getFloat(NBT_ENERGY_TOTAL_DONE);
@@ -137,13 +163,58 @@ public class TileCrystalSeparator extends TileEntity implements ISidedInventory,
         inventory = HexUtils.readInventoryFromNBT(tagCompound, getSizeInventory());
     }
 
+    /**
+     * Called when the tile entity is added to the world.
+     */
+    @Override
+    public void validate() {
+        super.validate();
+        HexTileReferences.add(this);
+    }
+
+    /**
+     * Called when the tile entity is removed from the world.
+     */
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        HexTileReferences.remove(this);
+
+        // Let the graph know this machine no longer holds its networks.
+        HexNetworkGraph.hold(worldObj, drainNetwork, HexNetworkGraph.NO_NETWORK);
+        drainNetwork = HexNetworkGraph.NO_NETWORK;
+    }
+
+    /**
+     * Called when the chunk of the tile entity is unloaded.
+     */
+    @Override
+    public void onChunkUnload() {
+        super.onChunkUnload();
+        HexTileReferences.remove(this);
+    }
+
     /**
      * Fired on every tick. Main processing is done here.
      */
     @Override
     public void updateEntity() {
         if (!worldObj.isRemote) {
-            energyDrained = 0;
+            // Analyze the network again if it was saved before network IDs were kept.
+            if (legacy) {
+                legacy = false;
+                HexNetworkQueue.queueMachines(worldObj, xCoord, yCoord, zCoord);
+            }
+
+            // Skip the tick while the machine is asleep.
+            if (sleeping)
+                return;
+
+            // Use the energy delivered by the solver since the previous tick.
+            energyDrained = energyReceived;
+            energyReceived = 0;
+            boolean requested = energyRequested;
+            energyRequested = false;
 
             // Check the situation in which the machine has available energy sources and items to process.
             if (canDrainSource() && canProcess()) {
@@ -158,11 +229,8 @@ public class TileCrystalSeparator extends TileEntity implements ISidedInventory,
 
                 // Check if the machine is now in its active state.
                 if (isActive) {
-                    // Drain from all sources.
-                    drainFromSources();
-
-                    // If the total energy drained is 0, stop processing. Otherwise increment the progress by the amount drained.
-                    if (energyDrained == 0)
+                    // If energy was requested but none was delivered, stop processing. Otherwise increment the progress by the amount delivered.
+                    if (requested && energyDrained == 0)
                         stopProcessing();
                     else
                         energyTotalDone = energyTotalDone + energyDrained;
@@ -172,11 +240,18 @@ public class TileCrystalSeparator extends TileEntity implements ISidedInventory,
                         energyTotalDone = 0;
                         processItem();
                     }
+
+                    // Request energy for the next tick, unless there is nothing left to process.
+                    if (isActive && canProcess())
+                        requestEnergy();
                 }
             }
-            // If the machine has no energy and/or there are no items to process, stop the processing.
-            else
+            // If the machine has no energy and/or there are no items to process, stop the processing and go to sleep.
+            else {
                 stopProcessing();
+                energyDrained = 0;
+                sleeping = true;
+            }
 
             // Save the energy states to their GUI variables.
             guiEnergyTotalDone = Math.round(energyTotalDone);
@@ -187,33 +262,76 @@ public class TileCrystalSeparator extends TileEntity implements ISidedInventory,
     /**** ITileHexEnergyDrain Methods ****/
 
     /**
-     * Saves the ArrayList of energy sources.
-     * @param energySources The ArrayList to save.
+     * Saves the ID of the network whose sources are used by this drain.
+     * @param network ID of the network.
      */
     @Override
-    public void setSources(ArrayList<HexDevice> energySources) {
-        this.energySources = energySources;
+    public void setDrainNetwork(int network) {
+        HexNetworkGraph.hold(worldObj, this.drainNetwork, network);
+        this.drainNetwork = network;
+        ArrayList<HexDevice> energySources = getEnergySources();
         if (HexConfig.cfgGeneralMachineNetworkDebug && HexConfig.cfgGeneralNetworkDebug)
-            System.out.println("[Crystal Separator] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Sources received. s: " + energySources.size());
+            System.out.println("[Crystal Separator] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Sources received. s: " + (energySources != null ? energySources.size() : 0));
         recheckSources();
     }
 
+    /**
+     * Gets the sources of the network.
+     * @return The ArrayList of sources, or null if there is no network.
+     */
+    private ArrayList<HexDevice> getEnergySources() {
+        HexNetwork network = HexNetworkGraph.getNetworkById(worldObj, drainNetwork);
+        return network != null ? network.getSources() : null;
+    }
+
     /**
      * Called by sources to force drains to recheck them.
      */
     @Override
     public void recheckSources() {
+        wake();
         scanSources();
         if (HexConfig.cfgGeneralMachineNetworkDebug && HexConfig.cfgGeneralNetworkDebug)
             System.out.println("[Crystal Separator] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Recheck requested. s: " + usableSources);
     }
 
+    /**
+     * Called by the energy solver at the end of the tick to deliver the energy requested by the drain.
+     * @param amount The amount of energy delivered.
+     */
+    @Override
+    public void receiveEnergy(float amount) {
+        energyReceived = energyReceived + amount;
+    }
+
+    /**
+     * Called by the energy solver to decide which drains are served first when there isn't enough energy.
+     * @return The priority of the drain.
+     */
+    @Override
+    public int getDrainPriority() {
+        return drainPriority;
+    }
+
+    /**
+     * Called by Hexorium Manipulator to change the priority of the drain.
+     * @param priority The new priority.
+     */
+    @Override
+    public void setDrainPriority(int priority) {
+        this.drainPriority = priority;
+        if (HexConfig.cfgGeneralMachineNetworkDebug && HexConfig.cfgGeneralNetworkDebug)
+            System.out.println("[Crystal Separator] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Priority changed. p: " + drainPriority);
+        markDirty();
+    }
+
     /**
      * Called by Hexorium Probe to display tile entity info to chat.
      * @param player Player to show the message to.
      */
     @Override
     public void displayInfoDrain(EntityPlayer player) {
+        ArrayList<HexDevice> energySources = getEnergySources();
         HexUtils.addChatProbeTitle(player);
         // If player is not sneaking.
         if (!player.isSneaking()) {
@@ -222,6 +340,7 @@ public class TileCrystalSeparator extends TileEntity implements ISidedInventory,
             int mode = HexUtils.getMetaBitBiInt(HexBlocks.META_MACHINE_STATUS_0, HexBlocks.META_MACHINE_STATUS_1, worldObj, xCoord, yCoord, zCoord);
             player.addChatMessage(new ChatComponentTranslation("msg.probeMachineStatus" + (mode + 1) + ".txt"));
             player.addChatMessage(new ChatComponentTranslation("msg.probeEnergy.txt", Math.round(energyTotalDone), "HEX", Math.round(energyTotal), "HEX"));
+            HexUtils.addChatProbeDrainPriority(player, worldObj, drainPriority, drainNetwork);
         }
         // If player is sneaking.
         else {
@@ -237,17 +356,9 @@ public class TileCrystalSeparator extends TileEntity implements ISidedInventory,
      */
     private void scanSources() {
         boolean hasEnergy = canDrainSource();
-        usableSources = 0;
-
-        if(energySources != null)
-            // Parse the whole energySources ArrayList and call canDrainSource() on each of them.
-            for (HexDevice entry : energySources)
-                if (HexUtils.checkChunk(worldObj, entry.x, entry.z)) {
-                    ITileHexEnergySource energySource = (ITileHexEnergySource) worldObj.getTileEntity(entry.x, entry.y, entry.z);
-                    if (energySource != null)
-                        if (energySource.canDrainEnergy())
-                            usableSources++;
-                }
+        // Read the number of sources which can be drained, kept up to date by the network.
+        HexNetwork network = HexNetworkGraph.getNetworkById(worldObj, drainNetwork);
+        usableSources = network != null ? network.getUsableSources() : 0;
 
         // Set the state to READY if the energy is now available, but wasn't previously, or if the machine was active, but no longer should be.
         if ((canDrainSource() && !hasEnergy) || (HexBlocks.getMachineState(worldObj, xCoord, yCoord, zCoord) == HexBlocks.MACHINE_STATE_ACTIVE && !isActive))
@@ -260,23 +371,17 @@ public class TileCrystalSeparator extends TileEntity implements ISidedInventory,
     }
 
     /**
-     * Called to drain from all sources.
+     * Called to request energy for the next tick from the sources.
      */
-    private void drainFromSources() {
-        if (energySources != null)
-            // Parse the whole energySources ArrayList and attempt to drain energy from every source.
-            for (HexDevice entry : energySources)
-                if (HexUtils.checkChunk(worldObj, entry.x, entry.z)) {
-                    ITileHexEnergySource energySource = (ITileHexEnergySource) worldObj.getTileEntity(entry.x, entry.y, entry.z);
-                    if (energySource != null)
-                        if (energySource.canDrainEnergy())
-                            if (energyTotalDone + energyDrained < energyTotal) {
-                                if (energyTotal - energyTotalDone - energyDrained < energyPerTick / usableSources)
-                                    energyDrained = energyDrained + energySource.drainEnergy(energyTotal - energyTotalDone - energyDrained);
-                                else
-                                    energyDrained = energyDrained + energySource.drainEnergy((float) energyPerTick / usableSources);
-                            }
-                }
+    private void requestEnergy() {
+        energyRequested = HexEnergySolver.request(worldObj, drainNetwork, this, Math.min(energyPerTick, energyTotal - energyTotalDone));
+    }
+
+    /**
+     * Wakes the machine up, so that it checks if it can process again on its next tick.
+     */
+    private void wake() {
+        sleeping = false;
     }
 
     /**
@@ -395,7 +500,7 @@ public class TileCrystalSeparator extends TileEntity implements ISidedInventory,
      */
     @Override
     public void openInventory() {
-
+        wake();
     }
 
     /**
@@ -403,7 +508,16 @@ public class TileCrystalSeparator extends TileEntity implements ISidedInventory,
      */
     @Override
     public void closeInventory() {
+        wake();
+    }
 
+    /**
+     * Fired when the inventory changes. Hoppers and containers call this after changing stack sizes directly.
+     */
+    @Override
+    public void markDirty() {
+        super.markDirty();
+        wake();
     }
 
     /**
@@ -421,6 +535,7 @@ public class TileCrystalSeparator extends TileEntity implements ISidedInventory,
 
     @Override
     public ItemStack decrStackSize(int slot, int count) {
+        wake();
         if (inventory[slot] != null) {
             ItemStack itemStack;
             if (inventory[slot].stackSize <= count) {
@@ -453,6 +568,7 @@ public class TileCrystalSeparator extends TileEntity implements ISidedInventory,
 
     @Override
     public void setInventorySlotContents(int slot, ItemStack itemStack) {
+        wake();
         inventory[slot] = itemStack;
 
         if (itemStack != null && itemStack.stackSize > getInventoryStackLimit()) {
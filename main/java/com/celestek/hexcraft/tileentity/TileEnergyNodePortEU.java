@@ -4,6 +4,10 @@ import com.celestek.hexcraft.init.HexBlocks;
 import com.celestek.hexcraft.init.HexConfig;
 import com.celestek.hexcraft.util.HexDevice;
 import com.celestek.hexcraft.util.HexEnergyNode;
+import com.celestek.hexcraft.util.HexNetwork;
+import com.celestek.hexcraft.util.HexNetworkGraph;
+import com.celestek.hexcraft.util.HexNetworkQueue;
+import com.celestek.hexcraft.util.HexTileReferences;
 import com.celestek.hexcraft.util.HexUtils;
 import cpw.mods.fml.common.FMLCommonHandler;
 import ic2.api.energy.EnergyNet;
@@ -33,7 +37,7 @@ public class TileEnergyNodePortEU extends TileEntity implements ITileHexEnergyPo
     public static final String ID = "tileEnergyNodePortEU";
 
     // NBT Names
-    private static final String NBT_ENERGY_PORTS = "energy_ports";
+    private static final String NBT_PORT_NETWORK = "port_network";
 
     private static final String NBT_ENERGY_BUFFER_FILLED = "energy_buffer_filled";
 
@@ -43,8 +47,11 @@ public class TileEnergyNodePortEU extends TileEntity implements ITileHexEnergyPo
 
     /**** Variables ****/
 
-    // Prepare port list.
-    private ArrayList<HexDevice> energyPorts;
+    // Prepare the network ID.
+    private int portNetwork;
+
+    // Set if the tile entity was saved before it kept network IDs.
+    private boolean legacy;
 
     // Prepare energy buffer variables.
     private float energyBufferTotal;
@@ -55,25 +62,27 @@ public class TileEnergyNodePortEU extends TileEntity implements ITileHexEnergyPo
     private int portTier;
     private int portType;
 
-    // EU Specific things.
+    // Prepare the port mode, read from the block when first needed and then kept up to date by the Manipulator.
+    private int portMode;
+
+    // EU Specific things. The port is registered to the energy net once, when it loads, and connects as both a source
+    // and a sink. Whether it actually emits or accepts energy depends on the offered and demanded amounts.
     private boolean addedToEnet;
-    private boolean switchedA;
-    private boolean switchedB;
 
 
     /**** Common TileEntity Methods ****/
 
     public TileEnergyNodePortEU() {
+        this.portNetwork = HexNetworkGraph.NO_NETWORK;
 
         this.energyBufferTotal = 0;
         this.energyBufferFilled = 0;
 
         this.portTier = 0;
+        this.portMode = HexEnergyNode.PORT_MODE_UNKNOWN;
         this.portType = HexEnergyNode.PORT_TYPE_EU;
 
         this.addedToEnet = false;
-        this.switchedA = false;
-        this.switchedB = false;
     }
 
     /**
@@ -83,8 +92,8 @@ public class TileEnergyNodePortEU extends TileEntity implements ITileHexEnergyPo
     public void writeToNBT(NBTTagCompound tagCompound) {
         super.writeToNBT(tagCompound);
 
-        // Write the port list.
-        HexUtils.writeHexDevicesArrayToNBT(tagCompound, NBT_ENERGY_PORTS, energyPorts);
+        // Write the network ID.
+        tagCompound.setInteger(NBT_PORT_NETWORK, portNetwork);
 
         // Write the energy buffer variables.
         tagCompound.setFloat(NBT_ENERGY_BUFFER_FILLED, energyBufferFilled);
@@ -102,8 +111,9 @@ public class TileEnergyNodePortEU extends TileEntity implements ITileHexEnergyPo
     public void readFromNBT(NBTTagCompound tagCompound) {
         super.readFromNBT(tagCompound);
 
-        // Read the port list.
-        energyPorts = HexUtils.readHexDevicesArrayFromNBT(tagCompound, NBT_ENERGY_PORTS);
+        // Read the network ID.
+        portNetwork = tagCompound.hasKey(NBT_PORT_NETWORK) ? tagCompound.getInteger(NBT_PORT_NETWORK) : HexNetworkGraph.NO_NETWORK;
+        legacy = !tagCompound.hasKey(NBT_PORT_NETWORK);
 
         // Read the energy buffer variables.
         energyBufferFilled = tagCompound.getFloat(NBT_ENERGY_BUFFER_FILLED);
@@ -125,45 +135,41 @@ public class TileEnergyNodePortEU extends TileEntity implements ITileHexEnergyPo
         if (!addedToEnet) onLoaded();
         // Confirm that this is server side.
         if (!worldObj.isRemote) {
+            // Analyze the network again if it was saved before network IDs were kept.
+            if (legacy) {
+                legacy = false;
+                HexNetworkQueue.queueNeighbours(worldObj, xCoord, yCoord, zCoord);
+            }
+
             // Situation in which the linked port is input, and this port is output.
             if (linkedPort != null
-                    && HexUtils.getMetaBitBiInt(HexEnergyNode.META_MODE_0, HexEnergyNode.META_MODE_1, worldObj, linkedPort.x, linkedPort.y, linkedPort.z) == HexEnergyNode.PORT_MODE_INPUT
-                    && HexUtils.getMetaBitBiInt(HexEnergyNode.META_MODE_0, HexEnergyNode.META_MODE_1, worldObj, xCoord, yCoord, zCoord) == HexEnergyNode.PORT_MODE_OUTPUT) {
-                if (!switchedA) {
-                    switchedA = true;
-                    switchedB = false;
-                    MinecraftForge.EVENT_BUS.post(new EnergyTileUnloadEvent(this));
-                    MinecraftForge.EVENT_BUS.post(new EnergyTileLoadEvent(this));
-                }
-
+                    && getLinkedPortMode() == HexEnergyNode.PORT_MODE_INPUT
+                    && getPortMode() == HexEnergyNode.PORT_MODE_OUTPUT) {
                 // Fill the port buffer until it is full.
                 if (energyBufferFilled < energyBufferTotal) {
-                    ITileHexEnergyPort port = (ITileHexEnergyPort) worldObj.getTileEntity(linkedPort.x, linkedPort.y, linkedPort.z);
-                    if (port != null) {
+                    TileEntity tileEntity = linkedPort.getTileEntity(worldObj);
+                    if (tileEntity instanceof ITileHexEnergyPort) {
+                        ITileHexEnergyPort port = (ITileHexEnergyPort) tileEntity;
                         float multi = port.getMultiplier(portType, portTier);
                         float conv = HexEnergyNode.parseConversionMultiplier(port.getPortType(), portType);
                         energyBufferFilled = energyBufferFilled + port.drainPortEnergy((energyBufferTotal - energyBufferFilled) / conv) * multi;
                     }
                 }
             }
-            // Situation in which the linked port is output, and this port is input.
-            else if (linkedPort != null
-                    && HexUtils.getMetaBitBiInt(HexEnergyNode.META_MODE_0, HexEnergyNode.META_MODE_1, worldObj, linkedPort.x, linkedPort.y, linkedPort.z) == HexEnergyNode.PORT_MODE_OUTPUT
-                    && HexUtils.getMetaBitBiInt(HexEnergyNode.META_MODE_0, HexEnergyNode.META_MODE_1, worldObj, xCoord, yCoord, zCoord) == HexEnergyNode.PORT_MODE_INPUT) {
-                if (!switchedB) {
-                    switchedA = false;
-                    switchedB = true;
-                    MinecraftForge.EVENT_BUS.post(new EnergyTileUnloadEvent(this));
-                    MinecraftForge.EVENT_BUS.post(new EnergyTileLoadEvent(this));
-                }
-            }
-            else {
-                switchedA = false;
-                switchedB = false;
-            }
+            // In the situation in which the linked port is output and this port is input, the energy net fills the
+            // buffer through injectEnergy().
         }
     }
 
+    /**
+     * Called when the tile entity is added to the world.
+     */
+    @Override
+    public void validate() {
+        super.validate();
+        HexTileReferences.add(this);
+    }
+
     /**
      * Forward for the base TileEntity's invalidate(), used for destroying the energy net link.
      * Both invalidate and onChunkUnload have to be used.
@@ -173,6 +179,10 @@ public class TileEnergyNodePortEU extends TileEntity implements ITileHexEnergyPo
         super.invalidate();
 
         onChunkUnload();
+
+        // Let the graph know this machine no longer holds its networks.
+        HexNetworkGraph.hold(worldObj, portNetwork, HexNetworkGraph.NO_NETWORK);
+        portNetwork = HexNetworkGraph.NO_NETWORK;
     }
 
     /**
@@ -181,6 +191,7 @@ public class TileEnergyNodePortEU extends TileEntity implements ITileHexEnergyPo
      */
     @Override
     public void onChunkUnload() {
+        HexTileReferences.remove(this);
         if (addedToEnet &&
                 Info.isIc2Available()) {
             MinecraftForge.EVENT_BUS.post(new EnergyTileUnloadEvent(this));
@@ -211,8 +222,8 @@ public class TileEnergyNodePortEU extends TileEntity implements ITileHexEnergyPo
      */
     @Override
     public double getOfferedEnergy() {
-        if (linkedPort != null && HexUtils.getMetaBit(HexBlocks.META_STRUCTURE_IS_PART, worldObj, xCoord, yCoord, zCoord)
-                && HexUtils.getMetaBitBiInt(HexEnergyNode.META_MODE_0, HexEnergyNode.META_MODE_1, worldObj, xCoord, yCoord, zCoord) == HexEnergyNode.PORT_MODE_OUTPUT)
+        if (linkedPort != null && HexUtils.getBit(HexBlocks.META_STRUCTURE_IS_PART, getBlockMetadata())
+                && getPortMode() == HexEnergyNode.PORT_MODE_OUTPUT)
             return Math.min(energyBufferFilled, EnergyNet.instance.getPowerFromTier(portTier + 1));
         else
             return 0;
@@ -250,8 +261,8 @@ public class TileEnergyNodePortEU extends TileEntity implements ITileHexEnergyPo
      */
     @Override
     public boolean emitsEnergyTo(TileEntity receiver, ForgeDirection direction) {
-        return HexUtils.getMetaBit(HexBlocks.META_STRUCTURE_IS_PART, worldObj, xCoord, yCoord, zCoord)
-                && HexUtils.getMetaBitBiInt(HexEnergyNode.META_MODE_0, HexEnergyNode.META_MODE_1, worldObj, xCoord, yCoord, zCoord) == HexEnergyNode.PORT_MODE_OUTPUT;
+        // Always connect, as the energy net only asks when the port is registered. Emission is limited by getOfferedEnergy().
+        return true;
     }
 
     /**** IEnergySink Methods ****/
@@ -263,8 +274,8 @@ public class TileEnergyNodePortEU extends TileEntity implements ITileHexEnergyPo
      */
     @Override
     public double getDemandedEnergy() {
-        if (linkedPort != null && HexUtils.getMetaBit(HexBlocks.META_STRUCTURE_IS_PART, worldObj, xCoord, yCoord, zCoord)
-                && HexUtils.getMetaBitBiInt(HexEnergyNode.META_MODE_0, HexEnergyNode.META_MODE_1, worldObj, xCoord, yCoord, zCoord) == HexEnergyNode.PORT_MODE_INPUT)
+        if (linkedPort != null && HexUtils.getBit(HexBlocks.META_STRUCTURE_IS_PART, getBlockMetadata())
+                && getPortMode() == HexEnergyNode.PORT_MODE_INPUT)
             return Math.max(0, energyBufferTotal - energyBufferFilled);
         else
             return 0;
@@ -305,26 +316,27 @@ public class TileEnergyNodePortEU extends TileEntity implements ITileHexEnergyPo
      */
     @Override
     public boolean acceptsEnergyFrom(TileEntity emitter, ForgeDirection direction) {
-        return HexUtils.getMetaBit(HexBlocks.META_STRUCTURE_IS_PART, worldObj, xCoord, yCoord, zCoord)
-                && HexUtils.getMetaBitBiInt(HexEnergyNode.META_MODE_0, HexEnergyNode.META_MODE_1, worldObj, xCoord, yCoord, zCoord) == HexEnergyNode.PORT_MODE_INPUT;
+        // Always connect, as the energy net only asks when the port is registered. Acceptance is limited by getDemandedEnergy().
+        return true;
     }
 
     /**** ITileHexEnergyPort Methods ****/
 
     /**
-     * Saves the ArrayList of energy ports.
-     * @param energyPorts The ArrayList to save.
+     * Saves the ID of the network connecting this port to other ports.
+     * @param network ID of the network.
      */
     @Override
-    public void setPorts(ArrayList<HexDevice> energyPorts) {
+    public void setPortNetwork(int network) {
+        HexNetworkGraph.hold(worldObj, this.portNetwork, network);
+        this.portNetwork = network;
+        ArrayList<HexDevice> energyPorts = getEnergyPorts();
 
         if (energyPorts != null && energyPorts.size() != 0) {
-            this.energyPorts = energyPorts;
-
             // If the port is already linked, analyze the incoming list and unlink if necessary.
             if (this.linkedPort != null) {
                 boolean checkLink = false;
-                for (HexDevice entry : this.energyPorts)
+                for (HexDevice entry : energyPorts)
                     if (entry.x == this.linkedPort.x && entry.y == this.linkedPort.y && entry.z == this.linkedPort.z)
                         checkLink = true;
                 if (!checkLink) {
@@ -333,18 +345,26 @@ public class TileEnergyNodePortEU extends TileEntity implements ITileHexEnergyPo
             }
         }
         else {
-            this.energyPorts = null;
             breakPortLink();
         }
         if (HexConfig.cfgGeneralMachineNetworkDebug && HexConfig.cfgGeneralNetworkDebug) {
-            if (this.energyPorts != null)
-                System.out.println("[Energy Node Port: EU] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Ports received. n: " + this.energyPorts.size());
+            if (energyPorts != null)
+                System.out.println("[Energy Node Port: EU] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Ports received. n: " + energyPorts.size());
             else
                 System.out.println("[Energy Node Port: EU] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Ports received. n: " + 0);
         }
         markDirty();
     }
 
+    /**
+     * Gets the ports of the network.
+     * @return The ArrayList of ports, or null if there is no network.
+     */
+    private ArrayList<HexDevice> getEnergyPorts() {
+        HexNetwork network = HexNetworkGraph.getNetworkById(worldObj, portNetwork);
+        return network != null ? network.getPorts() : null;
+    }
+
     /**
      * Called when setting up an Energy Node to set the tier.
      * @param portTier Tier of the port.
@@ -354,10 +374,11 @@ public class TileEnergyNodePortEU extends TileEntity implements ITileHexEnergyPo
         this.portTier = portTier;
         this.energyBufferTotal = HexEnergyNode.parseEnergyPerTick(this.portType, this.portTier) * 2;
 
-        switchedA = false;
-        switchedB = false;
-        MinecraftForge.EVENT_BUS.post(new EnergyTileUnloadEvent(this));
-        MinecraftForge.EVENT_BUS.post(new EnergyTileLoadEvent(this));
+        // Register the port again, so that the energy net picks up the new tier.
+        if (addedToEnet) {
+            MinecraftForge.EVENT_BUS.post(new EnergyTileUnloadEvent(this));
+            MinecraftForge.EVENT_BUS.post(new EnergyTileLoadEvent(this));
+        }
 
         if (HexConfig.cfgEnergyNodeDebug)
             System.out.println("[Energy Node Port: EU] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Port tier set to: " + portTier);
@@ -382,6 +403,39 @@ public class TileEnergyNodePortEU extends TileEntity implements ITileHexEnergyPo
         return this.portType;
     }
 
+    /**
+     * Called when retrieving the mode.
+     * @return Mode of the port.
+     */
+    @Override
+    public int getPortMode() {
+        if (portMode == HexEnergyNode.PORT_MODE_UNKNOWN)
+            portMode = HexUtils.getBitBiInt(HexEnergyNode.META_MODE_0, HexEnergyNode.META_MODE_1, getBlockMetadata());
+        return portMode;
+    }
+
+    /**
+     * Called by Hexorium Manipulator after it changes the mode of the port.
+     * @param portMode The new mode.
+     */
+    @Override
+    public void setPortMode(int portMode) {
+        this.portMode = portMode;
+    }
+
+    /**
+     * Gets the mode of the linked port through its tile entity, without reading the world.
+     * @return Mode of the linked port, or PORT_MODE_UNKNOWN if it isn't linked or loaded.
+     */
+    private int getLinkedPortMode() {
+        if (linkedPort == null)
+            return HexEnergyNode.PORT_MODE_UNKNOWN;
+        TileEntity tileEntity = linkedPort.getTileEntity(worldObj);
+        if (tileEntity instanceof ITileHexEnergyPort)
+            return ((ITileHexEnergyPort) tileEntity).getPortMode();
+        return HexEnergyNode.PORT_MODE_UNKNOWN;
+    }
+
     /**
      * Checks if ports are connected via network.
      * @param x X coordinate of the target port.
@@ -391,6 +445,7 @@ public class TileEnergyNodePortEU extends TileEntity implements ITileHexEnergyPo
      */
     @Override
     public boolean checkPortConnectivity(int x, int y, int z) {
+        ArrayList<HexDevice> energyPorts = getEnergyPorts();
         // Return true if the port exists in the list.
         if (energyPorts != null)
             for (HexDevice entry : energyPorts)
@@ -519,12 +574,13 @@ public class TileEnergyNodePortEU extends TileEntity implements ITileHexEnergyPo
      */
     @Override
     public void displayInfoPort(EntityPlayer player) {
+        ArrayList<HexDevice> energyPorts = getEnergyPorts();
         HexUtils.addChatProbeTitle(player);
         // If player is not sneaking.
         if (!player.isSneaking()) {
             HexUtils.addChatProbeGenericInfo(player, worldObj, xCoord, yCoord, zCoord);
             player.addChatMessage(new ChatComponentTranslation("msg.probeTypePort.txt"));
-            int mode = HexUtils.getMetaBitBiInt(HexEnergyNode.META_MODE_0, HexEnergyNode.META_MODE_1, worldObj, xCoord, yCoord, zCoord);
+            int mode = getPortMode();
             player.addChatMessage(new ChatComponentTranslation("msg.probePortMode" + (mode + 1) + ".txt"));
             player.addChatMessage(new ChatComponentTranslation("msg.probeEnergy.txt",  Math.round(energyBufferFilled), "EU",
                     Math.round(energyBufferTotal), "EU"));
@@ -5,8 +5,12 @@ import com.celestek.hexcraft.init.HexBlocks;
 import com.celestek.hexcraft.init.HexConfig;
 import com.celestek.hexcraft.util.HexDevice;
 import com.celestek.hexcraft.util.HexEnergyNode;
+import com.celestek.hexcraft.util.HexEnergySolver;
+import com.celestek.hexcraft.util.HexNetwork;
+import com.celestek.hexcraft.util.HexNetworkGraph;
+import com.celestek.hexcraft.util.HexNetworkQueue;
+import com.celestek.hexcraft.util.HexTileReferences;
 import com.celestek.hexcraft.util.HexUtils;
-import com.celestek.hexcraft.util.NetworkAnalyzer;
 import net.minecraft.client.resources.I18n;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.nbt.NBTTagCompound;
@@ -26,9 +30,9 @@ public class TileEnergyNodePortHEX extends TileEntity implements ITileHexEnergyP
     public static final String ID = "tileEnergyNodePortHEX";
 
     // NBT Names
-    private static final String NBT_ENERGY_SOURCES = "energy_sources";
-    private static final String NBT_ENERGY_DRAINS = "energy_drains";
-    private static final String NBT_ENERGY_PORTS = "energy_ports";
+    private static final String NBT_DRAIN_NETWORK = "drain_network";
+    private static final String NBT_SOURCE_NETWORK = "source_network";
+    private static final String NBT_PORT_NETWORK = "port_network";
 
     private static final String NBT_ENERGY_BUFFER_FILLED = "energy_buffer_filled";
     private static final String NBT_ENERGY_BUFFER_DRAINED = "energy_buffer_drained";
@@ -42,16 +46,22 @@ public class TileEnergyNodePortHEX extends TileEntity implements ITileHexEnergyP
 
     /**** Variables ****/
 
-    // Prepare lists.
-    private ArrayList<HexDevice> energySources;
-    private ArrayList<HexDevice> energyDrains;
-    private ArrayList<HexDevice> energyPorts;
+    // Prepare the network IDs.
+    private int drainNetwork;
+    private int sourceNetwork;
+    private int portNetwork;
+
+    // Set if the tile entity was saved before it kept network IDs.
+    private boolean legacy;
 
     // Prepare energy buffer variables.
     private float energyBufferTotal;
     private float energyBufferFilled;
     private float energyBufferDrained;
 
+    // Prepare the energy delivered by the solver.
+    private float energyReceived;
+
     // Prepare state variables.
     private int usableSources;
     private boolean hasEnergy;
@@ -61,6 +71,13 @@ public class TileEnergyNodePortHEX extends TileEntity implements ITileHexEnergyP
     private int portTier;
     private int portType;
 
+    // Prepare the port mode, read from the block when first needed and then kept up to date by the Manipulator.
+    private int portMode;
+
+    // Prepare the state last reported to the network, so that it is only updated when it changes.
+    private int usableNetwork;
+    private boolean usableState;
+
     // Prepare the recheck variables.
     private int recheckCountdown;
     private int recheckCounter;
@@ -70,6 +87,9 @@ public class TileEnergyNodePortHEX extends TileEntity implements ITileHexEnergyP
     /**** Common TileEntity Methods ****/
 
     public TileEnergyNodePortHEX() {
+        this.drainNetwork = HexNetworkGraph.NO_NETWORK;
+        this.sourceNetwork = HexNetworkGraph.NO_NETWORK;
+        this.portNetwork = HexNetworkGraph.NO_NETWORK;
 
         this.energyBufferTotal = 0;
         this.energyBufferFilled = 0;
@@ -79,8 +99,12 @@ public class TileEnergyNodePortHEX extends TileEntity implements ITileHexEnergyP
         this.hasEnergy = false;
 
         this.portTier = 0;
+        this.portMode = HexEnergyNode.PORT_MODE_UNKNOWN;
         this.portType = HexEnergyNode.PORT_TYPE_HEX;
 
+        this.usableNetwork = HexNetworkGraph.NO_NETWORK;
+        this.usableState = false;
+
         this.recheckCountdown = 10;
         this.recheckCounter = 0;
         this.shouldRecheck = false;
@@ -93,10 +117,10 @@ public class TileEnergyNodePortHEX extends TileEntity implements ITileHexEnergyP
     public void writeToNBT(NBTTagCompound tagCompound) {
         super.writeToNBT(tagCompound);
 
-        // Write the machine lists.
-        HexUtils.writeHexDevicesArrayToNBT(tagCompound, NBT_ENERGY_SOURCES, energySources);
-        HexUtils.writeHexDevicesArrayToNBT(tagCompound, NBT_ENERGY_DRAINS, energyDrains);
-        HexUtils.writeHexDevicesArrayToNBT(tagCompound, NBT_ENERGY_PORTS, energyPorts);
+        // Write the network IDs.
+        tagCompound.setInteger(NBT_DRAIN_NETWORK, drainNetwork);
+        tagCompound.setInteger(NBT_SOURCE_NETWORK, sourceNetwork);
+        tagCompound.setInteger(NBT_PORT_NETWORK, portNetwork);
 
         // Write the energy buffer variables.
         tagCompound.setFloat(NBT_ENERGY_BUFFER_FILLED, energyBufferFilled);
@@ -119,10 +143,11 @@ public class TileEnergyNodePortHEX extends TileEntity implements ITileHexEnergyP
     public void readFromNBT(NBTTagCompound tagCompound) {
         super.readFromNBT(tagCompound);
 
-        // Read the machine lists.
-        energySources = HexUtils.readHexDevicesArrayFromNBT(tagCompound, NBT_ENERGY_SOURCES);
-        energyDrains = HexUtils.readHexDevicesArrayFromNBT(tagCompound, NBT_ENERGY_DRAINS);
-        energyPorts = HexUtils.readHexDevicesArrayFromNBT(tagCompound, NBT_ENERGY_PORTS);
+        // Read the network IDs.
+        drainNetwork = tagCompound.hasKey(NBT_DRAIN_NETWORK) ? tagCompound.getInteger(NBT_DRAIN_NETWORK) : HexNetworkGraph.NO_NETWORK;
+        sourceNetwork = tagCompound.hasKey(NBT_SOURCE_NETWORK) ? tagCompound.getInteger(NBT_SOURCE_NETWORK) : HexNetworkGraph.NO_NETWORK;
+        portNetwork = tagCompound.hasKey(NBT_PORT_NETWORK) ? tagCompound.getInteger(NBT_PORT_NETWORK) : HexNetworkGraph.NO_NETWORK;
+        legacy = !tagCompound.hasKey(NBT_DRAIN_NETWORK);
 
         // Read the energy buffer variables.
         energyBufferFilled = tagCompound.getFloat(NBT_ENERGY_BUFFER_FILLED);
@@ -141,6 +166,43 @@ public class TileEnergyNodePortHEX extends TileEntity implements ITileHexEnergyP
         energyBufferTotal = HexEnergyNode.parseEnergyPerTick(portType, portTier) * 2;
     }
 
+    /**
+     * Called when the tile entity is added to the world.
+     */
+    @Override
+    public void validate() {
+        super.validate();
+        HexTileReferences.add(this);
+    }
+
+    /**
+     * Called when the tile entity is removed from the world.
+     */
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        HexTileReferences.remove(this);
+        removeUsable();
+
+        // Let the graph know this machine no longer holds its networks.
+        HexNetworkGraph.hold(worldObj, sourceNetwork, HexNetworkGraph.NO_NETWORK);
+        sourceNetwork = HexNetworkGraph.NO_NETWORK;
+        HexNetworkGraph.hold(worldObj, drainNetwork, HexNetworkGraph.NO_NETWORK);
+        drainNetwork = HexNetworkGraph.NO_NETWORK;
+        HexNetworkGraph.hold(worldObj, portNetwork, HexNetworkGraph.NO_NETWORK);
+        portNetwork = HexNetworkGraph.NO_NETWORK;
+    }
+
+    /**
+     * Called when the chunk of the tile entity is unloaded.
+     */
+    @Override
+    public void onChunkUnload() {
+        super.onChunkUnload();
+        HexTileReferences.remove(this);
+        removeUsable();
+    }
+
     /**
      * Fired on every tick. Main processing is done here.
      */
@@ -148,53 +210,48 @@ public class TileEnergyNodePortHEX extends TileEntity implements ITileHexEnergyP
     public void updateEntity() {
         // Confirm that this is server side.
         if (!worldObj.isRemote) {
+            // Analyze the network again if it was saved before network IDs were kept.
+            if (legacy) {
+                legacy = false;
+                HexNetworkQueue.queueNeighbours(worldObj, xCoord, yCoord, zCoord);
+            }
+
             if (linkedPort != null) {
                 // Situation in which the linked port is input, and this port is output.
-                if (HexUtils.getMetaBitBiInt(HexEnergyNode.META_MODE_0, HexEnergyNode.META_MODE_1, worldObj, linkedPort.x, linkedPort.y, linkedPort.z) == HexEnergyNode.PORT_MODE_INPUT
-                        && HexUtils.getMetaBitBiInt(HexEnergyNode.META_MODE_0, HexEnergyNode.META_MODE_1, worldObj, xCoord, yCoord, zCoord) == HexEnergyNode.PORT_MODE_OUTPUT) {
+                if (getLinkedPortMode() == HexEnergyNode.PORT_MODE_INPUT
+                        && getPortMode() == HexEnergyNode.PORT_MODE_OUTPUT) {
                     // Fill the port buffer until it is full.
                     if (energyBufferFilled < energyBufferTotal) {
-                        ITileHexEnergyPort port = (ITileHexEnergyPort) worldObj.getTileEntity(linkedPort.x, linkedPort.y, linkedPort.z);
+                        TileEntity tileEntity = linkedPort.getTileEntity(worldObj);
 
-                        if (port != null) {
+                        if (tileEntity instanceof ITileHexEnergyPort) {
+                            ITileHexEnergyPort port = (ITileHexEnergyPort) tileEntity;
                             float multi = port.getMultiplier(portType, portTier);
                             float conv = HexEnergyNode.parseConversionMultiplier(port.getPortType(), portType);
                             energyBufferFilled = energyBufferFilled + port.drainPortEnergy((energyBufferTotal - energyBufferFilled) / conv) * multi;
                         }
                     }
 
-                    // Check if states have changed and send a recheck if so.
-                    if (energyBufferFilled > 0 && !hasEnergy) {
-                        hasEnergy = true;
-                        shouldRecheck = true;
-                    }
-                    else if (energyBufferFilled <= 0 && hasEnergy) {
-                        hasEnergy = false;
-                        shouldRecheck = true;
-                    }
-
-                    // Recheck only on certain ticks.
-                    if (recheckCounter >= recheckCountdown) {
-                        if (shouldRecheck)
-                            sendRecheck();
-                        shouldRecheck = false;
-                        recheckCounter = 0;
-                    }
-                    else
-                        recheckCounter++;
+                    // Check if the buffer has energy.
+                    hasEnergy = energyBufferFilled > 0;
 
                     energyBufferDrained = 0;
                 }
                 // Situation in which the linked port is output, and this port is input.
-                else if (HexUtils.getMetaBitBiInt(HexEnergyNode.META_MODE_0, HexEnergyNode.META_MODE_1, worldObj, linkedPort.x, linkedPort.y, linkedPort.z) == HexEnergyNode.PORT_MODE_OUTPUT
-                        && HexUtils.getMetaBitBiInt(HexEnergyNode.META_MODE_0, HexEnergyNode.META_MODE_1, worldObj, xCoord, yCoord, zCoord) == HexEnergyNode.PORT_MODE_INPUT) {
-                    energyBufferDrained = 0;
-                    // Check the situation in which the machine has available energy sources and items to process.
-                    if (canDrainSource() && (energyBufferFilled < energyBufferTotal)) {
-                        // Drain from all sources.
-                        drainFromSources();
-                        energyBufferFilled = energyBufferFilled + energyBufferDrained;
-                    }
+                else if (getLinkedPortMode() == HexEnergyNode.PORT_MODE_OUTPUT
+                        && getPortMode() == HexEnergyNode.PORT_MODE_INPUT) {
+                    // Store the energy delivered by the solver since the previous tick.
+                    energyBufferDrained = energyReceived;
+                    energyReceived = 0;
+                    energyBufferFilled = Math.min(energyBufferFilled + energyBufferDrained, energyBufferTotal);
+
+                    // If no energy was delivered, a source may have been unloaded without a recheck, so count the sources again.
+                    if (energyBufferDrained <= 0 && canDrainSource() && (energyBufferFilled < energyBufferTotal))
+                        scanSources();
+
+                    // Request energy for the next tick until the buffer is full.
+                    if (canDrainSource() && (energyBufferFilled < energyBufferTotal))
+                        HexEnergySolver.request(worldObj, drainNetwork, this, energyBufferTotal - energyBufferFilled);
 
                     hasEnergy = false;
                 }
@@ -203,23 +260,49 @@ public class TileEnergyNodePortHEX extends TileEntity implements ITileHexEnergyP
             }
             else
                 hasEnergy = false;
+
+            // Let the network know if the port can now be drained or not. Drains are sent a recheck if the network
+            // gained its first usable source or lost its last one.
+            if (updateUsable())
+                shouldRecheck = true;
+
+            // Recheck only on certain ticks.
+            if (recheckCounter >= recheckCountdown) {
+                if (shouldRecheck)
+                    sendRecheck();
+                shouldRecheck = false;
+                recheckCounter = 0;
+            }
+            else
+                recheckCounter++;
         }
     }
 
     /**** ITileHexEnergySource Methods ****/
 
     /**
-     * Saves the ArrayList of energy drains.
-     * @param energyDrains The ArrayList to save.
+     * Saves the ID of the network whose drains are fed by this source.
+     * @param network ID of the network.
      */
     @Override
-    public void setDrains(ArrayList<HexDevice> energyDrains) {
-        this.energyDrains = energyDrains;
+    public void setSourceNetwork(int network) {
+        HexNetworkGraph.hold(worldObj, this.sourceNetwork, network);
+        this.sourceNetwork = network;
+        ArrayList<HexDevice> energyDrains = getEnergyDrains();
         if (HexConfig.cfgGeneralMachineNetworkDebug && HexConfig.cfgGeneralNetworkDebug)
-            System.out.println("[Energy Node Port: HEX] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Drains received. d: " + energyDrains.size());
+            System.out.println("[Energy Node Port: HEX] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Drains received. d: " + (energyDrains != null ? energyDrains.size() : 0));
         markDirty();
     }
 
+    /**
+     * Gets the drains of the network.
+     * @return The ArrayList of drains, or null if there is no network.
+     */
+    private ArrayList<HexDevice> getEnergyDrains() {
+        HexNetwork network = HexNetworkGraph.getNetworkById(worldObj, sourceNetwork);
+        return network != null ? network.getDrains() : null;
+    }
+
     /**
      * Called by drains to check if they can drain energy.
      * @return Boolean if energy can be drained.
@@ -228,7 +311,7 @@ public class TileEnergyNodePortHEX extends TileEntity implements ITileHexEnergyP
     public boolean canDrainEnergy() {
         return hasEnergy
                 && linkedPort != null
-                && HexUtils.getMetaBitBiInt(HexEnergyNode.META_MODE_0, HexEnergyNode.META_MODE_1, worldObj, xCoord, yCoord, zCoord) == HexEnergyNode.PORT_MODE_OUTPUT;
+                && getPortMode() == HexEnergyNode.PORT_MODE_OUTPUT;
     }
 
     /**
@@ -272,11 +355,13 @@ public class TileEnergyNodePortHEX extends TileEntity implements ITileHexEnergyP
     @Override
     public float getEnergyPerTick() {
         if (canDrainEnergy()) {
-            ITileHexEnergyPort port = (ITileHexEnergyPort) worldObj.getTileEntity(linkedPort.x, linkedPort.y, linkedPort.z);
-            return HexEnergyNode.parseEnergyPerTick(port.getPortType(), port.getPortTier()) * port.getMultiplier(portType, portTier);
+            TileEntity tileEntity = linkedPort.getTileEntity(worldObj);
+            if (tileEntity instanceof ITileHexEnergyPort) {
+                ITileHexEnergyPort port = (ITileHexEnergyPort) tileEntity;
+                return HexEnergyNode.parseEnergyPerTick(port.getPortType(), port.getPortTier()) * port.getMultiplier(portType, portTier);
+            }
         }
-        else
-            return 0;
+        return 0;
     }
 
     /**
@@ -290,36 +375,74 @@ public class TileEnergyNodePortHEX extends TileEntity implements ITileHexEnergyP
 
     /**** Custom Methods ****/
 
+    /**
+     * Reports to the network whether the port can be drained, if that or the network changed since the last report.
+     * @return Whether the drains should recheck their sources.
+     */
+    private boolean updateUsable() {
+        boolean usable = canDrainEnergy();
+        if (usable == usableState && sourceNetwork == usableNetwork)
+            return false;
+        usableState = usable;
+        usableNetwork = sourceNetwork;
+
+        HexNetwork network = HexNetworkGraph.getNetworkById(worldObj, sourceNetwork);
+        return network != null && network.setUsable(HexUtils.packCoordinates(xCoord, yCoord, zCoord), usable);
+    }
+
+    /**
+     * Removes the port from the usable sources of the network, when it is removed or its chunk is unloaded.
+     */
+    private void removeUsable() {
+        if (worldObj == null || worldObj.isRemote)
+            return;
+        HexNetwork network = HexNetworkGraph.getNetworkById(worldObj, sourceNetwork);
+        if (network != null)
+            network.setUsable(HexUtils.packCoordinates(xCoord, yCoord, zCoord), false);
+        usableState = false;
+    }
+
     /**
      * Sends a recheck request to all drains.
      */
     private void sendRecheck() {
+        ArrayList<HexDevice> energyDrains = getEnergyDrains();
         if (HexConfig.cfgGeneralMachineNetworkDebug && HexConfig.cfgGeneralNetworkDebug)
             System.out.println("[Energy Node Port: HEX] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Requesting recheck.");
         if (energyDrains != null)
             // Parse the whole energyDrains ArrayList and call recheckSources() on each of them.
-            for (HexDevice entry : energyDrains)
-                if (HexUtils.checkChunk(worldObj, entry.x, entry.z)) {
-                    ITileHexEnergyDrain energyDrain = (ITileHexEnergyDrain) worldObj.getTileEntity(entry.x, entry.y, entry.z);
-                    if (energyDrain != null)
-                        energyDrain.recheckSources();
-                }
+            for (HexDevice entry : energyDrains) {
+                TileEntity tileEntity = entry.getTileEntity(worldObj);
+                if (tileEntity instanceof ITileHexEnergyDrain)
+                    ((ITileHexEnergyDrain) tileEntity).recheckSources();
+            }
     }
 
     /**** ITileHexEnergyDrain Methods ****/
 
     /**
-     * Saves the ArrayList of energy sources.
-     * @param energySources The ArrayList to save.
+     * Saves the ID of the network whose sources are used by this drain.
+     * @param network ID of the network.
      */
     @Override
-    public void setSources(ArrayList<HexDevice> energySources) {
-        this.energySources = energySources;
+    public void setDrainNetwork(int network) {
+        HexNetworkGraph.hold(worldObj, this.drainNetwork, network);
+        this.drainNetwork = network;
+        ArrayList<HexDevice> energySources = getEnergySources();
         if (HexConfig.cfgGeneralMachineNetworkDebug && HexConfig.cfgGeneralNetworkDebug)
-            System.out.println("[Energy Node Port: HEX] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Sources received. s: " + energySources.size());
+            System.out.println("[Energy Node Port: HEX] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Sources received. s: " + (energySources != null ? energySources.size() : 0));
         recheckSources();
     }
 
+    /**
+     * Gets the sources of the network.
+     * @return The ArrayList of sources, or null if there is no network.
+     */
+    private ArrayList<HexDevice> getEnergySources() {
+        HexNetwork network = HexNetworkGraph.getNetworkById(worldObj, drainNetwork);
+        return network != null ? network.getSources() : null;
+    }
+
     /**
      * Called by sources to force drains to recheck them.
      */
@@ -330,6 +453,33 @@ public class TileEnergyNodePortHEX extends TileEntity implements ITileHexEnergyP
             System.out.println("[Energy Node Port: HEX] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Recheck requested. s: " + usableSources);
     }
 
+    /**
+     * Called by the energy solver at the end of the tick to deliver the energy requested by the drain.
+     * @param amount The amount of energy delivered.
+     */
+    @Override
+    public void receiveEnergy(float amount) {
+        energyReceived = energyReceived + amount;
+    }
+
+    /**
+     * Called by the energy solver to decide which drains are served first when there isn't enough energy.
+     * @return The priority of the drain. Ports always use normal priority.
+     */
+    @Override
+    public int getDrainPriority() {
+        return HexEnergySolver.PRIORITY_NORMAL;
+    }
+
+    /**
+     * Called by Hexorium Manipulator to change the priority of the drain. Ports keep normal priority, as the
+     * Manipulator changes their mode instead.
+     * @param priority The new priority.
+     */
+    @Override
+    public void setDrainPriority(int priority) {
+    }
+
     /**
      * Called by Hexorium Probe to display tile entity info to chat.
      * @param player Player to show the message to.
@@ -345,40 +495,12 @@ public class TileEnergyNodePortHEX extends TileEntity implements ITileHexEnergyP
      * Called to check if there are any usable sources available.
      */
     private void scanSources() {
-        usableSources = 0;
-
-        if(energySources != null)
-            // Parse the whole energySources ArrayList and call canDrainSource() on each of them.
-            for (HexDevice entry : energySources)
-                if (HexUtils.checkChunk(worldObj, entry.x, entry.z)) {
-                    ITileHexEnergySource energySource = (ITileHexEnergySource) worldObj.getTileEntity(entry.x, entry.y, entry.z);
-                    if (energySource != null)
-                        if (energySource.canDrainEnergy())
-                            usableSources++;
-                }
+        // Read the number of sources which can be drained, kept up to date by the network.
+        HexNetwork network = HexNetworkGraph.getNetworkById(worldObj, drainNetwork);
+        usableSources = network != null ? network.getUsableSources() : 0;
         markDirty();
     }
 
-    /**
-     * Called to drain from all sources.
-     */
-    private void drainFromSources() {
-        if (energySources != null)
-            // Parse the whole energySources ArrayList and attempt to drain energy from every source.
-            for (HexDevice entry : energySources)
-                if (HexUtils.checkChunk(worldObj, entry.x, entry.z)) {
-                    ITileHexEnergySource energySource = (ITileHexEnergySource) worldObj.getTileEntity(entry.x, entry.y, entry.z);
-                    if (energySource != null)
-                        if (energySource.canDrainEnergy())
-                            if (energyBufferFilled + energyBufferDrained < energyBufferTotal) {
-                                if (energyBufferTotal - energyBufferFilled - energyBufferDrained < energySource.getEnergyPerTick())
-                                    energyBufferDrained = energyBufferDrained + energySource.drainEnergy(energyBufferTotal - energyBufferFilled - energyBufferDrained);
-                                else
-                                    energyBufferDrained = energyBufferDrained + energySource.drainEnergy(energySource.getEnergyPerTick());
-                            }
-                }
-    }
-
     /**
      * Called to check if there are any usable sources available.
      * @return If there are any usable sources.
@@ -390,19 +512,20 @@ public class TileEnergyNodePortHEX extends TileEntity implements ITileHexEnergyP
     /**** ITileHexEnergyPort Methods ****/
 
     /**
-     * Saves the ArrayList of energy ports.
-     * @param energyPorts The ArrayList to save.
+     * Saves the ID of the network connecting this port to other ports.
+     * @param network ID of the network.
      */
     @Override
-    public void setPorts(ArrayList<HexDevice> energyPorts) {
+    public void setPortNetwork(int network) {
+        HexNetworkGraph.hold(worldObj, this.portNetwork, network);
+        this.portNetwork = network;
+        ArrayList<HexDevice> energyPorts = getEnergyPorts();
 
         if (energyPorts != null && energyPorts.size() != 0) {
-            this.energyPorts = energyPorts;
-
             // If the port is already linked, analyze the incoming list and unlink if necessary.
             if (this.linkedPort != null) {
                 boolean checkLink = false;
-                for (HexDevice entry : this.energyPorts)
+                for (HexDevice entry : energyPorts)
                     if (entry.x == this.linkedPort.x && entry.y == this.linkedPort.y && entry.z == this.linkedPort.z)
                         checkLink = true;
                 if (!checkLink) {
@@ -411,18 +534,26 @@ public class TileEnergyNodePortHEX extends TileEntity implements ITileHexEnergyP
             }
         }
         else {
-            this.energyPorts = null;
             breakPortLink();
         }
         if (HexConfig.cfgGeneralMachineNetworkDebug && HexConfig.cfgGeneralNetworkDebug) {
-            if (this.energyPorts != null)
-                System.out.println("[Energy Node Port: HEX] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Ports received. n: " + this.energyPorts.size());
+            if (energyPorts != null)
+                System.out.println("[Energy Node Port: HEX] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Ports received. n: " + energyPorts.size());
             else
                 System.out.println("[Energy Node Port: HEX] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Ports received. n: " + 0);
         }
         markDirty();
     }
 
+    /**
+     * Gets the ports of the network.
+     * @return The ArrayList of ports, or null if there is no network.
+     */
+    private ArrayList<HexDevice> getEnergyPorts() {
+        HexNetwork network = HexNetworkGraph.getNetworkById(worldObj, portNetwork);
+        return network != null ? network.getPorts() : null;
+    }
+
     /**
      * Called when setting up an Energy Node to set the tier.
      * @param portTier Tier of the port.
@@ -455,6 +586,39 @@ public class TileEnergyNodePortHEX extends TileEntity implements ITileHexEnergyP
         return this.portType;
     }
 
+    /**
+     * Called when retrieving the mode.
+     * @return Mode of the port.
+     */
+    @Override
+    public int getPortMode() {
+        if (portMode == HexEnergyNode.PORT_MODE_UNKNOWN)
+            portMode = HexUtils.getBitBiInt(HexEnergyNode.META_MODE_0, HexEnergyNode.META_MODE_1, getBlockMetadata());
+        return portMode;
+    }
+
+    /**
+     * Called by Hexorium Manipulator after it changes the mode of the port.
+     * @param portMode The new mode.
+     */
+    @Override
+    public void setPortMode(int portMode) {
+        this.portMode = portMode;
+    }
+
+    /**
+     * Gets the mode of the linked port through its tile entity, without reading the world.
+     * @return Mode of the linked port, or PORT_MODE_UNKNOWN if it isn't linked or loaded.
+     */
+    private int getLinkedPortMode() {
+        if (linkedPort == null)
+            return HexEnergyNode.PORT_MODE_UNKNOWN;
+        TileEntity tileEntity = linkedPort.getTileEntity(worldObj);
+        if (tileEntity instanceof ITileHexEnergyPort)
+            return ((ITileHexEnergyPort) tileEntity).getPortMode();
+        return HexEnergyNode.PORT_MODE_UNKNOWN;
+    }
+
     /**
      * Checks if ports are connected via network.
      * @param x X coordinate of the target port.
@@ -464,6 +628,7 @@ public class TileEnergyNodePortHEX extends TileEntity implements ITileHexEnergyP
      */
     @Override
     public boolean checkPortConnectivity(int x, int y, int z) {
+        ArrayList<HexDevice> energyPorts = getEnergyPorts();
         // Return true if the port exists in the list.
         if (energyPorts != null)
             for (HexDevice entry : energyPorts)
@@ -593,12 +758,15 @@ public class TileEnergyNodePortHEX extends TileEntity implements ITileHexEnergyP
      */
     @Override
     public void displayInfoPort(EntityPlayer player) {
+        ArrayList<HexDevice> energySources = getEnergySources();
+        ArrayList<HexDevice> energyDrains = getEnergyDrains();
+        ArrayList<HexDevice> energyPorts = getEnergyPorts();
         HexUtils.addChatProbeTitle(player);
         // If player is not sneaking.
         if (!player.isSneaking()) {
             HexUtils.addChatProbeGenericInfo(player, worldObj, xCoord, yCoord, zCoord);
             player.addChatMessage(new ChatComponentTranslation("msg.probeTypePort.txt"));
-            int mode = HexUtils.getMetaBitBiInt(HexEnergyNode.META_MODE_0, HexEnergyNode.META_MODE_1, worldObj, xCoord, yCoord, zCoord);
+            int mode = getPortMode();
             player.addChatMessage(new ChatComponentTranslation("msg.probePortMode" + (mode + 1) + ".txt"));
             player.addChatMessage(new ChatComponentTranslation("msg.probeEnergy.txt",  Math.round(energyBufferFilled), "HEX",
                     Math.round(energyBufferTotal), "HEX"));
@@ -659,7 +827,7 @@ public class TileEnergyNodePortHEX extends TileEntity implements ITileHexEnergyP
      * Used to rescan the network.
      */
     public void unlinkPortAnalyze() {
-        if (HexUtils.getMetaBitBiInt(HexEnergyNode.META_MODE_0, HexEnergyNode.META_MODE_1, worldObj, xCoord, yCoord, zCoord) == HexEnergyNode.PORT_MODE_TUNNEL) {
+        if (getPortMode() == HexEnergyNode.PORT_MODE_TUNNEL) {
             // Locate the Energy Node Core.
             int xc = xCoord;
             int yc = yCoord;
@@ -692,10 +860,8 @@ public class TileEnergyNodePortHEX extends TileEntity implements ITileHexEnergyP
             }
 
             /* DO ANALYSIS */
-            NetworkAnalyzer analyzerCore = new NetworkAnalyzer();
-            analyzerCore.analyzeCable(worldObj, xc, yc, zc, worldObj.getBlock(xc, yc, zc));
-            NetworkAnalyzer analyzerPort = new NetworkAnalyzer();
-            analyzerPort.analyzeCable(worldObj, xp, yp, zp, worldObj.getBlock(xp, yp, zp));
+            HexNetworkQueue.queueCable(worldObj, xc, yc, zc);
+            HexNetworkQueue.queueCable(worldObj, xp, yp, zp);
         }
     }
 }
@@ -2,10 +2,15 @@ package com.celestek.hexcraft.tileentity;
 
 import cofh.api.energy.EnergyStorage;
 import cofh.api.energy.IEnergyHandler;
+import cofh.api.energy.IEnergyReceiver;
 import com.celestek.hexcraft.init.HexBlocks;
 import com.celestek.hexcraft.init.HexConfig;
 import com.celestek.hexcraft.util.HexDevice;
 import com.celestek.hexcraft.util.HexEnergyNode;
+import com.celestek.hexcraft.util.HexNetwork;
+import com.celestek.hexcraft.util.HexNetworkGraph;
+import com.celestek.hexcraft.util.HexNetworkQueue;
+import com.celestek.hexcraft.util.HexTileReferences;
 import com.celestek.hexcraft.util.HexUtils;
 import net.minecraft.client.resources.I18n;
 import net.minecraft.entity.player.EntityPlayer;
@@ -27,7 +32,7 @@ public class TileEnergyNodePortRF extends TileEntity implements ITileHexEnergyPo
     public static final String ID = "tileEnergyNodePortRF";
 
     // NBT Names
-    private static final String NBT_ENERGY_PORTS = "energy_ports";
+    private static final String NBT_PORT_NETWORK = "port_network";
 
     private static final String NBT_LINKED_PORT_EXISTS = "linked_port_exists";
     private static final String NBT_LINKED_PORT = "linked_port";
@@ -35,8 +40,11 @@ public class TileEnergyNodePortRF extends TileEntity implements ITileHexEnergyPo
 
     /**** Variables ****/
 
-    // Prepare port list.
-    private ArrayList<HexDevice> energyPorts;
+    // Prepare the network ID.
+    private int portNetwork;
+
+    // Set if the tile entity was saved before it kept network IDs.
+    private boolean legacy;
 
     // Prepare energy buffer variables.
     private EnergyStorage energyBuffer;
@@ -46,16 +54,39 @@ public class TileEnergyNodePortRF extends TileEntity implements ITileHexEnergyPo
     private int portTier;
     private int portType;
 
-    // RF Specific things.
+    // Prepare the port mode, read from the block when first needed and then kept up to date by the Manipulator.
+    private int portMode;
+
+    // Prepare the RF receivers next to the port, by side, and the sides which have one. They are only looked up again
+    // after a neighbour changes.
+    private IEnergyReceiver[] receivers;
+    private int[] receiverSides;
+    private int receiverCount;
+    private boolean receiversFound;
 
+    // Prepare the position in the sides to start offering energy from. Moved every tick so that no side is favoured.
+    private int receiverStart;
+
+    // Prepare the ticks until the receivers are looked up again. Only used at chunk edges, as neighbours in other
+    // chunks can load and unload without notifying the port.
+    private int receiverRefresh;
 
     /**** Common TileEntity Methods ****/
 
     public TileEnergyNodePortRF() {
+        this.portNetwork = HexNetworkGraph.NO_NETWORK;
 
         this.energyBuffer = new EnergyStorage(0, 0, 0);
 
+        this.receivers = new IEnergyReceiver[6];
+        this.receiverSides = new int[6];
+        this.receiverCount = 0;
+        this.receiversFound = false;
+        this.receiverStart = 0;
+        this.receiverRefresh = 0;
+
         this.portTier = 0;
+        this.portMode = HexEnergyNode.PORT_MODE_UNKNOWN;
         this.portType = HexEnergyNode.PORT_TYPE_RF;
     }
 
@@ -66,8 +97,8 @@ public class TileEnergyNodePortRF extends TileEntity implements ITileHexEnergyPo
     public void writeToNBT(NBTTagCompound tagCompound) {
         super.writeToNBT(tagCompound);
 
-        // Write the port list.
-        HexUtils.writeHexDevicesArrayToNBT(tagCompound, NBT_ENERGY_PORTS, energyPorts);
+        // Write the network ID.
+        tagCompound.setInteger(NBT_PORT_NETWORK, portNetwork);
 
         // Write the energy buffer variables.
         energyBuffer.writeToNBT(tagCompound);
@@ -85,8 +116,9 @@ public class TileEnergyNodePortRF extends TileEntity implements ITileHexEnergyPo
     public void readFromNBT(NBTTagCompound tagCompound) {
         super.readFromNBT(tagCompound);
 
-        // Read the port list.
-        energyPorts = HexUtils.readHexDevicesArrayFromNBT(tagCompound, NBT_ENERGY_PORTS);
+        // Read the network ID.
+        portNetwork = tagCompound.hasKey(NBT_PORT_NETWORK) ? tagCompound.getInteger(NBT_PORT_NETWORK) : HexNetworkGraph.NO_NETWORK;
+        legacy = !tagCompound.hasKey(NBT_PORT_NETWORK);
 
         // Read the port variables.
         if (tagCompound.getBoolean(NBT_LINKED_PORT_EXISTS))
@@ -100,6 +132,37 @@ public class TileEnergyNodePortRF extends TileEntity implements ITileHexEnergyPo
         energyBuffer.readFromNBT(tagCompound);
     }
 
+    /**
+     * Called when the tile entity is added to the world.
+     */
+    @Override
+    public void validate() {
+        super.validate();
+        HexTileReferences.add(this);
+    }
+
+    /**
+     * Called when the tile entity is removed from the world.
+     */
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        HexTileReferences.remove(this);
+
+        // Let the graph know this machine no longer holds its networks.
+        HexNetworkGraph.hold(worldObj, portNetwork, HexNetworkGraph.NO_NETWORK);
+        portNetwork = HexNetworkGraph.NO_NETWORK;
+    }
+
+    /**
+     * Called when the chunk of the tile entity is unloaded.
+     */
+    @Override
+    public void onChunkUnload() {
+        super.onChunkUnload();
+        HexTileReferences.remove(this);
+    }
+
     /**
      * Fired on every tick. Main processing is done here.
      */
@@ -107,10 +170,16 @@ public class TileEnergyNodePortRF extends TileEntity implements ITileHexEnergyPo
     public void updateEntity() {
         // Confirm that this is server side.
         if (!worldObj.isRemote) {
+            // Analyze the network again if it was saved before network IDs were kept.
+            if (legacy) {
+                legacy = false;
+                HexNetworkQueue.queueNeighbours(worldObj, xCoord, yCoord, zCoord);
+            }
+
             // Situation in which the linked port is input, and this port is output.
             if (linkedPort != null
-                    && HexUtils.getMetaBitBiInt(HexEnergyNode.META_MODE_0, HexEnergyNode.META_MODE_1, worldObj, linkedPort.x, linkedPort.y, linkedPort.z) == HexEnergyNode.PORT_MODE_INPUT
-                    && HexUtils.getMetaBitBiInt(HexEnergyNode.META_MODE_0, HexEnergyNode.META_MODE_1, worldObj, xCoord, yCoord, zCoord) == HexEnergyNode.PORT_MODE_OUTPUT) {
+                    && getLinkedPortMode() == HexEnergyNode.PORT_MODE_INPUT
+                    && getPortMode() == HexEnergyNode.PORT_MODE_OUTPUT) {
                 if (energyBuffer.getMaxExtract() == 0) {
                     energyBuffer.setMaxExtract((int) HexEnergyNode.parseEnergyPerTick(portType, portTier));
                     energyBuffer.setMaxReceive(0);
@@ -119,8 +188,9 @@ public class TileEnergyNodePortRF extends TileEntity implements ITileHexEnergyPo
 
                 // Fill the port buffer until it is full.
                 if (energyBuffer.getEnergyStored() < energyBuffer.getMaxEnergyStored()) {
-                    ITileHexEnergyPort port = (ITileHexEnergyPort) worldObj.getTileEntity(linkedPort.x, linkedPort.y, linkedPort.z);
-                    if (port != null) {
+                    TileEntity tileEntity = linkedPort.getTileEntity(worldObj);
+                    if (tileEntity instanceof ITileHexEnergyPort) {
+                        ITileHexEnergyPort port = (ITileHexEnergyPort) tileEntity;
                         float multi = port.getMultiplier(portType, portTier);
                         float conv = HexEnergyNode.parseConversionMultiplier(port.getPortType(), portType);
                         energyBuffer.setEnergyStored((int) Math.ceil(
@@ -129,23 +199,35 @@ public class TileEnergyNodePortRF extends TileEntity implements ITileHexEnergyPo
                 }
 
                 if (energyBuffer.getEnergyStored() > 0) {
-                    for (int i = 0; i < 6; i++) {
-                        TileEntity tile = worldObj.getTileEntity(
-                                xCoord + ForgeDirection.getOrientation(i).offsetX,
-                                yCoord + ForgeDirection.getOrientation(i).offsetY,
-                                zCoord + ForgeDirection.getOrientation(i).offsetZ);
-                        if (tile instanceof IEnergyHandler && !(tile instanceof ITileHexEnergyPort)) {
-                            energyBuffer.extractEnergy(((IEnergyHandler)tile).receiveEnergy(
-                                    ForgeDirection.getOrientation(i).getOpposite(),
-                                    energyBuffer.extractEnergy(energyBuffer.getMaxExtract(), true), false), false);
+                    // Look the receivers up again if a neighbour changed, or from time to time at chunk edges.
+                    if (receiversFound && isAtChunkEdge()) {
+                        receiverRefresh--;
+                        if (receiverRefresh <= 0)
+                            receiversFound = false;
+                    }
+                    if (!receiversFound)
+                        findReceivers();
+
+                    // Offer the energy to all receivers, starting from a different one every tick.
+                    if (receiverCount > 0) {
+                        for (int i = 0; i < receiverCount && energyBuffer.getEnergyStored() > 0; i++) {
+                            int side = receiverSides[(receiverStart + i) % receiverCount];
+                            IEnergyReceiver receiver = receivers[side];
+                            if (((TileEntity) receiver).isInvalid())
+                                receiversFound = false;
+                            else
+                                energyBuffer.extractEnergy(receiver.receiveEnergy(
+                                        ForgeDirection.getOrientation(side).getOpposite(),
+                                        energyBuffer.extractEnergy(energyBuffer.getMaxExtract(), true), false), false);
                         }
+                        receiverStart = (receiverStart + 1) % receiverCount;
                     }
                 }
             }
             // Situation in which the linked port is output, and this port is input.
             else if (linkedPort != null
-                    && HexUtils.getMetaBitBiInt(HexEnergyNode.META_MODE_0, HexEnergyNode.META_MODE_1, worldObj, linkedPort.x, linkedPort.y, linkedPort.z) == HexEnergyNode.PORT_MODE_OUTPUT
-                    && HexUtils.getMetaBitBiInt(HexEnergyNode.META_MODE_0, HexEnergyNode.META_MODE_1, worldObj, xCoord, yCoord, zCoord) == HexEnergyNode.PORT_MODE_INPUT) {
+                    && getLinkedPortMode() == HexEnergyNode.PORT_MODE_OUTPUT
+                    && getPortMode() == HexEnergyNode.PORT_MODE_INPUT) {
                 if (energyBuffer.getMaxReceive() == 0) {
                     energyBuffer.setMaxExtract(0);
                     energyBuffer.setMaxReceive((int) HexEnergyNode.parseEnergyPerTick(portType, portTier));
@@ -159,6 +241,47 @@ public class TileEnergyNodePortRF extends TileEntity implements ITileHexEnergyPo
         }
     }
 
+    /**
+     * Called by the block when a neighbouring block or tile entity changes, so that the receivers are looked up again.
+     */
+    public void invalidateReceivers() {
+        receiversFound = false;
+    }
+
+    /**
+     * Looks up the RF receivers next to the port. Neighbours in unloaded chunks are skipped.
+     */
+    private void findReceivers() {
+        receiverCount = 0;
+        for (int i = 0; i < 6; i++) {
+            ForgeDirection direction = ForgeDirection.getOrientation(i);
+            int x = xCoord + direction.offsetX;
+            int y = yCoord + direction.offsetY;
+            int z = zCoord + direction.offsetZ;
+
+            TileEntity tile = worldObj.blockExists(x, y, z) ? worldObj.getTileEntity(x, y, z) : null;
+            if (tile instanceof IEnergyReceiver && !(tile instanceof ITileHexEnergyPort)) {
+                receivers[i] = (IEnergyReceiver) tile;
+                receiverSides[receiverCount] = i;
+                receiverCount++;
+            }
+            else
+                receivers[i] = null;
+        }
+        if (receiverStart >= receiverCount)
+            receiverStart = 0;
+        receiverRefresh = 20;
+        receiversFound = true;
+    }
+
+    /**
+     * Checks if the port is next to the edge of its chunk.
+     * @return Whether any horizontal neighbour is in another chunk.
+     */
+    private boolean isAtChunkEdge() {
+        return (xCoord & 15) == 0 || (xCoord & 15) == 15 || (zCoord & 15) == 0 || (zCoord & 15) == 15;
+    }
+
     /**** IEnergyHandler Methods ****/
 
     /**
@@ -213,19 +336,20 @@ public class TileEnergyNodePortRF extends TileEntity implements ITileHexEnergyPo
     /**** ITileHexEnergyPort Methods ****/
 
     /**
-     * Saves the ArrayList of energy ports.
-     * @param energyPorts The ArrayList to save.
+     * Saves the ID of the network connecting this port to other ports.
+     * @param network ID of the network.
      */
     @Override
-    public void setPorts(ArrayList<HexDevice> energyPorts) {
+    public void setPortNetwork(int network) {
+        HexNetworkGraph.hold(worldObj, this.portNetwork, network);
+        this.portNetwork = network;
+        ArrayList<HexDevice> energyPorts = getEnergyPorts();
 
         if (energyPorts != null && energyPorts.size() != 0) {
-            this.energyPorts = energyPorts;
-
             // If the port is already linked, analyze the incoming list and unlink if necessary.
             if (this.linkedPort != null) {
                 boolean checkLink = false;
-                for (HexDevice entry : this.energyPorts)
+                for (HexDevice entry : energyPorts)
                     if (entry.x == this.linkedPort.x && entry.y == this.linkedPort.y && entry.z == this.linkedPort.z)
                         checkLink = true;
                 if (!checkLink) {
@@ -234,18 +358,26 @@ public class TileEnergyNodePortRF extends TileEntity implements ITileHexEnergyPo
             }
         }
         else {
-            this.energyPorts = null;
             breakPortLink();
         }
         if (HexConfig.cfgGeneralMachineNetworkDebug && HexConfig.cfgGeneralNetworkDebug) {
-            if (this.energyPorts != null)
-                System.out.println("[Energy Node Port: RF] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Ports received. n: " + this.energyPorts.size());
+            if (energyPorts != null)
+                System.out.println("[Energy Node Port: RF] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Ports received. n: " + energyPorts.size());
             else
                 System.out.println("[Energy Node Port: RF] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Ports received. n: " + 0);
         }
         markDirty();
     }
 
+    /**
+     * Gets the ports of the network.
+     * @return The ArrayList of ports, or null if there is no network.
+     */
+    private ArrayList<HexDevice> getEnergyPorts() {
+        HexNetwork network = HexNetworkGraph.getNetworkById(worldObj, portNetwork);
+        return network != null ? network.getPorts() : null;
+    }
+
     /**
      * Called when setting up an Energy Node to set the tier.
      * @param portTier Tier of the port.
@@ -281,6 +413,39 @@ public class TileEnergyNodePortRF extends TileEntity implements ITileHexEnergyPo
         return this.portType;
     }
 
+    /**
+     * Called when retrieving the mode.
+     * @return Mode of the port.
+     */
+    @Override
+    public int getPortMode() {
+        if (portMode == HexEnergyNode.PORT_MODE_UNKNOWN)
+            portMode = HexUtils.getBitBiInt(HexEnergyNode.META_MODE_0, HexEnergyNode.META_MODE_1, getBlockMetadata());
+        return portMode;
+    }
+
+    /**
+     * Called by Hexorium Manipulator after it changes the mode of the port.
+     * @param portMode The new mode.
+     */
+    @Override
+    public void setPortMode(int portMode) {
+        this.portMode = portMode;
+    }
+
+    /**
+     * Gets the mode of the linked port through its tile entity, without reading the world.
+     * @return Mode of the linked port, or PORT_MODE_UNKNOWN if it isn't linked or loaded.
+     */
+    private int getLinkedPortMode() {
+        if (linkedPort == null)
+            return HexEnergyNode.PORT_MODE_UNKNOWN;
+        TileEntity tileEntity = linkedPort.getTileEntity(worldObj);
+        if (tileEntity instanceof ITileHexEnergyPort)
+            return ((ITileHexEnergyPort) tileEntity).getPortMode();
+        return HexEnergyNode.PORT_MODE_UNKNOWN;
+    }
+
     /**
      * Checks if ports are connected via network.
      * @param x X coordinate of the target port.
@@ -290,6 +455,7 @@ public class TileEnergyNodePortRF extends TileEntity implements ITileHexEnergyPo
      */
     @Override
     public boolean checkPortConnectivity(int x, int y, int z) {
+        ArrayList<HexDevice> energyPorts = getEnergyPorts();
         // Return true if the port exists in the list.
         if (energyPorts != null)
             for (HexDevice entry : energyPorts)
@@ -418,12 +584,13 @@ public class TileEnergyNodePortRF extends TileEntity implements ITileHexEnergyPo
      */
     @Override
     public void displayInfoPort(EntityPlayer player) {
+        ArrayList<HexDevice> energyPorts = getEnergyPorts();
         HexUtils.addChatProbeTitle(player);
         // If player is not sneaking.
         if (!player.isSneaking()) {
             HexUtils.addChatProbeGenericInfo(player, worldObj, xCoord, yCoord, zCoord);
             player.addChatMessage(new ChatComponentTranslation("msg.probeTypePort.txt"));
-            int mode = HexUtils.getMetaBitBiInt(HexEnergyNode.META_MODE_0, HexEnergyNode.META_MODE_1, worldObj, xCoord, yCoord, zCoord);
+            int mode = getPortMode();
             player.addChatMessage(new ChatComponentTranslation("msg.probePortMode" + (mode + 1) + ".txt"));
             player.addChatMessage(new ChatComponentTranslation("msg.probeEnergy.txt",  energyBuffer.getEnergyStored(), "RF",
                     energyBuffer.getMaxEnergyStored(), "RF"));
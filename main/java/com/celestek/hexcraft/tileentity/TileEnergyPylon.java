@@ -1,10 +1,15 @@
 package com.celestek.hexcraft.tileentity;
 
+import com.celestek.hexcraft.HexCraft;
 import com.celestek.hexcraft.block.BlockEnergyPylon;
 import com.celestek.hexcraft.init.HexBlocks;
 import com.celestek.hexcraft.init.HexConfig;
+import com.celestek.hexcraft.util.HexBeamTracer;
+import com.celestek.hexcraft.util.HexNetworkQueue;
+import com.celestek.hexcraft.util.HexPylonBeams;
+import com.celestek.hexcraft.util.HexPylonIndex;
+import com.celestek.hexcraft.util.HexPylonLinks;
 import com.celestek.hexcraft.util.HexUtils;
-import com.celestek.hexcraft.util.NetworkAnalyzer;
 import com.celestek.hexcraft.util.HexPylon;
 import net.minecraft.block.Block;
 import net.minecraft.client.resources.I18n;
@@ -16,12 +21,9 @@ import net.minecraft.network.Packet;
 import net.minecraft.network.play.server.S35PacketUpdateTileEntity;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.ChatComponentTranslation;
-import net.minecraft.util.MovingObjectPosition;
-import net.minecraft.util.Vec3;
 import net.minecraft.world.World;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 
 /**
  * @author Thorinair   <celestek@openmailbox.org>
@@ -39,23 +41,17 @@ public class TileEnergyPylon extends TileEntity {
 
     /**** Variables ****/
 
-    // Prepare pylon list.
+    // Prepare pylon list. Only used on the client and when reading old saves. On the server, links are kept in the
+    // link table of the world.
     private ArrayList<HexPylon> pylons;
 
     // Prepare monolith ID.
     private int monolith;
 
-    // Prepare the tick counter and tick trigger.
-    private int tickCount;
-    private boolean firstTickClient;
-
     /**** Common TileEntity Methods ****/
 
     public TileEnergyPylon() {
         this.monolith = 0;
-
-        this.tickCount = 0;
-        this.firstTickClient = false;
     }
 
     /**
@@ -65,9 +61,6 @@ public class TileEnergyPylon extends TileEntity {
     public void writeToNBT(NBTTagCompound tagCompound) {
         super.writeToNBT(tagCompound);
 
-        // Write the pylon list.
-        HexUtils.writeHexPylonsArrayToNBT(tagCompound, NBT_PYLONS, pylons);
-
         // Write the monolith ID.
         tagCompound.setInteger(NBT_MONOLITH, monolith);
     }
@@ -79,7 +72,7 @@ public class TileEnergyPylon extends TileEntity {
     public void readFromNBT(NBTTagCompound tagCompound) {
         super.readFromNBT(tagCompound);
 
-        // Write the pylon list.
+        // Read the pylon list.
         pylons = HexUtils.readHexPylonsArrayFromNBT(tagCompound, NBT_PYLONS);
 
         // Read the monolith ID.
@@ -93,6 +86,9 @@ public class TileEnergyPylon extends TileEntity {
     public Packet getDescriptionPacket() {
         NBTTagCompound tag = new NBTTagCompound();
         writeToNBT(tag);
+
+        // Send the pylon list, which is needed for rendering the beams.
+        HexUtils.writeHexPylonsArrayToNBT(tag, NBT_PYLONS, getPylons());
         return new S35PacketUpdateTileEntity(xCoord, yCoord, zCoord, 1, tag);
     }
 
@@ -101,44 +97,78 @@ public class TileEnergyPylon extends TileEntity {
      */
     @Override
     public void onDataPacket(NetworkManager net, S35PacketUpdateTileEntity packet) {
+        int oldMonolith = monolith;
         readFromNBT(packet.func_148857_g());
-        // Prime the updateEntity() for a list rebuild.
-        firstTickClient = true;
+
+        // Pass the beams on to the beam renderer. They are not part of the block, so no chunk needs to be rebuilt.
+        HexCraft.proxy.updatePylonBeams(xCoord, yCoord, zCoord, monolith, pylons);
+
+        // Prepare the block to update if the monolith has changed.
+        if (monolith != oldMonolith)
+            HexCraft.proxy.queueRenderUpdate(xCoord, yCoord, zCoord);
+        markDirty();
+    }
+
+    /**
+     * Pylons don't tick. Their beams are retraced when a block along them changes.
+     */
+    @Override
+    public boolean canUpdate() {
+        return false;
     }
 
     /**
-     * Fired on every tick. Main processing is done here.
+     * Called when the tile entity is added to the world.
      */
     @Override
-    public void updateEntity() {
-        if (!worldObj.isRemote) {
-            // Re-trace pylons every second.
-            tickCount++;
-            if (tickCount >= 20) {
-                tickCount = 0;
-                if (!HexUtils.getMetaBit(BlockEnergyPylon.META_STATE, worldObj, xCoord, yCoord, zCoord))
-                    retracePylons();
+    public void validate() {
+        super.validate();
+        if (worldObj != null && !worldObj.isRemote) {
+            // Move links from old saves into the link table. The table saves them itself. The tile must not be marked
+            // dirty here, as during chunk loading that would look the chunk up again before it is loaded. Linking is
+            // idempotent, so reading the old list again before the chunk is next saved does no harm.
+            if (pylons != null) {
+                HexPylonLinks links = HexPylonLinks.get(worldObj);
+                long position = HexUtils.packCoordinates(xCoord, yCoord, zCoord);
+                for (HexPylon entry : pylons)
+                    if (entry.master)
+                        links.link(position, HexUtils.packCoordinates(entry.x, entry.y, entry.z));
+                    else
+                        links.link(HexUtils.packCoordinates(entry.x, entry.y, entry.z), position);
+                pylons = null;
             }
+
+            HexPylonIndex.add(worldObj, xCoord, yCoord, zCoord);
+            HexPylonBeams.update(worldObj, xCoord, yCoord, zCoord, getPylons());
         }
-        else {
-            // If the list should be rebuilt, do it.
-            if (firstTickClient) {
-                for (HexPylon entry : pylons) {
-                    worldObj.markBlockForUpdate(entry.x, entry.y, entry.z);
-                    TileEntity tileEntity = worldObj.getTileEntity(entry.x, entry.y, entry.z);
-                    if (tileEntity != null) {
-                        tileEntity.markDirty();
-                    }
-                }
+    }
 
-                // Prepare the block to update.
-                worldObj.markBlockForUpdate(xCoord, yCoord, zCoord);
-                markDirty();
-                firstTickClient = false;
-            }
+    /**
+     * Called when the tile entity is removed from the world.
+     */
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        if (worldObj != null) {
+            HexPylonIndex.remove(worldObj, xCoord, yCoord, zCoord);
+            HexPylonBeams.remove(worldObj, xCoord, yCoord, zCoord);
+            if (worldObj.isRemote)
+                HexCraft.proxy.removePylonBeams(xCoord, yCoord, zCoord);
         }
     }
 
+    /**
+     * Called when the chunk of the tile entity is unloaded.
+     */
+    @Override
+    public void onChunkUnload() {
+        super.onChunkUnload();
+        HexPylonIndex.remove(worldObj, xCoord, yCoord, zCoord);
+        HexPylonBeams.remove(worldObj, xCoord, yCoord, zCoord);
+        if (worldObj.isRemote)
+            HexCraft.proxy.removePylonBeams(xCoord, yCoord, zCoord);
+    }
+
     /**** Custom Methods ****/
 
     /**
@@ -229,97 +259,95 @@ public class TileEnergyPylon extends TileEntity {
                 System.out.println("[Energy Pylon] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Monolith ejected, analyzing!");
 
             /* DO ANALYSIS */
-            NetworkAnalyzer analyzer = new NetworkAnalyzer();
-            analyzer.analyzePylon(worldObj, xCoord, yCoord, zCoord, HexBlocks.blockEnergyPylon);
+            HexNetworkQueue.queuePylon(worldObj, xCoord, yCoord, zCoord);
         }
     }
 
     /**
-     * Adds a new pylon to the list of linked pylons.
-     * @param x Coordinate x of the pylon to add.
-     * @param y Coordinate y of the pylon to add.
-     * @param z Coordinate z of the pylon to add.
-     * @param master If this pylon should be the one to check the pylon to add in future.
+     * Links a pylon to this one. This pylon becomes the master, which checks the beam in future.
+     * @param x Coordinate x of the pylon to link.
+     * @param y Coordinate y of the pylon to link.
+     * @param z Coordinate z of the pylon to link.
+     * @return Whether the pylons were linked. False if they already were.
      */
-    public boolean addPylon(int x, int y, int z, boolean master) {
-        TileEnergyPylon energyPylon = (TileEnergyPylon) worldObj.getTileEntity(x, y, z);
-
-        if (energyPylon != null) {
-            if (pylons == null)
-                pylons = new ArrayList<HexPylon>();
-
-            // Check if the pylon already exists.
-            for (HexPylon entry : pylons)
-                if (entry.x == x && entry.y == y && entry.z == z)
-                    // If it does, return false.
-                    return false;
-
-            // Otherwise, continue and add it to the list.
-            pylons.add(new HexPylon(x, y, z, master));
-
-            // Prepare the block to update.
-            worldObj.markBlockForUpdate(xCoord, yCoord, zCoord);
-            markDirty();
-
-            return true;
-        }
-        return false;
+    public boolean addPylon(int x, int y, int z) {
+        if (!(worldObj.getTileEntity(x, y, z) instanceof TileEnergyPylon))
+            return false;
+        if (!HexPylonLinks.get(worldObj).link(HexUtils.packCoordinates(xCoord, yCoord, zCoord), HexUtils.packCoordinates(x, y, z)))
+            return false;
+
+        updateLinks(xCoord, yCoord, zCoord);
+        updateLinks(x, y, z);
+        return true;
     }
 
     /**
-     * Removes a pylon from the list of linked pylons.
-     * @param x Coordinate x of the pylon to remove.
-     * @param y Coordinate y of the pylon to remove.
-     * @param z Coordinate z of the pylon to remove.
+     * Removes the link between a pylon and this one.
+     * @param x Coordinate x of the pylon to unlink.
+     * @param y Coordinate y of the pylon to unlink.
+     * @param z Coordinate z of the pylon to unlink.
      */
     public void removePylon(int x, int y, int z) {
-
-        if (pylons != null) {
-            // Iterate through the list, and remove the pylon if it exists.
-            Iterator<HexPylon> iterator = pylons.iterator();
-            while (iterator.hasNext()) {
-                HexPylon entry = iterator.next();
-                if (entry.x == x && entry.y == y && entry.z == z)
-                    iterator.remove();
-            }
-
-            // If the list is empty, make it null.
-            if (pylons.size() == 0)
-                pylons = null;
-
-            // Prepare the block to update.
-            worldObj.markBlockForUpdate(xCoord, yCoord, zCoord);
-            markDirty();
+        if (HexPylonLinks.get(worldObj).unlink(HexUtils.packCoordinates(xCoord, yCoord, zCoord), HexUtils.packCoordinates(x, y, z))) {
+            updateLinks(xCoord, yCoord, zCoord);
+            updateLinks(x, y, z);
         }
 
         if (HexConfig.cfgGeneralNetworkDebug)
             System.out.println("[Energy Pylon] (" + x + ", " + y + ", " + z + "): Pylon unlinked, analyzing!");
 
         /* DO ANALYSIS */
-        NetworkAnalyzer analyzer = new NetworkAnalyzer();
-        analyzer.analyzePylon(worldObj, xCoord, yCoord, zCoord, HexBlocks.blockEnergyPylon);
+        HexNetworkQueue.queuePylon(worldObj, xCoord, yCoord, zCoord);
+        HexNetworkQueue.queuePylon(worldObj, x, y, z);
     }
 
     /**
-     * Clears the whole pylon list.
+     * Removes all links of this pylon.
      */
     public void clearPylons() {
-        if (pylons != null) {
-            // Go through every entry in the list, and send an instruction to remove this pylon from their list.
-            for (HexPylon entry : pylons) {
-                TileEnergyPylon tileEnergyPylon = (TileEnergyPylon) worldObj.getTileEntity(entry.x, entry.y, entry.z);
-                if (tileEnergyPylon != null)
-                    tileEnergyPylon.removePylon(xCoord, yCoord, zCoord);
-            }
-            pylons = null;
-            markDirty();
+        // Links are only kept on the server.
+        if (worldObj.isRemote)
+            return;
+
+        long[] partners = HexPylonLinks.get(worldObj).unlinkAll(HexUtils.packCoordinates(xCoord, yCoord, zCoord));
+        if (partners.length == 0)
+            return;
+
+        updateLinks(xCoord, yCoord, zCoord);
+        for (long partner : partners) {
+            int x = HexUtils.unpackX(partner);
+            int y = HexUtils.unpackY(partner);
+            int z = HexUtils.unpackZ(partner);
+            updateLinks(x, y, z);
+
+            if (HexConfig.cfgGeneralNetworkDebug)
+                System.out.println("[Energy Pylon] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Pylon unlinked, analyzing!");
+
+            /* DO ANALYSIS */
+            HexNetworkQueue.queuePylon(worldObj, x, y, z);
         }
     }
 
+    /**
+     * Updates a pylon after its links have changed.
+     * @param x Coordinate x of the pylon.
+     * @param y Coordinate y of the pylon.
+     * @param z Coordinate z of the pylon.
+     */
+    private void updateLinks(int x, int y, int z) {
+        // Pylons in unloaded chunks are indexed once they load.
+        if (HexUtils.checkChunk(worldObj, x, z))
+            HexPylonBeams.update(worldObj, x, y, z, HexPylonLinks.get(worldObj).getLinks(HexUtils.packCoordinates(x, y, z)));
+
+        // Prepare the block to update.
+        worldObj.markBlockForUpdate(x, y, z);
+    }
+
     /**
      * Retraces the pylons.
      */
-    private void retracePylons() {
+    public void retracePylons() {
+        ArrayList<HexPylon> pylons = getPylons();
         if (pylons != null) {
             ArrayList<HexPylon> remove = new ArrayList<HexPylon>();
 
@@ -329,45 +357,30 @@ public class TileEnergyPylon extends TileEntity {
                     if (!TileEnergyPylon.tracePylons(worldObj, xCoord, yCoord, zCoord, entry.x, entry.y, entry.z))
                         remove.add(entry);
 
-            // Remove all pylons in the main list using the removal list.
-            for (HexPylon entry : remove) {
-                TileEnergyPylon tileEnergyPylon = (TileEnergyPylon) worldObj.getTileEntity(entry.x, entry.y, entry.z);
-                tileEnergyPylon.removePylon(xCoord, yCoord, zCoord);
+            // Remove all pylons using the removal list.
+            for (HexPylon entry : remove)
                 removePylon(entry.x, entry.y, entry.z);
-            }
 
             if (remove.size() != 0) {
                 if (HexConfig.cfgGeneralNetworkDebug)
                     System.out.println("[Energy Pylon] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Link interrupted, analyzing!");
 
                 /* DO ANALYSIS */
-                NetworkAnalyzer analyzer = new NetworkAnalyzer();
-                analyzer.analyzePylon(worldObj, xCoord, yCoord, zCoord, HexBlocks.blockEnergyPylon);
+                HexNetworkQueue.queuePylon(worldObj, xCoord, yCoord, zCoord);
             }
         }
     }
 
     /**
-     * Ray traces the pylons.
+     * Traces the beam between the pylons.
      * x y z: Starting pylon.
      * tx ty tz: Target pylon.
      */
     public static boolean tracePylons(World world, int x, int y, int z, int tx, int ty, int tz) {
         // If this is not the same pylon.
-        if (!(tx == x && ty == y && tz == z)) {
-            // Create start and end vectors.
-            Vec3 vec1 = Vec3.createVectorHelper(x + 0.5, y + 0.5, z + 0.5);
-            Vec3 vec2 = Vec3.createVectorHelper(tx + 0.5, ty + 0.5, tz + 0.5);
-
-            // Do 4 ray traces from different positions. This eliminates errors.
-            MovingObjectPosition hit1 = world.rayTraceBlocks(vec1.addVector(-0.01, 0, -0.01), vec2.addVector(-0.01, 0, -0.01), true);
-            MovingObjectPosition hit2 = world.rayTraceBlocks(vec1.addVector(0.01, 0, -0.01), vec2.addVector(0.01, 0, -0.01), true);
-            MovingObjectPosition hit3 = world.rayTraceBlocks(vec1.addVector(0.01, 0, 0.01), vec2.addVector(0.01, 0, 0.01), true);
-            MovingObjectPosition hit4 = world.rayTraceBlocks(vec1.addVector(-0.01, 0, 0.01), vec2.addVector(-0.01, 0, 0.01), true);
-
-            // Return true if all of the results are null (didn't hit anything along the way).
-            return hit1 == null && hit2 == null && hit3 == null && hit4 == null;
-        }
+        if (!(tx == x && ty == y && tz == z))
+            // Return true if nothing was hit along the way.
+            return HexBeamTracer.trace(world, x, y, z, tx, ty, tz) == HexBeamTracer.CLEAR;
         return false;
     }
 
@@ -385,7 +398,7 @@ public class TileEnergyPylon extends TileEntity {
                 player.addChatMessage(new ChatComponentTranslation("msg.probePylonStatusOff.txt"));
             else
                 player.addChatMessage(new ChatComponentTranslation("msg.probePylonStatusOn.txt"));
-            if(pylons != null && pylons.size() != 0)
+            if(getPylons() != null && getPylons().size() != 0)
                 player.addChatMessage(new ChatComponentTranslation("msg.probeLinkedYes.txt"));
             else
                 player.addChatMessage(new ChatComponentTranslation("msg.probeLinkedNo.txt"));
@@ -393,7 +406,7 @@ public class TileEnergyPylon extends TileEntity {
         // If player is sneaking.
         else {
             player.addChatMessage(new ChatComponentTranslation("msg.probeConnectedPylons.txt"));
-            HexUtils.addChatProbeConnectedPylons(player, pylons, worldObj, xCoord, yCoord, zCoord);
+            HexUtils.addChatProbeConnectedPylons(player, getPylons(), worldObj, xCoord, yCoord, zCoord);
         }
     }
 
@@ -404,6 +417,8 @@ public class TileEnergyPylon extends TileEntity {
     }
 
     public ArrayList<HexPylon> getPylons() {
+        if (worldObj != null && !worldObj.isRemote)
+            return HexPylonLinks.get(worldObj).getLinks(HexUtils.packCoordinates(xCoord, yCoord, zCoord));
         return this.pylons;
     }
 }
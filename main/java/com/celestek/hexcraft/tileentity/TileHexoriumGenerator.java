@@ -3,6 +3,10 @@ package com.celestek.hexcraft.tileentity;
 import com.celestek.hexcraft.init.HexBlocks;
 import com.celestek.hexcraft.init.HexConfig;
 import com.celestek.hexcraft.util.HexDevice;
+import com.celestek.hexcraft.util.HexNetwork;
+import com.celestek.hexcraft.util.HexNetworkGraph;
+import com.celestek.hexcraft.util.HexNetworkQueue;
+import com.celestek.hexcraft.util.HexTileReferences;
 import com.celestek.hexcraft.util.HexUtils;
 import cpw.mods.fml.common.registry.GameRegistry;
 import cpw.mods.fml.relauncher.Side;
@@ -34,7 +38,7 @@ public class TileHexoriumGenerator extends TileEntity implements ISidedInventory
     private static final String INVENTORY_NAME = "hexcraft.container.hexoriumGenerator";
 
     // NBT Names
-    private static final String NBT_ENERGY_DRAINS = "energy_drains";
+    private static final String NBT_SOURCE_NETWORK = "source_network";
 
     private static final String NBT_ENERGY_TOTAL = "energy_total";
     private static final String NBT_ENERGY_TOTAL_LEFT = "energy_total_left";
@@ -49,8 +53,15 @@ public class TileHexoriumGenerator extends TileEntity implements ISidedInventory
     // Float rounding epsilon.
     private static final float epsilon = 0.0001F;
 
-    // Prepare sources list.
-    private ArrayList<HexDevice> energyDrains;
+    // Prepare the network ID.
+    private int sourceNetwork;
+
+    // Set if the tile entity was saved before it kept network IDs.
+    private boolean legacy;
+
+    // Prepare the state last reported to the network, so that it is only updated when it changes.
+    private int usableNetwork;
+    private boolean usableState;
 
     // Prepare energy variables.
     private int energyPerTick;
@@ -71,6 +82,9 @@ public class TileHexoriumGenerator extends TileEntity implements ISidedInventory
     /**** Common TileEntity Methods ****/
 
     public TileHexoriumGenerator() {
+        this.sourceNetwork = HexNetworkGraph.NO_NETWORK;
+        this.usableNetwork = HexNetworkGraph.NO_NETWORK;
+        this.usableState = false;
 
         this.energyPerTick = 32;
         this.energyTotal = 0;
@@ -91,8 +105,8 @@ public class TileHexoriumGenerator extends TileEntity implements ISidedInventory
     public void writeToNBT(NBTTagCompound tagCompound) {
         super.writeToNBT(tagCompound);
 
-        // Write the drains.
-        HexUtils.writeHexDevicesArrayToNBT(tagCompound, NBT_ENERGY_DRAINS, energyDrains);
+        // Write the network ID.
+        tagCompound.setInteger(NBT_SOURCE_NETWORK, sourceNetwork);
 
         // Write the energy variables.
         tagCompound.setFloat(NBT_ENERGY_TOTAL, energyTotal);
@@ -115,8 +129,9 @@ public class TileHexoriumGenerator extends TileEntity implements ISidedInventory
     public void readFromNBT(NBTTagCompound tagCompound) {
         super.readFromNBT(tagCompound);
 
-        // Read the drains.
-        energyDrains = HexUtils.readHexDevicesArrayFromNBT(tagCompound, NBT_ENERGY_DRAINS);
+        // Read the network ID.
+        sourceNetwork = tagCompound.hasKey(NBT_SOURCE_NETWORK) ? tagCompound.getInteger(NBT_SOURCE_NETWORK) : HexNetworkGraph.NO_NETWORK;
+        legacy = !tagCompound.hasKey(NBT_SOURCE_NETWORK);
 
         // Read the energy variables.
         energyTotal = tagCompound.getFloat(NBT_ENERGY_TOTAL);
@@ -132,14 +147,50 @@ public class TileHexoriumGenerator extends TileEntity implements ISidedInventory
         inventory = HexUtils.readInventoryFromNBT(tagCompound, getSizeInventory());
     }
 
+    /**
+     * Called when the tile entity is added to the world.
+     */
+    @Override
+    public void validate() {
+        super.validate();
+        HexTileReferences.add(this);
+    }
+
+    /**
+     * Called when the tile entity is removed from the world.
+     */
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        HexTileReferences.remove(this);
+        removeUsable();
+
+        // Let the graph know this machine no longer holds its networks.
+        HexNetworkGraph.hold(worldObj, sourceNetwork, HexNetworkGraph.NO_NETWORK);
+        sourceNetwork = HexNetworkGraph.NO_NETWORK;
+    }
+
+    /**
+     * Called when the chunk of the tile entity is unloaded.
+     */
+    @Override
+    public void onChunkUnload() {
+        super.onChunkUnload();
+        HexTileReferences.remove(this);
+        removeUsable();
+    }
+
     /**
      * Fired on every tick. Main processing is done here.
      */
     @Override
     public void updateEntity() {
         if (!worldObj.isRemote) {
-            // Will be set to true if there was no energy available on previous tick. This is used to call a source rescan.
-            boolean recheck = energyTotal == 0;
+            // Analyze the network again if it was saved before network IDs were kept.
+            if (legacy) {
+                legacy = false;
+                HexNetworkQueue.queueMachines(worldObj, xCoord, yCoord, zCoord);
+            }
 
             // Change the state to ACTIVE if energy started to be drained the previous tick.
             if (energyDrained > 0 && canDrainEnergy()
@@ -167,21 +218,19 @@ public class TileHexoriumGenerator extends TileEntity implements ISidedInventory
                 // Change the state to READY otherwise.
                 else
                     HexBlocks.setMachineState(HexBlocks.MACHINE_STATE_READY, worldObj, xCoord, yCoord, zCoord);
-
-                // Send a recheck to all drains to update their sources count.
-                if (recheck)
-                    sendRecheck();
             }
 
             // Otherwise, check if the energy is empty and item can't burn.
             // This is fired when all items have burned out.
             else if (energyTotalLeft <= 0 && energyTotal > 0 && !canBurn(inventory[0])) {
                 energyTotal = 0;
-                // Set the DEAD state and send a recheck.
+                // Set the DEAD state.
                 HexBlocks.setMachineState(HexBlocks.MACHINE_STATE_DEAD, worldObj, xCoord, yCoord, zCoord);
-                sendRecheck();
             }
 
+            // Let the network know if the source can now be drained or not.
+            updateUsable();
+
             // Save the energy states to their GUI variables.
             guiEnergyTotal = Math.round(energyTotal);
             guiEnergyTotalLeft = Math.round(energyTotalLeft);
@@ -193,17 +242,28 @@ public class TileHexoriumGenerator extends TileEntity implements ISidedInventory
     /**** ITileHexEnergySource Methods ****/
 
     /**
-     * Saves the ArrayList of energy drains.
-     * @param energyDrains The ArrayList to save.
+     * Saves the ID of the network whose drains are fed by this source.
+     * @param network ID of the network.
      */
     @Override
-    public void setDrains(ArrayList<HexDevice> energyDrains) {
-        this.energyDrains = energyDrains;
+    public void setSourceNetwork(int network) {
+        HexNetworkGraph.hold(worldObj, this.sourceNetwork, network);
+        this.sourceNetwork = network;
+        ArrayList<HexDevice> energyDrains = getEnergyDrains();
         if (HexConfig.cfgGeneralMachineNetworkDebug && HexConfig.cfgGeneralNetworkDebug)
-            System.out.println("[Hexorium Generator] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Drains received. d: " + energyDrains.size());
+            System.out.println("[Hexorium Generator] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Drains received. d: " + (energyDrains != null ? energyDrains.size() : 0));
         markDirty();
     }
 
+    /**
+     * Gets the drains of the network.
+     * @return The ArrayList of drains, or null if there is no network.
+     */
+    private ArrayList<HexDevice> getEnergyDrains() {
+        HexNetwork network = HexNetworkGraph.getNetworkById(worldObj, sourceNetwork);
+        return network != null ? network.getDrains() : null;
+    }
+
     /**
      * Called by drains to check if they can drain energy.
      * @return Boolean if energy can be drained.
@@ -262,6 +322,7 @@ public class TileHexoriumGenerator extends TileEntity implements ISidedInventory
      */
     @Override
     public void displayInfoSource(EntityPlayer player) {
+        ArrayList<HexDevice> energyDrains = getEnergyDrains();
         HexUtils.addChatProbeTitle(player);
         // If player is not sneaking.
         if (!player.isSneaking()) {
@@ -280,20 +341,49 @@ public class TileHexoriumGenerator extends TileEntity implements ISidedInventory
 
     /**** Custom Methods ****/
 
+    /**
+     * Reports to the network whether the source can be drained, if that or the network changed since the last report.
+     * Drains are only asked to recheck if the network gained its first usable source or lost its last one.
+     */
+    private void updateUsable() {
+        boolean usable = canDrainEnergy();
+        if (usable == usableState && sourceNetwork == usableNetwork)
+            return;
+        usableState = usable;
+        usableNetwork = sourceNetwork;
+
+        HexNetwork network = HexNetworkGraph.getNetworkById(worldObj, sourceNetwork);
+        if (network != null && network.setUsable(HexUtils.packCoordinates(xCoord, yCoord, zCoord), usable))
+            sendRecheck();
+    }
+
+    /**
+     * Removes the source from the usable sources of the network, when it is removed or its chunk is unloaded. Drains
+     * are not asked to recheck here, as their chunks may be unloading too. They find out on their next request.
+     */
+    private void removeUsable() {
+        if (worldObj == null || worldObj.isRemote)
+            return;
+        HexNetwork network = HexNetworkGraph.getNetworkById(worldObj, sourceNetwork);
+        if (network != null)
+            network.setUsable(HexUtils.packCoordinates(xCoord, yCoord, zCoord), false);
+        usableState = false;
+    }
+
     /**
      * Sends a recheck request to all drains.
      */
     private void sendRecheck() {
+        ArrayList<HexDevice> energyDrains = getEnergyDrains();
         if (HexConfig.cfgGeneralMachineNetworkDebug && HexConfig.cfgGeneralNetworkDebug)
             System.out.println("[Hexorium Generator] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Requesting recheck.");
         if (energyDrains != null)
             // Parse the whole energyDrains ArrayList and call recheckSources() on each of them.
-            for (HexDevice entry : energyDrains)
-                if (HexUtils.checkChunk(worldObj, entry.x, entry.z)) {
-                    ITileHexEnergyDrain energyDrain = (ITileHexEnergyDrain) worldObj.getTileEntity(entry.x, entry.y, entry.z);
-                    if (energyDrain != null)
-                        energyDrain.recheckSources();
-                }
+            for (HexDevice entry : energyDrains) {
+                TileEntity tileEntity = entry.getTileEntity(worldObj);
+                if (tileEntity instanceof ITileHexEnergyDrain)
+                    ((ITileHexEnergyDrain) tileEntity).recheckSources();
+            }
     }
 
     /**
@@ -6,6 +6,11 @@ import com.celestek.hexcraft.init.HexConfig;
 import com.celestek.hexcraft.util.HexDamage;
 import com.celestek.hexcraft.util.HexDevice;
 import com.celestek.hexcraft.util.HexEnergyNode;
+import com.celestek.hexcraft.util.HexEnergySolver;
+import com.celestek.hexcraft.util.HexNetwork;
+import com.celestek.hexcraft.util.HexNetworkGraph;
+import com.celestek.hexcraft.util.HexNetworkQueue;
+import com.celestek.hexcraft.util.HexTileReferences;
 import com.celestek.hexcraft.util.HexUtils;
 import cpw.mods.fml.relauncher.Side;
 import cpw.mods.fml.relauncher.SideOnly;
@@ -32,7 +37,8 @@ public class TilePersonalTeleportationPad extends TileEntity implements ITileHex
     private static final String INVENTORY_NAME = "hexcraft.container.personalTeleportationPad";
 
     // NBT Names
-    private static final String NBT_ENERGY_SOURCES = "energy_sources";
+    private static final String NBT_DRAIN_NETWORK = "drain_network";
+    private static final String NBT_DRAIN_PRIORITY = "drain_priority";
 
     private static final String NBT_ENERGY_TOTAL_DONE = "energy_total_done";
     private static final String NBT_ENERGY_DRAINED = "energy_drained";
@@ -42,7 +48,7 @@ public class TilePersonalTeleportationPad extends TileEntity implements ITileHex
 
     private static final String NBT_USABLE_SOURCES = "usable_sources";
 
-    private static final String NBT_TELEPORTS = "teleports";
+    private static final String NBT_TELEPORT_NETWORK = "teleport_network";
     private static final String NBT_LINKED_TELEPORT_EXISTS = "linked_teleport_exists";
     private static final String NBT_LINKED_TELEPORT = "linked_teleport";
     private static final String NBT_IS_TELEPORTING = "is_teleporting";
@@ -50,14 +56,24 @@ public class TilePersonalTeleportationPad extends TileEntity implements ITileHex
 
     /**** Variables ****/
 
-    // Prepare sources list.
-    private ArrayList<HexDevice> energySources;
+    // Prepare the network IDs.
+    private int drainNetwork;
+
+    // Prepare the priority of the drain.
+    private int drainPriority;
+
+    // Set if the tile entity was saved before it kept network IDs.
+    private boolean legacy;
 
     // Prepare energy variables.
+    private int energyPerTick;
     private float energyTotal;
     private float energyTotalDone;
     private float energyDrained;
 
+    // Prepare the energy delivered by the solver.
+    private float energyReceived;
+
     // Prepare GUI energy variables.
     private int guiEnergyTotalDone;
     private int guiEnergyDrained;
@@ -66,7 +82,7 @@ public class TilePersonalTeleportationPad extends TileEntity implements ITileHex
     private int usableSources;
 
     // Prepare teleport variables.
-    private ArrayList<HexDevice> teleports;
+    private int teleportNetwork;
     private HexDevice linkedTeleport;
     private boolean isTeleporting;
     private int teleportCountdown;
@@ -76,7 +92,11 @@ public class TilePersonalTeleportationPad extends TileEntity implements ITileHex
     /**** Common TileEntity Methods ****/
 
     public TilePersonalTeleportationPad() {
+        this.drainNetwork = HexNetworkGraph.NO_NETWORK;
+        this.drainPriority = HexEnergySolver.PRIORITY_NORMAL;
+        this.teleportNetwork = HexNetworkGraph.NO_NETWORK;
 
+        this.energyPerTick = 128;
         this.energyTotal = HexConfig.cfgTeleportUsageCost;
         this.energyTotalDone = 0;
         this.energyDrained = 0;
@@ -98,8 +118,9 @@ public class TilePersonalTeleportationPad extends TileEntity implements ITileHex
     public void writeToNBT(NBTTagCompound tagCompound) {
         super.writeToNBT(tagCompound);
 
-        // Write the drains.
-        HexUtils.writeHexDevicesArrayToNBT(tagCompound, NBT_ENERGY_SOURCES, energySources);
+        // Write the network IDs.
+        tagCompound.setInteger(NBT_DRAIN_NETWORK, drainNetwork);
+        tagCompound.setInteger(NBT_DRAIN_PRIORITY, drainPriority);
 
         // Write the energy variables.
         tagCompound.setFloat(NBT_ENERGY_TOTAL_DONE, energyTotalDone);
@@ -113,7 +134,7 @@ public class TilePersonalTeleportationPad extends TileEntity implements ITileHex
         tagCompound.setInteger(NBT_USABLE_SOURCES, usableSources);
 
         // Write the teleport variables.
-        HexUtils.writeHexDevicesArrayToNBT(tagCompound, NBT_TELEPORTS, teleports);
+        tagCompound.setInteger(NBT_TELEPORT_NETWORK, teleportNetwork);
         HexUtils.writeHexDeviceToNBT(tagCompound, NBT_LINKED_TELEPORT, linkedTeleport);
         tagCompound.setBoolean(NBT_LINKED_TELEPORT_EXISTS, linkedTeleport != null);
         tagCompound.setBoolean(NBT_IS_TELEPORTING, isTeleporting);
@@ -127,8 +148,10 @@ public class TilePersonalTeleportationPad extends TileEntity implements ITileHex
     public void readFromNBT(NBTTagCompound tagCompound) {
         super.readFromNBT(tagCompound);
 
-        // Read the sources.
-        energySources = HexUtils.readHexDevicesArrayFromNBT(tagCompound, NBT_ENERGY_SOURCES);
+        // Read the network IDs.
+        drainNetwork = tagCompound.hasKey(NBT_DRAIN_NETWORK) ? tagCompound.getInteger(NBT_DRAIN_NETWORK) : HexNetworkGraph.NO_NETWORK;
+        legacy = !tagCompound.hasKey(NBT_DRAIN_NETWORK);
+        drainPriority = tagCompound.hasKey(NBT_DRAIN_PRIORITY) ? tagCompound.getInteger(NBT_DRAIN_PRIORITY) : HexEnergySolver.PRIORITY_NORMAL;
 
         // Read the energy variables.
         energyTotalDone = tagCompound.getFloat(NBT_ENERGY_TOTAL_DONE);
@@ -142,7 +165,7 @@ public class TilePersonalTeleportationPad extends TileEntity implements ITileHex
         usableSources = tagCompound.getInteger(NBT_USABLE_SOURCES);
 
         // Read the teleport variables.
-        teleports = HexUtils.readHexDevicesArrayFromNBT(tagCompound, NBT_TELEPORTS);
+        teleportNetwork = tagCompound.hasKey(NBT_TELEPORT_NETWORK) ? tagCompound.getInteger(NBT_TELEPORT_NETWORK) : HexNetworkGraph.NO_NETWORK;
         if (tagCompound.getBoolean(NBT_LINKED_TELEPORT_EXISTS))
             linkedTeleport = HexUtils.readHexDeviceFromNBT(tagCompound, NBT_LINKED_TELEPORT);
         else
@@ -151,6 +174,39 @@ public class TilePersonalTeleportationPad extends TileEntity implements ITileHex
         teleportCounter = tagCompound.getInteger(NBT_TELEPORT_COUNTER);
     }
 
+    /**
+     * Called when the tile entity is added to the world.
+     */
+    @Override
+    public void validate() {
+        super.validate();
+        HexTileReferences.add(this);
+    }
+
+    /**
+     * Called when the tile entity is removed from the world.
+     */
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        HexTileReferences.remove(this);
+
+        // Let the graph know this machine no longer holds its networks.
+        HexNetworkGraph.hold(worldObj, drainNetwork, HexNetworkGraph.NO_NETWORK);
+        drainNetwork = HexNetworkGraph.NO_NETWORK;
+        HexNetworkGraph.hold(worldObj, teleportNetwork, HexNetworkGraph.NO_NETWORK);
+        teleportNetwork = HexNetworkGraph.NO_NETWORK;
+    }
+
+    /**
+     * Called when the chunk of the tile entity is unloaded.
+     */
+    @Override
+    public void onChunkUnload() {
+        super.onChunkUnload();
+        HexTileReferences.remove(this);
+    }
+
     /**
      * Fired on every tick. Main processing is done here.
      */
@@ -158,15 +214,18 @@ public class TilePersonalTeleportationPad extends TileEntity implements ITileHex
     public void updateEntity() {
         // Confirm that this is server side.
         if (!worldObj.isRemote) {
-            energyDrained = 0;
-
-            // Check the situation in which the machine has available energy sources and items to process.
-            if (canDrainSource() && (energyTotalDone < energyTotal * 2)) {
-                // Drain from all sources.
-                drainFromSources();
-                energyTotalDone = energyTotalDone + energyDrained;
+            // Analyze the network again if it was saved before network IDs were kept.
+            if (legacy) {
+                legacy = false;
+                HexNetworkQueue.queueMachines(worldObj, xCoord, yCoord, zCoord);
+                HexNetworkQueue.queueTeleport(worldObj, xCoord, yCoord, zCoord);
             }
 
+            // Store the energy delivered by the solver since the previous tick.
+            energyDrained = energyReceived;
+            energyReceived = 0;
+            energyTotalDone = Math.min(energyTotalDone + energyDrained, energyTotal * 2);
+
             // If the teleporter is charging the teleport...
             if (isTeleporting) {
                 if (teleportCounter >= teleportCountdown) {
@@ -187,6 +246,15 @@ public class TilePersonalTeleportationPad extends TileEntity implements ITileHex
                     teleportCounter++;
             }
 
+            // If no energy was delivered, a source may have been unloaded without a recheck, so count the sources again.
+            if (energyDrained <= 0 && canDrainSource() && (energyTotalDone < energyTotal * 2))
+                scanSources();
+
+            // Request energy for the next tick until enough for two teleports is stored. Charge at a limited rate, so
+            // that the pad doesn't take the whole network from other drains when energy is shared proportionally.
+            if (canDrainSource() && (energyTotalDone < energyTotal * 2))
+                HexEnergySolver.request(worldObj, drainNetwork, this, Math.min(energyPerTick, energyTotal * 2 - energyTotalDone));
+
             // Save the energy states to their GUI variables.
             guiEnergyTotalDone = Math.round(energyTotalDone);
             guiEnergyDrained = Math.round(energyDrained);
@@ -196,17 +264,28 @@ public class TilePersonalTeleportationPad extends TileEntity implements ITileHex
     /**** ITileHexEnergyDrain Methods ****/
 
     /**
-     * Saves the ArrayList of energy sources.
-     * @param energySources The ArrayList to save.
+     * Saves the ID of the network whose sources are used by this drain.
+     * @param network ID of the network.
      */
     @Override
-    public void setSources(ArrayList<HexDevice> energySources) {
-        this.energySources = energySources;
+    public void setDrainNetwork(int network) {
+        HexNetworkGraph.hold(worldObj, this.drainNetwork, network);
+        this.drainNetwork = network;
+        ArrayList<HexDevice> energySources = getEnergySources();
         if (HexConfig.cfgGeneralMachineNetworkDebug && HexConfig.cfgGeneralNetworkDebug)
-            System.out.println("[Personal Teleportation Pad] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Sources received. s: " + energySources.size());
+            System.out.println("[Personal Teleportation Pad] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Sources received. s: " + (energySources != null ? energySources.size() : 0));
         recheckSources();
     }
 
+    /**
+     * Gets the sources of the network.
+     * @return The ArrayList of sources, or null if there is no network.
+     */
+    private ArrayList<HexDevice> getEnergySources() {
+        HexNetwork network = HexNetworkGraph.getNetworkById(worldObj, drainNetwork);
+        return network != null ? network.getSources() : null;
+    }
+
     /**
      * Called by sources to force drains to recheck them.
      */
@@ -217,12 +296,44 @@ public class TilePersonalTeleportationPad extends TileEntity implements ITileHex
             System.out.println("[Personal Teleportation Pad] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Recheck requested. s: " + usableSources);
     }
 
+    /**
+     * Called by the energy solver at the end of the tick to deliver the energy requested by the drain.
+     * @param amount The amount of energy delivered.
+     */
+    @Override
+    public void receiveEnergy(float amount) {
+        energyReceived = energyReceived + amount;
+    }
+
+    /**
+     * Called by the energy solver to decide which drains are served first when there isn't enough energy.
+     * @return The priority of the drain.
+     */
+    @Override
+    public int getDrainPriority() {
+        return drainPriority;
+    }
+
+    /**
+     * Called by Hexorium Manipulator to change the priority of the drain.
+     * @param priority The new priority.
+     */
+    @Override
+    public void setDrainPriority(int priority) {
+        this.drainPriority = priority;
+        if (HexConfig.cfgGeneralMachineNetworkDebug && HexConfig.cfgGeneralNetworkDebug)
+            System.out.println("[Personal Teleportation Pad] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Priority changed. p: " + drainPriority);
+        markDirty();
+    }
+
     /**
      * Called by Hexorium Probe to display tile entity info to chat.
      * @param player Player to show the message to.
      */
     @Override
     public void displayInfoDrain(EntityPlayer player) {
+        ArrayList<HexDevice> energySources = getEnergySources();
+        ArrayList<HexDevice> teleports = getTeleports();
         HexUtils.addChatProbeTitle(player);
         // If player is not sneaking.
         if (!player.isSneaking()) {
@@ -231,6 +342,7 @@ public class TilePersonalTeleportationPad extends TileEntity implements ITileHex
             int mode = HexUtils.getMetaBitBiInt(HexBlocks.META_MACHINE_STATUS_0, HexBlocks.META_MACHINE_STATUS_1, worldObj, xCoord, yCoord, zCoord);
             player.addChatMessage(new ChatComponentTranslation("msg.probeMachineStatus" + (mode + 1) + ".txt"));
             player.addChatMessage(new ChatComponentTranslation("msg.probeEnergy.txt", Math.round(energyTotalDone), "HEX", Math.round(energyTotal), "HEX"));
+            HexUtils.addChatProbeDrainPriority(player, worldObj, drainPriority, drainNetwork);
             if (linkedTeleport != null) {
                 player.addChatMessage(new ChatComponentTranslation("msg.probeLinkedYes.txt"));
                 player.addChatMessage(new ChatComponentTranslation("msg.probeConnectedEntry.txt", linkedTeleport.x, linkedTeleport.y, linkedTeleport.z,
@@ -255,17 +367,9 @@ public class TilePersonalTeleportationPad extends TileEntity implements ITileHex
      */
     private void scanSources() {
         boolean hasEnergy = canDrainSource();
-        usableSources = 0;
-
-        if(energySources != null)
-            // Parse the whole energySources ArrayList and call canDrainSource() on each of them.
-            for (HexDevice entry : energySources)
-                if (HexUtils.checkChunk(worldObj, entry.x, entry.z)) {
-                    ITileHexEnergySource energySource = (ITileHexEnergySource) worldObj.getTileEntity(entry.x, entry.y, entry.z);
-                    if (energySource != null)
-                        if (energySource.canDrainEnergy())
-                            usableSources++;
-                }
+        // Read the number of sources which can be drained, kept up to date by the network.
+        HexNetwork network = HexNetworkGraph.getNetworkById(worldObj, drainNetwork);
+        usableSources = network != null ? network.getUsableSources() : 0;
 
         // Set the state to READY if the energy is now available, but wasn't previously.
         if (canDrainSource() && !hasEnergy && !isTeleporting)
@@ -277,26 +381,6 @@ public class TilePersonalTeleportationPad extends TileEntity implements ITileHex
         markDirty();
     }
 
-    /**
-     * Called to drain from all sources.
-     */
-    private void drainFromSources() {
-        if (energySources != null)
-            // Parse the whole energySources ArrayList and attempt to drain energy from every source.
-            for (HexDevice entry : energySources)
-                if (HexUtils.checkChunk(worldObj, entry.x, entry.z)) {
-                    ITileHexEnergySource energySource = (ITileHexEnergySource) worldObj.getTileEntity(entry.x, entry.y, entry.z);
-                    if (energySource != null)
-                        if (energySource.canDrainEnergy())
-                            if (energyTotalDone + energyDrained < energyTotal * 2) {
-                                if (energyTotal * 2 - energyTotalDone - energyDrained < energySource.getEnergyPerTick())
-                                    energyDrained = energyDrained + energySource.drainEnergy(energyTotal * 2 - energyTotalDone - energyDrained);
-                                else
-                                    energyDrained = energyDrained + energySource.drainEnergy(energySource.getEnergyPerTick());
-                            }
-                }
-    }
-
     /**
      * Called to check if there are any usable sources available.
      * @return If there are any usable sources.
@@ -306,18 +390,19 @@ public class TilePersonalTeleportationPad extends TileEntity implements ITileHex
     }
 
     /**
-     * Called by the NetworkAnalyzer class when exchanging data between teleports.
-     * @param teleports The ArrayList of teleports received.
+     * Saves the ID of the network connecting this teleport to other teleports.
+     * @param network ID of the network.
      */
-    public void setTeleports(ArrayList<HexDevice> teleports) {
-
-        if (teleports.size() != 0) {
-            this.teleports = teleports;
+    public void setTeleportNetwork(int network) {
+        HexNetworkGraph.hold(worldObj, this.teleportNetwork, network);
+        this.teleportNetwork = network;
+        ArrayList<HexDevice> teleports = getTeleports();
 
+        if (teleports != null && teleports.size() != 0) {
             // If the teleport is already linked, analyze the incoming list and unlink if necessary.
             if (this.linkedTeleport != null) {
                 boolean checkLink = false;
-                for (HexDevice entry : this.teleports)
+                for (HexDevice entry : teleports)
                     if (entry.x == this.linkedTeleport.x && entry.y == this.linkedTeleport.y && entry.z == this.linkedTeleport.z)
                         checkLink = true;
                 if (!checkLink)
@@ -325,18 +410,26 @@ public class TilePersonalTeleportationPad extends TileEntity implements ITileHex
             }
         }
         else {
-            this.teleports = null;
             unlinkTeleport();
         }
         if (HexConfig.cfgGeneralMachineNetworkDebug && HexConfig.cfgGeneralNetworkDebug) {
-            if (this.teleports != null)
-                System.out.println("[Personal Teleportation Pad] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Teleports received. t: " + this.teleports.size());
+            if (teleports != null)
+                System.out.println("[Personal Teleportation Pad] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Teleports received. t: " + teleports.size());
             else
                 System.out.println("[Personal Teleportation Pad] (" + xCoord + ", " + yCoord + ", " + zCoord + "): Teleports received. t: " + 0);
         }
         markDirty();
     }
 
+    /**
+     * Gets the teleports of the network.
+     * @return The ArrayList of teleports, or null if there is no network.
+     */
+    private ArrayList<HexDevice> getTeleports() {
+        HexNetwork network = HexNetworkGraph.getNetworkById(worldObj, teleportNetwork);
+        return network != null ? network.getTeleports() : null;
+    }
+
     /**
      * Begins teleportation.
      */
@@ -391,6 +484,7 @@ public class TilePersonalTeleportationPad extends TileEntity implements ITileHex
      * @return Boolean whether the teleports are on same network.
      */
     public boolean checkConnectivity(int x, int y, int z) {
+        ArrayList<HexDevice> teleports = getTeleports();
         // Return true if the teleport exists in the list.
         if (teleports != null)
             for (HexDevice entry : teleports)
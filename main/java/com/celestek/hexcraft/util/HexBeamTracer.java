@@ -0,0 +1,171 @@
+package com.celestek.hexcraft.util;
+
+import net.minecraft.block.Block;
+import net.minecraft.world.World;
+
+/**
+ * @author Thorinair   <celestek@openmailbox.org>
+ */
+
+/**
+ * Line of sight checks for Energy Pylon beams. The beam is walked voxel by voxel from the center of one pylon to the
+ * center of the other, and its whole cross-section is tested against the bounds of every block along the way. Nothing
+ * is allocated while tracing.
+ */
+public class HexBeamTracer {
+
+    /**** Static Values ****/
+
+    // Half of the width of the beam on the X and Z axes.
+    public static final double HALF_WIDTH = 0.01;
+
+    // Returned when nothing obstructs the beam. Can never be a real position, as its Y coordinate is out of the world.
+    public static final long CLEAR = -1;
+
+    /**
+     * Traces a beam between the centers of two blocks.
+     * @param world The world that the beam is in.
+     * @param x X coordinate of the start.
+     * @param y Y coordinate of the start.
+     * @param z Z coordinate of the start.
+     * @param tx X coordinate of the target.
+     * @param ty Y coordinate of the target.
+     * @param tz Z coordinate of the target.
+     * @return Packed coordinates of the first block obstructing the beam, or CLEAR if there is none.
+     */
+    public static long trace(World world, int x, int y, int z, int tx, int ty, int tz) {
+        double x1 = x + 0.5;
+        double y1 = y + 0.5;
+        double z1 = z + 0.5;
+        double dx = tx - x;
+        double dy = ty - y;
+        double dz = tz - z;
+
+        int stepX = dx > 0 ? 1 : -1;
+        int stepY = dy > 0 ? 1 : -1;
+        int stepZ = dz > 0 ? 1 : -1;
+
+        // Distance along the beam, from 0 to 1, to the next voxel border and between two borders on every axis. The
+        // beam starts in the middle of a voxel.
+        double deltaX = dx == 0 ? Double.MAX_VALUE : 1 / Math.abs(dx);
+        double deltaY = dy == 0 ? Double.MAX_VALUE : 1 / Math.abs(dy);
+        double deltaZ = dz == 0 ? Double.MAX_VALUE : 1 / Math.abs(dz);
+        double nextX = deltaX / 2;
+        double nextY = deltaY / 2;
+        double nextZ = deltaZ / 2;
+
+        int cx = x;
+        int cy = y;
+        int cz = z;
+        double enter = 0;
+        while (enter <= 1) {
+            double exit = Math.min(1, Math.min(nextX, Math.min(nextY, nextZ)));
+
+            // The beam is wider than a line, so near the X and Z borders of the voxel it also reaches into the
+            // neighbouring ones.
+            double xa = x1 + dx * enter - cx;
+            double xb = x1 + dx * exit - cx;
+            double za = z1 + dz * enter - cz;
+            double zb = z1 + dz * exit - cz;
+            int fromX = Math.min(xa, xb) < HALF_WIDTH ? -1 : 0;
+            int toX = Math.max(xa, xb) > 1 - HALF_WIDTH ? 1 : 0;
+            int fromZ = Math.min(za, zb) < HALF_WIDTH ? -1 : 0;
+            int toZ = Math.max(za, zb) > 1 - HALF_WIDTH ? 1 : 0;
+
+            // Check the voxel itself first, so that the first obstruction along the beam is found.
+            if (isObstructed(world, cx, cy, cz, x1, y1, z1, dx, dy, dz))
+                return HexUtils.packCoordinates(cx, cy, cz);
+            for (int ox = fromX; ox <= toX; ox++)
+                for (int oz = fromZ; oz <= toZ; oz++)
+                    if ((ox != 0 || oz != 0) && isObstructed(world, cx + ox, cy, cz + oz, x1, y1, z1, dx, dy, dz))
+                        return HexUtils.packCoordinates(cx + ox, cy, cz + oz);
+
+            if (cx == tx && cy == ty && cz == tz)
+                return CLEAR;
+
+            // Move to the next voxel.
+            if (nextX <= nextY && nextX <= nextZ) {
+                cx += stepX;
+                nextX += deltaX;
+            }
+            else if (nextY <= nextZ) {
+                cy += stepY;
+                nextY += deltaY;
+            }
+            else {
+                cz += stepZ;
+                nextZ += deltaZ;
+            }
+            enter = exit;
+        }
+        return CLEAR;
+    }
+
+    /**
+     * Checks if a block obstructs the beam. Blocks are treated the same as by ray tracing, including liquid sources.
+     * @param world The world that the block is in.
+     * @param x X coordinate of the block.
+     * @param y Y coordinate of the block.
+     * @param z Z coordinate of the block.
+     * @param x1 X coordinate of the start of the beam.
+     * @param y1 Y coordinate of the start of the beam.
+     * @param z1 Z coordinate of the start of the beam.
+     * @param dx Length of the beam on the X axis.
+     * @param dy Length of the beam on the Y axis.
+     * @param dz Length of the beam on the Z axis.
+     * @return Whether the beam is obstructed.
+     */
+    private static boolean isObstructed(World world, int x, int y, int z, double x1, double y1, double z1, double dx, double dy, double dz) {
+        Block block = world.getBlock(x, y, z);
+        if (!block.canCollideCheck(world.getBlockMetadata(x, y, z), true))
+            return false;
+
+        // Widen the bounds by the width of the beam, so that the beam can be tested as a line.
+        block.setBlockBoundsBasedOnState(world, x, y, z);
+        double minX = x + block.getBlockBoundsMinX() - HALF_WIDTH;
+        double maxX = x + block.getBlockBoundsMaxX() + HALF_WIDTH;
+        double minY = y + block.getBlockBoundsMinY();
+        double maxY = y + block.getBlockBoundsMaxY();
+        double minZ = z + block.getBlockBoundsMinZ() - HALF_WIDTH;
+        double maxZ = z + block.getBlockBoundsMaxZ() + HALF_WIDTH;
+
+        // Clip the beam to the bounds one axis at a time.
+        double tMin = 0;
+        double tMax = 1;
+
+        if (dx == 0) {
+            if (x1 < minX || x1 > maxX)
+                return false;
+        }
+        else {
+            double a = (minX - x1) / dx;
+            double b = (maxX - x1) / dx;
+            tMin = Math.max(tMin, Math.min(a, b));
+            tMax = Math.min(tMax, Math.max(a, b));
+        }
+
+        if (dy == 0) {
+            if (y1 < minY || y1 > maxY)
+                return false;
+        }
+        else {
+            double a = (minY - y1) / dy;
+            double b = (maxY - y1) / dy;
+            tMin = Math.max(tMin, Math.min(a, b));
+            tMax = Math.min(tMax, Math.max(a, b));
+        }
+
+        if (dz == 0) {
+            if (z1 < minZ || z1 > maxZ)
+                return false;
+        }
+        else {
+            double a = (minZ - z1) / dz;
+            double b = (maxZ - z1) / dz;
+            tMin = Math.max(tMin, Math.min(a, b));
+            tMax = Math.min(tMax, Math.max(a, b));
+        }
+
+        return tMin <= tMax;
+    }
+}
@@ -1,6 +1,8 @@
 package com.celestek.hexcraft.util;
 
 import net.minecraft.block.Block;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.world.World;
 
 /**
  * @author Thorinair   <celestek@openmailbox.org>
@@ -12,6 +14,9 @@ public class HexDevice {
     public int z;
     public Block block;
 
+    // Reference to the tile entity of the device, kept while it stays loaded.
+    private HexTileReferences.Reference reference;
+
     public HexDevice(int x, int y, int z, Block block)
     {
         this.x = x;
@@ -19,4 +24,18 @@ public class HexDevice {
         this.z = z;
         this.block = block;
     }
+
+    /**
+     * Gets the tile entity of the device. It is only looked up again if it was removed or unloaded since last time.
+     * @param world The world that the device is in.
+     * @return The tile entity, or null if it isn't loaded.
+     */
+    public TileEntity getTileEntity(World world) {
+        if (reference == null || reference.get() == null) {
+            reference = HexTileReferences.get(world, x, y, z);
+            if (reference == null)
+                return null;
+        }
+        return reference.get();
+    }
 }
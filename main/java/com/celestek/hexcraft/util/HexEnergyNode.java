@@ -12,8 +12,6 @@ import ic2.api.energy.EnergyNet;
 import net.minecraft.block.Block;
 import net.minecraft.world.World;
 
-import java.util.ArrayList;
-
 /**
  * @author Thorinair   <celestek@openmailbox.org>
  */
@@ -38,6 +36,9 @@ public class HexEnergyNode {
     public static final int PORT_MODE_INTERFACE = 2;
     public static final int PORT_MODE_TUNNEL = 3;
 
+    // Used by ports until they have read their mode from the block.
+    public static final int PORT_MODE_UNKNOWN = -1;
+
     /**
      * Sets up the Energy Node from a port.
      * @param side Side that the Manipulator was used on.
@@ -78,42 +79,35 @@ public class HexEnergyNode {
                 /* DO ANALYSIS */
                 if (world.getBlock(x, y - 1, z) == HexBlocks.blockEnergyNodePortHEX
                         && HexUtils.getMetaBitBiInt(META_MODE_0, META_MODE_1, world, x, y - 1, z) != PORT_MODE_INTERFACE) {
-                    NetworkAnalyzer analyzer = new NetworkAnalyzer();
-                    analyzer.analyzeCable(world, x, y - 2, z, world.getBlock(x, y - 2, z));
+                    HexNetworkQueue.queueCable(world, x, y - 2, z);
                 }
 
                 if (world.getBlock(x, y + 1, z) == HexBlocks.blockEnergyNodePortHEX
                         && HexUtils.getMetaBitBiInt(META_MODE_0, META_MODE_1, world, x, y + 1, z) != PORT_MODE_INTERFACE) {
-                    NetworkAnalyzer analyzer = new NetworkAnalyzer();
-                    analyzer.analyzeCable(world, x, y + 2, z, world.getBlock(x, y + 2, z));
+                    HexNetworkQueue.queueCable(world, x, y + 2, z);
                 }
 
                 if (world.getBlock(x - 1, y, z) == HexBlocks.blockEnergyNodePortHEX
                         && HexUtils.getMetaBitBiInt(META_MODE_0, META_MODE_1, world, x - 1, y, z) != PORT_MODE_INTERFACE) {
-                    NetworkAnalyzer analyzer = new NetworkAnalyzer();
-                    analyzer.analyzeCable(world, x - 2, y, z, world.getBlock(x - 2, y, z));
+                    HexNetworkQueue.queueCable(world, x - 2, y, z);
                 }
 
                 if (world.getBlock(x + 1, y, z) == HexBlocks.blockEnergyNodePortHEX
                         && HexUtils.getMetaBitBiInt(META_MODE_0, META_MODE_1, world, x + 1, y, z) != PORT_MODE_INTERFACE) {
-                    NetworkAnalyzer analyzer = new NetworkAnalyzer();
-                    analyzer.analyzeCable(world, x + 2, y, z, world.getBlock(x + 2, y, z));
+                    HexNetworkQueue.queueCable(world, x + 2, y, z);
                 }
 
                 if (world.getBlock(x, y, z - 1) == HexBlocks.blockEnergyNodePortHEX
                         && HexUtils.getMetaBitBiInt(META_MODE_0, META_MODE_1, world, x, y, z - 1) != PORT_MODE_INTERFACE) {
-                    NetworkAnalyzer analyzer = new NetworkAnalyzer();
-                    analyzer.analyzeCable(world, x, y, z - 2, world.getBlock(x, y, z - 2));
+                    HexNetworkQueue.queueCable(world, x, y, z - 2);
                 }
 
                 if (world.getBlock(x, y, z + 1) == HexBlocks.blockEnergyNodePortHEX
                         && HexUtils.getMetaBitBiInt(META_MODE_0, META_MODE_1, world, x, y, z + 1) != PORT_MODE_INTERFACE) {
-                    NetworkAnalyzer analyzer = new NetworkAnalyzer();
-                    analyzer.analyzeCable(world, x, y, z + 2, world.getBlock(x, y, z + 2));
+                    HexNetworkQueue.queueCable(world, x, y, z + 2);
                 }
 
-                NetworkAnalyzer analyzer = new NetworkAnalyzer();
-                analyzer.analyzeCable(world, x, y, z, world.getBlock(x, y, z));
+                HexNetworkQueue.queueCable(world, x, y, z);
 
                 return true;
             }
@@ -141,90 +135,84 @@ public class HexEnergyNode {
         Block block = world.getBlock(x, y - 1, z);
         if (block instanceof IBlockHexEnergyPort) {
             ITileHexEnergyPort port = (ITileHexEnergyPort) world.getTileEntity(x, y - 1, z);
-            port.setPorts(null);
+            port.setPortNetwork(HexNetworkGraph.NO_NETWORK);
             port.emptyBuffer();
             if (block == HexBlocks.blockEnergyNodePortHEX) {
                 ITileHexEnergySource source = (ITileHexEnergySource) world.getTileEntity(x, y - 1, z);
-                source.setDrains(new ArrayList<HexDevice>());
+                source.setSourceNetwork(HexNetworkGraph.NO_NETWORK);
                 ITileHexEnergyDrain drain = (ITileHexEnergyDrain) world.getTileEntity(x, y - 1, z);
-                drain.setSources(new ArrayList<HexDevice>());
-                NetworkAnalyzer analyzer = new NetworkAnalyzer();
-                analyzer.analyzeCable(world, x, y - 2, z, world.getBlock(x, y - 2, z));
+                drain.setDrainNetwork(HexNetworkGraph.NO_NETWORK);
+                HexNetworkQueue.queueCable(world, x, y - 2, z);
             }
         }
 
         block = world.getBlock(x, y + 1, z);
         if (block instanceof IBlockHexEnergyPort) {
             ITileHexEnergyPort port = (ITileHexEnergyPort) world.getTileEntity(x, y + 1, z);
-            port.setPorts(null);
+            port.setPortNetwork(HexNetworkGraph.NO_NETWORK);
             port.emptyBuffer();
             if (block == HexBlocks.blockEnergyNodePortHEX) {
                 ITileHexEnergySource source = (ITileHexEnergySource) world.getTileEntity(x, y + 1, z);
-                source.setDrains(new ArrayList<HexDevice>());
+                source.setSourceNetwork(HexNetworkGraph.NO_NETWORK);
                 ITileHexEnergyDrain drain = (ITileHexEnergyDrain) world.getTileEntity(x, y + 1, z);
-                drain.setSources(new ArrayList<HexDevice>());
-                NetworkAnalyzer analyzer = new NetworkAnalyzer();
-                analyzer.analyzeCable(world, x, y + 2, z, world.getBlock(x, y + 2, z));
+                drain.setDrainNetwork(HexNetworkGraph.NO_NETWORK);
+                HexNetworkQueue.queueCable(world, x, y + 2, z);
             }
         }
 
         block = world.getBlock(x - 1, y, z);
         if (block instanceof IBlockHexEnergyPort) {
             ITileHexEnergyPort port = (ITileHexEnergyPort) world.getTileEntity(x - 1, y, z);
-            port.setPorts(null);
+            port.setPortNetwork(HexNetworkGraph.NO_NETWORK);
             port.emptyBuffer();
             if (block == HexBlocks.blockEnergyNodePortHEX) {
                 ITileHexEnergySource source = (ITileHexEnergySource) world.getTileEntity(x - 1, y, z);
-                source.setDrains(new ArrayList<HexDevice>());
+                source.setSourceNetwork(HexNetworkGraph.NO_NETWORK);
                 ITileHexEnergyDrain drain = (ITileHexEnergyDrain) world.getTileEntity(x - 1, y, z);
-                drain.setSources(new ArrayList<HexDevice>());
-                NetworkAnalyzer analyzer = new NetworkAnalyzer();
-                analyzer.analyzeCable(world, x - 2, y, z, world.getBlock(x - 2, y, z));
+                drain.setDrainNetwork(HexNetworkGraph.NO_NETWORK);
+                HexNetworkQueue.queueCable(world, x - 2, y, z);
             }
         }
 
         block = world.getBlock(x + 1, y, z);
         if (block instanceof IBlockHexEnergyPort) {
             ITileHexEnergyPort port = (ITileHexEnergyPort) world.getTileEntity(x + 1, y, z);
-            port.setPorts(null);
+            port.setPortNetwork(HexNetworkGraph.NO_NETWORK);
             port.emptyBuffer();
             if (block == HexBlocks.blockEnergyNodePortHEX) {
                 ITileHexEnergySource source = (ITileHexEnergySource) world.getTileEntity(x + 1, y, z);
-                source.setDrains(new ArrayList<HexDevice>());
+                source.setSourceNetwork(HexNetworkGraph.NO_NETWORK);
                 ITileHexEnergyDrain drain = (ITileHexEnergyDrain) world.getTileEntity(x + 1, y, z);
-                drain.setSources(new ArrayList<HexDevice>());
-                NetworkAnalyzer analyzer = new NetworkAnalyzer();
-                analyzer.analyzeCable(world, x + 2, y, z, world.getBlock(x + 2, y, z));
+                drain.setDrainNetwork(HexNetworkGraph.NO_NETWORK);
+                HexNetworkQueue.queueCable(world, x + 2, y, z);
             }
         }
 
         block = world.getBlock(x, y, z - 1);
         if (block instanceof IBlockHexEnergyPort) {
             ITileHexEnergyPort port = (ITileHexEnergyPort) world.getTileEntity(x, y, z - 1);
-            port.setPorts(null);
+            port.setPortNetwork(HexNetworkGraph.NO_NETWORK);
             port.emptyBuffer();
             if (block == HexBlocks.blockEnergyNodePortHEX) {
                 ITileHexEnergySource source = (ITileHexEnergySource) world.getTileEntity(x, y, z - 1);
-                source.setDrains(new ArrayList<HexDevice>());
+                source.setSourceNetwork(HexNetworkGraph.NO_NETWORK);
                 ITileHexEnergyDrain drain = (ITileHexEnergyDrain) world.getTileEntity(x, y, z - 1);
-                drain.setSources(new ArrayList<HexDevice>());
-                NetworkAnalyzer analyzer = new NetworkAnalyzer();
-                analyzer.analyzeCable(world, x, y, z - 2, world.getBlock(x, y, z - 2));
+                drain.setDrainNetwork(HexNetworkGraph.NO_NETWORK);
+                HexNetworkQueue.queueCable(world, x, y, z - 2);
             }
         }
 
         block = world.getBlock(x, y, z + 1);
         if (block instanceof IBlockHexEnergyPort) {
             ITileHexEnergyPort port = (ITileHexEnergyPort) world.getTileEntity(x, y, z + 1);
-            port.setPorts(null);
+            port.setPortNetwork(HexNetworkGraph.NO_NETWORK);
             port.emptyBuffer();
             if (block == HexBlocks.blockEnergyNodePortHEX) {
                 ITileHexEnergySource source = (ITileHexEnergySource) world.getTileEntity(x, y, z + 1);
-                source.setDrains(new ArrayList<HexDevice>());
+                source.setSourceNetwork(HexNetworkGraph.NO_NETWORK);
                 ITileHexEnergyDrain drain = (ITileHexEnergyDrain) world.getTileEntity(x, y, z + 1);
-                drain.setSources(new ArrayList<HexDevice>());
-                NetworkAnalyzer analyzer = new NetworkAnalyzer();
-                analyzer.analyzeCable(world, x, y, z + 2, world.getBlock(x, y, z + 2));
+                drain.setDrainNetwork(HexNetworkGraph.NO_NETWORK);
+                HexNetworkQueue.queueCable(world, x, y, z + 2);
             }
         }
     }
@@ -0,0 +1,231 @@
+package com.celestek.hexcraft.util;
+
+import com.celestek.hexcraft.init.HexConfig;
+import com.celestek.hexcraft.tileentity.ITileHexEnergyDrain;
+import com.celestek.hexcraft.tileentity.ITileHexEnergySource;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * @author Thorinair   <celestek@openmailbox.org>
+ */
+
+/**
+ * Shares the energy of every network between its drains, once per tick. Drains request the energy they need during
+ * their update, and at the end of the tick the sources of each network are drained once and the energy is split
+ * between the drains according to the policy of the network. Drains receive the energy before their next update. The
+ * result doesn't depend on the order in which the tile entities were updated.
+ */
+public class HexEnergySolver {
+
+    /**** Static Values ****/
+
+    // Drain priorities.
+    public static final int PRIORITY_LOW = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    public static final int PRIORITY_HIGH = 2;
+    public static final int PRIORITY_HIGHEST = 3;
+    public static final int PRIORITY_COUNT = 4;
+
+    // Network policies. Priority serves higher priority drains first and splits the rest between drains of the same
+    // priority in proportion to their requests. Proportional ignores priorities. Round-robin fills the requests one by
+    // one, starting from a different drain every tick.
+    public static final int POLICY_PRIORITY = 0;
+    public static final int POLICY_PROPORTIONAL = 1;
+    public static final int POLICY_ROUND_ROBIN = 2;
+    public static final int POLICY_COUNT = 3;
+
+    // Solvers of all worlds, by dimension ID.
+    private static final HashMap<Integer, HexEnergySolver> solvers = new HashMap<Integer, HexEnergySolver>();
+
+    /**** Variables ****/
+
+    // Prepare the requests made during the current tick, by network ID.
+    private HashMap<Integer, ArrayList<Request>> requests;
+
+    /**
+     * Constructor.
+     */
+    private HexEnergySolver() {
+        requests = new HashMap<Integer, ArrayList<Request>>();
+    }
+
+    /**
+     * Requests energy for a drain. The energy is delivered at the end of the tick.
+     * @param world The world that the drain is in.
+     * @param network ID of the network whose sources the drain uses.
+     * @param drain The drain requesting the energy.
+     * @param amount The amount of energy requested.
+     * @return Whether the request was accepted. False if the network doesn't exist.
+     */
+    public static boolean request(World world, int network, ITileHexEnergyDrain drain, float amount) {
+        if (amount <= 0)
+            return false;
+        HexNetwork hexNetwork = HexNetworkGraph.getNetworkById(world, network);
+        if (hexNetwork == null)
+            return false;
+
+        HexEnergySolver solver = solvers.get(world.provider.dimensionId);
+        if (solver == null) {
+            solver = new HexEnergySolver();
+            solvers.put(world.provider.dimensionId, solver);
+        }
+
+        ArrayList<Request> list = solver.requests.get(hexNetwork.id);
+        if (list == null) {
+            list = new ArrayList<Request>();
+            solver.requests.put(hexNetwork.id, list);
+        }
+        list.add(new Request(drain, amount));
+        return true;
+    }
+
+    /**
+     * Shares the energy of all networks with requests. Called at the end of every world tick.
+     * @param world The world to process.
+     */
+    public static void process(World world) {
+        HexEnergySolver solver = solvers.get(world.provider.dimensionId);
+        if (solver == null || solver.requests.isEmpty())
+            return;
+
+        for (int id : solver.requests.keySet()) {
+            HexNetwork network = HexNetworkGraph.getNetworkById(world, id);
+            if (network != null)
+                solve(world, network, solver.requests.get(id));
+        }
+        solver.requests.clear();
+    }
+
+    /**
+     * Removes the solver of a world when it unloads.
+     * @param world The world which is unloading.
+     */
+    public static void unload(World world) {
+        if (!world.isRemote)
+            solvers.remove(world.provider.dimensionId);
+    }
+
+    /**
+     * Shares the energy of a single network.
+     * @param world The world that the network is in.
+     * @param network The network.
+     * @param list The requests made by the drains of the network.
+     */
+    private static void solve(World world, HexNetwork network, ArrayList<Request> list) {
+        // Add up the requests of all drains which still exist, in total and by priority.
+        ArrayList<Request> valid = new ArrayList<Request>(list.size());
+        float[] demands = new float[PRIORITY_COUNT];
+        float demand = 0;
+        for (Request request : list)
+            if (!((TileEntity) request.drain).isInvalid()) {
+                request.priority = Math.max(PRIORITY_LOW, Math.min(request.drain.getDrainPriority(), PRIORITY_HIGHEST));
+                demands[request.priority] = demands[request.priority] + request.amount;
+                demand = demand + request.amount;
+                valid.add(request);
+            }
+        if (demand <= 0)
+            return;
+
+        // Find the energy every source can give this tick.
+        ArrayList<HexDevice> devices = network.getSources();
+        ITileHexEnergySource[] sources = new ITileHexEnergySource[devices.size()];
+        float[] supplies = new float[devices.size()];
+        float supply = 0;
+        for (int i = 0; i < devices.size(); i++) {
+            TileEntity tileEntity = devices.get(i).getTileEntity(world);
+            if (tileEntity instanceof ITileHexEnergySource) {
+                ITileHexEnergySource energySource = (ITileHexEnergySource) tileEntity;
+                if (energySource.canDrainEnergy()) {
+                    sources[i] = energySource;
+                    supplies[i] = energySource.getEnergyPerTick();
+                    supply = supply + supplies[i];
+                }
+            }
+        }
+
+        // Drain every source in proportion to the energy it can give.
+        float drained = 0;
+        if (supply > 0) {
+            float ratio = Math.min(demand, supply) / supply;
+            for (int i = 0; i < sources.length; i++)
+                if (sources[i] != null)
+                    drained = drained + sources[i].drainEnergy(supplies[i] * ratio);
+        }
+
+        // Split the drained energy between the drains.
+        if (network.policy == POLICY_ROUND_ROBIN)
+            shareRoundRobin(network, valid, drained);
+        else if (network.policy == POLICY_PROPORTIONAL)
+            shareProportional(valid, drained / demand);
+        else
+            sharePriority(valid, demands, drained);
+
+        if (HexConfig.cfgGeneralMachineNetworkDebug && HexConfig.cfgGeneralNetworkDebug)
+            System.out.println("[Energy Solver] Network " + network.id + ": Energy shared. s: " + supply + " d: " + demand + " t: " + drained + " p: " + network.policy);
+    }
+
+    /**
+     * Gives every drain the same part of its request.
+     * @param list The requests of the drains.
+     * @param ratio The part of every request to give.
+     */
+    private static void shareProportional(ArrayList<Request> list, float ratio) {
+        for (Request request : list)
+            request.drain.receiveEnergy(request.amount * ratio);
+    }
+
+    /**
+     * Fills the requests of higher priority drains first. Drains of the same priority get the same part of their
+     * request.
+     * @param list The requests of the drains.
+     * @param demands The total requests by priority.
+     * @param energy The energy to share.
+     */
+    private static void sharePriority(ArrayList<Request> list, float[] demands, float energy) {
+        float[] ratios = new float[PRIORITY_COUNT];
+        for (int priority = PRIORITY_HIGHEST; priority >= PRIORITY_LOW; priority--)
+            if (demands[priority] > 0) {
+                float share = Math.min(energy, demands[priority]);
+                ratios[priority] = share / demands[priority];
+                energy = energy - share;
+            }
+
+        for (Request request : list)
+            request.drain.receiveEnergy(request.amount * ratios[request.priority]);
+    }
+
+    /**
+     * Fills the requests one by one, starting from the drain after the one which started the previous tick.
+     * @param network The network, which keeps the starting position.
+     * @param list The requests of the drains.
+     * @param energy The energy to share.
+     */
+    private static void shareRoundRobin(HexNetwork network, ArrayList<Request> list, float energy) {
+        int start = network.roundRobin % list.size();
+        network.roundRobin = start + 1;
+        for (int i = 0; i < list.size(); i++) {
+            Request request = list.get((start + i) % list.size());
+            float share = Math.min(energy, request.amount);
+            request.drain.receiveEnergy(share);
+            energy = energy - share;
+        }
+    }
+
+    /**
+     * A single request of a drain.
+     */
+    private static class Request {
+        private final ITileHexEnergyDrain drain;
+        private final float amount;
+        private int priority;
+
+        private Request(ITileHexEnergyDrain drain, float amount) {
+            this.drain = drain;
+            this.amount = amount;
+        }
+    }
+}
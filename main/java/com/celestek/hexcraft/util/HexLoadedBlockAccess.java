@@ -0,0 +1,105 @@
+package com.celestek.hexcraft.util;
+
+import cpw.mods.fml.relauncher.Side;
+import cpw.mods.fml.relauncher.SideOnly;
+import net.minecraft.block.Block;
+import net.minecraft.init.Blocks;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.world.IBlockAccess;
+import net.minecraft.world.World;
+import net.minecraft.world.biome.BiomeGenBase;
+import net.minecraftforge.common.util.ForgeDirection;
+
+/**
+ * @author Thorinair   <celestek@openmailbox.org>
+ */
+
+/**
+ * Block access which only reads chunks that are already loaded. Reads inside unloaded chunks return air and are
+ * recorded as frontier positions, so that the analysis can resume once the chunk loads.
+ */
+public class HexLoadedBlockAccess implements IBlockAccess {
+
+    // The world to read from.
+    private final World world;
+
+    // Positions which were read inside unloaded chunks.
+    private final HexLongSet frontier;
+
+    /**
+     * Constructor.
+     * @param world The world to read from.
+     * @param frontier Set to record the positions inside unloaded chunks to.
+     */
+    public HexLoadedBlockAccess(World world, HexLongSet frontier) {
+        this.world = world;
+        this.frontier = frontier;
+    }
+
+    /**
+     * Checks if a block is inside a loaded chunk, recording it as a frontier position if it isn't.
+     * @return Whether the block can be read.
+     */
+    private boolean isLoaded(int x, int y, int z) {
+        if (HexUtils.checkChunk(world, x, z))
+            return true;
+        frontier.add(HexUtils.packCoordinates(x, y, z));
+        return false;
+    }
+
+    /**** IBlockAccess Methods ****/
+
+    @Override
+    public Block getBlock(int x, int y, int z) {
+        return isLoaded(x, y, z) ? world.getBlock(x, y, z) : Blocks.air;
+    }
+
+    @Override
+    public TileEntity getTileEntity(int x, int y, int z) {
+        return isLoaded(x, y, z) ? world.getTileEntity(x, y, z) : null;
+    }
+
+    @Override
+    public int getBlockMetadata(int x, int y, int z) {
+        return isLoaded(x, y, z) ? world.getBlockMetadata(x, y, z) : 0;
+    }
+
+    @Override
+    public int isBlockProvidingPowerTo(int x, int y, int z, int side) {
+        return isLoaded(x, y, z) ? world.isBlockProvidingPowerTo(x, y, z, side) : 0;
+    }
+
+    @Override
+    public boolean isAirBlock(int x, int y, int z) {
+        return !isLoaded(x, y, z) || world.isAirBlock(x, y, z);
+    }
+
+    @Override
+    public boolean isSideSolid(int x, int y, int z, ForgeDirection side, boolean _default) {
+        return isLoaded(x, y, z) ? world.isSideSolid(x, y, z, side, _default) : _default;
+    }
+
+    @Override
+    @SideOnly(Side.CLIENT)
+    public int getLightBrightnessForSkyBlocks(int x, int y, int z, int light) {
+        return world.getLightBrightnessForSkyBlocks(x, y, z, light);
+    }
+
+    @Override
+    @SideOnly(Side.CLIENT)
+    public BiomeGenBase getBiomeGenForCoords(int x, int z) {
+        return world.getBiomeGenForCoords(x, z);
+    }
+
+    @Override
+    @SideOnly(Side.CLIENT)
+    public int getHeight() {
+        return world.getHeight();
+    }
+
+    @Override
+    @SideOnly(Side.CLIENT)
+    public boolean extendedLevelsInChunkCache() {
+        return world.extendedLevelsInChunkCache();
+    }
+}
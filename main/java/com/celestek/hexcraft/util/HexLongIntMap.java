@@ -0,0 +1,229 @@
+package com.celestek.hexcraft.util;
+
+import java.util.Arrays;
+
+/**
+ * @author Thorinair   <celestek@openmailbox.org>
+ */
+
+/**
+ * A map of primitive long keys to int values using open addressing with linear probing.
+ * Used for mapping packed block coordinates to IDs without boxing.
+ */
+public class HexLongIntMap {
+
+    // Slot key used for marking empty slots. Zero itself is tracked separately.
+    private static final long EMPTY = 0;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    // Prepare the table variables.
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private boolean hasZero;
+    private int zeroValue;
+
+    // Value returned for missing keys.
+    private final int missing;
+
+    /**
+     * Constructor.
+     * @param missing Value returned when a key is not in the map.
+     */
+    public HexLongIntMap(int missing) {
+        this.keys = new long[DEFAULT_CAPACITY];
+        this.values = new int[DEFAULT_CAPACITY];
+        this.mask = DEFAULT_CAPACITY - 1;
+        this.size = 0;
+        this.hasZero = false;
+        this.missing = missing;
+    }
+
+    /**
+     * Gets the value mapped to a key.
+     * @param key The key to look for.
+     * @return The value, or the missing value if the key is not in the map.
+     */
+    public int get(long key) {
+        if (key == EMPTY)
+            return hasZero ? zeroValue : missing;
+
+        int i = slot(key);
+        while (keys[i] != EMPTY) {
+            if (keys[i] == key)
+                return values[i];
+            i = (i + 1) & mask;
+        }
+        return missing;
+    }
+
+    /**
+     * Checks if the map contains a key.
+     * @param key The key to look for.
+     * @return Whether the key is in the map.
+     */
+    public boolean containsKey(long key) {
+        if (key == EMPTY)
+            return hasZero;
+
+        int i = slot(key);
+        while (keys[i] != EMPTY) {
+            if (keys[i] == key)
+                return true;
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Maps a key to a value, replacing any previous value.
+     * @param key The key to map.
+     * @param value The value to map it to.
+     * @return The previous value, or the missing value if the key was not in the map.
+     */
+    public int put(long key, int value) {
+        if (key == EMPTY) {
+            int previous = hasZero ? zeroValue : missing;
+            if (!hasZero)
+                size++;
+            hasZero = true;
+            zeroValue = value;
+            return previous;
+        }
+
+        int i = slot(key);
+        while (keys[i] != EMPTY) {
+            if (keys[i] == key) {
+                int previous = values[i];
+                values[i] = value;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+
+        // Grow the table once it is three quarters full.
+        if (size * 4 > keys.length * 3)
+            rehash(keys.length << 1);
+        return missing;
+    }
+
+    /**
+     * Removes a key from the map.
+     * @param key The key to remove.
+     * @return The removed value, or the missing value if the key was not in the map.
+     */
+    public int remove(long key) {
+        if (key == EMPTY) {
+            if (!hasZero)
+                return missing;
+            hasZero = false;
+            size--;
+            return zeroValue;
+        }
+
+        int i = slot(key);
+        while (keys[i] != EMPTY) {
+            if (keys[i] == key) {
+                int previous = values[i];
+                // Shift the following entries back so that no tombstones are needed.
+                int last = i;
+                i = (i + 1) & mask;
+                while (keys[i] != EMPTY) {
+                    int home = slot(keys[i]);
+                    if (((i - home) & mask) >= ((i - last) & mask)) {
+                        keys[last] = keys[i];
+                        values[last] = values[i];
+                        last = i;
+                    }
+                    i = (i + 1) & mask;
+                }
+                keys[last] = EMPTY;
+                size--;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+        return missing;
+    }
+
+    /**
+     * Removes all entries from the map, keeping the allocated table.
+     */
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        hasZero = false;
+    }
+
+    /**
+     * @return The number of entries in the map.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Copies all keys of the map into a new array.
+     * @return The array of keys, in the same order as toValueArray().
+     */
+    public long[] toKeyArray() {
+        long[] result = new long[size];
+        int n = 0;
+        if (hasZero)
+            result[n++] = EMPTY;
+        for (long key : keys)
+            if (key != EMPTY)
+                result[n++] = key;
+        return result;
+    }
+
+    /**
+     * Copies all values of the map into a new array.
+     * @return The array of values, in the same order as toKeyArray().
+     */
+    public int[] toValueArray() {
+        int[] result = new int[size];
+        int n = 0;
+        if (hasZero)
+            result[n++] = zeroValue;
+        for (int i = 0; i < keys.length; i++)
+            if (keys[i] != EMPTY)
+                result[n++] = values[i];
+        return result;
+    }
+
+    /**
+     * Calculates the home slot of a key.
+     * @param key The key to hash.
+     * @return Index of the home slot.
+     */
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * Resizes the table and reinserts all entries.
+     * @param capacity The new capacity, a power of two.
+     */
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++)
+            if (oldKeys[j] != EMPTY) {
+                int i = slot(oldKeys[j]);
+                while (keys[i] != EMPTY)
+                    i = (i + 1) & mask;
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+    }
+}
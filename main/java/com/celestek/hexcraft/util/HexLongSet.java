@@ -0,0 +1,195 @@
+package com.celestek.hexcraft.util;
+
+import java.util.Arrays;
+
+/**
+ * @author Thorinair   <celestek@openmailbox.org>
+ */
+
+/**
+ * A set of primitive longs using open addressing with linear probing.
+ * Used for storing packed block coordinates without boxing.
+ */
+public class HexLongSet {
+
+    // Slot value used for marking empty slots. Zero itself is tracked separately.
+    private static final long EMPTY = 0;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    // Prepare the table variables.
+    private long[] keys;
+    private int mask;
+    private int size;
+    private boolean hasZero;
+
+    /**
+     * Constructor.
+     */
+    public HexLongSet() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     * @param expected Expected number of elements.
+     */
+    public HexLongSet(int expected) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * 3 < expected * 4)
+            capacity = capacity << 1;
+        this.keys = new long[capacity];
+        this.mask = capacity - 1;
+        this.size = 0;
+        this.hasZero = false;
+    }
+
+    /**
+     * Adds a value to the set.
+     * @param value The value to add.
+     * @return Whether the value was not already in the set.
+     */
+    public boolean add(long value) {
+        if (value == EMPTY) {
+            if (hasZero)
+                return false;
+            hasZero = true;
+            size++;
+            return true;
+        }
+
+        int i = slot(value);
+        while (keys[i] != EMPTY) {
+            if (keys[i] == value)
+                return false;
+            i = (i + 1) & mask;
+        }
+        keys[i] = value;
+        size++;
+
+        // Grow the table once it is three quarters full.
+        if (size * 4 > keys.length * 3)
+            rehash(keys.length << 1);
+        return true;
+    }
+
+    /**
+     * Checks if the set contains a value.
+     * @param value The value to look for.
+     * @return Whether the value is in the set.
+     */
+    public boolean contains(long value) {
+        if (value == EMPTY)
+            return hasZero;
+
+        int i = slot(value);
+        while (keys[i] != EMPTY) {
+            if (keys[i] == value)
+                return true;
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Removes a value from the set.
+     * @param value The value to remove.
+     * @return Whether the value was in the set.
+     */
+    public boolean remove(long value) {
+        if (value == EMPTY) {
+            if (!hasZero)
+                return false;
+            hasZero = false;
+            size--;
+            return true;
+        }
+
+        int i = slot(value);
+        while (keys[i] != EMPTY) {
+            if (keys[i] == value) {
+                // Shift the following entries back so that no tombstones are needed.
+                int last = i;
+                i = (i + 1) & mask;
+                while (keys[i] != EMPTY) {
+                    int home = slot(keys[i]);
+                    if (((i - home) & mask) >= ((i - last) & mask)) {
+                        keys[last] = keys[i];
+                        last = i;
+                    }
+                    i = (i + 1) & mask;
+                }
+                keys[last] = EMPTY;
+                size--;
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Removes all values from the set, keeping the allocated table.
+     */
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        hasZero = false;
+    }
+
+    /**
+     * @return The number of values in the set.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Whether the set is empty.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Copies all values of the set into a new array.
+     * @return The array of values, in no particular order.
+     */
+    public long[] toArray() {
+        long[] values = new long[size];
+        int n = 0;
+        if (hasZero)
+            values[n++] = EMPTY;
+        for (long key : keys)
+            if (key != EMPTY)
+                values[n++] = key;
+        return values;
+    }
+
+    /**
+     * Calculates the home slot of a value.
+     * @param value The value to hash.
+     * @return Index of the home slot.
+     */
+    private int slot(long value) {
+        long hash = value * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * Resizes the table and reinserts all values.
+     * @param capacity The new capacity, a power of two.
+     */
+    private void rehash(int capacity) {
+        long[] old = keys;
+        keys = new long[capacity];
+        mask = capacity - 1;
+        for (long key : old)
+            if (key != EMPTY) {
+                int i = slot(key);
+                while (keys[i] != EMPTY)
+                    i = (i + 1) & mask;
+                keys[i] = key;
+            }
+    }
+}
@@ -0,0 +1,178 @@
+package com.celestek.hexcraft.util;
+
+import java.util.ArrayList;
+
+/**
+ * @author Thorinair   <celestek@openmailbox.org>
+ */
+
+/**
+ * A single energy network, owned by the network graph of its dimension. Machines only keep the ID of their network
+ * and read its members from here, so the members are stored once per network instead of once per machine.
+ */
+public class HexNetwork {
+
+    /**** Variables ****/
+
+    public final int id;
+    public int size;
+
+    // Incremented every time the members change.
+    public int generation;
+
+    // Prepare the packed coordinates of all cables, cores, pylon bases and pylons. Kept up to date by the graph.
+    public final HexLongSet nodes;
+
+    // Prepare the packed coordinates of all members.
+    public final HexLongSet sources;
+    public final HexLongSet drains;
+    public final HexLongSet ports;
+    public final HexLongSet teleports;
+
+    // Prepare the packed coordinates of the loaded sources which can currently be drained. Kept up to date by the
+    // sources themselves, so drains can check for energy without asking every source.
+    private final HexLongSet usable;
+    private int usableGeneration;
+
+    // Positions in unloaded chunks where the analysis of the network had to stop.
+    public final HexLongSet frontier;
+
+    // Policy used to share the energy between the drains, and the drain to start from for round-robin.
+    public int policy;
+    public int roundRobin;
+
+    // Set while an analysis of the network is suspended because it ran out of budget. Machines keep using the
+    // members found by the previous analysis until it finishes.
+    public boolean pending;
+
+    // Prepare the device lists shared by all machines, built from the members when first needed.
+    private ArrayList<HexDevice> sourceDevices;
+    private ArrayList<HexDevice> drainDevices;
+    private ArrayList<HexDevice> portDevices;
+    private ArrayList<HexDevice> teleportDevices;
+    private int devicesGeneration;
+
+    /**
+     * Constructor.
+     * @param id ID of the network.
+     */
+    public HexNetwork(int id) {
+        this.id = id;
+        this.size = 0;
+        this.generation = 0;
+        this.nodes = new HexLongSet();
+        this.sources = new HexLongSet();
+        this.drains = new HexLongSet();
+        this.ports = new HexLongSet();
+        this.teleports = new HexLongSet();
+        this.usable = new HexLongSet();
+        this.usableGeneration = 0;
+        this.frontier = new HexLongSet();
+        this.pending = false;
+        this.policy = HexEnergySolver.POLICY_PRIORITY;
+        this.roundRobin = 0;
+        this.devicesGeneration = -1;
+    }
+
+    /**
+     * Marks the members as changed, so that the device lists are rebuilt.
+     */
+    public void touch() {
+        generation++;
+    }
+
+    /**
+     * Sets whether a source can currently be drained.
+     * @param position Packed coordinates of the source.
+     * @param canDrain Whether the source can be drained.
+     * @return Whether the network gained its first usable source or lost its last one, and the drains should recheck.
+     */
+    public boolean setUsable(long position, boolean canDrain) {
+        boolean had = getUsableSources() > 0;
+        if (canDrain && sources.contains(position))
+            usable.add(position);
+        else
+            usable.remove(position);
+        return had != usable.size() > 0;
+    }
+
+    /**
+     * @return The number of sources which can currently be drained.
+     */
+    public int getUsableSources() {
+        // Drop the sources which left the network since the last check.
+        if (usableGeneration != generation) {
+            for (long position : usable.toArray())
+                if (!sources.contains(position))
+                    usable.remove(position);
+            usableGeneration = generation;
+        }
+        return usable.size();
+    }
+
+    /**
+     * Adds the usable sources of a network which is being merged into this one.
+     * @param network The network being merged.
+     */
+    public void addUsable(HexNetwork network) {
+        for (long position : network.usable.toArray())
+            usable.add(position);
+    }
+
+    /**
+     * @return The sources of the network.
+     */
+    public ArrayList<HexDevice> getSources() {
+        refresh();
+        return sourceDevices;
+    }
+
+    /**
+     * @return The drains of the network.
+     */
+    public ArrayList<HexDevice> getDrains() {
+        refresh();
+        return drainDevices;
+    }
+
+    /**
+     * @return The ports of the network.
+     */
+    public ArrayList<HexDevice> getPorts() {
+        refresh();
+        return portDevices;
+    }
+
+    /**
+     * @return The teleports of the network.
+     */
+    public ArrayList<HexDevice> getTeleports() {
+        refresh();
+        return teleportDevices;
+    }
+
+    /**
+     * Rebuilds the device lists if the members changed since they were last built.
+     */
+    private void refresh() {
+        if (devicesGeneration == generation)
+            return;
+        sourceDevices = toDevices(sources);
+        drainDevices = toDevices(drains);
+        portDevices = toDevices(ports);
+        teleportDevices = toDevices(teleports);
+        devicesGeneration = generation;
+    }
+
+    /**
+     * Converts packed coordinates to devices. Blocks are not stored, the same as for devices read from NBT.
+     * @param positions The packed coordinates.
+     * @return The list of devices.
+     */
+    private static ArrayList<HexDevice> toDevices(HexLongSet positions) {
+        ArrayList<HexDevice> devices = new ArrayList<HexDevice>(positions.size());
+        for (long position : positions.toArray())
+            devices.add(new HexDevice(HexUtils.unpackX(position), HexUtils.unpackY(position), HexUtils.unpackZ(position), null));
+        return devices;
+    }
+}
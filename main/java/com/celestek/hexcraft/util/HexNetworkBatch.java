@@ -0,0 +1,264 @@
+package com.celestek.hexcraft.util;
+
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+
+/**
+ * @author Thorinair   <celestek@openmailbox.org>
+ */
+
+/**
+ * Analysis of multiple seeds at once, which can be spread over several ticks. Seeds share one set of visited
+ * positions, so a seed which was already reached by an earlier seed is skipped, and every distinct network is walked
+ * and pushed only once. An analysis which runs out of budget is suspended and continued where it stopped.
+ */
+public class HexNetworkBatch {
+
+    /**** Variables ****/
+
+    // Prepare the cache to store finished analyses in.
+    private final HexNetworkCache cache;
+
+    // Prepare the seeds, by analysis type, and the position of the next one.
+    private final long[][] seeds;
+    private int type;
+    private int index;
+
+    // Prepare the sets of everything reached so far.
+    private final HexLongSet visitedNodes;
+    private final HexLongSet visitedMachines;
+    private final HexLongSet visitedTeleports;
+
+    // Prepare the analysis which is currently running.
+    private NetworkAnalyzer active;
+    private int activeType;
+    private long activePosition;
+    private HexNetwork activeNetwork;
+    private int activeTicks;
+    private long activeEpoch;
+
+    // Prepare the list of finished analyses, if they are kept.
+    private ArrayList<NetworkAnalyzer> results;
+
+    // Number of networks analyzed and ticks spent.
+    private int analyzed;
+    private int ticks;
+
+    /**
+     * Constructor.
+     * @param cache Cache to store finished analyses in, or null.
+     * @param cables Packed coordinates of cables, cores and pylon bases to start from.
+     * @param pylons Packed coordinates of pylons to start from.
+     * @param machines Packed coordinates of machines to start from.
+     * @param teleports Packed coordinates of teleports to start from.
+     */
+    public HexNetworkBatch(HexNetworkCache cache, long[] cables, long[] pylons, long[] machines, long[] teleports) {
+        this.cache = cache;
+        this.seeds = new long[][] {cables, pylons, machines, teleports};
+        this.type = 0;
+        this.index = 0;
+
+        this.visitedNodes = new HexLongSet();
+        this.visitedMachines = new HexLongSet();
+        this.visitedTeleports = new HexLongSet();
+
+        this.active = null;
+        this.results = null;
+        this.analyzed = 0;
+        this.ticks = 0;
+    }
+
+    /**
+     * Keeps every finished analysis, so they can be read once the batch is done.
+     */
+    public void keepResults() {
+        results = new ArrayList<NetworkAnalyzer>();
+    }
+
+    /**
+     * Continues analyzing the seeds until all of them are done or the budget runs out.
+     * @param world The world that the seeds are in.
+     * @param budget The budget of the current tick.
+     * @return Whether all seeds were analyzed.
+     */
+    public boolean run(World world, HexNetworkBudget budget) {
+        ticks++;
+        while (active != null || next(world)) {
+            if (!active.traverse(world, budget)) {
+                suspend(world);
+                return false;
+            }
+            complete(world);
+        }
+        return true;
+    }
+
+    /**
+     * Discards the progress of the running analysis, so that it starts over on the next run. Used when the network
+     * changes while the analysis is suspended.
+     */
+    public void restart() {
+        if (active == null)
+            return;
+        if (activeNetwork != null)
+            activeNetwork.pending = false;
+        active = null;
+        activeNetwork = null;
+
+        // Take the same seed again.
+        index--;
+    }
+
+    /**
+     * Checks if a changed block affects the running analysis.
+     * @param graph The network graph of the world.
+     * @param position Packed coordinates of the changed block.
+     * @return Whether the block is part of or next to anything the analysis reached, or belongs to its network.
+     */
+    public boolean touchesActive(HexNetworkGraph graph, long position) {
+        if (active == null)
+            return false;
+        if (active.isNear(position))
+            return true;
+
+        // The network might have been merged into another one, in which case it is no longer in the graph.
+        if (activeNetwork != null)
+            return graph.getNetworkById(activeNetwork.id) != activeNetwork || graph.getNetwork(position) == activeNetwork;
+        return false;
+    }
+
+    /**
+     * Checks if the running analysis has reached a block.
+     * @param position Packed coordinates of the block.
+     * @return Whether the block is part of the network being analyzed.
+     */
+    public boolean isAnalyzing(long position) {
+        return active != null && active.isNear(position);
+    }
+
+    /**
+     * Checks if a changed block was reached by an analysis which has already finished.
+     * @param position Packed coordinates of the changed block.
+     * @return Whether the block was reached.
+     */
+    public boolean touchesVisited(long position) {
+        return visitedNodes.contains(position) || visitedMachines.contains(position) || visitedTeleports.contains(position);
+    }
+
+    /**
+     * Starts the analysis of the next seed which was not reached yet.
+     * @param world The world that the seeds are in.
+     * @return Whether there was a seed left.
+     */
+    private boolean next(World world) {
+        for (; type < seeds.length; type++, index = 0)
+            while (index < seeds[type].length) {
+                long position = seeds[type][index++];
+
+                // Skip seeds which were already reached.
+                if (NetworkAnalyzer.isVisited(type, position, visitedNodes, visitedMachines, visitedTeleports))
+                    continue;
+
+                // Skip seeds which are not loaded.
+                int x = HexUtils.unpackX(position);
+                int y = HexUtils.unpackY(position);
+                int z = HexUtils.unpackZ(position);
+                if (!HexUtils.checkChunk(world, x, z))
+                    continue;
+
+                if (!NetworkAnalyzer.isSeed(world, type, x, y, z))
+                    continue;
+
+                active = new NetworkAnalyzer();
+                active.begin(active.getAccess(world), type, x, y, z);
+                activeType = type;
+                activePosition = position;
+                activeTicks = 0;
+                activeEpoch = cache != null ? cache.getEpoch() : 0;
+                return true;
+            }
+        return false;
+    }
+
+    /**
+     * Suspends the running analysis until the next run. The first time, the network is marked as pending and the
+     * suspension is logged. If the seed itself isn't part of a known network yet, the first known network the
+     * analysis has reached is marked instead.
+     * @param world The world that the seed is in.
+     */
+    private void suspend(World world) {
+        activeTicks++;
+        if (activeTicks > 1)
+            return;
+
+        int x = HexUtils.unpackX(activePosition);
+        int y = HexUtils.unpackY(activePosition);
+        int z = HexUtils.unpackZ(activePosition);
+        HexNetworkGraph graph = HexNetworkGraph.get(world);
+        activeNetwork = HexNetworkQueue.findNetwork(graph, activeType, x, y, z);
+        if (activeNetwork == null)
+            activeNetwork = active.findNetwork(graph);
+        if (activeNetwork != null)
+            activeNetwork.pending = true;
+
+        System.out.println("[Network Queue] Analysis from (" + x + ", " + y + ", " + z + ") in dimension " + world.provider.dimensionId
+                + " exceeded its budget after " + active.getNodeCount() + " nodes. Continuing over the next ticks.");
+    }
+
+    /**
+     * Finishes the running analysis and pushes its results.
+     * @param world The world that the seed is in.
+     */
+    private void complete(World world) {
+        int x = HexUtils.unpackX(activePosition);
+        int y = HexUtils.unpackY(activePosition);
+        int z = HexUtils.unpackZ(activePosition);
+        active.finish(world, activeType, x, y, z);
+        active.addVisited(visitedNodes, visitedMachines, visitedTeleports);
+        if (cache != null)
+            cache.store(active, activeType, activePosition, activeEpoch);
+        if (results != null)
+            results.add(active);
+        analyzed++;
+
+        if (activeTicks > 0)
+            System.out.println("[Network Queue] Analysis from (" + x + ", " + y + ", " + z + ") in dimension " + world.provider.dimensionId
+                    + " finished after " + (activeTicks + 1) + " ticks with " + active.getNodeCount() + " nodes.");
+        if (activeNetwork != null)
+            activeNetwork.pending = false;
+        active = null;
+        activeNetwork = null;
+    }
+
+    /**
+     * @return The finished analyses, one per distinct network, or null if they are not kept.
+     */
+    public ArrayList<NetworkAnalyzer> getResults() {
+        return results;
+    }
+
+    /**
+     * @return The number of seeds in the batch.
+     */
+    public int getSeedCount() {
+        int count = 0;
+        for (long[] positions : seeds)
+            count = count + positions.length;
+        return count;
+    }
+
+    /**
+     * @return The number of networks analyzed so far.
+     */
+    public int getAnalyzed() {
+        return analyzed;
+    }
+
+    /**
+     * @return The number of ticks the batch has run for.
+     */
+    public int getTicks() {
+        return ticks;
+    }
+}
@@ -0,0 +1,51 @@
+package com.celestek.hexcraft.util;
+
+/**
+ * @author Thorinair   <celestek@openmailbox.org>
+ */
+
+/**
+ * Limits how much network analysis can be done in a single tick. Both the number of moves and the time spent are
+ * limited, whichever runs out first.
+ */
+public class HexNetworkBudget {
+
+    // Number of moves to do between checks of the time.
+    private static final int TIME_CHECK_INTERVAL = 256;
+
+    // Prepare the remaining moves and the time at which the budget runs out.
+    private int moves;
+    private final long deadline;
+
+    /**
+     * Constructor.
+     * @param moves Maximum number of moves.
+     * @param millis Maximum time in milliseconds.
+     */
+    public HexNetworkBudget(int moves, int millis) {
+        this.moves = moves;
+        this.deadline = System.nanoTime() + millis * 1000000L;
+    }
+
+    /**
+     * Spends a single move.
+     * @return Whether the move can be done.
+     */
+    public boolean spend() {
+        if (moves <= 0)
+            return false;
+        moves--;
+
+        // Reading the time is slower than a move, so only do it every few moves.
+        if (moves % TIME_CHECK_INTERVAL == 0 && System.nanoTime() > deadline)
+            moves = 0;
+        return true;
+    }
+
+    /**
+     * @return Whether the budget has run out.
+     */
+    public boolean isSpent() {
+        return moves <= 0;
+    }
+}
@@ -0,0 +1,247 @@
+package com.celestek.hexcraft.util;
+
+import com.celestek.hexcraft.block.BlockEnergyPylon;
+import com.celestek.hexcraft.init.HexBlocks;
+import com.celestek.hexcraft.init.HexConfig;
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @author Thorinair   <celestek@openmailbox.org>
+ */
+
+/**
+ * Cache of finished network analyses of a single dimension. Every result is stored by a fingerprint of its members and
+ * the states of all pylons the analysis has read, so when a pylon is toggled back to a state seen before, the result
+ * can be looked up by the current states and pushed again without walking the network. Any change to the network
+ * other than toggling a pylon, and any chunk unloading, clears the cache.
+ */
+public class HexNetworkCache {
+
+    /**** Variables ****/
+
+    // Prepare the stored results, by fingerprint. The least recently used one is first.
+    private final LinkedHashMap<Long, Entry> entries;
+
+    // Prepare the components of the stored results, by packed coordinates of every pylon they have read.
+    private final HashMap<Long, ArrayList<Component>> components;
+
+    // Incremented every time the cache is cleared. Analyses started before that are not stored.
+    private long epoch;
+
+    /**
+     * Constructor.
+     */
+    public HexNetworkCache() {
+        this.entries = new LinkedHashMap<Long, Entry>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > HexConfig.cfgGeneralNetworkCacheSize;
+            }
+        };
+        this.components = new HashMap<Long, ArrayList<Component>>();
+        this.epoch = 0;
+    }
+
+    /**
+     * Clears all stored results. Called whenever the network changes in any way other than toggling a pylon.
+     */
+    public void invalidate() {
+        entries.clear();
+        components.clear();
+        epoch++;
+    }
+
+    /**
+     * @return The current epoch, to be passed to store once the analysis finishes.
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Stores the result of a finished analysis.
+     * @param analyzer The finished analysis.
+     * @param type Type of the seed the analysis started from.
+     * @param seed Packed coordinates of the seed.
+     * @param epoch Epoch at the start of the analysis.
+     */
+    public void store(NetworkAnalyzer analyzer, int type, long seed, long epoch) {
+        if (HexConfig.cfgGeneralNetworkCacheSize <= 0 || epoch != this.epoch || analyzer.hasFrontier())
+            return;
+
+        long[] on = analyzer.getPylonsOn();
+        long[] off = analyzer.getPylonsOff();
+        // Results which don't depend on any pylon can't come back by toggling one.
+        if (on.length == 0 && off.length == 0)
+            return;
+        Arrays.sort(on);
+        Arrays.sort(off);
+
+        long[] nodes = analyzer.getNodes();
+        Arrays.sort(nodes);
+        long members = fingerprint(1, nodes);
+
+        long fingerprint = fingerprint(fingerprint(members, on), off);
+        entries.put(fingerprint, new Entry(analyzer, type, seed, on, off));
+
+        // Index the component by all of its pylons, so that toggling any of them finds it.
+        long[] read = Arrays.copyOf(on, on.length + off.length);
+        System.arraycopy(off, 0, read, on.length, off.length);
+        Arrays.sort(read);
+        Component component = new Component(members, read);
+        for (long position : read) {
+            ArrayList<Component> list = components.get(position);
+            if (list == null) {
+                list = new ArrayList<Component>();
+                components.put(position, list);
+            }
+            if (!list.contains(component))
+                list.add(component);
+        }
+    }
+
+    /**
+     * Pushes a stored result again if it contains the given pylon and all pylons it has read are still in the same
+     * state. The fingerprint is computed from the current states of the pylons of every component the pylon is part
+     * of, and the result is looked up by it.
+     * @param world The world that the pylon is in.
+     * @param position Packed coordinates of the pylon.
+     * @param nodes Set to add the reached cables, cores, pylon bases and pylons to.
+     * @param machines Set to add the reached sources and drains to.
+     * @param teleports Set to add the reached teleports to.
+     * @return Whether a stored result was used.
+     */
+    public boolean reuse(World world, long position, HexLongSet nodes, HexLongSet machines, HexLongSet teleports) {
+        ArrayList<Component> list = components.get(position);
+        if (list == null)
+            return false;
+
+        for (Component component : list) {
+            // Split the pylons of the component by their current state. Unloaded or missing pylons can't match.
+            long[] on = new long[component.pylons.length];
+            long[] off = new long[component.pylons.length];
+            int onCount = 0;
+            int offCount = 0;
+            boolean loaded = true;
+            for (long pylon : component.pylons) {
+                int state = getState(world, pylon);
+                if (state == 1)
+                    on[onCount++] = pylon;
+                else if (state == 0)
+                    off[offCount++] = pylon;
+                else {
+                    loaded = false;
+                    break;
+                }
+            }
+            if (!loaded)
+                continue;
+            on = Arrays.copyOf(on, onCount);
+            off = Arrays.copyOf(off, offCount);
+
+            Entry entry = entries.get(fingerprint(fingerprint(component.members, on), off));
+            if (entry == null || !Arrays.equals(entry.on, on) || !Arrays.equals(entry.off, off))
+                continue;
+
+            entry.analyzer.finish(world, entry.type,
+                    HexUtils.unpackX(entry.seed), HexUtils.unpackY(entry.seed), HexUtils.unpackZ(entry.seed));
+            entry.analyzer.addVisited(nodes, machines, teleports);
+
+            if (HexConfig.cfgGeneralNetworkDebug)
+                System.out.println("[Network Cache] Reused analysis result for pylon at ("
+                        + HexUtils.unpackX(position) + ", " + HexUtils.unpackY(position) + ", " + HexUtils.unpackZ(position) + ").");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return 1 if the pylon is ON, 0 if it is OFF, or -1 if it is not loaded or not a pylon anymore.
+     */
+    private static int getState(World world, long position) {
+        int x = HexUtils.unpackX(position);
+        int y = HexUtils.unpackY(position);
+        int z = HexUtils.unpackZ(position);
+        if (!HexUtils.checkChunk(world, x, z) || world.getBlock(x, y, z) != HexBlocks.blockEnergyPylon)
+            return -1;
+        return HexUtils.getMetaBit(BlockEnergyPylon.META_STATE, world, x, y, z) ? 0 : 1;
+    }
+
+    /**
+     * Mixes packed coordinates into a fingerprint.
+     * @param hash The fingerprint so far.
+     * @param positions The sorted packed coordinates.
+     * @return The new fingerprint.
+     */
+    private static long fingerprint(long hash, long[] positions) {
+        for (long position : positions)
+            hash = (hash ^ position) * 0x100000001B3L;
+        // Separate the groups, so that moving a position between them changes the result.
+        return (hash ^ positions.length) * 0x100000001B3L;
+    }
+
+    /**
+     * A single stored result.
+     */
+    private static class Entry {
+        private final NetworkAnalyzer analyzer;
+        private final int type;
+        private final long seed;
+        private final long[] on;
+        private final long[] off;
+
+        /**
+         * Constructor.
+         * @param analyzer The finished analysis.
+         * @param type Type of the seed the analysis started from.
+         * @param seed Packed coordinates of the seed.
+         * @param on Packed coordinates of the pylons which were ON.
+         * @param off Packed coordinates of the pylons which were OFF.
+         */
+        private Entry(NetworkAnalyzer analyzer, int type, long seed, long[] on, long[] off) {
+            this.analyzer = analyzer;
+            this.type = type;
+            this.seed = seed;
+            this.on = on;
+            this.off = off;
+        }
+    }
+
+    /**
+     * The members of a stored result and all pylons its analysis has read. Results of the same members with the pylons
+     * in other states share the component.
+     */
+    private static class Component {
+        private final long members;
+        private final long[] pylons;
+
+        /**
+         * Constructor.
+         * @param members Fingerprint of the members.
+         * @param pylons Sorted packed coordinates of the pylons read.
+         */
+        private Component(long members, long[] pylons) {
+            this.members = members;
+            this.pylons = pylons;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Component))
+                return false;
+            Component component = (Component) object;
+            return members == component.members && Arrays.equals(pylons, component.pylons);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (members ^ (members >>> 32)) * 31 + Arrays.hashCode(pylons);
+        }
+    }
+}
@@ -0,0 +1,708 @@
+package com.celestek.hexcraft.util;
+
+import com.celestek.hexcraft.init.HexConfig;
+import net.minecraft.block.Block;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.world.ChunkCoordIntPair;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldSavedData;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * @author Thorinair   <celestek@openmailbox.org>
+ */
+
+/**
+ * Persistent graph of all energy networks in a dimension. Every cable, core, pylon base and pylon is stored as a node
+ * which belongs to a network. Networks are merged union-find style, so attaching new nodes never requires a full walk.
+ */
+public class HexNetworkGraph extends WorldSavedData {
+
+    /**** Static Values ****/
+
+    public static final String ID = "hexcraft_networks";
+
+    public static final int NO_NETWORK = -1;
+
+    // NBT Names
+    private static final String NBT_NODES = "nodes";
+    private static final String NBT_NODE_NETWORKS = "node_networks";
+    private static final String NBT_NETWORKS = "networks";
+    private static final String NBT_NETWORK_ID = "id";
+    private static final String NBT_GENERATION = "generation";
+    private static final String NBT_POLICY = "policy";
+    private static final String NBT_SOURCES = "sources";
+    private static final String NBT_DRAINS = "drains";
+    private static final String NBT_PORTS = "ports";
+    private static final String NBT_TELEPORTS = "teleports";
+    private static final String NBT_FRONTIER = "frontier";
+    private static final String NBT_NEXT_ID = "next_id";
+    private static final String NBT_PARENTS = "parents";
+    private static final String NBT_HOLDERS = "holders";
+    private static final String NBT_REUSABLE_FROM = "reusable_from";
+
+    /**** Variables ****/
+
+    // Prepare the map of nodes to their network IDs.
+    private HexLongIntMap nodes;
+
+    // Prepare the union-find parents of network IDs.
+    private int[] parents;
+    private int nextId;
+
+    // Prepare the number of machines holding every ID, and the IDs which can be reused. IDs below the first reusable
+    // one come from saves without holder counts, so they are never reused.
+    private int[] holders;
+    private int[] free;
+    private int freeCount;
+    private int reusableFrom;
+
+    // Prepare the map of root IDs to networks.
+    private HashMap<Integer, HexNetwork> networks;
+
+    // Prepare the nodes and machines removed during the current tick, with the IDs of their blocks.
+    private HexLongIntMap removed;
+    private long removedTime;
+
+    // Frontier positions of all networks, by the chunk they are in. Rebuilt from the networks when loading.
+    private HashMap<Long, HexLongSet> frontiers;
+
+    /**
+     * Constructor.
+     * @param name Name of the saved data.
+     */
+    public HexNetworkGraph(String name) {
+        super(name);
+        this.nodes = new HexLongIntMap(NO_NETWORK);
+        this.parents = new int[16];
+        this.nextId = 0;
+        this.holders = new int[16];
+        this.free = new int[16];
+        this.freeCount = 0;
+        this.reusableFrom = 0;
+        this.networks = new HashMap<Integer, HexNetwork>();
+        this.removed = new HexLongIntMap(-1);
+        this.removedTime = -1;
+        this.frontiers = new HashMap<Long, HexLongSet>();
+    }
+
+    /**
+     * Gets the network graph of a world, creating it if it doesn't exist yet.
+     * @param world The world to get the graph for.
+     * @return The network graph.
+     */
+    public static HexNetworkGraph get(World world) {
+        HexNetworkGraph graph = (HexNetworkGraph) world.perWorldStorage.loadData(HexNetworkGraph.class, ID);
+        if (graph == null) {
+            graph = new HexNetworkGraph(ID);
+            world.perWorldStorage.setData(ID, graph);
+        }
+        return graph;
+    }
+
+    /**
+     * Writes the graph to NBT.
+     */
+    @Override
+    public void writeToNBT(NBTTagCompound tagCompound) {
+        compact();
+
+        // Write the nodes, resolving their network IDs.
+        int[] ids = nodes.toValueArray();
+        for (int i = 0; i < ids.length; i++)
+            ids[i] = find(ids[i]);
+        HexUtils.writePackedArrayToNBT(tagCompound, NBT_NODES, nodes.toKeyArray());
+        tagCompound.setIntArray(NBT_NODE_NETWORKS, ids);
+
+        // Write the networks.
+        NBTTagList tagList = new NBTTagList();
+        for (HexNetwork network : networks.values()) {
+            NBTTagCompound tagNetwork = new NBTTagCompound();
+            tagNetwork.setInteger(NBT_NETWORK_ID, network.id);
+            tagNetwork.setInteger(NBT_GENERATION, network.generation);
+            tagNetwork.setInteger(NBT_POLICY, network.policy);
+            HexUtils.writePackedArrayToNBT(tagNetwork, NBT_SOURCES, network.sources.toArray());
+            HexUtils.writePackedArrayToNBT(tagNetwork, NBT_DRAINS, network.drains.toArray());
+            HexUtils.writePackedArrayToNBT(tagNetwork, NBT_PORTS, network.ports.toArray());
+            HexUtils.writePackedArrayToNBT(tagNetwork, NBT_TELEPORTS, network.teleports.toArray());
+            HexUtils.writePackedArrayToNBT(tagNetwork, NBT_FRONTIER, network.frontier.toArray());
+            tagList.appendTag(tagNetwork);
+        }
+        tagCompound.setTag(NBT_NETWORKS, tagList);
+        tagCompound.setInteger(NBT_NEXT_ID, nextId);
+
+        // Write the roots of all IDs, so that machines holding the ID of a merged network still find it.
+        int[] roots = new int[nextId];
+        for (int i = 0; i < nextId; i++)
+            roots[i] = find(i);
+        tagCompound.setIntArray(NBT_PARENTS, roots);
+        tagCompound.setIntArray(NBT_HOLDERS, Arrays.copyOf(holders, nextId));
+        tagCompound.setInteger(NBT_REUSABLE_FROM, reusableFrom);
+    }
+
+    /**
+     * Reads the graph from NBT.
+     */
+    @Override
+    public void readFromNBT(NBTTagCompound tagCompound) {
+        nextId = tagCompound.getInteger(NBT_NEXT_ID);
+        parents = new int[Math.max(16, nextId)];
+        for (int i = 0; i < parents.length; i++)
+            parents[i] = i;
+        int[] roots = tagCompound.getIntArray(NBT_PARENTS);
+        for (int i = 0; i < roots.length && i < nextId; i++)
+            parents[i] = roots[i];
+
+        // Saves without holder counts don't know which IDs machines still hold, so none of their IDs are reused.
+        holders = new int[parents.length];
+        if (tagCompound.hasKey(NBT_HOLDERS)) {
+            int[] counts = tagCompound.getIntArray(NBT_HOLDERS);
+            System.arraycopy(counts, 0, holders, 0, Math.min(counts.length, nextId));
+            reusableFrom = tagCompound.getInteger(NBT_REUSABLE_FROM);
+        }
+        else
+            reusableFrom = nextId;
+
+        // Read the networks.
+        networks.clear();
+        frontiers.clear();
+        NBTTagList tagList = tagCompound.getTagList(NBT_NETWORKS, 10);
+        for (int i = 0; i < tagList.tagCount(); i++) {
+            NBTTagCompound tagNetwork = tagList.getCompoundTagAt(i);
+            HexNetwork network = new HexNetwork(tagNetwork.getInteger(NBT_NETWORK_ID));
+            network.generation = tagNetwork.getInteger(NBT_GENERATION);
+            network.policy = tagNetwork.getInteger(NBT_POLICY);
+            for (long position : HexUtils.readPackedArrayFromNBT(tagNetwork, NBT_SOURCES))
+                network.sources.add(position);
+            for (long position : HexUtils.readPackedArrayFromNBT(tagNetwork, NBT_DRAINS))
+                network.drains.add(position);
+            for (long position : HexUtils.readPackedArrayFromNBT(tagNetwork, NBT_PORTS))
+                network.ports.add(position);
+            for (long position : HexUtils.readPackedArrayFromNBT(tagNetwork, NBT_TELEPORTS))
+                network.teleports.add(position);
+            networks.put(network.id, network);
+            addFrontier(network, HexUtils.readPackedArrayFromNBT(tagNetwork, NBT_FRONTIER));
+        }
+
+        free = new int[16];
+        freeCount = 0;
+
+        // Read the nodes and recount the network sizes.
+        nodes.clear();
+        long[] positions = HexUtils.readPackedArrayFromNBT(tagCompound, NBT_NODES);
+        int[] ids = tagCompound.getIntArray(NBT_NODE_NETWORKS);
+        for (int i = 0; i < positions.length && i < ids.length; i++) {
+            HexNetwork network = networks.get(ids[i]);
+            if (network != null) {
+                nodes.put(positions[i], network.id);
+                network.nodes.add(positions[i]);
+                network.size++;
+            }
+        }
+        compact();
+    }
+
+    /**
+     * Checks if a position is a node of the graph.
+     * @param position Packed coordinates of the node.
+     * @return Whether the node exists.
+     */
+    public boolean contains(long position) {
+        return nodes.containsKey(position);
+    }
+
+    /**
+     * Gets the network a node belongs to.
+     * @param position Packed coordinates of the node.
+     * @return The network, or null if the node doesn't exist.
+     */
+    public HexNetwork getNetwork(long position) {
+        int id = nodes.get(position);
+        if (id == NO_NETWORK)
+            return null;
+        return networks.get(find(id));
+    }
+
+    /**
+     * Gets a network by its ID. Networks which were merged resolve to the network they were merged into.
+     * @param id ID of the network.
+     * @return The network, or null if it no longer exists.
+     */
+    public HexNetwork getNetworkById(int id) {
+        if (id < 0 || id >= nextId)
+            return null;
+        return networks.get(find(id));
+    }
+
+    /**
+     * Gets a network of a world by its ID.
+     * @param world The world of the network.
+     * @param id ID of the network.
+     * @return The network, or null if it no longer exists.
+     */
+    public static HexNetwork getNetworkById(World world, int id) {
+        if (id == NO_NETWORK)
+            return null;
+        return get(world).getNetworkById(id);
+    }
+
+    /**
+     * Lists all nodes which belong to a network.
+     * @param network The network to list.
+     * @return Packed coordinates of the nodes.
+     */
+    public long[] getNodes(HexNetwork network) {
+        return network.nodes.toArray();
+    }
+
+    /**
+     * Creates a new, empty network.
+     * @return The new network.
+     */
+    public HexNetwork createNetwork() {
+        int id = freeCount > 0 ? free[--freeCount] : nextId++;
+        if (id >= parents.length) {
+            parents = Arrays.copyOf(parents, parents.length << 1);
+            holders = Arrays.copyOf(holders, parents.length);
+        }
+        parents[id] = id;
+
+        HexNetwork network = new HexNetwork(id);
+        networks.put(id, network);
+        markDirty();
+        return network;
+    }
+
+    /**
+     * Merges two networks. The smaller network is attached to the larger one.
+     * @param a First network.
+     * @param b Second network.
+     * @return The merged network.
+     */
+    public HexNetwork union(HexNetwork a, HexNetwork b) {
+        if (a == b)
+            return a;
+
+        HexNetwork big = a.size >= b.size ? a : b;
+        HexNetwork small = big == a ? b : a;
+
+        // Attach the root and move over the machines.
+        parents[small.id] = big.id;
+        big.size = big.size + small.size;
+        for (long position : small.nodes.toArray())
+            big.nodes.add(position);
+        for (long position : small.sources.toArray())
+            big.sources.add(position);
+        for (long position : small.drains.toArray())
+            big.drains.add(position);
+        for (long position : small.ports.toArray())
+            big.ports.add(position);
+        for (long position : small.teleports.toArray())
+            big.teleports.add(position);
+        for (long position : small.frontier.toArray())
+            big.frontier.add(position);
+        big.addUsable(small);
+        big.touch();
+        networks.remove(small.id);
+
+        if (HexConfig.cfgGeneralNetworkDebug)
+            System.out.println("[Network Graph] Merged network " + small.id + " into " + big.id + ". n: " + big.size);
+
+        markDirty();
+        return big;
+    }
+
+    /**
+     * Adds a node to a network, moving it out of any network it previously belonged to.
+     * @param position Packed coordinates of the node.
+     * @param network The network to add it to.
+     */
+    public void addNode(long position, HexNetwork network) {
+        int previous = nodes.put(position, network.id);
+        if (previous != NO_NETWORK) {
+            int root = find(previous);
+            if (root == network.id)
+                return;
+            release(root, position);
+        }
+        network.nodes.add(position);
+        network.size++;
+        markDirty();
+    }
+
+    /**
+     * Removes a node from the graph.
+     * @param position Packed coordinates of the node.
+     * @return The network the node belonged to, or null if the node didn't exist.
+     */
+    public HexNetwork removeNode(long position) {
+        int id = nodes.remove(position);
+        if (id == NO_NETWORK)
+            return null;
+
+        int root = find(id);
+        HexNetwork network = networks.get(root);
+        release(root, position);
+        markDirty();
+        return network;
+    }
+
+    /**
+     * Moves nodes which were found to be disconnected from their network into a new network.
+     * @param network The network the nodes belonged to.
+     * @param positions Packed coordinates of the disconnected nodes.
+     * @return The new network.
+     */
+    public HexNetwork split(HexNetwork network, long[] positions) {
+        HexNetwork split = createNetwork();
+        split.policy = network.policy;
+        for (long position : positions) {
+            int id = nodes.get(position);
+            if (id != NO_NETWORK && find(id) == network.id) {
+                nodes.put(position, split.id);
+                split.nodes.add(position);
+                split.size++;
+                release(network.id, position);
+            }
+        }
+
+        if (HexConfig.cfgGeneralNetworkDebug)
+            System.out.println("[Network Graph] Split network " + split.id + " from " + network.id + ". n: " + split.size);
+
+        markDirty();
+        return split;
+    }
+
+    /**
+     * Marks a node or machine as removed during the current tick, so that its neighbours know the graph has already
+     * handled it.
+     * @param world The world of the node.
+     * @param position Packed coordinates of the node.
+     * @param block The removed block.
+     */
+    public void markRemoved(World world, long position, Block block) {
+        if (world.getTotalWorldTime() != removedTime) {
+            removed.clear();
+            removedTime = world.getTotalWorldTime();
+        }
+        removed.put(position, Block.getIdFromBlock(block));
+    }
+
+    /**
+     * Checks if the neighbour which notified a block of a change was removed and handled by the graph during the
+     * current tick. Only the old block of the neighbour is known, so the neighbour is found as a removed one whose
+     * block it was and which no longer holds it. Changes of any other neighbour still need an analysis.
+     * @param world The world of the block.
+     * @param x X coordinate of the block.
+     * @param y Y coordinate of the block.
+     * @param z Z coordinate of the block.
+     * @param block The old block of the neighbour which changed.
+     * @return Whether the change was handled.
+     */
+    public boolean isNeighbourRemoved(World world, int x, int y, int z, Block block) {
+        if (world.getTotalWorldTime() != removedTime || removed.size() == 0)
+            return false;
+        return isRemoved(world, x, y - 1, z, block)
+                || isRemoved(world, x, y + 1, z, block)
+                || isRemoved(world, x, y, z - 1, block)
+                || isRemoved(world, x, y, z + 1, block)
+                || isRemoved(world, x - 1, y, z, block)
+                || isRemoved(world, x + 1, y, z, block);
+    }
+
+    /**
+     * Checks if a block was removed and handled by the graph during the current tick.
+     * @param world The world of the block.
+     * @param x X coordinate of the block.
+     * @param y Y coordinate of the block.
+     * @param z Z coordinate of the block.
+     * @param block The removed block.
+     * @return Whether the block was handled.
+     */
+    private boolean isRemoved(World world, int x, int y, int z, Block block) {
+        return removed.get(HexUtils.packCoordinates(x, y, z)) == Block.getIdFromBlock(block) && world.getBlock(x, y, z) != block;
+    }
+
+    /**
+     * Records positions in unloaded chunks where the analysis of a network had to stop.
+     * @param network The network which was analyzed.
+     * @param positions Packed coordinates of the frontier positions.
+     */
+    public void addFrontier(HexNetwork network, long[] positions) {
+        for (long position : positions) {
+            network.frontier.add(position);
+            long chunk = ChunkCoordIntPair.chunkXZ2Int(HexUtils.unpackX(position) >> 4, HexUtils.unpackZ(position) >> 4);
+            HexLongSet set = frontiers.get(chunk);
+            if (set == null) {
+                set = new HexLongSet();
+                frontiers.put(chunk, set);
+            }
+            set.add(position);
+        }
+        if (positions.length > 0)
+            markDirty();
+    }
+
+    /**
+     * Removes all frontier positions inside a chunk, so that the analysis can resume from them.
+     * @param chunkX X coordinate of the chunk.
+     * @param chunkZ Z coordinate of the chunk.
+     * @return Packed coordinates of the frontier positions, or null if there are none.
+     */
+    public long[] takeFrontier(int chunkX, int chunkZ) {
+        HexLongSet set = frontiers.remove(ChunkCoordIntPair.chunkXZ2Int(chunkX, chunkZ));
+        if (set == null)
+            return null;
+
+        long[] positions = set.toArray();
+        for (HexNetwork network : networks.values())
+            for (long position : positions)
+                network.frontier.remove(position);
+        markDirty();
+        return positions;
+    }
+
+    /**
+     * Registers the result of a full analysis as a new network. Nodes are moved out of the networks they previously
+     * belonged to, which also lose the machines found by the analysis.
+     * @param conductors Packed coordinates of all cables, cores, pylon bases and pylons found.
+     * @param sources Packed coordinates of the sources found.
+     * @param drains Packed coordinates of the drains found.
+     * @param ports Packed coordinates of the ports found.
+     * @param teleports Packed coordinates of the teleports found.
+     * @param frontier Packed coordinates of the positions in unloaded chunks where the analysis stopped.
+     * @return The new network.
+     */
+    public HexNetwork assign(long[] conductors, long[] sources, long[] drains, long[] ports, long[] teleports, long[] frontier) {
+        HexNetwork network = createNetwork();
+        boolean inherited = false;
+        ArrayList<HexNetwork> handled = new ArrayList<HexNetwork>();
+        for (long position : sources)
+            network.sources.add(position);
+        for (long position : drains)
+            network.drains.add(position);
+        for (long position : ports)
+            network.ports.add(position);
+        for (long position : teleports)
+            network.teleports.add(position);
+
+        for (long position : conductors) {
+            int previous = nodes.put(position, network.id);
+            if (previous != NO_NETWORK) {
+                HexNetwork old = networks.get(find(previous));
+                if (old != null && old != network) {
+                    // Remove the machines which now belong to the new network, once for every old network.
+                    if (!handled.contains(old)) {
+                        // Keep the policy of the first network the nodes belonged to.
+                        if (!inherited) {
+                            network.policy = old.policy;
+                            inherited = true;
+                        }
+
+                        for (long machine : sources)
+                            old.sources.remove(machine);
+                        for (long machine : drains)
+                            old.drains.remove(machine);
+                        for (long machine : ports)
+                            old.ports.remove(machine);
+                        for (long machine : teleports)
+                            old.teleports.remove(machine);
+                        old.touch();
+                        handled.add(old);
+                    }
+                    release(old.id, position);
+                }
+            }
+            network.nodes.add(position);
+            network.size++;
+        }
+        addFrontier(network, frontier);
+
+        if (HexConfig.cfgGeneralNetworkDebug)
+            System.out.println("[Network Graph] Assigned network " + network.id + ". n: " + network.size);
+
+        markDirty();
+        return network;
+    }
+
+    /**
+     * Finds the network which the result of a full analysis can keep, so that its ID doesn't change. This is the case
+     * when every node found either belonged to that network or to none, and the network has no nodes which weren't
+     * found.
+     * @param conductors Packed coordinates of all cables, cores, pylon bases and pylons found.
+     * @return The network to keep, or null if the result needs a new network.
+     */
+    public HexNetwork findKept(long[] conductors) {
+        HexNetwork kept = null;
+        int count = 0;
+        for (long position : conductors) {
+            int id = nodes.get(position);
+            if (id == NO_NETWORK)
+                continue;
+            HexNetwork network = networks.get(find(id));
+            if (network == null || (kept != null && network != kept))
+                return null;
+            kept = network;
+            count++;
+        }
+        return kept != null && kept.size == count ? kept : null;
+    }
+
+    /**
+     * Registers the result of a full analysis in a network found by findKept. Nodes which had no network are added to
+     * it, and its machines are replaced by the ones found.
+     * @param network The network to keep.
+     * @param conductors Packed coordinates of all cables, cores, pylon bases and pylons found.
+     * @param sources Packed coordinates of the sources found.
+     * @param drains Packed coordinates of the drains found.
+     * @param ports Packed coordinates of the ports found.
+     * @param teleports Packed coordinates of the teleports found.
+     * @param frontier Packed coordinates of the positions in unloaded chunks where the analysis stopped.
+     */
+    public void keep(HexNetwork network, long[] conductors, long[] sources, long[] drains, long[] ports, long[] teleports, long[] frontier) {
+        boolean changed = false;
+        for (long position : conductors)
+            if (nodes.get(position) == NO_NETWORK) {
+                nodes.put(position, network.id);
+                network.nodes.add(position);
+                network.size++;
+                changed = true;
+            }
+        changed = replace(network.sources, sources) | changed;
+        changed = replace(network.drains, drains) | changed;
+        changed = replace(network.ports, ports) | changed;
+        changed = replace(network.teleports, teleports) | changed;
+        addFrontier(network, frontier);
+
+        if (changed) {
+            network.touch();
+            markDirty();
+        }
+
+        if (HexConfig.cfgGeneralNetworkDebug)
+            System.out.println("[Network Graph] Kept network " + network.id + ". n: " + network.size + ", changed: " + changed);
+    }
+
+    /**
+     * Replaces the contents of a set.
+     * @param set The set to replace the contents of.
+     * @param values The new contents.
+     * @return Whether the contents changed.
+     */
+    private static boolean replace(HexLongSet set, long[] values) {
+        boolean changed = set.size() != values.length;
+        HexLongSet kept = new HexLongSet();
+        for (long value : values) {
+            kept.add(value);
+            if (set.add(value))
+                changed = true;
+        }
+        if (changed)
+            for (long value : set.toArray())
+                if (!kept.contains(value))
+                    set.remove(value);
+        return changed;
+    }
+
+    /**
+     * Checks if any network has a machine.
+     * @param position Packed coordinates of the machine.
+     * @return Whether the machine belongs to a network.
+     */
+    public boolean hasMachine(long position) {
+        for (HexNetwork network : networks.values())
+            if (network.sources.contains(position) || network.drains.contains(position)
+                    || network.ports.contains(position) || network.teleports.contains(position))
+                return true;
+        return false;
+    }
+
+    /**
+     * Records that a machine changed the network ID it holds, so that IDs are only reused once no machine holds them.
+     * @param world The world of the machine.
+     * @param previous The ID held before.
+     * @param id The ID held now.
+     */
+    public static void hold(World world, int previous, int id) {
+        if (previous == id || world == null || world.isRemote)
+            return;
+
+        HexNetworkGraph graph = get(world);
+        if (previous >= 0 && previous < graph.nextId && graph.holders[previous] > 0)
+            graph.holders[previous]--;
+        if (id >= 0 && id < graph.nextId)
+            graph.holders[id]++;
+        graph.markDirty();
+    }
+
+    /**
+     * Collects the IDs which are no longer used, so that new networks can reuse them. An ID is used while it is the
+     * root of a network, while a machine holds it, or while a held ID resolves through it. Free IDs at the end are
+     * dropped entirely, which keeps the saved parents from growing.
+     */
+    private void compact() {
+        boolean[] used = new boolean[nextId];
+        for (int id : networks.keySet())
+            used[id] = true;
+
+        // Nodes might still hold the ID of a network merged into another one, so move them to the root.
+        long[] positions = nodes.toKeyArray();
+        int[] ids = nodes.toValueArray();
+        for (int i = 0; i < positions.length; i++) {
+            int root = find(ids[i]);
+            if (root != ids[i])
+                nodes.put(positions[i], root);
+        }
+
+        // Point every held ID straight at its root. IDs whose network is gone point at themselves instead, so that
+        // they don't resolve to a later network which reuses the root.
+        for (int id = 0; id < nextId; id++)
+            if (holders[id] > 0 || id < reusableFrom) {
+                int root = find(id);
+                parents[id] = networks.containsKey(root) ? root : id;
+                used[id] = true;
+            }
+
+        while (nextId > 0 && !used[nextId - 1])
+            nextId--;
+        freeCount = 0;
+        for (int id = nextId - 1; id >= 0; id--)
+            if (!used[id]) {
+                if (freeCount >= free.length)
+                    free = Arrays.copyOf(free, free.length << 1);
+                free[freeCount++] = id;
+            }
+    }
+
+    /**
+     * Finds the root ID of a network, compressing the path on the way.
+     * @param id ID of the network.
+     * @return The root ID.
+     */
+    private int find(int id) {
+        while (parents[id] != id) {
+            parents[id] = parents[parents[id]];
+            id = parents[id];
+        }
+        return id;
+    }
+
+    /**
+     * Removes a node from a network, removing the network once it has no nodes left.
+     * @param id Root ID of the network.
+     * @param position Packed coordinates of the node.
+     */
+    private void release(int id, long position) {
+        HexNetwork network = networks.get(id);
+        if (network != null) {
+            network.nodes.remove(position);
+            network.size--;
+            if (network.size <= 0)
+                networks.remove(id);
+        }
+    }
+}
@@ -0,0 +1,561 @@
+package com.celestek.hexcraft.util;
+
+import com.celestek.hexcraft.block.IBlockHexEnergyDrain;
+import com.celestek.hexcraft.block.IBlockHexEnergySource;
+import com.celestek.hexcraft.init.HexBlocks;
+import com.celestek.hexcraft.init.HexConfig;
+import net.minecraft.block.Block;
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * @author Thorinair   <celestek@openmailbox.org>
+ */
+
+/**
+ * Queue of positions which need a network analysis. Positions are collected during a tick and analyzed once at its
+ * end, so that a burst of changes in the same network results in only one analysis.
+ */
+public class HexNetworkQueue {
+
+    /**** Static Values ****/
+
+    // Analysis Types
+    private static final int TYPE_CABLE = 0;
+    private static final int TYPE_PYLON = 1;
+    private static final int TYPE_MACHINES = 2;
+    private static final int TYPE_TELEPORT = 3;
+    private static final int TYPE_COUNT = 4;
+
+    // Queues of all worlds, by dimension ID.
+    private static final HashMap<Integer, HexNetworkQueue> queues = new HashMap<Integer, HexNetworkQueue>();
+
+    /**** Variables ****/
+
+    // Prepare the sets of queued positions, one for every analysis type.
+    private HexLongSet[] queued;
+
+    // Prepare the asynchronous analyses which have not been applied yet. Analyses whose snapshot covers a block which
+    // changed or a chunk which unloaded after it was taken are marked as stale and their results are discarded.
+    private ArrayList<HexNetworkWorker.Job> jobs;
+
+    // Prepare the seeds which have to be analyzed on the world itself.
+    private HexLongSet[] fallback;
+
+    // Prepare the batch which ran out of budget in a previous tick, and the blocks changed while it was suspended.
+    private HexNetworkBatch batch;
+    private HexLongSet changed;
+
+    // Prepare the results of earlier analyses, which can be reused when pylons are toggled.
+    private HexNetworkCache cache;
+
+    /**
+     * Constructor.
+     */
+    private HexNetworkQueue() {
+        queued = createSets();
+        jobs = new ArrayList<HexNetworkWorker.Job>();
+        fallback = createSets();
+        batch = null;
+        changed = new HexLongSet();
+        cache = new HexNetworkCache();
+    }
+
+    /**
+     * Queues an analysis starting from a cable, pylon base or core.
+     * @param world The world that the block is in.
+     * @param x X coordinate of the block.
+     * @param y Y coordinate of the block.
+     * @param z Z coordinate of the block.
+     */
+    public static void queueCable(World world, int x, int y, int z) {
+        queue(world, TYPE_CABLE, x, y, z);
+    }
+
+    /**
+     * Queues an analysis starting from a pylon.
+     * @param world The world that the pylon is in.
+     * @param x X coordinate of the pylon.
+     * @param y Y coordinate of the pylon.
+     * @param z Z coordinate of the pylon.
+     */
+    public static void queuePylon(World world, int x, int y, int z) {
+        queue(world, TYPE_PYLON, x, y, z);
+    }
+
+    /**
+     * Queues an analysis starting from the connected side of a machine.
+     * @param world The world that the machine is in.
+     * @param x X coordinate of the machine.
+     * @param y Y coordinate of the machine.
+     * @param z Z coordinate of the machine.
+     */
+    public static void queueMachines(World world, int x, int y, int z) {
+        queue(world, TYPE_MACHINES, x, y, z);
+    }
+
+    /**
+     * Queues an analysis starting from the bottom of a teleport.
+     * @param world The world that the teleport is in.
+     * @param x X coordinate of the teleport.
+     * @param y Y coordinate of the teleport.
+     * @param z Z coordinate of the teleport.
+     */
+    public static void queueTeleport(World world, int x, int y, int z) {
+        queue(world, TYPE_TELEPORT, x, y, z);
+    }
+
+    /**
+     * Queues an analysis starting from a pylon which was turned ON or OFF. Unlike other changes, this keeps the
+     * results of earlier analyses, so the network can be restored from them if it was already seen in this state.
+     * @param world The world that the pylon is in.
+     * @param x X coordinate of the pylon.
+     * @param y Y coordinate of the pylon.
+     * @param z Z coordinate of the pylon.
+     */
+    public static void queueToggle(World world, int x, int y, int z) {
+        if (!world.isRemote)
+            add(getQueue(world), TYPE_PYLON, x, y, z);
+    }
+
+    /**
+     * Queues analyses starting from all blocks around a block. Used for Energy Node Ports, which are only reached
+     * through their core.
+     * @param world The world that the block is in.
+     * @param x X coordinate of the block.
+     * @param y Y coordinate of the block.
+     * @param z Z coordinate of the block.
+     */
+    public static void queueNeighbours(World world, int x, int y, int z) {
+        queue(world, TYPE_CABLE, x, y - 1, z);
+        queue(world, TYPE_CABLE, x, y + 1, z);
+        queue(world, TYPE_CABLE, x, y, z - 1);
+        queue(world, TYPE_CABLE, x, y, z + 1);
+        queue(world, TYPE_CABLE, x - 1, y, z);
+        queue(world, TYPE_CABLE, x + 1, y, z);
+    }
+
+    /**
+     * Adds a position to the queue of a world.
+     */
+    private static void queue(World world, int type, int x, int y, int z) {
+        if (world.isRemote)
+            return;
+
+        HexNetworkQueue queue = getQueue(world);
+        add(queue, type, x, y, z);
+        queue.cache.invalidate();
+    }
+
+    /**
+     * Adds a position to a queue.
+     */
+    private static void add(HexNetworkQueue queue, int type, int x, int y, int z) {
+        long position = HexUtils.packCoordinates(x, y, z);
+        queue.queued[type].add(position);
+        queue.invalidateJobs(position);
+    }
+
+    /**
+     * Marks the asynchronous analyses whose snapshot covers a changed block as stale.
+     * @param position Packed coordinates of the changed block.
+     */
+    private void invalidateJobs(long position) {
+        for (HexNetworkWorker.Job job : jobs)
+            if (!job.stale && job.snapshot.covers(position))
+                job.stale = true;
+    }
+
+    /**
+     * Queues analyses from all frontier positions inside a newly loaded chunk, so that networks which stopped at the
+     * chunk continue into it.
+     * @param world The world that the chunk is in.
+     * @param chunkX X coordinate of the chunk.
+     * @param chunkZ Z coordinate of the chunk.
+     */
+    public static void resume(World world, int chunkX, int chunkZ) {
+        if (world.isRemote)
+            return;
+
+        long[] positions = HexNetworkGraph.get(world).takeFrontier(chunkX, chunkZ);
+        if (positions == null)
+            return;
+
+        for (long position : positions)
+            queueBlock(world, HexUtils.unpackX(position), HexUtils.unpackY(position), HexUtils.unpackZ(position));
+
+        if (HexConfig.cfgGeneralNetworkDebug)
+            System.out.println("[Network Queue] Resuming analysis from " + positions.length + " frontier position(s) in chunk (" + chunkX + ", " + chunkZ + ").");
+    }
+
+    /**
+     * Queues the same kind of analysis the block at a position would start itself.
+     * @param world The world that the block is in.
+     * @param x X coordinate of the block.
+     * @param y Y coordinate of the block.
+     * @param z Z coordinate of the block.
+     */
+    private static void queueBlock(World world, int x, int y, int z) {
+        Block block = world.getBlock(x, y, z);
+        if (block == HexBlocks.blockEnergyPylon)
+            queue(world, TYPE_PYLON, x, y, z);
+        else if (block instanceof IBlockHexEnergySource || block instanceof IBlockHexEnergyDrain) {
+            queue(world, TYPE_MACHINES, x, y, z);
+            if (block == HexBlocks.blockPersonalTeleportationPad)
+                queue(world, TYPE_TELEPORT, x, y, z);
+        }
+        else
+            queue(world, TYPE_CABLE, x, y, z);
+    }
+
+    /**
+     * Records that a block of the networks of a world has changed, invalidating the asynchronous analyses covering it.
+     * @param world The world which has changed.
+     * @param x X coordinate of the changed block.
+     * @param y Y coordinate of the changed block.
+     * @param z Z coordinate of the changed block.
+     */
+    public static void markChanged(World world, int x, int y, int z) {
+        if (!world.isRemote) {
+            HexNetworkQueue queue = getQueue(world);
+            long position = HexUtils.packCoordinates(x, y, z);
+            queue.invalidateJobs(position);
+            queue.cache.invalidate();
+
+            // Remember the block for the suspended batch, which checks it before continuing.
+            if (queue.batch != null)
+                queue.changed.add(position);
+        }
+    }
+
+    /**
+     * Marks the asynchronous analyses which copied blocks from an unloading chunk as stale, as their results would
+     * have to be pushed to machines which are no longer loaded. Cached results might name such machines too, so the
+     * cache is cleared.
+     * @param world The world that the chunk is in.
+     * @param chunkX X coordinate of the chunk.
+     * @param chunkZ Z coordinate of the chunk.
+     */
+    public static void unloadChunk(World world, int chunkX, int chunkZ) {
+        if (world.isRemote)
+            return;
+
+        HexNetworkQueue queue = queues.get(world.provider.dimensionId);
+        if (queue == null)
+            return;
+
+        for (HexNetworkWorker.Job job : queue.jobs)
+            if (!job.stale && job.snapshot.coversChunk(chunkX, chunkZ))
+                job.stale = true;
+        queue.cache.invalidate();
+    }
+
+    /**
+     * Checks if the network of a block is being analyzed over several ticks. Until the analysis finishes, its machines
+     * keep using the members found by the previous one.
+     * @param world The world that the block is in.
+     * @param x X coordinate of the block.
+     * @param y Y coordinate of the block.
+     * @param z Z coordinate of the block.
+     * @return Whether the analysis is pending.
+     */
+    public static boolean isPending(World world, int x, int y, int z) {
+        long position = HexUtils.packCoordinates(x, y, z);
+        HexNetwork network = HexNetworkGraph.get(world).getNetwork(position);
+        if (network != null && network.pending)
+            return true;
+
+        // The block might not belong to a known network yet.
+        HexNetworkQueue queue = queues.get(world.provider.dimensionId);
+        return queue != null && queue.batch != null && queue.batch.isAnalyzing(position);
+    }
+
+    /**
+     * Gets the queue of a world, creating it if needed.
+     */
+    private static HexNetworkQueue getQueue(World world) {
+        HexNetworkQueue queue = queues.get(world.provider.dimensionId);
+        if (queue == null) {
+            queue = new HexNetworkQueue();
+            queues.put(world.provider.dimensionId, queue);
+        }
+        return queue;
+    }
+
+    /**
+     * Analyzes all queued positions of a world. Called once at the end of every world tick. The analysis is limited by
+     * a budget per tick, and a batch which exceeds it continues in the next ticks before any new seeds are taken.
+     * @param world The world to process.
+     */
+    public static void process(World world) {
+        HexNetworkQueue queue = queues.get(world.provider.dimensionId);
+        if (queue == null)
+            return;
+
+        // Apply the asynchronous analyses which have finished.
+        if (!queue.jobs.isEmpty())
+            queue.commit(world, queue.fallback);
+
+        // Continue the batch left over from previous ticks. Seeds queued meanwhile wait for it to finish.
+        HexNetworkBudget budget = new HexNetworkBudget(HexConfig.cfgGeneralNetworkAnalysisMoves, HexConfig.cfgGeneralNetworkAnalysisTime);
+        if (queue.batch != null && !queue.run(world, budget))
+            return;
+
+        if (isEmpty(queue.queued) && isEmpty(queue.fallback))
+            return;
+
+        // Take the current batch. Anything queued while processing it will be handled in the next tick.
+        HexLongSet[] batch = queue.queued;
+        queue.queued = createSets();
+
+        // Restore networks from earlier results where possible, so that they don't need to be walked at all.
+        queue.reuse(world, batch);
+
+        // Send the seeds of known networks to the worker, and analyze the rest right away.
+        if (HexConfig.cfgGeneralAsyncNetworkAnalysis)
+            batch = queue.submit(world, batch);
+        for (int type = 0; type < TYPE_COUNT; type++)
+            for (long position : queue.fallback[type].toArray())
+                batch[type].add(position);
+        queue.fallback = createSets();
+
+        // Analyze all seeds together, so that every network is analyzed only once.
+        queue.batch = new HexNetworkBatch(queue.cache,
+                batch[TYPE_CABLE].toArray(), batch[TYPE_PYLON].toArray(), batch[TYPE_MACHINES].toArray(), batch[TYPE_TELEPORT].toArray());
+        queue.run(world, budget);
+    }
+
+    /**
+     * Runs the current batch within the budget.
+     * @param world The world of the batch.
+     * @param budget The budget of the current tick.
+     * @return Whether the batch has finished.
+     */
+    private boolean run(World world, HexNetworkBudget budget) {
+        // A suspended analysis which walked over or next to a block which has changed since has to start over.
+        // Blocks changed elsewhere don't affect it, so it keeps going. Those the batch had already reached are
+        // queued again, as the results pushed for them might be out of date.
+        if (!changed.isEmpty()) {
+            HexNetworkGraph graph = HexNetworkGraph.get(world);
+            boolean restart = false;
+            for (long position : changed.toArray()) {
+                if (batch.touchesActive(graph, position))
+                    restart = true;
+                else if (batch.touchesVisited(position))
+                    queueBlock(world, HexUtils.unpackX(position), HexUtils.unpackY(position), HexUtils.unpackZ(position));
+            }
+            changed = new HexLongSet();
+
+            if (restart) {
+                batch.restart();
+                if (HexConfig.cfgGeneralNetworkDebug)
+                    System.out.println("[Network Queue] Suspended analysis in dimension " + world.provider.dimensionId + " was changed, starting over.");
+            }
+        }
+
+        if (!batch.run(world, budget))
+            return false;
+
+        if (HexConfig.cfgGeneralNetworkDebug)
+            System.out.println("[Network Queue] Processed queue of dimension " + world.provider.dimensionId
+                    + ". Seeds: " + batch.getSeedCount() + ", networks analyzed: " + batch.getAnalyzed()
+                    + ", ticks: " + batch.getTicks() + ", jobs pending: " + jobs.size());
+        batch = null;
+        changed = new HexLongSet();
+        return true;
+    }
+
+    /**
+     * Pushes cached results for all queued pylons which were toggled back to a state seen before, and removes every
+     * seed the reused results have reached.
+     * @param world The world of the seeds.
+     * @param batch The queued seeds, by analysis type.
+     */
+    private void reuse(World world, HexLongSet[] batch) {
+        if (batch[TYPE_PYLON].isEmpty())
+            return;
+
+        // Prepare the sets of everything reached so far.
+        HexLongSet visitedNodes = new HexLongSet();
+        HexLongSet visitedMachines = new HexLongSet();
+        HexLongSet visitedTeleports = new HexLongSet();
+
+        boolean reused = false;
+        for (long position : batch[TYPE_PYLON].toArray())
+            if (!visitedNodes.contains(position) && HexUtils.checkChunk(world, HexUtils.unpackX(position), HexUtils.unpackZ(position)))
+                reused = cache.reuse(world, position, visitedNodes, visitedMachines, visitedTeleports) || reused;
+        if (!reused)
+            return;
+
+        for (int type = 0; type < TYPE_COUNT; type++)
+            for (long position : batch[type].toArray())
+                if (NetworkAnalyzer.isVisited(type, position, visitedNodes, visitedMachines, visitedTeleports))
+                    batch[type].remove(position);
+    }
+
+    /**
+     * Groups seeds by their network in the graph and submits an asynchronous analysis for every network.
+     * @param world The world of the seeds.
+     * @param batch The queued seeds, by analysis type.
+     * @return The seeds which have no known network and need to be analyzed right away.
+     */
+    private HexLongSet[] submit(World world, HexLongSet[] batch) {
+        HexNetworkGraph graph = HexNetworkGraph.get(world);
+        HexLongSet[] remaining = createSets();
+
+        // Prepare the seeds of every network, by network ID.
+        HashMap<Integer, HexNetwork> networks = new HashMap<Integer, HexNetwork>();
+        HashMap<Integer, ArrayList<long[]>> grouped = new HashMap<Integer, ArrayList<long[]>>();
+
+        for (int type = 0; type < TYPE_COUNT; type++)
+            for (long position : batch[type].toArray()) {
+                int x = HexUtils.unpackX(position);
+                int y = HexUtils.unpackY(position);
+                int z = HexUtils.unpackZ(position);
+                if (!HexUtils.checkChunk(world, x, z) || !NetworkAnalyzer.isSeed(world, type, x, y, z))
+                    continue;
+
+                HexNetwork network = findNetwork(graph, type, x, y, z);
+                if (network == null) {
+                    remaining[type].add(position);
+                    continue;
+                }
+                if (!grouped.containsKey(network.id)) {
+                    networks.put(network.id, network);
+                    grouped.put(network.id, new ArrayList<long[]>());
+                }
+                grouped.get(network.id).add(new long[] {type, position});
+            }
+
+        for (int id : grouped.keySet()) {
+            HexNetwork network = networks.get(id);
+            ArrayList<long[]> seeds = grouped.get(id);
+            int[] types = new int[seeds.size()];
+            long[] positions = new long[seeds.size()];
+            for (int i = 0; i < seeds.size(); i++) {
+                types[i] = (int) seeds.get(i)[0];
+                positions[i] = seeds.get(i)[1];
+            }
+
+            // Copy everything the network is known to cover, as well as the seeds themselves.
+            HexLongSet covered = new HexLongSet();
+            for (long position : graph.getNodes(network))
+                covered.add(position);
+            for (HexLongSet set : new HexLongSet[] {network.sources, network.drains, network.ports, network.teleports})
+                for (long position : set.toArray())
+                    covered.add(position);
+            for (long position : positions)
+                covered.add(position);
+
+            long time = System.nanoTime();
+            HexNetworkSnapshot snapshot = new HexNetworkSnapshot(world, covered.toArray());
+            if (HexConfig.cfgGeneralNetworkDebug)
+                System.out.println("[Network Queue] Copied " + snapshot.getSectionCount() + " section(s) of network " + id
+                        + " in " + (System.nanoTime() - time) / 1000 + " us.");
+
+            HexNetworkWorker.Job job = new HexNetworkWorker.Job(snapshot, types, positions);
+            jobs.add(job);
+            HexNetworkWorker.submit(job);
+        }
+
+        return remaining;
+    }
+
+    /**
+     * Applies all finished asynchronous analyses. Seeds of analyses which are stale or which left their snapshot are
+     * collected, so they can be analyzed on the world itself.
+     * @param world The world of the analyses.
+     * @param fallback Sets to collect the seeds which need to be analyzed again, by analysis type.
+     */
+    private void commit(World world, HexLongSet[] fallback) {
+        long epoch = cache.getEpoch();
+
+        // Prepare the sets of everything reached so far.
+        HexLongSet visitedNodes = new HexLongSet();
+        HexLongSet visitedMachines = new HexLongSet();
+        HexLongSet visitedTeleports = new HexLongSet();
+
+        Iterator<HexNetworkWorker.Job> iterator = jobs.iterator();
+        while (iterator.hasNext()) {
+            HexNetworkWorker.Job job = iterator.next();
+            if (!job.isDone())
+                continue;
+            iterator.remove();
+
+            boolean valid = job.analyzers != null && !job.snapshot.isIncomplete() && !job.stale;
+            for (int i = 0; i < job.positions.length; i++) {
+                if (!valid)
+                    fallback[job.types[i]].add(job.positions[i]);
+                else if (job.analyzers[i] != null
+                        && !NetworkAnalyzer.isVisited(job.types[i], job.positions[i], visitedNodes, visitedMachines, visitedTeleports)) {
+                    job.analyzers[i].finish(world, job.types[i],
+                            HexUtils.unpackX(job.positions[i]), HexUtils.unpackY(job.positions[i]), HexUtils.unpackZ(job.positions[i]));
+                    job.analyzers[i].addVisited(visitedNodes, visitedMachines, visitedTeleports);
+                    cache.store(job.analyzers[i], job.types[i], job.positions[i], epoch);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the network a seed belongs to in the graph.
+     * @param graph The graph to search.
+     * @param type Type of the seed.
+     * @param x X coordinate of the seed.
+     * @param y Y coordinate of the seed.
+     * @param z Z coordinate of the seed.
+     * @return The network, or null if the seed isn't connected to any known network.
+     */
+    static HexNetwork findNetwork(HexNetworkGraph graph, int type, int x, int y, int z) {
+        if (type == TYPE_CABLE || type == TYPE_PYLON)
+            return graph.getNetwork(HexUtils.packCoordinates(x, y, z));
+
+        // Machines and teleports are not nodes, so use the network of a neighbour.
+        HexNetwork network = graph.getNetwork(HexUtils.packCoordinates(x, y - 1, z));
+        if (network == null)
+            network = graph.getNetwork(HexUtils.packCoordinates(x, y + 1, z));
+        if (network == null)
+            network = graph.getNetwork(HexUtils.packCoordinates(x, y, z - 1));
+        if (network == null)
+            network = graph.getNetwork(HexUtils.packCoordinates(x, y, z + 1));
+        if (network == null)
+            network = graph.getNetwork(HexUtils.packCoordinates(x - 1, y, z));
+        if (network == null)
+            network = graph.getNetwork(HexUtils.packCoordinates(x + 1, y, z));
+        return network;
+    }
+
+    /**
+     * Removes the queue of a world when it unloads.
+     * @param world The world which is unloading.
+     */
+    public static void unload(World world) {
+        // Any running jobs simply finish with nobody to apply them.
+        if (!world.isRemote)
+            queues.remove(world.provider.dimensionId);
+    }
+
+    /**
+     * @param sets The sets to check.
+     * @return Whether all sets are empty.
+     */
+    private static boolean isEmpty(HexLongSet[] sets) {
+        for (HexLongSet set : sets)
+            if (!set.isEmpty())
+                return false;
+        return true;
+    }
+
+    /**
+     * Creates an empty set for every analysis type.
+     */
+    private static HexLongSet[] createSets() {
+        HexLongSet[] sets = new HexLongSet[TYPE_COUNT];
+        for (int i = 0; i < TYPE_COUNT; i++)
+            sets[i] = new HexLongSet();
+        return sets;
+    }
+}
@@ -0,0 +1,308 @@
+package com.celestek.hexcraft.util;
+
+import com.celestek.hexcraft.tileentity.TileEnergyNodePortHEX;
+import com.celestek.hexcraft.tileentity.TileEnergyPylon;
+import cpw.mods.fml.relauncher.Side;
+import cpw.mods.fml.relauncher.SideOnly;
+import net.minecraft.block.Block;
+import net.minecraft.block.material.Material;
+import net.minecraft.init.Blocks;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.world.ChunkCoordIntPair;
+import net.minecraft.world.IBlockAccess;
+import net.minecraft.world.World;
+import net.minecraft.world.biome.BiomeGenBase;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import net.minecraftforge.common.util.ForgeDirection;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * @author Thorinair   <celestek@openmailbox.org>
+ */
+
+/**
+ * Immutable copy of the chunk sections around a network, used for analyzing the network outside of the server thread.
+ * Only the sections holding the nodes and devices of the network and their direct neighbours are copied, as plain
+ * arrays of block IDs and meta. Besides blocks and meta, it holds copies of the links of all Energy Pylons and the
+ * tunnels of all HEX Energy Node Ports in those sections. Reading anything outside of the copied sections marks the
+ * snapshot as incomplete.
+ */
+public class HexNetworkSnapshot implements IBlockAccess {
+
+    /**** Variables ****/
+
+    // Prepare the copied sections, by packed section coordinates. Empty sections are stored as null.
+    private final HashMap<Long, Section> sections;
+
+    // Prepare the packed coordinates of all chunks the copied sections are in.
+    private final HexLongSet chunks;
+
+    // Prepare the copied tile entity data, by packed coordinates.
+    private final HashMap<Long, ArrayList<HexPylon>> pylons;
+    private final HashMap<Long, HexDevice> tunnels;
+
+    // Whether a read left the copied sections.
+    private volatile boolean incomplete;
+
+    /**
+     * Constructor. Copies all sections holding nodes and devices of a network, or their neighbours. Needs to be called
+     * on the server thread.
+     * @param world The world to copy from.
+     * @param positions Packed coordinates of all nodes and devices to cover.
+     */
+    public HexNetworkSnapshot(World world, long[] positions) {
+        this.sections = new HashMap<Long, Section>();
+        this.chunks = new HexLongSet();
+        this.pylons = new HashMap<Long, ArrayList<HexPylon>>();
+        this.tunnels = new HashMap<Long, HexDevice>();
+        this.incomplete = false;
+
+        // Find the sections to copy. Neighbours only reach into the next section from its border.
+        HexLongSet keys = new HexLongSet();
+        for (long position : positions) {
+            int x = HexUtils.unpackX(position);
+            int y = HexUtils.unpackY(position);
+            int z = HexUtils.unpackZ(position);
+            keys.add(HexUtils.packCoordinates(x >> 4, y >> 4, z >> 4));
+            if ((y & 15) == 0 && y > 0)
+                keys.add(HexUtils.packCoordinates(x >> 4, (y - 1) >> 4, z >> 4));
+            if ((y & 15) == 15 && y < 255)
+                keys.add(HexUtils.packCoordinates(x >> 4, (y + 1) >> 4, z >> 4));
+            if ((z & 15) == 0)
+                keys.add(HexUtils.packCoordinates(x >> 4, y >> 4, (z - 1) >> 4));
+            if ((z & 15) == 15)
+                keys.add(HexUtils.packCoordinates(x >> 4, y >> 4, (z + 1) >> 4));
+            if ((x & 15) == 0)
+                keys.add(HexUtils.packCoordinates((x - 1) >> 4, y >> 4, z >> 4));
+            if ((x & 15) == 15)
+                keys.add(HexUtils.packCoordinates((x + 1) >> 4, y >> 4, z >> 4));
+        }
+
+        for (long key : keys.toArray())
+            capture(world, HexUtils.unpackX(key), HexUtils.unpackY(key), HexUtils.unpackZ(key));
+    }
+
+    /**
+     * Copies a single section, along with the data of the pylons and HEX ports in it. Sections in unloaded chunks are
+     * not copied.
+     * @param world The world to copy from.
+     * @param sectionX X coordinate of the section.
+     * @param sectionY Y coordinate of the section.
+     * @param sectionZ Z coordinate of the section.
+     */
+    private void capture(World world, int sectionX, int sectionY, int sectionZ) {
+        if (sectionY < 0 || sectionY >= 16 || !HexUtils.checkChunk(world, sectionX << 4, sectionZ << 4))
+            return;
+
+        Chunk chunk = world.getChunkFromChunkCoords(sectionX, sectionZ);
+        ExtendedBlockStorage storage = chunk.getBlockStorageArray()[sectionY];
+        sections.put(HexUtils.packCoordinates(sectionX, sectionY, sectionZ), storage == null ? null : new Section(storage));
+        chunks.add(ChunkCoordIntPair.chunkXZ2Int(sectionX, sectionZ));
+        if (storage == null)
+            return;
+
+        // Copy the data of pylons and HEX ports.
+        for (Object object : chunk.chunkTileEntityMap.values()) {
+            TileEntity tileEntity = (TileEntity) object;
+            if (tileEntity.isInvalid() || tileEntity.yCoord >> 4 != sectionY)
+                continue;
+
+            long position = HexUtils.packCoordinates(tileEntity.xCoord, tileEntity.yCoord, tileEntity.zCoord);
+            if (tileEntity instanceof TileEnergyPylon) {
+                ArrayList<HexPylon> linked = new ArrayList<HexPylon>();
+                if (((TileEnergyPylon) tileEntity).getPylons() != null)
+                    for (HexPylon entry : ((TileEnergyPylon) tileEntity).getPylons())
+                        linked.add(new HexPylon(entry.x, entry.y, entry.z, entry.master));
+                pylons.put(position, linked);
+            }
+            else if (tileEntity instanceof TileEnergyNodePortHEX) {
+                HexDevice tunnel = ((TileEnergyNodePortHEX) tileEntity).getTunnel();
+                if (tunnel != null)
+                    tunnels.put(position, new HexDevice(tunnel.x, tunnel.y, tunnel.z, tunnel.block));
+            }
+        }
+    }
+
+    /**
+     * Finds the copied section of a position, marking the snapshot as incomplete if it wasn't copied.
+     * @return The section, or null if it is empty or wasn't copied.
+     */
+    private Section getSection(int x, int y, int z) {
+        long key = HexUtils.packCoordinates(x >> 4, y >> 4, z >> 4);
+        Section section = sections.get(key);
+        if (section == null && !sections.containsKey(key))
+            incomplete = true;
+        return section;
+    }
+
+    /**
+     * @return The number of copied sections.
+     */
+    public int getSectionCount() {
+        return sections.size();
+    }
+
+    /**
+     * @return Whether a read left the copied sections, making the results of the analysis unusable.
+     */
+    public boolean isIncomplete() {
+        return incomplete;
+    }
+
+    /**
+     * Checks if a block was copied. Called on the server thread to find snapshots which a changed block made stale.
+     * @param position Packed coordinates of the block.
+     * @return Whether the block was copied.
+     */
+    public boolean covers(long position) {
+        return sections.containsKey(HexUtils.packCoordinates(
+                HexUtils.unpackX(position) >> 4, HexUtils.unpackY(position) >> 4, HexUtils.unpackZ(position) >> 4));
+    }
+
+    /**
+     * Checks if any copied block is inside a chunk. Called on the server thread to find snapshots which an unloaded
+     * chunk made stale.
+     * @param chunkX X coordinate of the chunk.
+     * @param chunkZ Z coordinate of the chunk.
+     * @return Whether the chunk was copied from.
+     */
+    public boolean coversChunk(int chunkX, int chunkZ) {
+        return chunks.contains(ChunkCoordIntPair.chunkXZ2Int(chunkX, chunkZ));
+    }
+
+    /**
+     * Gets the copied links of a pylon.
+     * @param x X coordinate of the pylon.
+     * @param y Y coordinate of the pylon.
+     * @param z Z coordinate of the pylon.
+     * @return The linked pylons, or null if there is no pylon.
+     */
+    public ArrayList<HexPylon> getPylons(int x, int y, int z) {
+        // Reading the block marks the snapshot as incomplete if the pylon is outside of it.
+        getBlock(x, y, z);
+        return pylons.get(HexUtils.packCoordinates(x, y, z));
+    }
+
+    /**
+     * Gets the copied tunnel of a HEX port.
+     * @param x X coordinate of the port.
+     * @param y Y coordinate of the port.
+     * @param z Z coordinate of the port.
+     * @return The linked port, or null if there is none.
+     */
+    public HexDevice getTunnel(int x, int y, int z) {
+        getBlock(x, y, z);
+        return tunnels.get(HexUtils.packCoordinates(x, y, z));
+    }
+
+    /**** IBlockAccess Methods ****/
+
+    @Override
+    public Block getBlock(int x, int y, int z) {
+        if (y < 0 || y >= 256)
+            return Blocks.air;
+        Section section = getSection(x, y, z);
+        return section == null ? Blocks.air : Block.getBlockById(section.getBlockId(x, y, z));
+    }
+
+    @Override
+    public TileEntity getTileEntity(int x, int y, int z) {
+        // Tile entities are not thread safe, only their copied data is available.
+        return null;
+    }
+
+    @Override
+    public int getBlockMetadata(int x, int y, int z) {
+        if (y < 0 || y >= 256)
+            return 0;
+        Section section = getSection(x, y, z);
+        return section == null ? 0 : section.getMeta(x, y, z);
+    }
+
+    @Override
+    public int isBlockProvidingPowerTo(int x, int y, int z, int side) {
+        return 0;
+    }
+
+    @Override
+    public boolean isAirBlock(int x, int y, int z) {
+        return getBlock(x, y, z).getMaterial() == Material.air;
+    }
+
+    @Override
+    public boolean isSideSolid(int x, int y, int z, ForgeDirection side, boolean _default) {
+        return _default;
+    }
+
+    @Override
+    @SideOnly(Side.CLIENT)
+    public int getLightBrightnessForSkyBlocks(int x, int y, int z, int light) {
+        return 0;
+    }
+
+    @Override
+    @SideOnly(Side.CLIENT)
+    public BiomeGenBase getBiomeGenForCoords(int x, int z) {
+        return BiomeGenBase.plains;
+    }
+
+    @Override
+    @SideOnly(Side.CLIENT)
+    public int getHeight() {
+        return 256;
+    }
+
+    @Override
+    @SideOnly(Side.CLIENT)
+    public boolean extendedLevelsInChunkCache() {
+        return false;
+    }
+
+    /**
+     * Copy of the block IDs and meta of a single chunk section.
+     */
+    private static class Section {
+        private final byte[] lsb;
+        private final byte[] msb;
+        private final byte[] meta;
+
+        /**
+         * Constructor.
+         * @param storage The section to copy.
+         */
+        private Section(ExtendedBlockStorage storage) {
+            this.lsb = storage.getBlockLSBArray().clone();
+            this.msb = storage.getBlockMSBArray() == null ? null : storage.getBlockMSBArray().data.clone();
+            this.meta = storage.getMetadataArray().data.clone();
+        }
+
+        /**
+         * @return The ID of the block at a position inside the section.
+         */
+        private int getBlockId(int x, int y, int z) {
+            int index = (y & 15) << 8 | (z & 15) << 4 | (x & 15);
+            int id = lsb[index] & 255;
+            if (msb != null)
+                id |= getNibble(msb, index) << 8;
+            return id;
+        }
+
+        /**
+         * @return The meta of the block at a position inside the section.
+         */
+        private int getMeta(int x, int y, int z) {
+            return getNibble(meta, (y & 15) << 8 | (z & 15) << 4 | (x & 15));
+        }
+
+        /**
+         * @return The nibble at an index of a nibble array.
+         */
+        private static int getNibble(byte[] data, int index) {
+            int value = data[index >> 1];
+            return (index & 1) == 0 ? value & 15 : value >> 4 & 15;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.celestek.hexcraft.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * @author Thorinair   <celestek@openmailbox.org>
+ */
+
+/**
+ * Background thread which analyzes networks on snapshots. Jobs are created and finished on the server thread, the
+ * worker only ever reads the snapshot of its job.
+ */
+public class HexNetworkWorker {
+
+    // The single thread all jobs run on.
+    private static ExecutorService executor;
+
+    /**
+     * A single analysis of the seeds of one network.
+     */
+    public static class Job implements Runnable {
+        public final HexNetworkSnapshot snapshot;
+        public final int[] types;
+        public final long[] positions;
+
+        // Set on the server thread when a block covered by the snapshot changes or a covered chunk unloads.
+        public boolean stale;
+
+        // Results, only valid once the job is done.
+        public NetworkAnalyzer[] analyzers;
+        private volatile boolean done;
+
+        /**
+         * Constructor.
+         * @param snapshot The snapshot to analyze.
+         * @param types Types of the seeds.
+         * @param positions Packed coordinates of the seeds.
+         */
+        public Job(HexNetworkSnapshot snapshot, int[] types, long[] positions) {
+            this.snapshot = snapshot;
+            this.types = types;
+            this.positions = positions;
+            this.stale = false;
+            this.done = false;
+        }
+
+        @Override
+        public void run() {
+            try {
+                analyzers = NetworkAnalyzer.analyzeSnapshot(snapshot, types, positions);
+            }
+            catch (RuntimeException e) {
+                // A failed analysis is treated like one which left the snapshot.
+                analyzers = null;
+                System.out.println("[Network Worker] Analysis failed: " + e);
+            }
+            done = true;
+        }
+
+        /**
+         * @return Whether the worker has finished the job.
+         */
+        public boolean isDone() {
+            return done;
+        }
+    }
+
+    /**
+     * Submits a job to the worker thread, starting the thread if needed.
+     * @param job The job to run.
+     */
+    public static synchronized void submit(Job job) {
+        if (executor == null)
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "HexCraft Network Analyzer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        executor.execute(job);
+    }
+}
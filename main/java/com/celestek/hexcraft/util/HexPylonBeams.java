@@ -0,0 +1,376 @@
+package com.celestek.hexcraft.util;
+
+import com.celestek.hexcraft.block.BlockEnergyPylon;
+import com.celestek.hexcraft.init.HexConfig;
+import com.celestek.hexcraft.tileentity.TileEnergyPylon;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.world.IWorldAccess;
+import net.minecraft.world.World;
+
+import java.util.HashMap;
+
+/**
+ * @author Thorinair   <celestek@openmailbox.org>
+ */
+
+/**
+ * Index of the chunk sections crossed by the beams of Energy Pylons, and the scheduler of all beam checks. Block changes
+ * are reported by a world access, and pylons with a beam through a changed section are retraced first. The time left
+ * is spent on checking all other pylons in turn, so that every pylon is checked once per interval. The whole work is
+ * limited by a time budget per tick, and anything left over continues in the next tick.
+ */
+public class HexPylonBeams {
+
+    /**** Static Values ****/
+
+    // Offsets of the four edges of every beam. Together they cross every section the whole beam crosses.
+    private static final double[] RAY_X = {-HexBeamTracer.HALF_WIDTH, HexBeamTracer.HALF_WIDTH, HexBeamTracer.HALF_WIDTH, -HexBeamTracer.HALF_WIDTH};
+    private static final double[] RAY_Z = {-HexBeamTracer.HALF_WIDTH, -HexBeamTracer.HALF_WIDTH, HexBeamTracer.HALF_WIDTH, HexBeamTracer.HALF_WIDTH};
+
+    // Indexes of all worlds, by dimension ID.
+    private static final HashMap<Integer, HexPylonBeams> indexes = new HashMap<Integer, HexPylonBeams>();
+
+    /**** Variables ****/
+
+    // Prepare the pylons with a beam through every section, by packed section coordinates.
+    private HashMap<Long, HexLongSet> sections;
+
+    // Prepare the sections crossed by the beams of every pylon, by packed pylon coordinates.
+    private HashMap<Long, long[]> pylons;
+
+    // Prepare the set of pylons which have to be retraced.
+    private HexLongSet dirty;
+
+    // Prepare the pylons of the current round of regular checks and the position of the next one.
+    private long[] round;
+    private int roundIndex;
+
+    /**
+     * Constructor.
+     */
+    private HexPylonBeams() {
+        sections = new HashMap<Long, HexLongSet>();
+        pylons = new HashMap<Long, long[]>();
+        dirty = new HexLongSet();
+        round = new long[0];
+        roundIndex = 0;
+    }
+
+    /**
+     * Starts watching the block changes of a world. Called when the world loads.
+     * @param world The world to watch.
+     */
+    public static void watch(World world) {
+        if (!world.isRemote)
+            world.addWorldAccess(new Watcher(world));
+    }
+
+    /**
+     * Records the sections crossed by the beams a pylon is the master of, replacing any previous ones.
+     * @param world The world that the pylon is in.
+     * @param x X coordinate of the pylon.
+     * @param y Y coordinate of the pylon.
+     * @param z Z coordinate of the pylon.
+     * @param links The pylons linked to the pylon, or null if there are none.
+     */
+    public static void update(World world, int x, int y, int z, Iterable<HexPylon> links) {
+        if (world.isRemote)
+            return;
+
+        HexPylonBeams index = getIndex(world);
+        long pylon = HexUtils.packCoordinates(x, y, z);
+        index.unregister(pylon);
+
+        HexLongSet crossed = new HexLongSet();
+        if (links != null)
+            for (HexPylon entry : links)
+                if (entry.master)
+                    for (int i = 0; i < RAY_X.length; i++)
+                        traceSections(x + 0.5 + RAY_X[i], y + 0.5, z + 0.5 + RAY_Z[i],
+                                entry.x + 0.5 + RAY_X[i], entry.y + 0.5, entry.z + 0.5 + RAY_Z[i], crossed);
+        if (crossed.isEmpty())
+            return;
+
+        long[] keys = crossed.toArray();
+        for (long key : keys) {
+            HexLongSet set = index.sections.get(key);
+            if (set == null) {
+                set = new HexLongSet();
+                index.sections.put(key, set);
+            }
+            set.add(pylon);
+        }
+        index.pylons.put(pylon, keys);
+
+        // Blocks might have changed while the beams were not indexed, so check them once.
+        index.dirty.add(pylon);
+    }
+
+    /**
+     * Removes the beams of a pylon from the index. Called when the pylon is removed or unloaded.
+     * @param world The world that the pylon is in.
+     * @param x X coordinate of the pylon.
+     * @param y Y coordinate of the pylon.
+     * @param z Z coordinate of the pylon.
+     */
+    public static void remove(World world, int x, int y, int z) {
+        if (world.isRemote)
+            return;
+
+        HexPylonBeams index = indexes.get(world.provider.dimensionId);
+        if (index != null) {
+            long pylon = HexUtils.packCoordinates(x, y, z);
+            index.unregister(pylon);
+            index.dirty.remove(pylon);
+        }
+    }
+
+    /**
+     * Retraces pylons within the time budget. Pylons with a beam through a changed section go first, followed by the
+     * regular checks. Called once at the end of every world tick.
+     * @param world The world to process.
+     */
+    public static void process(World world) {
+        HexPylonBeams index = indexes.get(world.provider.dimensionId);
+        if (index == null || index.pylons.isEmpty())
+            return;
+
+        long deadline = System.nanoTime() + HexConfig.cfgGeneralPylonRetraceTime * 1000L;
+        int changed = 0;
+        int regular = 0;
+
+        // Retrace the pylons near changed blocks. Any which don't fit in the budget stay marked for the next tick.
+        if (!index.dirty.isEmpty())
+            for (long position : index.dirty.toArray()) {
+                if (System.nanoTime() > deadline)
+                    break;
+                // Remove it first, so that changes made by the retrace itself mark it again.
+                index.dirty.remove(position);
+                retrace(world, position);
+                changed++;
+            }
+
+        // Check a share of all pylons, so that a full round takes the configured interval.
+        if (HexConfig.cfgGeneralPylonRetraceInterval > 0) {
+            if (index.roundIndex >= index.round.length)
+                index.startRound();
+            int share = (index.round.length + HexConfig.cfgGeneralPylonRetraceInterval - 1) / HexConfig.cfgGeneralPylonRetraceInterval;
+            for (int i = 0; i < share && index.roundIndex < index.round.length; i++) {
+                if (System.nanoTime() > deadline)
+                    break;
+                retrace(world, index.round[index.roundIndex++]);
+                regular++;
+            }
+        }
+
+        if (HexConfig.cfgGeneralNetworkDebug && changed > 0)
+            System.out.println("[Pylon Beams] Retraced " + changed + " changed and " + regular + " other pylon(s) in dimension "
+                    + world.provider.dimensionId + ". Left for later: " + index.dirty.size() + ".");
+    }
+
+    /**
+     * Retraces a single pylon, if it is loaded and ON.
+     * @param world The world that the pylon is in.
+     * @param position Packed coordinates of the pylon.
+     */
+    private static void retrace(World world, long position) {
+        int x = HexUtils.unpackX(position);
+        int y = HexUtils.unpackY(position);
+        int z = HexUtils.unpackZ(position);
+        if (!HexUtils.checkChunk(world, x, z))
+            return;
+
+        TileEntity tileEntity = world.getTileEntity(x, y, z);
+        // Pylons which are OFF are retraced once they turn ON, which changes their own section.
+        if (tileEntity instanceof TileEnergyPylon && !HexUtils.getMetaBit(BlockEnergyPylon.META_STATE, world, x, y, z))
+            ((TileEnergyPylon) tileEntity).retracePylons();
+    }
+
+    /**
+     * Starts a new round of regular checks with all pylons currently in the index.
+     */
+    private void startRound() {
+        round = new long[pylons.size()];
+        int i = 0;
+        for (long position : pylons.keySet())
+            round[i++] = position;
+        roundIndex = 0;
+    }
+
+    /**
+     * Removes the index of a world when it unloads.
+     * @param world The world which is unloading.
+     */
+    public static void unload(World world) {
+        if (!world.isRemote)
+            indexes.remove(world.provider.dimensionId);
+    }
+
+    /**
+     * Marks all pylons with a beam through the section of a block as dirty.
+     * @param x X coordinate of the block.
+     * @param y Y coordinate of the block.
+     * @param z Z coordinate of the block.
+     */
+    private void markBlock(int x, int y, int z) {
+        HexLongSet set = sections.get(HexUtils.packCoordinates(x >> 4, y >> 4, z >> 4));
+        if (set != null)
+            for (long pylon : set.toArray())
+                dirty.add(pylon);
+    }
+
+    /**
+     * Removes the sections of a pylon from the index.
+     * @param pylon Packed coordinates of the pylon.
+     */
+    private void unregister(long pylon) {
+        long[] keys = pylons.remove(pylon);
+        if (keys == null)
+            return;
+
+        for (long key : keys) {
+            HexLongSet set = sections.get(key);
+            if (set != null) {
+                set.remove(pylon);
+                if (set.isEmpty())
+                    sections.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Adds all sections a ray passes through to a set, using a grid traversal.
+     * @param x1 X coordinate of the start.
+     * @param y1 Y coordinate of the start.
+     * @param z1 Z coordinate of the start.
+     * @param x2 X coordinate of the end.
+     * @param y2 Y coordinate of the end.
+     * @param z2 Z coordinate of the end.
+     * @param crossed Set to add the packed section coordinates to.
+     */
+    private static void traceSections(double x1, double y1, double z1, double x2, double y2, double z2, HexLongSet crossed) {
+        // Work in section units.
+        x1 /= 16; y1 /= 16; z1 /= 16;
+        x2 /= 16; y2 /= 16; z2 /= 16;
+
+        int sx = (int) Math.floor(x1);
+        int sy = (int) Math.floor(y1);
+        int sz = (int) Math.floor(z1);
+        int ex = (int) Math.floor(x2);
+        int ey = (int) Math.floor(y2);
+        int ez = (int) Math.floor(z2);
+
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double dz = z2 - z1;
+        int stepX = dx > 0 ? 1 : -1;
+        int stepY = dy > 0 ? 1 : -1;
+        int stepZ = dz > 0 ? 1 : -1;
+
+        // Distance along the ray, from 0 to 1, to the next section border and between two borders on every axis.
+        double nextX = dx == 0 ? Double.MAX_VALUE : ((stepX > 0 ? sx + 1 : sx) - x1) / dx;
+        double nextY = dy == 0 ? Double.MAX_VALUE : ((stepY > 0 ? sy + 1 : sy) - y1) / dy;
+        double nextZ = dz == 0 ? Double.MAX_VALUE : ((stepZ > 0 ? sz + 1 : sz) - z1) / dz;
+        double deltaX = dx == 0 ? Double.MAX_VALUE : stepX / dx;
+        double deltaY = dy == 0 ? Double.MAX_VALUE : stepY / dy;
+        double deltaZ = dz == 0 ? Double.MAX_VALUE : stepZ / dz;
+
+        crossed.add(HexUtils.packCoordinates(sx, sy, sz));
+        while (sx != ex || sy != ey || sz != ez) {
+            if (nextX <= nextY && nextX <= nextZ) {
+                if (nextX > 1)
+                    break;
+                sx += stepX;
+                nextX += deltaX;
+            }
+            else if (nextY <= nextZ) {
+                if (nextY > 1)
+                    break;
+                sy += stepY;
+                nextY += deltaY;
+            }
+            else {
+                if (nextZ > 1)
+                    break;
+                sz += stepZ;
+                nextZ += deltaZ;
+            }
+            crossed.add(HexUtils.packCoordinates(sx, sy, sz));
+        }
+    }
+
+    /**
+     * Gets the index of a world, creating it if needed.
+     */
+    private static HexPylonBeams getIndex(World world) {
+        HexPylonBeams index = indexes.get(world.provider.dimensionId);
+        if (index == null) {
+            index = new HexPylonBeams();
+            indexes.put(world.provider.dimensionId, index);
+        }
+        return index;
+    }
+
+    /**
+     * World access which reports changed blocks to the index of its world.
+     */
+    public static class Watcher implements IWorldAccess {
+        private final World world;
+
+        /**
+         * Constructor.
+         * @param world The world being watched.
+         */
+        public Watcher(World world) {
+            this.world = world;
+        }
+
+        /**
+         * Called whenever a block or its meta changes.
+         */
+        @Override
+        public void markBlockForUpdate(int x, int y, int z) {
+            HexPylonBeams index = indexes.get(world.provider.dimensionId);
+            if (index != null)
+                index.markBlock(x, y, z);
+        }
+
+        @Override
+        public void markBlockForRenderUpdate(int x, int y, int z) {}
+
+        @Override
+        public void markBlockRangeForRenderUpdate(int x1, int y1, int z1, int x2, int y2, int z2) {}
+
+        @Override
+        public void playSound(String sound, double x, double y, double z, float volume, float pitch) {}
+
+        @Override
+        public void playSoundToNearExcept(EntityPlayer player, String sound, double x, double y, double z, float volume, float pitch) {}
+
+        @Override
+        public void spawnParticle(String particle, double x, double y, double z, double velX, double velY, double velZ) {}
+
+        @Override
+        public void onEntityCreate(Entity entity) {}
+
+        @Override
+        public void onEntityDestroy(Entity entity) {}
+
+        @Override
+        public void playRecord(String record, int x, int y, int z) {}
+
+        @Override
+        public void broadcastSound(int sound, int x, int y, int z, int data) {}
+
+        @Override
+        public void playAuxSFX(EntityPlayer player, int type, int x, int y, int z, int data) {}
+
+        @Override
+        public void destroyBlockPartially(int breaker, int x, int y, int z, int progress) {}
+
+        @Override
+        public void onStaticEntitiesChanged() {}
+    }
+}
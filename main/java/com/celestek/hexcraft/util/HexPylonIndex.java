@@ -0,0 +1,143 @@
+package com.celestek.hexcraft.util;
+
+import net.minecraft.world.World;
+
+import java.util.HashMap;
+
+/**
+ * @author Thorinair   <celestek@openmailbox.org>
+ */
+
+/**
+ * Spatial index of all loaded Energy Pylons, by dimension. Pylons are grouped in cubic cells, so that finding the pylons
+ * within a radius only needs to look at the cells the radius covers.
+ */
+public class HexPylonIndex {
+
+    /**** Static Values ****/
+
+    // Size of a cell, as a power of two.
+    private static final int CELL_SHIFT = 4;
+
+    // Indexes of all worlds, by dimension ID.
+    private static final HashMap<Integer, HexPylonIndex> indexes = new HashMap<Integer, HexPylonIndex>();
+
+    /**** Variables ****/
+
+    // Prepare the pylons in every cell, by packed cell coordinates.
+    private HashMap<Long, HexLongSet> cells;
+    private int size;
+
+    /**
+     * Constructor.
+     */
+    private HexPylonIndex() {
+        cells = new HashMap<Long, HexLongSet>();
+        size = 0;
+    }
+
+    /**
+     * Adds a pylon to the index. Called when the pylon is placed or its chunk is loaded.
+     * @param world The world that the pylon is in.
+     * @param x X coordinate of the pylon.
+     * @param y Y coordinate of the pylon.
+     * @param z Z coordinate of the pylon.
+     */
+    public static void add(World world, int x, int y, int z) {
+        if (world.isRemote)
+            return;
+
+        HexPylonIndex index = indexes.get(world.provider.dimensionId);
+        if (index == null) {
+            index = new HexPylonIndex();
+            indexes.put(world.provider.dimensionId, index);
+        }
+
+        long cell = HexUtils.packCoordinates(x >> CELL_SHIFT, y >> CELL_SHIFT, z >> CELL_SHIFT);
+        HexLongSet set = index.cells.get(cell);
+        if (set == null) {
+            set = new HexLongSet();
+            index.cells.put(cell, set);
+        }
+        if (set.add(HexUtils.packCoordinates(x, y, z)))
+            index.size++;
+    }
+
+    /**
+     * Removes a pylon from the index. Called when the pylon is broken or its chunk is unloaded.
+     * @param world The world that the pylon is in.
+     * @param x X coordinate of the pylon.
+     * @param y Y coordinate of the pylon.
+     * @param z Z coordinate of the pylon.
+     */
+    public static void remove(World world, int x, int y, int z) {
+        if (world.isRemote)
+            return;
+
+        HexPylonIndex index = indexes.get(world.provider.dimensionId);
+        if (index == null)
+            return;
+
+        long cell = HexUtils.packCoordinates(x >> CELL_SHIFT, y >> CELL_SHIFT, z >> CELL_SHIFT);
+        HexLongSet set = index.cells.get(cell);
+        if (set != null && set.remove(HexUtils.packCoordinates(x, y, z))) {
+            index.size--;
+            if (set.isEmpty())
+                index.cells.remove(cell);
+        }
+    }
+
+    /**
+     * Finds all loaded pylons within a radius. The pylon at the center itself is included if there is one.
+     * @param world The world to search.
+     * @param x X coordinate of the center.
+     * @param y Y coordinate of the center.
+     * @param z Z coordinate of the center.
+     * @param radius The radius in blocks.
+     * @return Packed coordinates of the pylons.
+     */
+    public static long[] getPylonsInRange(World world, int x, int y, int z, int radius) {
+        HexPylonIndex index = indexes.get(world.provider.dimensionId);
+        if (index == null || index.size == 0)
+            return new long[0];
+
+        HexLongSet found = new HexLongSet();
+        for (int cx = (x - radius) >> CELL_SHIFT; cx <= (x + radius) >> CELL_SHIFT; cx++)
+            for (int cy = (y - radius) >> CELL_SHIFT; cy <= (y + radius) >> CELL_SHIFT; cy++)
+                for (int cz = (z - radius) >> CELL_SHIFT; cz <= (z + radius) >> CELL_SHIFT; cz++) {
+                    HexLongSet set = index.cells.get(HexUtils.packCoordinates(cx, cy, cz));
+                    if (set != null)
+                        for (long position : set.toArray())
+                            if (isInRange(x, y, z, HexUtils.unpackX(position), HexUtils.unpackY(position), HexUtils.unpackZ(position), radius))
+                                found.add(position);
+                }
+        return found.toArray();
+    }
+
+    /**
+     * Checks if two positions are within a radius of each other.
+     * @param x X coordinate of the first position.
+     * @param y Y coordinate of the first position.
+     * @param z Z coordinate of the first position.
+     * @param tx X coordinate of the second position.
+     * @param ty Y coordinate of the second position.
+     * @param tz Z coordinate of the second position.
+     * @param radius The radius in blocks.
+     * @return Whether the positions are in range.
+     */
+    public static boolean isInRange(int x, int y, int z, int tx, int ty, int tz, int radius) {
+        long dx = tx - x;
+        long dy = ty - y;
+        long dz = tz - z;
+        return dx * dx + dy * dy + dz * dz <= (long) radius * radius;
+    }
+
+    /**
+     * Removes the index of a world when it unloads.
+     * @param world The world which is unloading.
+     */
+    public static void unload(World world) {
+        if (!world.isRemote)
+            indexes.remove(world.provider.dimensionId);
+    }
+}
@@ -0,0 +1,219 @@
+package com.celestek.hexcraft.util;
+
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldSavedData;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * @author Thorinair   <celestek@openmailbox.org>
+ */
+
+/**
+ * Persistent table of all links between Energy Pylons in a dimension. Every link is stored once, together with which
+ * of the two pylons is the master that checks the beam. Pylons look their links up here instead of keeping lists.
+ */
+public class HexPylonLinks extends WorldSavedData {
+
+    /**** Static Values ****/
+
+    public static final String ID = "hexcraft_pylon_links";
+
+    // NBT Names
+    private static final String NBT_MASTERS = "masters";
+    private static final String NBT_TARGETS = "targets";
+
+    // Values stored for the partners of a pylon.
+    private static final int LINK_NONE = -1;
+    private static final int LINK_TARGET = 0;
+    private static final int LINK_MASTER = 1;
+
+    /**** Variables ****/
+
+    // Prepare the partners of every pylon, by packed pylon coordinates. A partner maps to LINK_MASTER if the pylon is
+    // the master of the link.
+    private HashMap<Long, HexLongIntMap> links;
+
+    // Prepare the lists of partners handed out to pylons, built when first needed.
+    private HashMap<Long, ArrayList<HexPylon>> lists;
+
+    /**
+     * Constructor.
+     * @param name Name of the saved data.
+     */
+    public HexPylonLinks(String name) {
+        super(name);
+        this.links = new HashMap<Long, HexLongIntMap>();
+        this.lists = new HashMap<Long, ArrayList<HexPylon>>();
+    }
+
+    /**
+     * Gets the link table of a world, creating it if it doesn't exist yet.
+     * @param world The world to get the table for.
+     * @return The link table.
+     */
+    public static HexPylonLinks get(World world) {
+        HexPylonLinks table = (HexPylonLinks) world.perWorldStorage.loadData(HexPylonLinks.class, ID);
+        if (table == null) {
+            table = new HexPylonLinks(ID);
+            world.perWorldStorage.setData(ID, table);
+        }
+        return table;
+    }
+
+    /**
+     * Writes the table to NBT. Every link is written once, from its master.
+     */
+    @Override
+    public void writeToNBT(NBTTagCompound tagCompound) {
+        ArrayList<long[]> pairs = new ArrayList<long[]>();
+        for (long pylon : links.keySet()) {
+            HexLongIntMap partners = links.get(pylon);
+            long[] keys = partners.toKeyArray();
+            int[] values = partners.toValueArray();
+            for (int i = 0; i < keys.length; i++)
+                if (values[i] == LINK_MASTER)
+                    pairs.add(new long[] {pylon, keys[i]});
+        }
+
+        long[] sources = new long[pairs.size()];
+        long[] targets = new long[pairs.size()];
+        for (int i = 0; i < pairs.size(); i++) {
+            sources[i] = pairs.get(i)[0];
+            targets[i] = pairs.get(i)[1];
+        }
+        HexUtils.writePackedArrayToNBT(tagCompound, NBT_MASTERS, sources);
+        HexUtils.writePackedArrayToNBT(tagCompound, NBT_TARGETS, targets);
+    }
+
+    /**
+     * Reads the table from NBT.
+     */
+    @Override
+    public void readFromNBT(NBTTagCompound tagCompound) {
+        links.clear();
+        lists.clear();
+        long[] masters = HexUtils.readPackedArrayFromNBT(tagCompound, NBT_MASTERS);
+        long[] targets = HexUtils.readPackedArrayFromNBT(tagCompound, NBT_TARGETS);
+        for (int i = 0; i < masters.length && i < targets.length; i++)
+            put(masters[i], targets[i]);
+    }
+
+    /**
+     * Links two pylons.
+     * @param master Packed coordinates of the pylon which checks the beam.
+     * @param target Packed coordinates of the other pylon.
+     * @return Whether the link was added. False if the pylons were already linked.
+     */
+    public boolean link(long master, long target) {
+        if (master == target || isLinked(master, target))
+            return false;
+        put(master, target);
+        markDirty();
+        return true;
+    }
+
+    /**
+     * Removes the link between two pylons.
+     * @param a Packed coordinates of the first pylon.
+     * @param b Packed coordinates of the second pylon.
+     * @return Whether the link existed.
+     */
+    public boolean unlink(long a, long b) {
+        if (!isLinked(a, b))
+            return false;
+        removeHalf(a, b);
+        removeHalf(b, a);
+        markDirty();
+        return true;
+    }
+
+    /**
+     * Removes all links of a pylon.
+     * @param pylon Packed coordinates of the pylon.
+     * @return Packed coordinates of all former partners.
+     */
+    public long[] unlinkAll(long pylon) {
+        HexLongIntMap partners = links.remove(pylon);
+        lists.remove(pylon);
+        if (partners == null)
+            return new long[0];
+
+        long[] keys = partners.toKeyArray();
+        for (long partner : keys)
+            removeHalf(partner, pylon);
+        markDirty();
+        return keys;
+    }
+
+    /**
+     * Checks if two pylons are linked.
+     * @param a Packed coordinates of the first pylon.
+     * @param b Packed coordinates of the second pylon.
+     * @return Whether they are linked.
+     */
+    public boolean isLinked(long a, long b) {
+        HexLongIntMap partners = links.get(a);
+        return partners != null && partners.containsKey(b);
+    }
+
+    /**
+     * Gets the partners of a pylon. The list is shared and must not be modified.
+     * @param pylon Packed coordinates of the pylon.
+     * @return The partners, with the master flag set where the pylon is the master, or null if it has none.
+     */
+    public ArrayList<HexPylon> getLinks(long pylon) {
+        ArrayList<HexPylon> list = lists.get(pylon);
+        if (list != null)
+            return list;
+
+        HexLongIntMap partners = links.get(pylon);
+        if (partners == null)
+            return null;
+
+        long[] keys = partners.toKeyArray();
+        int[] values = partners.toValueArray();
+        list = new ArrayList<HexPylon>(keys.length);
+        for (int i = 0; i < keys.length; i++)
+            list.add(new HexPylon(HexUtils.unpackX(keys[i]), HexUtils.unpackY(keys[i]), HexUtils.unpackZ(keys[i]), values[i] == LINK_MASTER));
+        lists.put(pylon, list);
+        return list;
+    }
+
+    /**
+     * Adds both halves of a link.
+     */
+    private void put(long master, long target) {
+        getPartners(master).put(target, LINK_MASTER);
+        getPartners(target).put(master, LINK_TARGET);
+        lists.remove(master);
+        lists.remove(target);
+    }
+
+    /**
+     * Removes one half of a link.
+     */
+    private void removeHalf(long pylon, long partner) {
+        HexLongIntMap partners = links.get(pylon);
+        if (partners == null)
+            return;
+        partners.remove(partner);
+        if (partners.size() == 0)
+            links.remove(pylon);
+        lists.remove(pylon);
+    }
+
+    /**
+     * Gets the partners of a pylon, creating the map if needed.
+     */
+    private HexLongIntMap getPartners(long pylon) {
+        HexLongIntMap partners = links.get(pylon);
+        if (partners == null) {
+            partners = new HexLongIntMap(LINK_NONE);
+            links.put(pylon, partners);
+        }
+        return partners;
+    }
+}
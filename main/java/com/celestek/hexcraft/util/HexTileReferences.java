@@ -0,0 +1,113 @@
+package com.celestek.hexcraft.util;
+
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.world.World;
+
+import java.util.HashMap;
+
+/**
+ * @author Thorinair   <celestek@openmailbox.org>
+ */
+
+/**
+ * References to all loaded energy sources and drains, by dimension. Machines register themselves when they are added to
+ * the world and unregister when they are removed or their chunk unloads. Devices keep the reference they were given,
+ * so while the machine stays loaded it can be reached without looking it up in the world.
+ */
+public class HexTileReferences {
+
+    /**** Static Values ****/
+
+    // References of all worlds, by dimension ID.
+    private static final HashMap<Integer, HashMap<Long, Reference>> worlds = new HashMap<Integer, HashMap<Long, Reference>>();
+
+    /**
+     * Registers a tile entity. Called when it is added to the world or its chunk is loaded.
+     * @param tileEntity The tile entity to register.
+     */
+    public static void add(TileEntity tileEntity) {
+        World world = tileEntity.getWorldObj();
+        if (world == null || world.isRemote)
+            return;
+
+        HashMap<Long, Reference> references = worlds.get(world.provider.dimensionId);
+        if (references == null) {
+            references = new HashMap<Long, Reference>();
+            worlds.put(world.provider.dimensionId, references);
+        }
+
+        long position = HexUtils.packCoordinates(tileEntity.xCoord, tileEntity.yCoord, tileEntity.zCoord);
+        Reference previous = references.put(position, new Reference(tileEntity));
+        if (previous != null)
+            previous.tileEntity = null;
+    }
+
+    /**
+     * Unregisters a tile entity. Called when it is removed from the world or its chunk is unloaded.
+     * @param tileEntity The tile entity to unregister.
+     */
+    public static void remove(TileEntity tileEntity) {
+        World world = tileEntity.getWorldObj();
+        if (world == null || world.isRemote)
+            return;
+
+        HashMap<Long, Reference> references = worlds.get(world.provider.dimensionId);
+        if (references == null)
+            return;
+
+        long position = HexUtils.packCoordinates(tileEntity.xCoord, tileEntity.yCoord, tileEntity.zCoord);
+        Reference reference = references.get(position);
+        if (reference != null && reference.tileEntity == tileEntity) {
+            references.remove(position);
+            reference.tileEntity = null;
+        }
+    }
+
+    /**
+     * Gets the reference to a registered tile entity.
+     * @param world The world that the tile entity is in.
+     * @param x X coordinate of the tile entity.
+     * @param y Y coordinate of the tile entity.
+     * @param z Z coordinate of the tile entity.
+     * @return The reference, or null if no tile entity is registered there.
+     */
+    public static Reference get(World world, int x, int y, int z) {
+        HashMap<Long, Reference> references = worlds.get(world.provider.dimensionId);
+        if (references == null)
+            return null;
+        return references.get(HexUtils.packCoordinates(x, y, z));
+    }
+
+    /**
+     * Removes the references of a world when it unloads.
+     * @param world The world which is unloading.
+     */
+    public static void unload(World world) {
+        if (world.isRemote)
+            return;
+
+        HashMap<Long, Reference> references = worlds.remove(world.provider.dimensionId);
+        if (references != null)
+            for (Reference reference : references.values())
+                reference.tileEntity = null;
+    }
+
+    /**
+     * A reference to a single tile entity. It is cleared once the tile entity is unregistered, after which a new one
+     * has to be looked up.
+     */
+    public static class Reference {
+        private TileEntity tileEntity;
+
+        private Reference(TileEntity tileEntity) {
+            this.tileEntity = tileEntity;
+        }
+
+        /**
+         * @return The tile entity, or null if it has been unregistered.
+         */
+        public TileEntity get() {
+            return tileEntity;
+        }
+    }
+}
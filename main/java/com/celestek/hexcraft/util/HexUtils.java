@@ -35,6 +35,44 @@ public class HexUtils {
         return world.getChunkProvider().chunkExists(x >> 4, z >> 4);
     }
 
+    /**
+     * Packs block coordinates into a single long. X and Z use 26 bits each, Y uses 12 bits.
+     * @param x X coordinate of block.
+     * @param y Y coordinate of block.
+     * @param z Z coordinate of block.
+     * @return The packed coordinates.
+     */
+    public static long packCoordinates(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (long) (y & 0xFFF);
+    }
+
+    /**
+     * Unpacks the X coordinate from packed coordinates.
+     * @param packed The packed coordinates.
+     * @return X coordinate of block.
+     */
+    public static int unpackX(long packed) {
+        return (int) (packed >> 38);
+    }
+
+    /**
+     * Unpacks the Y coordinate from packed coordinates.
+     * @param packed The packed coordinates.
+     * @return Y coordinate of block.
+     */
+    public static int unpackY(long packed) {
+        return (int) (packed << 52 >> 52);
+    }
+
+    /**
+     * Unpacks the Z coordinate from packed coordinates.
+     * @param packed The packed coordinates.
+     * @return Z coordinate of block.
+     */
+    public static int unpackZ(long packed) {
+        return (int) (packed << 26 >> 38);
+    }
+
     /**
      * Sets the rotation of block.
      * @param b0 First bit of rotation.
@@ -456,6 +494,49 @@ public class HexUtils {
                 tagCompound.getInteger(name + "_z"), null);
     }
 
+    /**
+     * Writes an array of packed coordinates to NBT.
+     * @param tagCompound NBTTagCompound to write to.
+     * @param name Name to use for writing to NBT.
+     * @param positions The array of packed coordinates.
+     */
+    public static void writePackedArrayToNBT(NBTTagCompound tagCompound, String name, long[] positions) {
+        int positionsX[] = new int[positions.length];
+        int positionsY[] = new int[positions.length];
+        int positionsZ[] = new int[positions.length];
+
+        // Unpack the coordinates to arrays.
+        for (int i = 0; i < positions.length; i++) {
+            positionsX[i] = unpackX(positions[i]);
+            positionsY[i] = unpackY(positions[i]);
+            positionsZ[i] = unpackZ(positions[i]);
+        }
+        // Write the coordinate arrays.
+        tagCompound.setIntArray(name + "_x", positionsX);
+        tagCompound.setIntArray(name + "_y", positionsY);
+        tagCompound.setIntArray(name + "_z", positionsZ);
+    }
+
+    /**
+     * Reads an array of packed coordinates from NBT.
+     * @param tagCompound NBTTagCompound to read from.
+     * @param name Name to use for reading from NBT.
+     * @return The array of packed coordinates.
+     */
+    public static long[] readPackedArrayFromNBT(NBTTagCompound tagCompound, String name) {
+        // Read the coordinate arrays.
+        int positionsX[] = tagCompound.getIntArray(name + "_x");
+        int positionsY[] = tagCompound.getIntArray(name + "_y");
+        int positionsZ[] = tagCompound.getIntArray(name + "_z");
+
+        // Pack the coordinates.
+        long[] positions = new long[positionsX.length];
+        for (int i = 0; i < positions.length; i++)
+            positions[i] = packCoordinates(positionsX[i], positionsY[i], positionsZ[i]);
+
+        return positions;
+    }
+
     /**
      * Writes an ArrayList of HexPylon objects to NBT.
      * @param tagCompound NBTTagCompound to write to.
@@ -574,6 +655,13 @@ public class HexUtils {
         player.addChatMessage(new ChatComponentTranslation("msg.probeCoords.txt", x, y, z));
     }
 
+    public static void addChatProbeDrainPriority(EntityPlayer player, World world, int priority, int network) {
+        player.addChatMessage(new ChatComponentTranslation("msg.probePriority" + (priority + 1) + ".txt"));
+        HexNetwork hexNetwork = HexNetworkGraph.getNetworkById(world, network);
+        if (hexNetwork != null)
+            player.addChatMessage(new ChatComponentTranslation("msg.probePolicy" + (hexNetwork.policy + 1) + ".txt"));
+    }
+
     public static void addChatProbeConnectedMachines(EntityPlayer player, ArrayList<HexDevice> machines, World world, int x, int y, int z) {
         if (machines != null && machines.size() != 0) {
             if (!(machines.size() == 1 && machines.get(0).x == x && machines.get(0).y == y && machines.get(0).z == z)) {
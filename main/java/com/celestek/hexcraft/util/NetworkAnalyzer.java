@@ -7,10 +7,13 @@ import com.celestek.hexcraft.tileentity.*;
 import net.minecraft.block.Block;
 import net.minecraft.client.resources.I18n;
 import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.ChatComponentTranslation;
+import net.minecraft.world.IBlockAccess;
 import net.minecraft.world.World;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * @author Thorinair   <celestek@openmailbox.org>
@@ -18,115 +21,259 @@ import java.util.ArrayList;
 
 public class NetworkAnalyzer {
 
-    // Prepare ArrayLists for machines and cables.
-    private ArrayList<HexDevice> cables;
-    private ArrayList<HexDevice> pylons;
+    // Operations which can be placed on the traversal stack.
+    private static final int OP_ANALYZE = 0;
+    private static final int OP_PYLONIZE = 1;
 
+    private static final int STACK_CAPACITY = 64;
+
+    // Types of seeds the analysis can start from.
+    static final int SEED_CABLE = 0;
+    static final int SEED_PYLON = 1;
+    static final int SEED_MACHINES = 2;
+    static final int SEED_TELEPORT = 3;
+
+    // Offsets of the six directions.
+    private static final int[] OFFSET_X = {0, 0, 0, 0, -1, 1};
+    private static final int[] OFFSET_Y = {-1, 1, 0, 0, 0, 0};
+    private static final int[] OFFSET_Z = {0, 0, -1, 1, 0, 0};
+
+    // Prepare sets of visited cables and pylons.
+    private HexLongSet cables;
+    private HexLongSet pylons;
+
+    // Prepare ArrayLists for machines, paired with sets for fast lookups.
     private ArrayList<HexDevice> energySources;
     private ArrayList<HexDevice> energyDrains;
     private ArrayList<HexDevice> energyPorts;
-    private ArrayList<HexDevice> energyPortsTunnel;
-
     private ArrayList<HexDevice> teleports;
 
+    private HexLongSet sourceSet;
+    private HexLongSet drainSet;
+    private HexLongSet portSet;
+    private HexLongSet tunnelSet;
+    private HexLongSet teleportSet;
+
+    // Prepare the sets of pylons whose state was read, and of pylons which were passed through while OFF.
+    private HexLongSet pylonsOn;
+    private HexLongSet pylonsOff;
+    private HexLongSet pylonsPassed;
+
+    // Prepare the block access used while traversing. Either the loaded part of the world or a snapshot of it.
+    private IBlockAccess access;
+
+    // Prepare the set of positions in unloaded chunks where the traversal had to stop.
+    private HexLongSet frontier;
+
+    // Prepare the explicit traversal stack. Moves hold both the operation and the direction.
+    private int[] stackX;
+    private int[] stackY;
+    private int[] stackZ;
+    private int[] stackMove;
+    private Block[] stackPrev;
+    private int stackSize;
+
+    // Prepare the variables used when attaching to the network graph.
+    private HexNetworkGraph graph;
+    private long seed;
+    private HexLongSet boundary;
+
+    // Prepare the variables used when searching a network after a node was removed.
+    private HexNetwork restrict;
+    private HexLongIntMap owners;
+    private int index;
+    private int met;
+
     /**
      * Constructor.
      */
     public NetworkAnalyzer() {
-        cables = new ArrayList<HexDevice>() {
-            @Override
-            public boolean contains(Object o) {
-                HexDevice cable = (HexDevice) o;
-                for (HexDevice entry : this) {
-                    if ((entry.x == cable.x) && (entry.y == cable.y) && (entry.z == cable.z) && (entry.block == cable.block)) {
-                        return true;
-                    }
-                }
-                return false;
-            }
-        };
-
-        pylons = new ArrayList<HexDevice>() {
-            @Override
-            public boolean contains(Object o) {
-                HexDevice pylon = (HexDevice) o;
-                for (HexDevice entry : this) {
-                    if ((entry.x == pylon.x) && (entry.y == pylon.y) && (entry.z == pylon.z) && (entry.block == pylon.block)) {
-                        return true;
-                    }
-                }
-                return false;
-            }
-        };
-
-        energySources = new ArrayList<HexDevice>() {
-            @Override
-            public boolean contains(Object o) {
-                HexDevice energySource = (HexDevice) o;
-                for (HexDevice entry : this) {
-                    if ((entry.x == energySource.x) && (entry.y == energySource.y) && (entry.z == energySource.z) && (entry.block == energySource.block)) {
-                        return true;
-                    }
-                }
-                return false;
-            }
-        };
-
-        energyDrains = new ArrayList<HexDevice>() {
-            @Override
-            public boolean contains(Object o) {
-                HexDevice energyDrain = (HexDevice) o;
-                for (HexDevice entry : this) {
-                    if ((entry.x == energyDrain.x) && (entry.y == energyDrain.y) && (entry.z == energyDrain.z) && (entry.block == energyDrain.block)) {
-                        return true;
-                    }
-                }
-                return false;
-            }
-        };
-
-        energyPorts = new ArrayList<HexDevice>() {
-            @Override
-            public boolean contains(Object o) {
-                HexDevice energyPort = (HexDevice) o;
-                for (HexDevice entry : this) {
-                    if ((entry.x == energyPort.x) && (entry.y == energyPort.y) && (entry.z == energyPort.z) && (entry.block == energyPort.block)) {
-                        return true;
-                    }
-                }
-                return false;
-            }
-        };
-
-        energyPortsTunnel = new ArrayList<HexDevice>() {
-            @Override
-            public boolean contains(Object o) {
-                HexDevice energyPortTunnel = (HexDevice) o;
-                for (HexDevice entry : this) {
-                    if ((entry.x == energyPortTunnel.x) && (entry.y == energyPortTunnel.y) && (entry.z == energyPortTunnel.z) && (entry.block == energyPortTunnel.block)) {
-                        return true;
-                    }
-                }
-                return false;
-            }
-        };
-
-        teleports = new ArrayList<HexDevice>() {
-            @Override
-            public boolean contains(Object o) {
-                HexDevice teleport = (HexDevice) o;
-                for (HexDevice entry : this) {
-                    if ((entry.x == teleport.x) && (entry.y == teleport.y) && (entry.z == teleport.z) && (entry.block == teleport.block)) {
-                        return true;
-                    }
-                }
+        cables = new HexLongSet();
+        pylons = new HexLongSet();
+
+        energySources = new ArrayList<HexDevice>();
+        energyDrains = new ArrayList<HexDevice>();
+        energyPorts = new ArrayList<HexDevice>();
+        teleports = new ArrayList<HexDevice>();
+
+        sourceSet = new HexLongSet();
+        drainSet = new HexLongSet();
+        portSet = new HexLongSet();
+        tunnelSet = new HexLongSet();
+        teleportSet = new HexLongSet();
+
+        pylonsOn = new HexLongSet();
+        pylonsOff = new HexLongSet();
+        pylonsPassed = new HexLongSet();
+
+        frontier = new HexLongSet();
+
+        stackX = new int[STACK_CAPACITY];
+        stackY = new int[STACK_CAPACITY];
+        stackZ = new int[STACK_CAPACITY];
+        stackMove = new int[STACK_CAPACITY];
+        stackPrev = new Block[STACK_CAPACITY];
+        stackSize = 0;
+
+        graph = null;
+        boundary = new HexLongSet();
+
+        restrict = null;
+        met = -1;
+    }
+
+    /**
+     * Processes the traversal stack until it is empty.
+     * @param world The world that the network is in.
+     */
+    private void traverse(World world) {
+        getAccess(world);
+        while (stackSize > 0)
+            step(world);
+    }
+
+    /**
+     * Processes the traversal stack until it is empty or the budget runs out.
+     * @param world The world that the network is in.
+     * @param budget The budget to spend the moves from.
+     * @return Whether the traversal has finished.
+     */
+    boolean traverse(World world, HexNetworkBudget budget) {
+        getAccess(world);
+        while (stackSize > 0) {
+            if (!budget.spend())
                 return false;
-            }
-        };
+            step(world);
+        }
+        return true;
     }
 
     /**
-     * Called recursively to analyze the energy network.
+     * Processes the traversal stack within the analysis budget of a single tick. Used by analyses which run right away
+     * when a block is placed or probed, so that a single block can't stall the tick.
+     * @param world The world that the network is in.
+     * @return Whether the traversal has finished.
+     */
+    private boolean traverseLimited(World world) {
+        return traverse(world, new HexNetworkBudget(HexConfig.cfgGeneralNetworkAnalysisMoves, HexConfig.cfgGeneralNetworkAnalysisTime));
+    }
+
+    /**
+     * Processes a single move from the traversal stack.
+     * @param world The world that the network is in.
+     */
+    private void step(World world) {
+        getAccess(world);
+
+        // Pop the next move off the stack.
+        stackSize--;
+        int x = stackX[stackSize];
+        int y = stackY[stackSize];
+        int z = stackZ[stackSize];
+        int move = stackMove[stackSize];
+        Block blockPrev = stackPrev[stackSize];
+        stackPrev[stackSize] = null;
+
+        // Perform the move. Any moves queued by it end up above the mark.
+        int mark = stackSize;
+        if (move >> 3 == OP_ANALYZE)
+            analyze(access, x, y, z, blockPrev, (move & 7) - 1);
+        else
+            pylonize(access, x, y, z, blockPrev, (move & 7) - 1);
+
+        // Reverse the newly queued moves, so they are processed in the order they were queued.
+        for (int i = mark, j = stackSize - 1; i < j; i++, j--) {
+            swap(stackX, i, j);
+            swap(stackY, i, j);
+            swap(stackZ, i, j);
+            swap(stackMove, i, j);
+            Block block = stackPrev[i];
+            stackPrev[i] = stackPrev[j];
+            stackPrev[j] = block;
+        }
+    }
+
+    /**
+     * Gets the block access used while traversing, creating one which never loads chunks if none was set.
+     * @param world The world that the network is in.
+     * @return The block access.
+     */
+    IBlockAccess getAccess(World world) {
+        if (access == null)
+            access = new HexLoadedBlockAccess(world, frontier);
+        return access;
+    }
+
+    /**
+     * Queues a block for analysis.
+     * @param x X coordinate of the block to analyze.
+     * @param y Y coordinate of the block to analyze.
+     * @param z Z coordinate of the block to analyze.
+     * @param blockPrev The previous block.
+     * @param direction The direction of the move.
+     */
+    private void queueAnalyze(int x, int y, int z, Block blockPrev, int direction) {
+        push(OP_ANALYZE, x, y, z, blockPrev, direction);
+    }
+
+    /**
+     * Queues a block for pylon analysis.
+     * @param x X coordinate of the block to analyze.
+     * @param y Y coordinate of the block to analyze.
+     * @param z Z coordinate of the block to analyze.
+     * @param blockPrev The previous block.
+     * @param direction The direction of the move.
+     */
+    private void queuePylonize(int x, int y, int z, Block blockPrev, int direction) {
+        push(OP_PYLONIZE, x, y, z, blockPrev, direction);
+    }
+
+    /**
+     * Pushes a move onto the traversal stack, growing it if necessary.
+     */
+    private void push(int op, int x, int y, int z, Block blockPrev, int direction) {
+        if (stackSize == stackX.length) {
+            int capacity = stackSize << 1;
+            stackX = Arrays.copyOf(stackX, capacity);
+            stackY = Arrays.copyOf(stackY, capacity);
+            stackZ = Arrays.copyOf(stackZ, capacity);
+            stackMove = Arrays.copyOf(stackMove, capacity);
+            stackPrev = Arrays.copyOf(stackPrev, capacity);
+        }
+        stackX[stackSize] = x;
+        stackY[stackSize] = y;
+        stackZ[stackSize] = z;
+        stackMove[stackSize] = (op << 3) | (direction + 1);
+        stackPrev[stackSize] = blockPrev;
+        stackSize++;
+    }
+
+    /**
+     * Swaps two elements of an int array.
+     */
+    private static void swap(int[] array, int i, int j) {
+        int value = array[i];
+        array[i] = array[j];
+        array[j] = value;
+    }
+
+    /**
+     * Adds a machine to one of the machine ArrayLists and its paired set.
+     * @param devices The ArrayList to add to.
+     * @param set The set paired with the ArrayList.
+     * @param x X coordinate of the machine.
+     * @param y Y coordinate of the machine.
+     * @param z Z coordinate of the machine.
+     * @param position Packed coordinates of the machine.
+     * @param block The block of the machine.
+     */
+    private static void addDevice(ArrayList<HexDevice> devices, HexLongSet set, int x, int y, int z, long position, Block block) {
+        if (set.add(position))
+            devices.add(new HexDevice(x, y, z, block));
+    }
+
+    /**
+     * Called for every move on the stack to analyze the energy network.
      * @param world The world that the block to analyze is in.
      * @param x X coordinate of the block to analyze.
      * @param y Y coordinate of the block to analyze.
@@ -134,9 +281,10 @@ public class NetworkAnalyzer {
      * @param blockPrev The previous block.
      * @param direction The direction of the previous move.
      */
-    private void analyze(World world, int x, int y, int z, Block blockPrev, int direction) {
-        // Save the current block.
+    private void analyze(IBlockAccess world, int x, int y, int z, Block blockPrev, int direction) {
+        // Save the current block and its packed coordinates.
         Block block = world.getBlock(x, y, z);
+        long position = HexUtils.packCoordinates(x, y, z);
 
         // Console spam for debugging analysis.
         if (HexConfig.cfgGeneralVerboseNetworkDebug && HexConfig.cfgGeneralNetworkDebug)
@@ -147,8 +295,8 @@ public class NetworkAnalyzer {
 
             // Check if the current block is a cable.
             if (block instanceof BlockHexoriumCable) {
-                // Check if this cable has already been added to the cables ArrayList.
-                if (!cables.contains(new HexDevice(x, y, z, block))) {
+                // Check if this cable has already been added to the cables set.
+                if (!cables.contains(position)) {
                     // Check if one of the conditions are met:
                     // 1) The previous cable's color was Rainbow.
                     // 2) The current block's color is Rainbow.
@@ -158,25 +306,33 @@ public class NetworkAnalyzer {
                             || blockPrev == block
                             || blockPrev instanceof BlockPylonBase
                             || blockPrev == HexBlocks.blockEnergyNodePortHEX)
-                        // If any condition is met, add the cable to the cables ArrayList. Do this to avoid loops.
-                        cables.add(new HexDevice(x, y, z, block));
+                        // If any condition is met, add the cable to the cables set. Do this to avoid loops.
+                        cables.add(position);
                     else
-                        // Otherwise, exit recursion.
+                        // Otherwise, stop here.
                         return;
                 }
                 else
-                    // If the cable is already in the cables ArrayList, exit recursion.
+                    // If the cable is already in the cables set, stop here.
+                    return;
+
+                // Stop at nodes which are already in the network graph when attaching.
+                if (isBoundary(position))
                     return;
             }
 
             // Check if the current block is an Energy Node Core.
             else if (block instanceof BlockEnergyNodeCore) {
-                // Check if this core has already been added to the cables ArrayList.
-                if (!cables.contains(new HexDevice(x, y, z, block)))
-                    // Add the core to the cables ArrayList.
-                    cables.add(new HexDevice(x, y, z, block));
+                // Check if this core has already been added to the cables set.
+                if (!cables.contains(position))
+                    // Add the core to the cables set.
+                    cables.add(position);
                 else
-                    // If the core is already in the cables ArrayList, exit recursion.
+                    // If the core is already in the cables set, stop here.
+                    return;
+
+                // Stop at nodes which are already in the network graph when attaching.
+                if (isBoundary(position))
                     return;
             }
 
@@ -209,46 +365,45 @@ public class NetworkAnalyzer {
                 // If this is a HEX port, formed, accessed outside of core and input
                 else if (block == HexBlocks.blockEnergyNodePortHEX && isPart && !prevCore
                         && mode == HexEnergyNode.PORT_MODE_INPUT) {
-                    if (!energyDrains.contains(new HexDevice(x, y, z, block)))
-                        energyDrains.add(new HexDevice(x, y, z, block));
+                    if (!drainSet.contains(position))
+                        addDevice(energyDrains, drainSet, x, y, z, position, block);
                     return;
                 }
 
                 // If this is a HEX port, formed, accessed outside of core and output
                 else if (block == HexBlocks.blockEnergyNodePortHEX && isPart && !prevCore
                         && mode == HexEnergyNode.PORT_MODE_OUTPUT) {
-                    if (!energySources.contains(new HexDevice(x, y, z, block)))
-                        energySources.add(new HexDevice(x, y, z, block));
+                    if (!sourceSet.contains(position))
+                        addDevice(energySources, sourceSet, x, y, z, position, block);
                     return;
                 }
 
                 // If this is a HEX port, formed, accessed outside of core and tunnel
                 else if (block == HexBlocks.blockEnergyNodePortHEX && isPart && !prevCore
                         && mode == HexEnergyNode.PORT_MODE_TUNNEL) {
-                    TileEnergyNodePortHEX tileEnergyNodePortHEX = (TileEnergyNodePortHEX) world.getTileEntity(x, y, z);
-                    HexDevice tunnel = tileEnergyNodePortHEX.getTunnel();
+                    HexDevice tunnel = getTunnel(world, x, y, z);
                     if (tunnel != null)
                         if (block == HexBlocks.blockEnergyNodePortHEX
                                 && HexUtils.getMetaBit(HexBlocks.META_STRUCTURE_IS_PART, world, tunnel.x, tunnel.y, tunnel.z)
                                 && HexUtils.getMetaBitBiInt(HexEnergyNode.META_MODE_0, HexEnergyNode.META_MODE_1, world, tunnel.x, tunnel.y, tunnel.z)
                                 == HexEnergyNode.PORT_MODE_TUNNEL)
                             // Check if this energy port has already been added to the energyPorts ArrayList.
-                            if (!energyPortsTunnel.contains(new HexDevice(x, y, z, block))) {
+                            if (!tunnelSet.contains(position)) {
                                 // If it hasn't, add it.
-                                energyPortsTunnel.add(new HexDevice(x, y, z, block));
+                                tunnelSet.add(position);
 
                                 if (world.getBlock(tunnel.x, tunnel.y + 1, tunnel.z) instanceof BlockEnergyNodeCore)
-                                    analyze(world, tunnel.x, tunnel.y - 1, tunnel.z, world.getBlock(tunnel.x, tunnel.y - 1, tunnel.z), -1);
+                                    queueAnalyze(tunnel.x, tunnel.y - 1, tunnel.z, world.getBlock(tunnel.x, tunnel.y - 1, tunnel.z), -1);
                                 else if (world.getBlock(tunnel.x, tunnel.y - 1, tunnel.z) instanceof BlockEnergyNodeCore)
-                                    analyze(world, tunnel.x, tunnel.y + 1, tunnel.z, world.getBlock(tunnel.x, tunnel.y + 1, tunnel.z), -1);
+                                    queueAnalyze(tunnel.x, tunnel.y + 1, tunnel.z, world.getBlock(tunnel.x, tunnel.y + 1, tunnel.z), -1);
                                 else if (world.getBlock(tunnel.x + 1, tunnel.y, tunnel.z) instanceof BlockEnergyNodeCore)
-                                    analyze(world, tunnel.x - 1, tunnel.y, tunnel.z, world.getBlock(tunnel.x - 1, tunnel.y, tunnel.z), -1);
+                                    queueAnalyze(tunnel.x - 1, tunnel.y, tunnel.z, world.getBlock(tunnel.x - 1, tunnel.y, tunnel.z), -1);
                                 else if (world.getBlock(tunnel.x - 1, tunnel.y, tunnel.z) instanceof BlockEnergyNodeCore)
-                                    analyze(world, tunnel.x + 1, tunnel.y, tunnel.z, world.getBlock(tunnel.x + 1, tunnel.y, tunnel.z), -1);
+                                    queueAnalyze(tunnel.x + 1, tunnel.y, tunnel.z, world.getBlock(tunnel.x + 1, tunnel.y, tunnel.z), -1);
                                 else if (world.getBlock(tunnel.x, tunnel.y, tunnel.z + 1) instanceof BlockEnergyNodeCore)
-                                    analyze(world, tunnel.x, tunnel.y, tunnel.z - 1, world.getBlock(tunnel.x, tunnel.y, tunnel.z - 1), -1);
+                                    queueAnalyze(tunnel.x, tunnel.y, tunnel.z - 1, world.getBlock(tunnel.x, tunnel.y, tunnel.z - 1), -1);
                                 else if (world.getBlock(tunnel.x, tunnel.y, tunnel.z - 1) instanceof BlockEnergyNodeCore)
-                                    analyze(world, tunnel.x, tunnel.y, tunnel.z + 1, world.getBlock(tunnel.x, tunnel.y, tunnel.z + 1), -1);
+                                    queueAnalyze(tunnel.x, tunnel.y, tunnel.z + 1, world.getBlock(tunnel.x, tunnel.y, tunnel.z + 1), -1);
                             }
                     return;
                 }
@@ -256,24 +411,24 @@ public class NetworkAnalyzer {
                 // Add port to the list.
                 if (addPort)
                     // Check if this energy port has already been added to the energyPorts ArrayList.
-                    if (!energyPorts.contains(new HexDevice(x, y, z, block)))
+                    if (!portSet.contains(position))
                         // If it hasn't, add it.
-                        energyPorts.add(new HexDevice(x, y, z, block));
+                        addDevice(energyPorts, portSet, x, y, z, position, block);
 
                 // Analyze the next block.
                 if (nextPort) {
                     if (direction == 0)
-                        analyze(world, x, y - 1, z, block, 0);
+                        queueAnalyze(x, y - 1, z, block, 0);
                     if (direction == 1)
-                        analyze(world, x, y + 1, z, block, 1);
+                        queueAnalyze(x, y + 1, z, block, 1);
                     if (direction == 2)
-                        analyze(world, x, y, z - 1, block, 2);
+                        queueAnalyze(x, y, z - 1, block, 2);
                     if (direction == 3)
-                        analyze(world, x, y, z + 1, block, 3);
+                        queueAnalyze(x, y, z + 1, block, 3);
                     if (direction == 4)
-                        analyze(world, x - 1, y, z, block, 4);
+                        queueAnalyze(x - 1, y, z, block, 4);
                     if (direction == 5)
-                        analyze(world, x + 1, y, z, block, 5);
+                        queueAnalyze(x + 1, y, z, block, 5);
                 }
 
                 // Return when done with everything.
@@ -283,61 +438,61 @@ public class NetworkAnalyzer {
             // Check if the current block is an energy source.
             else if (block instanceof IBlockHexEnergySource) {
                 // Check if this energy source has already been added to the energySources ArrayList.
-                if (!energySources.contains(new HexDevice(x, y, z, block))) {
+                if (!sourceSet.contains(position)) {
                     // If it hasn't, get the block's rotation.
                     int rotation = HexUtils.getMetaBitBiInt(HexBlocks.META_MACHINE_ROTATION_0, HexBlocks.META_MACHINE_ROTATION_1, world, x, y, z);
                     // Add the energy source to the ArrayList if the previous direction responds with the rotation of the energy source.
                     if ((rotation == 0 && direction == 2) || (rotation == 1 && direction == 5) || (rotation == 2 && direction == 3) || (rotation == 3 && direction == 4))
-                        energySources.add(new HexDevice(x, y, z, block));
-                    // Exit recursion.
+                        addDevice(energySources, sourceSet, x, y, z, position, block);
+                    // Stop here.
                     return;
                 }
                 else
-                    // If the energy source is already in the energySources ArrayList, exit recursion.
+                    // If the energy source is already in the energySources ArrayList, stop here.
                     return;
             }
 
             // Check if the current block is an energy drain.
             else if (block instanceof IBlockHexEnergyDrain) {
                 if (block == HexBlocks.blockPersonalTeleportationPad && direction == 1) {
-                    if (!teleports.contains(new HexDevice(x, y, z, block)))
-                        teleports.add(new HexDevice(x, y, z, block));
+                    if (!teleportSet.contains(position))
+                        addDevice(teleports, teleportSet, x, y, z, position, block);
                     return;
                 }
                 else if (direction == 2 || direction == 3 || direction == 4 || direction == 5) {
                     // Check if this energy drain has already been added to the energyDrains ArrayList.
-                    if (!energyDrains.contains(new HexDevice(x, y, z, block))) {
+                    if (!drainSet.contains(position)) {
                         // If it hasn't, get the block's rotation.
                         int rotation = HexUtils.getMetaBitBiInt(HexBlocks.META_MACHINE_ROTATION_0, HexBlocks.META_MACHINE_ROTATION_1, world, x, y, z);
                         // Add the energy drain to the ArrayList if the previous direction responds with the rotation of the energy drain.
                         if ((rotation == 0 && direction == 2) || (rotation == 1 && direction == 5) || (rotation == 2 && direction == 3) || (rotation == 3 && direction == 4))
-                            energyDrains.add(new HexDevice(x, y, z, block));
-                        // Exit recursion.
+                            addDevice(energyDrains, drainSet, x, y, z, position, block);
+                        // Stop here.
                         return;
                     }
                     else
-                        // If the energy drain is already in the energyDrains ArrayList, exit recursion.
+                        // If the energy drain is already in the energyDrains ArrayList, stop here.
                         return;
                 }
             }
 
-            // Exit recursion if the block is not a cable, machine or port.
+            // Stop here if the block is not a cable, machine or port.
             else
                 return;
 
-            // Move in all 6 different directions, but avoid going backwards. Call this same function recursively for every direction.
+            // Move in all 6 different directions, but avoid going backwards. Queue every direction for analysis.
             if (direction != 1)
-                analyze(world, x, y - 1, z, block, 0);
+                queueAnalyze(x, y - 1, z, block, 0);
             if (direction != 0)
-                analyze(world, x, y + 1, z, block, 1);
+                queueAnalyze(x, y + 1, z, block, 1);
             if (direction != 3)
-                analyze(world, x, y, z - 1, block, 2);
+                queueAnalyze(x, y, z - 1, block, 2);
             if (direction != 2)
-                analyze(world, x, y, z + 1, block, 3);
+                queueAnalyze(x, y, z + 1, block, 3);
             if (direction != 5)
-                analyze(world, x - 1, y, z, block, 4);
+                queueAnalyze(x - 1, y, z, block, 4);
             if (direction != 4)
-                analyze(world, x + 1, y, z, block, 5);
+                queueAnalyze(x + 1, y, z, block, 5);
         }
         // If this is a pylon base...
         else {
@@ -347,7 +502,7 @@ public class NetworkAnalyzer {
     }
 
     /**
-     * Called recursively to analyze the Energy Pylon network.
+     * Called for every move on the stack to analyze the Energy Pylon network.
      * @param world The world that the block to analyze is in.
      * @param x X coordinate of the block to analyze.
      * @param y Y coordinate of the block to analyze.
@@ -355,9 +510,10 @@ public class NetworkAnalyzer {
      * @param blockPrev The previous block.
      * @param direction The direction of the previous move.
      */
-    private void pylonize(World world, int x, int y, int z, Block blockPrev, int direction) {
-        // Save the current block.
+    private void pylonize(IBlockAccess world, int x, int y, int z, Block blockPrev, int direction) {
+        // Save the current block and its packed coordinates.
         Block block = world.getBlock(x, y, z);
+        long position = HexUtils.packCoordinates(x, y, z);
 
         // Console spam for debugging analysis.
         if (HexConfig.cfgGeneralVerboseNetworkDebug && HexConfig.cfgGeneralNetworkDebug)
@@ -370,25 +526,28 @@ public class NetworkAnalyzer {
                     BlockEnergyPylon.META_ORIENTATION_1,
                     BlockEnergyPylon.META_ORIENTATION_2,
                     world, x, y, z);
-            boolean state = !HexUtils.getMetaBit(BlockEnergyPylon.META_STATE, world, x, y, z);
+            boolean state = isPylonOn(world, x, y, z);
 
             // Analyze pylons only if the pylon is ON.
             if (state) {
                 // Check if the direction is correct or if this is the entry point.
                 if ((orientation == direction) || direction == -1) {
                     // Check if the pylon is not already added.
-                    if (!pylons.contains(new HexDevice(x, y, z, block))) {
+                    if (!pylons.contains(position)) {
                         // Add the pylon.
-                        pylons.add(new HexDevice(x, y, z, block));
-                        TileEnergyPylon pylon = (TileEnergyPylon) world.getTileEntity(x, y, z);
+                        pylons.add(position);
+                        if (isBoundary(position))
+                            return;
+                        ArrayList<HexPylon> linked = getLinkedPylons(world, x, y, z);
 
                         // Perform the analysis on all other pylons linked to this one.
-                        if (pylon != null) {
-                            if (pylon.getPylons() != null)
-                                for (HexPylon entry : pylon.getPylons())
-                                    if (!HexUtils.getMetaBit(BlockEnergyPylon.META_STATE, world, entry.x, entry.y, entry.z))
-                                        if (!pylons.contains(new HexDevice(entry.x, entry.y, entry.z, world.getBlock(entry.x, entry.y, entry.z))))
-                                            pylonize(world, entry.x, entry.y, entry.z, block, -1);
+                        if (linked != null) {
+                            for (int i = 0; i < linked.size(); i++) {
+                                HexPylon entry = linked.get(i);
+                                if (isPylonOn(world, entry.x, entry.y, entry.z))
+                                    if (!pylons.contains(HexUtils.packCoordinates(entry.x, entry.y, entry.z)))
+                                        queuePylonize(entry.x, entry.y, entry.z, block, -1);
+                            }
                         }
                         else
                             return;
@@ -400,6 +559,9 @@ public class NetworkAnalyzer {
                     return;
             }
 
+            else
+                pylonsPassed.add(position);
+
             // Check if the previous block was not a Pylon Base.
             if (!(blockPrev instanceof BlockPylonBase)) {
                 int pylOr0 = BlockPylonBase.META_ORIENTATION_0;
@@ -410,31 +572,48 @@ public class NetworkAnalyzer {
                 if (orientation == 1 &&
                         ((world.getBlock(x, y - 1, z) == HexBlocks.blockPylonBase51 && HexUtils.getMetaBitTriInt(pylOr0, pylOr1, pylOr2, world, x, y - 1, z) == 1) ||
                         (world.getBlock(x, y - 1, z) == HexBlocks.blockPylonBase15 && HexUtils.getMetaBitTriInt(pylOr0, pylOr1, pylOr2, world, x, y - 1, z) != 1)))
-                    analyze(world, x, y - 1, z, block, -1);
+                    queueAnalyze(x, y - 1, z, block, -1);
                 else if (orientation == 0 &&
                         ((world.getBlock(x, y + 1, z) == HexBlocks.blockPylonBase51 && HexUtils.getMetaBitTriInt(pylOr0, pylOr1, pylOr2, world, x, y + 1, z) == 0) ||
                         (world.getBlock(x, y + 1, z) == HexBlocks.blockPylonBase15 && HexUtils.getMetaBitTriInt(pylOr0, pylOr1, pylOr2, world, x, y + 1, z) != 0)))
-                    analyze(world, x, y + 1, z, block, -1);
+                    queueAnalyze(x, y + 1, z, block, -1);
                 else if (orientation == 3 &&
                         ((world.getBlock(x, y, z - 1) == HexBlocks.blockPylonBase51 && HexUtils.getMetaBitTriInt(pylOr0, pylOr1, pylOr2, world, x, y, z - 1) == 3) ||
                         (world.getBlock(x, y, z - 1) == HexBlocks.blockPylonBase15 && HexUtils.getMetaBitTriInt(pylOr0, pylOr1, pylOr2, world, x, y, z - 1) != 3)))
-                    analyze(world, x, y, z - 1, block, -1);
+                    queueAnalyze(x, y, z - 1, block, -1);
                 else if (orientation == 2 &&
                         ((world.getBlock(x, y, z + 1) == HexBlocks.blockPylonBase51 && HexUtils.getMetaBitTriInt(pylOr0, pylOr1, pylOr2, world, x, y, z + 1) == 2) ||
                         (world.getBlock(x, y, z + 1) == HexBlocks.blockPylonBase15 && HexUtils.getMetaBitTriInt(pylOr0, pylOr1, pylOr2, world, x, y, z + 1) != 2)))
-                    analyze(world, x, y, z + 1, block, -1);
+                    queueAnalyze(x, y, z + 1, block, -1);
                 else if (orientation == 5 &&
                         ((world.getBlock(x - 1, y, z) == HexBlocks.blockPylonBase51 && HexUtils.getMetaBitTriInt(pylOr0, pylOr1, pylOr2, world, x - 1, y, z) == 5) ||
                         (world.getBlock(x - 1, y, z) == HexBlocks.blockPylonBase15 && HexUtils.getMetaBitTriInt(pylOr0, pylOr1, pylOr2, world, x - 1, y, z) != 5)))
-                    analyze(world, x - 1, y, z, block, -1);
+                    queueAnalyze(x - 1, y, z, block, -1);
                 else if (orientation == 4 &&
                         ((world.getBlock(x + 1, y, z) == HexBlocks.blockPylonBase51 && HexUtils.getMetaBitTriInt(pylOr0, pylOr1, pylOr2, world, x + 1, y, z) == 4) ||
                         (world.getBlock(x + 1, y, z) == HexBlocks.blockPylonBase15 && HexUtils.getMetaBitTriInt(pylOr0, pylOr1, pylOr2, world, x + 1, y, z) != 4)))
-                    analyze(world, x + 1, y, z, block, -1);
+                    queueAnalyze(x + 1, y, z, block, -1);
             }
         }
     }
 
+    /**
+     * Reads the state of a pylon and remembers it, so that cached results can be checked against it later.
+     * @param world The world that the pylon is in.
+     * @param x X coordinate of the pylon.
+     * @param y Y coordinate of the pylon.
+     * @param z Z coordinate of the pylon.
+     * @return Whether the pylon is ON.
+     */
+    private boolean isPylonOn(IBlockAccess world, int x, int y, int z) {
+        boolean state = !HexUtils.getMetaBit(BlockEnergyPylon.META_STATE, world, x, y, z);
+        if (state)
+            pylonsOn.add(HexUtils.packCoordinates(x, y, z));
+        else
+            pylonsOff.add(HexUtils.packCoordinates(x, y, z));
+        return state;
+    }
+
     /**
      * Determines the base orientation and type.
      * @param world The world that the block to analyze is in.
@@ -443,7 +622,8 @@ public class NetworkAnalyzer {
      * @param z Z coordinate of the block to analyze.
      * @param direction The direction of the previous move.
      */
-    private void determineBase(World world, int x, int y, int z, Block block, int direction) {
+    private void determineBase(IBlockAccess world, int x, int y, int z, Block block, int direction) {
+        long position = HexUtils.packCoordinates(x, y, z);
         int orientation = HexUtils.getMetaBitTriInt(
                 BlockPylonBase.META_ORIENTATION_0,
                 BlockPylonBase.META_ORIENTATION_1,
@@ -459,88 +639,90 @@ public class NetworkAnalyzer {
                     (orientation == 5 && direction != 4) ||
                     direction == -1) {
                 // Check if the base is not already added (use cable list).
-                if (!cables.contains(new HexDevice(x, y, z, block))) {
+                if (!cables.contains(position)) {
                     // Add the base.
-                    cables.add(new HexDevice(x, y, z, block));
+                    cables.add(position);
+                    if (isBoundary(position))
+                        return;
 
                     // Continue analysis.
                     if (orientation == 0) {
-                        pylonize(world, x, y - 1, z, block, 0);
+                        queuePylonize(x, y - 1, z, block, 0);
                         if (direction != 0)
-                            analyze(world, x, y + 1, z, block, 1);
+                            queueAnalyze(x, y + 1, z, block, 1);
                         if (direction != 3)
-                            analyze(world, x, y, z - 1, block, 2);
+                            queueAnalyze(x, y, z - 1, block, 2);
                         if (direction != 2)
-                            analyze(world, x, y, z + 1, block, 3);
+                            queueAnalyze(x, y, z + 1, block, 3);
                         if (direction != 5)
-                            analyze(world, x - 1, y, z, block, 4);
+                            queueAnalyze(x - 1, y, z, block, 4);
                         if (direction != 4)
-                            analyze(world, x + 1, y, z, block, 5);
+                            queueAnalyze(x + 1, y, z, block, 5);
                     }
                     else if (orientation == 1) {
                         if (direction != 1)
-                            analyze(world, x, y - 1, z, block, 0);
-                        pylonize(world, x, y + 1, z, block, 1);
+                            queueAnalyze(x, y - 1, z, block, 0);
+                        queuePylonize(x, y + 1, z, block, 1);
                         if (direction != 3)
-                            analyze(world, x, y, z - 1, block, 2);
+                            queueAnalyze(x, y, z - 1, block, 2);
                         if (direction != 2)
-                            analyze(world, x, y, z + 1, block, 3);
+                            queueAnalyze(x, y, z + 1, block, 3);
                         if (direction != 5)
-                            analyze(world, x - 1, y, z, block, 4);
+                            queueAnalyze(x - 1, y, z, block, 4);
                         if (direction != 4)
-                            analyze(world, x + 1, y, z, block, 5);
+                            queueAnalyze(x + 1, y, z, block, 5);
                     }
                     else if (orientation == 2) {
                         if (direction != 1)
-                            analyze(world, x, y - 1, z, block, 0);
+                            queueAnalyze(x, y - 1, z, block, 0);
                         if (direction != 0)
-                            analyze(world, x, y + 1, z, block, 1);
-                        pylonize(world, x, y, z - 1, block, 2);
+                            queueAnalyze(x, y + 1, z, block, 1);
+                        queuePylonize(x, y, z - 1, block, 2);
                         if (direction != 2)
-                            analyze(world, x, y, z + 1, block, 3);
+                            queueAnalyze(x, y, z + 1, block, 3);
                         if (direction != 5)
-                            analyze(world, x - 1, y, z, block, 4);
+                            queueAnalyze(x - 1, y, z, block, 4);
                         if (direction != 4)
-                            analyze(world, x + 1, y, z, block, 5);
+                            queueAnalyze(x + 1, y, z, block, 5);
                     }
                     else if (orientation == 3) {
                         if (direction != 1)
-                            analyze(world, x, y - 1, z, block, 0);
+                            queueAnalyze(x, y - 1, z, block, 0);
                         if (direction != 0)
-                            analyze(world, x, y + 1, z, block, 1);
+                            queueAnalyze(x, y + 1, z, block, 1);
                         if (direction != 3)
-                            analyze(world, x, y, z - 1, block, 2);
-                        pylonize(world, x, y, z + 1, block, 3);
+                            queueAnalyze(x, y, z - 1, block, 2);
+                        queuePylonize(x, y, z + 1, block, 3);
                         if (direction != 5)
-                            analyze(world, x - 1, y, z, block, 4);
+                            queueAnalyze(x - 1, y, z, block, 4);
                         if (direction != 4)
-                            analyze(world, x + 1, y, z, block, 5);
+                            queueAnalyze(x + 1, y, z, block, 5);
                     }
                     else if (orientation == 4) {
                         if (direction != 1)
-                            analyze(world, x, y - 1, z, block, 0);
+                            queueAnalyze(x, y - 1, z, block, 0);
                         if (direction != 0)
-                            analyze(world, x, y + 1, z, block, 1);
+                            queueAnalyze(x, y + 1, z, block, 1);
                         if (direction != 3)
-                            analyze(world, x, y, z - 1, block, 2);
+                            queueAnalyze(x, y, z - 1, block, 2);
                         if (direction != 2)
-                            analyze(world, x, y, z + 1, block, 3);
-                        pylonize(world, x - 1, y, z, block, 4);
+                            queueAnalyze(x, y, z + 1, block, 3);
+                        queuePylonize(x - 1, y, z, block, 4);
                         if (direction != 4)
-                            analyze(world, x + 1, y, z, block, 5);
+                            queueAnalyze(x + 1, y, z, block, 5);
                     }
                     else {
                         if (direction != 1)
-                            analyze(world, x, y - 1, z, block, 0);
+                            queueAnalyze(x, y - 1, z, block, 0);
                         if (direction != 0)
-                            analyze(world, x, y + 1, z, block, 1);
+                            queueAnalyze(x, y + 1, z, block, 1);
                         if (direction != 3)
-                            analyze(world, x, y, z - 1, block, 2);
+                            queueAnalyze(x, y, z - 1, block, 2);
                         if (direction != 2)
-                            analyze(world, x, y, z + 1, block, 3);
+                            queueAnalyze(x, y, z + 1, block, 3);
                         if (direction != 5)
-                            analyze(world, x - 1, y, z, block, 4);
-                        pylonize(world, x + 1, y, z, block, 5);
+                            queueAnalyze(x - 1, y, z, block, 4);
+                        queuePylonize(x + 1, y, z, block, 5);
                     }
                 }
             }
@@ -556,59 +738,61 @@ public class NetworkAnalyzer {
                     (orientation == 5 && direction == 4) ||
                     direction == -1) {
                 // Check if the base is not already added (use cable list).
-                if (!cables.contains(new HexDevice(x, y, z, block))) {
+                if (!cables.contains(position)) {
                     // Add the base.
-                    cables.add(new HexDevice(x, y, z, block));
+                    cables.add(position);
+                    if (isBoundary(position))
+                        return;
 
                     // Continue analysis.
                     if (orientation == 0) {
                         if (direction == -1)
-                            analyze(world, x, y - 1, z, block, 0);
-                        pylonize(world, x, y + 1, z, block, 1);
-                        pylonize(world, x, y, z - 1, block, 2);
-                        pylonize(world, x, y, z + 1, block, 3);
-                        pylonize(world, x - 1, y, z, block, 4);
-                        pylonize(world, x + 1, y, z, block, 5);
+                            queueAnalyze(x, y - 1, z, block, 0);
+                        queuePylonize(x, y + 1, z, block, 1);
+                        queuePylonize(x, y, z - 1, block, 2);
+                        queuePylonize(x, y, z + 1, block, 3);
+                        queuePylonize(x - 1, y, z, block, 4);
+                        queuePylonize(x + 1, y, z, block, 5);
                     } else if (orientation == 1) {
-                        pylonize(world, x, y - 1, z, block, 0);
+                        queuePylonize(x, y - 1, z, block, 0);
                         if (direction == -1)
-                            analyze(world, x, y + 1, z, block, 1);
-                        pylonize(world, x, y, z - 1, block, 2);
-                        pylonize(world, x, y, z + 1, block, 3);
-                        pylonize(world, x - 1, y, z, block, 4);
-                        pylonize(world, x + 1, y, z, block, 5);
+                            queueAnalyze(x, y + 1, z, block, 1);
+                        queuePylonize(x, y, z - 1, block, 2);
+                        queuePylonize(x, y, z + 1, block, 3);
+                        queuePylonize(x - 1, y, z, block, 4);
+                        queuePylonize(x + 1, y, z, block, 5);
                     } else if (orientation == 2) {
-                        pylonize(world, x, y - 1, z, block, 0);
-                        pylonize(world, x, y + 1, z, block, 1);
+                        queuePylonize(x, y - 1, z, block, 0);
+                        queuePylonize(x, y + 1, z, block, 1);
                         if (direction == -1)
-                            analyze(world, x, y, z - 1, block, 2);
-                        pylonize(world, x, y, z + 1, block, 3);
-                        pylonize(world, x - 1, y, z, block, 4);
-                        pylonize(world, x + 1, y, z, block, 5);
+                            queueAnalyze(x, y, z - 1, block, 2);
+                        queuePylonize(x, y, z + 1, block, 3);
+                        queuePylonize(x - 1, y, z, block, 4);
+                        queuePylonize(x + 1, y, z, block, 5);
                     } else if (orientation == 3) {
-                        pylonize(world, x, y - 1, z, block, 0);
-                        pylonize(world, x, y + 1, z, block, 1);
-                        pylonize(world, x, y, z - 1, block, 2);
+                        queuePylonize(x, y - 1, z, block, 0);
+                        queuePylonize(x, y + 1, z, block, 1);
+                        queuePylonize(x, y, z - 1, block, 2);
                         if (direction == -1)
-                            analyze(world, x, y, z + 1, block, 3);
-                        pylonize(world, x - 1, y, z, block, 4);
-                        pylonize(world, x + 1, y, z, block, 5);
+                            queueAnalyze(x, y, z + 1, block, 3);
+                        queuePylonize(x - 1, y, z, block, 4);
+                        queuePylonize(x + 1, y, z, block, 5);
                     } else if (orientation == 4) {
-                        pylonize(world, x, y - 1, z, block, 0);
-                        pylonize(world, x, y + 1, z, block, 1);
-                        pylonize(world, x, y, z - 1, block, 2);
-                        pylonize(world, x, y, z + 1, block, 3);
+                        queuePylonize(x, y - 1, z, block, 0);
+                        queuePylonize(x, y + 1, z, block, 1);
+                        queuePylonize(x, y, z - 1, block, 2);
+                        queuePylonize(x, y, z + 1, block, 3);
                         if (direction == -1)
-                            analyze(world, x - 1, y, z, block, 4);
-                        pylonize(world, x + 1, y, z, block, 5);
+                            queueAnalyze(x - 1, y, z, block, 4);
+                        queuePylonize(x + 1, y, z, block, 5);
                     } else {
-                        pylonize(world, x, y - 1, z, block, 0);
-                        pylonize(world, x, y + 1, z, block, 1);
-                        pylonize(world, x, y, z - 1, block, 2);
-                        pylonize(world, x, y, z + 1, block, 3);
-                        pylonize(world, x - 1, y, z, block, 4);
+                        queuePylonize(x, y - 1, z, block, 0);
+                        queuePylonize(x, y + 1, z, block, 1);
+                        queuePylonize(x, y, z - 1, block, 2);
+                        queuePylonize(x, y, z + 1, block, 3);
+                        queuePylonize(x - 1, y, z, block, 4);
                         if (direction == -1)
-                            analyze(world, x + 1, y, z, block, 5);
+                            queueAnalyze(x + 1, y, z, block, 5);
                     }
                 }
             }
@@ -616,14 +800,52 @@ public class NetworkAnalyzer {
     }
 
     /**
-     * Begins the analysis from a machine.
+     * Gets the port linked to a tunnel port.
+     * @param world The block access to read from.
+     * @param x X coordinate of the port.
+     * @param y Y coordinate of the port.
+     * @param z Z coordinate of the port.
+     * @return The linked port, or null if there is none.
+     */
+    private static HexDevice getTunnel(IBlockAccess world, int x, int y, int z) {
+        if (world instanceof HexNetworkSnapshot)
+            return ((HexNetworkSnapshot) world).getTunnel(x, y, z);
+
+        TileEntity tileEntity = world.getTileEntity(x, y, z);
+        if (tileEntity instanceof TileEnergyNodePortHEX)
+            return ((TileEnergyNodePortHEX) tileEntity).getTunnel();
+        return null;
+    }
+
+    /**
+     * Gets the pylons linked to a pylon.
+     * @param world The block access to read from.
+     * @param x X coordinate of the pylon.
+     * @param y Y coordinate of the pylon.
+     * @param z Z coordinate of the pylon.
+     * @return The linked pylons, or null if the pylon has no tile entity.
+     */
+    private static ArrayList<HexPylon> getLinkedPylons(IBlockAccess world, int x, int y, int z) {
+        if (world instanceof HexNetworkSnapshot)
+            return ((HexNetworkSnapshot) world).getPylons(x, y, z);
+
+        TileEntity tileEntity = world.getTileEntity(x, y, z);
+        if (!(tileEntity instanceof TileEnergyPylon))
+            return null;
+        ArrayList<HexPylon> linked = ((TileEnergyPylon) tileEntity).getPylons();
+        return linked != null ? linked : new ArrayList<HexPylon>();
+    }
+
+    /**
+     * Queues the block on the connected side of a machine for analysis.
      * @param world The world that the block to analyze is in.
      * @param x X coordinate of the machine.
      * @param y Y coordinate of the machine.
      * @param z Z coordinate of the machine.
      * @param meta Meta of the machine.
+     * @return Packed coordinates of the queued block, or of the machine if nothing was queued.
      */
-    public void analyzeMachines(World world, int x, int y, int z, int meta) {
+    private long queueMachine(IBlockAccess world, int x, int y, int z, int meta) {
         int orientation = HexUtils.getBitBiInt(HexBlocks.META_MACHINE_ROTATION_0, HexBlocks.META_MACHINE_ROTATION_1, meta);
         int pylOr0 = BlockPylonBase.META_ORIENTATION_0;
         int pylOr1 = BlockPylonBase.META_ORIENTATION_1;
@@ -633,23 +855,75 @@ public class NetworkAnalyzer {
         if (orientation == 0 &&
                 (world.getBlock(x, y, z + 1) instanceof BlockHexoriumCable ||
                         (world.getBlock(x, y, z + 1) == HexBlocks.blockPylonBase51 && HexUtils.getMetaBitTriInt(pylOr0, pylOr1, pylOr2, world, x, y, z + 1) != 2) ||
-                        (world.getBlock(x, y, z + 1) == HexBlocks.blockPylonBase15 && HexUtils.getMetaBitTriInt(pylOr0, pylOr1, pylOr2, world, x, y, z + 1) == 2)))
-            analyze(world, x, y, z + 1, world.getBlock(x, y, z + 1), -1);
+                        (world.getBlock(x, y, z + 1) == HexBlocks.blockPylonBase15 && HexUtils.getMetaBitTriInt(pylOr0, pylOr1, pylOr2, world, x, y, z + 1) == 2))) {
+            queueAnalyze(x, y, z + 1, world.getBlock(x, y, z + 1), -1);
+            return HexUtils.packCoordinates(x, y, z + 1);
+        }
         else if (orientation == 1 &&
                 (world.getBlock(x - 1, y, z) instanceof BlockHexoriumCable ||
                         (world.getBlock(x - 1, y, z) == HexBlocks.blockPylonBase51 && HexUtils.getMetaBitTriInt(pylOr0, pylOr1, pylOr2, world, x - 1, y, z) != 5) ||
-                        (world.getBlock(x - 1, y, z) == HexBlocks.blockPylonBase15 && HexUtils.getMetaBitTriInt(pylOr0, pylOr1, pylOr2, world, x - 1, y, z) == 5)))
-            analyze(world, x - 1, y, z, world.getBlock(x - 1, y, z), -1);
+                        (world.getBlock(x - 1, y, z) == HexBlocks.blockPylonBase15 && HexUtils.getMetaBitTriInt(pylOr0, pylOr1, pylOr2, world, x - 1, y, z) == 5))) {
+            queueAnalyze(x - 1, y, z, world.getBlock(x - 1, y, z), -1);
+            return HexUtils.packCoordinates(x - 1, y, z);
+        }
         else if (orientation == 2 &&
                 (world.getBlock(x, y, z - 1) instanceof BlockHexoriumCable ||
                         (world.getBlock(x, y, z - 1) == HexBlocks.blockPylonBase51 && HexUtils.getMetaBitTriInt(pylOr0, pylOr1, pylOr2, world, x, y, z - 1) != 3) ||
-                        (world.getBlock(x, y, z - 1) == HexBlocks.blockPylonBase15 && HexUtils.getMetaBitTriInt(pylOr0, pylOr1, pylOr2, world, x, y, z - 1) == 3)))
-            analyze(world, x, y, z - 1, world.getBlock(x, y, z - 1), -1);
+                        (world.getBlock(x, y, z - 1) == HexBlocks.blockPylonBase15 && HexUtils.getMetaBitTriInt(pylOr0, pylOr1, pylOr2, world, x, y, z - 1) == 3))) {
+            queueAnalyze(x, y, z - 1, world.getBlock(x, y, z - 1), -1);
+            return HexUtils.packCoordinates(x, y, z - 1);
+        }
         else if (orientation == 3 &&
                 (world.getBlock(x + 1, y, z) instanceof BlockHexoriumCable ||
                         (world.getBlock(x + 1, y, z) == HexBlocks.blockPylonBase51 && HexUtils.getMetaBitTriInt(pylOr0, pylOr1, pylOr2, world, x + 1, y, z) != 4) ||
-                        (world.getBlock(x + 1, y, z) == HexBlocks.blockPylonBase15 && HexUtils.getMetaBitTriInt(pylOr0, pylOr1, pylOr2, world, x + 1, y, z) == 4)))
-            analyze(world, x + 1, y, z, world.getBlock(x + 1, y, z), -1);
+                        (world.getBlock(x + 1, y, z) == HexBlocks.blockPylonBase15 && HexUtils.getMetaBitTriInt(pylOr0, pylOr1, pylOr2, world, x + 1, y, z) == 4))) {
+            queueAnalyze(x + 1, y, z, world.getBlock(x + 1, y, z), -1);
+            return HexUtils.packCoordinates(x + 1, y, z);
+        }
+
+        return HexUtils.packCoordinates(x, y, z);
+    }
+
+    /**
+     * Queues the block below a teleport for analysis.
+     * @param world The world that the block to analyze is in.
+     * @param x X coordinate of the teleport.
+     * @param y Y coordinate of the teleport.
+     * @param z Z coordinate of the teleport.
+     * @return Packed coordinates of the queued block, or of the teleport if nothing was queued.
+     */
+    private long queueTeleport(IBlockAccess world, int x, int y, int z) {
+        int pylOr0 = BlockPylonBase.META_ORIENTATION_0;
+        int pylOr1 = BlockPylonBase.META_ORIENTATION_1;
+        int pylOr2 = BlockPylonBase.META_ORIENTATION_2;
+
+        // Proceed to the bottom side.
+        if ((world.getBlock(x, y - 1, z) instanceof BlockHexoriumCable ||
+            (world.getBlock(x, y - 1, z) == HexBlocks.blockPylonBase51 && HexUtils.getMetaBitTriInt(pylOr0, pylOr1, pylOr2, world, x, y - 1, z) != 0) ||
+            (world.getBlock(x, y - 1, z) == HexBlocks.blockPylonBase15 && HexUtils.getMetaBitTriInt(pylOr0, pylOr1, pylOr2, world, x, y - 1, z) == 0))) {
+            queueAnalyze(x, y - 1, z, world.getBlock(x, y - 1, z), -1);
+            return HexUtils.packCoordinates(x, y - 1, z);
+        }
+
+        return HexUtils.packCoordinates(x, y, z);
+    }
+
+    /**
+     * Begins the analysis from a machine.
+     * @param world The world that the block to analyze is in.
+     * @param x X coordinate of the machine.
+     * @param y Y coordinate of the machine.
+     * @param z Z coordinate of the machine.
+     * @param meta Meta of the machine.
+     */
+    public void analyzeMachines(World world, int x, int y, int z, int meta) {
+        long start = queueMachine(getAccess(world), x, y, z, meta);
+
+        // Leave large sections to the queue, starting from the block the machine is connected to.
+        if (!traverseLimited(world)) {
+            HexNetworkQueue.queueCable(world, HexUtils.unpackX(start), HexUtils.unpackY(start), HexUtils.unpackZ(start));
+            return;
+        }
 
         if (energyDrains.size() == 0 || energySources.size() == 0)
             addMachine(world, x, y, z);
@@ -666,16 +940,13 @@ public class NetworkAnalyzer {
      * @param z Z coordinate of the machine.
      */
     public void analyzeTeleport(World world, int x, int y, int z) {
-        int pylOr0 = BlockPylonBase.META_ORIENTATION_0;
-        int pylOr1 = BlockPylonBase.META_ORIENTATION_1;
-        int pylOr2 = BlockPylonBase.META_ORIENTATION_2;
-
-        // Proceed to side depending on orientation.
-        if ((world.getBlock(x, y - 1, z) instanceof BlockHexoriumCable ||
-            (world.getBlock(x, y - 1, z) == HexBlocks.blockPylonBase51 && HexUtils.getMetaBitTriInt(pylOr0, pylOr1, pylOr2, world, x, y - 1, z) != 0) ||
-            (world.getBlock(x, y - 1, z) == HexBlocks.blockPylonBase15 && HexUtils.getMetaBitTriInt(pylOr0, pylOr1, pylOr2, world, x, y - 1, z) == 0)))
-            analyze(world, x, y - 1, z, world.getBlock(x, y - 1, z), -1);
+        long start = queueTeleport(getAccess(world), x, y, z);
 
+        // Leave large sections to the queue, starting from the block the teleport is connected to.
+        if (!traverseLimited(world)) {
+            HexNetworkQueue.queueCable(world, HexUtils.unpackX(start), HexUtils.unpackY(start), HexUtils.unpackZ(start));
+            return;
+        }
 
         if (teleports.size() == 0)
             addTeleport(world, x, y, z);
@@ -693,7 +964,11 @@ public class NetworkAnalyzer {
      */
     public void analyzeCable(World world, int x, int y, int z, Block block) {
         // Call the analysis and wait for results.
-        analyze(world, x, y, z, block, -1);
+        queueAnalyze(x, y, z, block, -1);
+        if (!traverseLimited(world)) {
+            HexNetworkQueue.queueCable(world, x, y, z);
+            return;
+        }
         // Push the results to all found machines.
         pushMachines(world);
     }
@@ -707,17 +982,840 @@ public class NetworkAnalyzer {
      */
     public void analyzePylon(World world, int x, int y, int z, Block block) {
         // Call the analysis and wait for results.
-        pylonize(world, x, y, z, block, -1);
+        queuePylonize(x, y, z, block, -1);
+        if (!traverseLimited(world)) {
+            HexNetworkQueue.queuePylon(world, x, y, z);
+            return;
+        }
+        // Push the results to all found machines.
+        pushMachines(world);
+    }
+
+    /**
+     * Begins the analysis from multiple seeds at once. Seeds share one set of visited positions, so a seed which was
+     * already reached by an earlier seed is skipped, and every distinct network is walked and pushed only once. Unlike
+     * the queue, this runs the whole batch right away.
+     * @param world The world that the seeds are in.
+     * @param cables Packed coordinates of cables, cores and pylon bases to start from.
+     * @param pylons Packed coordinates of pylons to start from.
+     * @param machines Packed coordinates of machines to start from.
+     * @param teleports Packed coordinates of teleports to start from.
+     * @return The distinct networks found, one analyzer per network.
+     */
+    public static ArrayList<NetworkAnalyzer> analyzeSeeds(World world, long[] cables, long[] pylons, long[] machines, long[] teleports) {
+        HexNetworkBatch batch = new HexNetworkBatch(null, cables, pylons, machines, teleports);
+        batch.keepResults();
+        batch.run(world, new HexNetworkBudget(Integer.MAX_VALUE, Integer.MAX_VALUE));
+        return batch.getResults();
+    }
+
+    /**
+     * Checks if a seed was already reached by an earlier analysis.
+     * @param type Type of the seed.
+     * @param position Packed coordinates of the seed.
+     * @param nodes Cables, cores, pylon bases and pylons reached so far.
+     * @param machines Sources and drains reached so far.
+     * @param teleports Teleports reached so far.
+     * @return Whether the seed was reached.
+     */
+    static boolean isVisited(int type, long position, HexLongSet nodes, HexLongSet machines, HexLongSet teleports) {
+        if (type == SEED_CABLE || type == SEED_PYLON)
+            return nodes.contains(position);
+        else if (type == SEED_MACHINES)
+            return machines.contains(position);
+        else
+            return teleports.contains(position);
+    }
+
+    /**
+     * Checks if the block at a seed can still start an analysis of the given type.
+     * @param world The world that the seed is in.
+     * @param type Type of the seed.
+     * @param x X coordinate of the seed.
+     * @param y Y coordinate of the seed.
+     * @param z Z coordinate of the seed.
+     * @return Whether the seed is valid.
+     */
+    static boolean isSeed(World world, int type, int x, int y, int z) {
+        Block block = world.getBlock(x, y, z);
+        if (type == SEED_CABLE)
+            return true;
+        else if (type == SEED_PYLON)
+            return block == HexBlocks.blockEnergyPylon;
+        else if (type == SEED_MACHINES)
+            return block instanceof IBlockHexEnergySource || block instanceof IBlockHexEnergyDrain;
+        else
+            return block == HexBlocks.blockPersonalTeleportationPad;
+    }
+
+    /**
+     * Queues the first moves of an analysis starting from a seed.
+     * @param world The world or snapshot that the seed is in.
+     * @param type Type of the seed.
+     * @param x X coordinate of the seed.
+     * @param y Y coordinate of the seed.
+     * @param z Z coordinate of the seed.
+     * @return Packed coordinates of the first block to analyze.
+     */
+    long begin(IBlockAccess world, int type, int x, int y, int z) {
+        if (type == SEED_CABLE) {
+            queueAnalyze(x, y, z, world.getBlock(x, y, z), -1);
+            return HexUtils.packCoordinates(x, y, z);
+        }
+        else if (type == SEED_PYLON) {
+            queuePylonize(x, y, z, world.getBlock(x, y, z), -1);
+            return HexUtils.packCoordinates(x, y, z);
+        }
+        else if (type == SEED_MACHINES)
+            return queueMachine(world, x, y, z, world.getBlockMetadata(x, y, z));
+        else
+            return queueTeleport(world, x, y, z);
+    }
+
+    /**
+     * Analyzes seeds using a snapshot instead of the world. Only reads the snapshot, so it is safe to call from a
+     * worker thread. The results have to be finished on the server thread.
+     * @param snapshot The snapshot to read from.
+     * @param types Types of the seeds.
+     * @param positions Packed coordinates of the seeds.
+     * @return Analyzer of every seed, or null for seeds reached by an earlier one.
+     */
+    static NetworkAnalyzer[] analyzeSnapshot(HexNetworkSnapshot snapshot, int[] types, long[] positions) {
+        NetworkAnalyzer[] analyzers = new NetworkAnalyzer[positions.length];
+
+        // Prepare the sets of everything reached so far.
+        HexLongSet visitedNodes = new HexLongSet();
+        HexLongSet visitedMachines = new HexLongSet();
+        HexLongSet visitedTeleports = new HexLongSet();
+
+        for (int i = 0; i < positions.length; i++) {
+            // Skip seeds which were already reached.
+            if (isVisited(types[i], positions[i], visitedNodes, visitedMachines, visitedTeleports))
+                continue;
+
+            NetworkAnalyzer analyzer = new NetworkAnalyzer();
+            analyzer.access = snapshot;
+            analyzer.begin(snapshot, types[i], HexUtils.unpackX(positions[i]), HexUtils.unpackY(positions[i]), HexUtils.unpackZ(positions[i]));
+            analyzer.traverse(null);
+            analyzer.addVisited(visitedNodes, visitedMachines, visitedTeleports);
+            analyzers[i] = analyzer;
+        }
+
+        return analyzers;
+    }
+
+    /**
+     * Finishes an analysis started from a seed and pushes the results.
+     * @param world The world that the seed is in.
+     * @param type Type of the seed.
+     * @param x X coordinate of the seed.
+     * @param y Y coordinate of the seed.
+     * @param z Z coordinate of the seed.
+     */
+    void finish(World world, int type, int x, int y, int z) {
+        if (type == SEED_MACHINES && (energyDrains.size() == 0 || energySources.size() == 0))
+            addMachine(world, x, y, z);
+        else if (type == SEED_TELEPORT && teleports.size() == 0)
+            addTeleport(world, x, y, z);
+
         // Push the results to all found machines.
         pushMachines(world);
     }
 
+    /**
+     * Attaches a newly placed machine to the network graph.
+     * @param world The world that the machine is in.
+     * @param x X coordinate of the machine.
+     * @param y Y coordinate of the machine.
+     * @param z Z coordinate of the machine.
+     * @param meta Meta of the machine.
+     */
+    public void attachMachines(World world, int x, int y, int z, int meta) {
+        graph = HexNetworkGraph.get(world);
+        HexNetworkQueue.markChanged(world, x, y, z);
+        seed = queueMachine(getAccess(world), x, y, z, meta);
+
+        // If the machine isn't connected to anything, let it know it is alone.
+        if (seed == HexUtils.packCoordinates(x, y, z)) {
+            addMachine(world, x, y, z);
+            pushMachines(world);
+            return;
+        }
+
+        // Leave large new sections to the queue, which spreads them over several ticks.
+        if (!traverseLimited(world)) {
+            deferAttach(x, y, z);
+            HexNetworkQueue.queueMachines(world, x, y, z);
+            return;
+        }
+        pushAttached(world, x, y, z);
+    }
+
+    /**
+     * Attaches a newly placed teleport to the network graph.
+     * @param world The world that the teleport is in.
+     * @param x X coordinate of the teleport.
+     * @param y Y coordinate of the teleport.
+     * @param z Z coordinate of the teleport.
+     */
+    public void attachTeleport(World world, int x, int y, int z) {
+        graph = HexNetworkGraph.get(world);
+        HexNetworkQueue.markChanged(world, x, y, z);
+        seed = queueTeleport(getAccess(world), x, y, z);
+
+        // If the teleport isn't connected to anything, let it know it is alone.
+        if (seed == HexUtils.packCoordinates(x, y, z)) {
+            addTeleport(world, x, y, z);
+            pushMachines(world);
+            return;
+        }
+
+        // Leave large new sections to the queue, which spreads them over several ticks.
+        if (!traverseLimited(world)) {
+            deferAttach(x, y, z);
+            HexNetworkQueue.queueTeleport(world, x, y, z);
+            return;
+        }
+        pushAttached(world, x, y, z);
+    }
+
+    /**
+     * Attaches a newly placed cable or pylon base to the network graph.
+     * @param world The world that the cable is in.
+     * @param x X coordinate of the cable.
+     * @param y Y coordinate of the cable.
+     * @param z Z coordinate of the cable.
+     */
+    public void attachCable(World world, int x, int y, int z, Block block) {
+        graph = HexNetworkGraph.get(world);
+        HexNetworkQueue.markChanged(world, x, y, z);
+        seed = HexUtils.packCoordinates(x, y, z);
+
+        queueAnalyze(x, y, z, block, -1);
+
+        // Leave large new sections to the queue, which spreads them over several ticks.
+        if (!traverseLimited(world)) {
+            deferAttach(x, y, z);
+            HexNetworkQueue.queueCable(world, x, y, z);
+            return;
+        }
+        pushAttached(world, x, y, z);
+    }
+
+    /**
+     * Attaches a newly placed pylon to the network graph.
+     * @param world The world that the pylon is in.
+     * @param x X coordinate of the pylon.
+     * @param y Y coordinate of the pylon.
+     * @param z Z coordinate of the pylon.
+     */
+    public void attachPylon(World world, int x, int y, int z, Block block) {
+        graph = HexNetworkGraph.get(world);
+        HexNetworkQueue.markChanged(world, x, y, z);
+        seed = HexUtils.packCoordinates(x, y, z);
+
+        queuePylonize(x, y, z, block, -1);
+
+        // Leave large new sections to the queue, which spreads them over several ticks.
+        if (!traverseLimited(world)) {
+            deferAttach(x, y, z);
+            HexNetworkQueue.queuePylon(world, x, y, z);
+            return;
+        }
+        pushAttached(world, x, y, z);
+    }
+
+    /**
+     * Detaches a removed cable, pylon base or pylon from the network graph. A search is started from every side of the
+     * removed node and the searches are advanced in turns, one move at a time. Searches which meet are joined, and
+     * searching stops once at most one group can still grow. Only groups which were proven to be disconnected receive
+     * a new network, so the cost depends on the smaller part instead of the whole network.
+     * @param world The world that the node was in.
+     * @param x X coordinate of the node.
+     * @param y Y coordinate of the node.
+     * @param z Z coordinate of the node.
+     * @param block The removed block.
+     * @param meta Meta of the removed block.
+     * @return Whether the removal was handled. If not, the neighbours have to perform a full analysis.
+     */
+    public boolean detachNode(World world, int x, int y, int z, Block block, int meta) {
+        graph = HexNetworkGraph.get(world);
+        HexNetworkQueue.markChanged(world, x, y, z);
+        long removed = HexUtils.packCoordinates(x, y, z);
+        HexNetwork network = graph.removeNode(removed);
+        if (network == null)
+            return false;
+
+        // Remember the machine counts of the network before splitting.
+        int sourcesBefore = network.sources.size();
+        int drainsBefore = network.drains.size();
+        int portsBefore = network.ports.size();
+        int teleportsBefore = network.teleports.size();
+
+        // Start a search from every side of the removed node, the same way the node itself would have continued.
+        int orientation = HexUtils.getBitTriInt(
+                BlockPylonBase.META_ORIENTATION_0,
+                BlockPylonBase.META_ORIENTATION_1,
+                BlockPylonBase.META_ORIENTATION_2, meta);
+        HexLongIntMap owners = new HexLongIntMap(-1);
+        NetworkAnalyzer[] searches = new NetworkAnalyzer[6];
+        int[] groups = new int[6];
+        for (int i = 0; i < 6; i++) {
+            NetworkAnalyzer search = new NetworkAnalyzer();
+            search.graph = graph;
+            search.restrict = network;
+            search.owners = owners;
+            search.index = i;
+            // A pylon enters its base without a direction, the same way its own analysis does.
+            if (block == HexBlocks.blockEnergyPylon)
+                search.queueAnalyze(x + OFFSET_X[i], y + OFFSET_Y[i], z + OFFSET_Z[i], block, -1);
+            else if ((block == HexBlocks.blockPylonBase51 && i == orientation)
+                    || (block == HexBlocks.blockPylonBase15 && i != orientation))
+                search.queuePylonize(x + OFFSET_X[i], y + OFFSET_Y[i], z + OFFSET_Z[i], block, i);
+            else
+                search.queueAnalyze(x + OFFSET_X[i], y + OFFSET_Y[i], z + OFFSET_Z[i], block, i);
+            searches[i] = search;
+            groups[i] = i;
+        }
+
+        // Advance the searches in turns until at most one group can still grow. Groups which reached an unloaded
+        // chunk might still be connected through it, so they count as growing.
+        HexNetworkBudget budget = new HexNetworkBudget(HexConfig.cfgGeneralNetworkAnalysisMoves, HexConfig.cfgGeneralNetworkAnalysisTime);
+        do {
+            for (int i = 0; i < 6; i++) {
+                NetworkAnalyzer search = searches[i];
+                if (search.stackSize > 0) {
+                    // If both sides are too large to tell apart within the budget, leave the removal to the queued
+                    // analyses of the neighbours, which are spread over several ticks.
+                    if (!budget.spend()) {
+                        if (HexConfig.cfgGeneralNetworkDebug)
+                            System.out.println("[Network Analyzer] Detaching node from network " + network.id + " exceeded the budget, queueing neighbours.");
+                        return false;
+                    }
+                    search.step(world);
+                    // Join the groups of searches which met.
+                    if (search.met != -1) {
+                        groups[findGroup(groups, i)] = findGroup(groups, search.met);
+                        search.met = -1;
+                    }
+                }
+            }
+        } while (countActive(searches, groups) > 1 && hasMoves(searches));
+        graph.markRemoved(world, removed, block);
+
+        // Collect the nodes and machines found by every group.
+        HexLongSet[] nodes = new HexLongSet[6];
+        HexNetwork[] found = new HexNetwork[6];
+        for (int i = 0; i < 6; i++) {
+            nodes[i] = new HexLongSet();
+            found[i] = new HexNetwork(i);
+        }
+        long[] positions = owners.toKeyArray();
+        int[] indexes = owners.toValueArray();
+        for (int i = 0; i < positions.length; i++)
+            nodes[findGroup(groups, indexes[i])].add(positions[i]);
+        for (int i = 0; i < 6; i++) {
+            HexNetwork group = found[findGroup(groups, i)];
+            addAll(group.sources, searches[i].sourceSet);
+            addAll(group.drains, searches[i].drainSet);
+            addAll(group.ports, searches[i].portSet);
+            addAll(group.teleports, searches[i].teleportSet);
+        }
+
+        // The groups which can still grow keep the network. If none can, the largest one keeps it.
+        boolean[] open = new boolean[6];
+        int keeper = -1;
+        for (int i = 0; i < 6; i++)
+            if (isOpen(searches[i])) {
+                keeper = findGroup(groups, i);
+                open[keeper] = true;
+                graph.addFrontier(network, searches[i].frontier.toArray());
+            }
+        boolean complete = keeper == -1;
+        if (complete) {
+            keeper = findGroup(groups, 0);
+            for (int i = 0; i < 6; i++)
+                if (findGroup(groups, i) == i && nodes[i].size() > nodes[keeper].size())
+                    keeper = i;
+        }
+
+        // Move every other group with nodes into a new network.
+        ArrayList<HexNetwork> splits = new ArrayList<HexNetwork>();
+        for (int i = 0; i < 6; i++)
+            if (i != keeper && !open[i] && findGroup(groups, i) == i && !nodes[i].isEmpty()) {
+                HexNetwork split = graph.split(network, nodes[i].toArray());
+                moveAll(network.sources, split.sources, found[i].sources);
+                moveAll(network.drains, split.drains, found[i].drains);
+                moveAll(network.ports, split.ports, found[i].ports);
+                moveAll(network.teleports, split.teleports, found[i].teleports);
+                splits.add(split);
+            }
+
+        // Find the machines which lost their connection.
+        HexNetwork detached = new HexNetwork(HexNetworkGraph.NO_NETWORK);
+        if (complete || network.size <= 0) {
+            // The whole network is known, so anything the keeper didn't find is no longer connected.
+            HexNetwork kept = network.size > 0 ? found[keeper] : new HexNetwork(HexNetworkGraph.NO_NETWORK);
+            moveMissing(network.sources, detached.sources, kept.sources);
+            moveMissing(network.drains, detached.drains, kept.drains);
+            moveMissing(network.ports, detached.ports, kept.ports);
+            moveMissing(network.teleports, detached.teleports, kept.teleports);
+        }
+        else {
+            // Otherwise, only the machines reached directly from the removed node can have lost their connection.
+            for (int i = 0; i < 6; i++)
+                if (i != keeper && !open[i] && findGroup(groups, i) == i && nodes[i].isEmpty()) {
+                    detachFound(world, network, network.sources, detached.sources, found[i].sources, found[keeper].sources, removed);
+                    detachFound(world, network, network.drains, detached.drains, found[i].drains, found[keeper].drains, removed);
+                    detachFound(world, network, network.ports, detached.ports, found[i].ports, found[keeper].ports, removed);
+                    detachFound(world, network, network.teleports, detached.teleports, found[i].teleports, found[keeper].teleports, removed);
+                }
+        }
+        graph.markDirty();
+
+        if (HexConfig.cfgGeneralNetworkDebug) {
+            System.out.println("[Network Analyzer] Detached node from network " + network.id + ". Split: " + splits.size() + ", searched: " + positions.length);
+            System.out.println("[Network Analyzer] Pushing data to changed machines...");
+        }
+
+        // Push the full results to all machines of the new networks.
+        for (HexNetwork split : splits) {
+            split.touch();
+            pushDrains(world, split.sources.toArray(), split.id);
+            pushSources(world, split.drains.toArray(), split.id);
+            pushPorts(world, split.ports.toArray(), split.id);
+            pushTeleports(world, split.teleports.toArray(), split.id);
+        }
+
+        // Push to machines of the kept network only if their counterparts changed.
+        network.touch();
+        if (network.size > 0) {
+            if (network.sources.size() != sourcesBefore)
+                pushSources(world, network.drains.toArray(), network.id);
+            if (network.drains.size() != drainsBefore)
+                pushDrains(world, network.sources.toArray(), network.id);
+            if (network.ports.size() != portsBefore)
+                pushPorts(world, network.ports.toArray(), network.id);
+            if (network.teleports.size() != teleportsBefore)
+                pushTeleports(world, network.teleports.toArray(), network.id);
+        }
+
+        // Let the detached machines know they are alone.
+        pushDrains(world, detached.sources.toArray(), HexNetworkGraph.NO_NETWORK);
+        pushSources(world, detached.drains.toArray(), HexNetworkGraph.NO_NETWORK);
+        pushPorts(world, detached.ports.toArray(), HexNetworkGraph.NO_NETWORK);
+        pushTeleports(world, detached.teleports.toArray(), HexNetworkGraph.NO_NETWORK);
+        return true;
+    }
+
+    /**
+     * Detaches a removed machine from the networks around it.
+     * @param world The world that the machine was in.
+     * @param x X coordinate of the machine.
+     * @param y Y coordinate of the machine.
+     * @param z Z coordinate of the machine.
+     * @param block The removed block.
+     * @return Whether the machine was part of any network.
+     */
+    public boolean detachDevice(World world, int x, int y, int z, Block block) {
+        graph = HexNetworkGraph.get(world);
+        HexNetworkQueue.markChanged(world, x, y, z);
+        long position = HexUtils.packCoordinates(x, y, z);
+        boolean handled = false;
+
+        // Remove the machine from every adjacent network and notify its counterparts.
+        for (int i = 0; i < 6; i++) {
+            HexNetwork network = graph.getNetwork(HexUtils.packCoordinates(x + OFFSET_X[i], y + OFFSET_Y[i], z + OFFSET_Z[i]));
+            if (network == null)
+                continue;
+            if (network.sources.remove(position)) {
+                network.touch();
+                pushSources(world, network.drains.toArray(), network.id);
+                handled = true;
+            }
+            if (network.drains.remove(position)) {
+                network.touch();
+                pushDrains(world, network.sources.toArray(), network.id);
+                handled = true;
+            }
+            if (network.ports.remove(position)) {
+                network.touch();
+                pushPorts(world, network.ports.toArray(), network.id);
+                handled = true;
+            }
+            if (network.teleports.remove(position)) {
+                network.touch();
+                pushTeleports(world, network.teleports.toArray(), network.id);
+                handled = true;
+            }
+        }
+
+        if (handled) {
+            graph.markRemoved(world, position, block);
+            graph.markDirty();
+            if (HexConfig.cfgGeneralNetworkDebug)
+                System.out.println("[Network Analyzer] Detached machine at (" + x + ", " + y + ", " + z + ").");
+        }
+        return handled;
+    }
+
+    /**
+     * Finds the root of a group of searches.
+     * @param groups Parents of the groups.
+     * @param i Index of the search.
+     * @return Index of the root search.
+     */
+    private static int findGroup(int[] groups, int i) {
+        while (groups[i] != i)
+            i = groups[i];
+        return i;
+    }
+
+    /**
+     * Counts the groups of searches which can still grow.
+     * @param searches The searches.
+     * @param groups Parents of the groups.
+     * @return The number of active groups.
+     */
+    private static int countActive(NetworkAnalyzer[] searches, int[] groups) {
+        boolean[] active = new boolean[searches.length];
+        int count = 0;
+        for (int i = 0; i < searches.length; i++)
+            if (isOpen(searches[i])) {
+                int group = findGroup(groups, i);
+                if (!active[group]) {
+                    active[group] = true;
+                    count++;
+                }
+            }
+        return count;
+    }
+
+    /**
+     * Checks if a search can still grow, either by moves left on its stack or through an unloaded chunk.
+     * @param search The search to check.
+     * @return Whether the search is open.
+     */
+    private static boolean isOpen(NetworkAnalyzer search) {
+        return search.stackSize > 0 || !search.frontier.isEmpty();
+    }
+
+    /**
+     * Checks if any search still has moves left.
+     * @param searches The searches to check.
+     * @return Whether any search can be advanced.
+     */
+    private static boolean hasMoves(NetworkAnalyzer[] searches) {
+        for (NetworkAnalyzer search : searches)
+            if (search.stackSize > 0)
+                return true;
+        return false;
+    }
+
+    /**
+     * Adds all values of one set to another.
+     */
+    private static void addAll(HexLongSet target, HexLongSet values) {
+        for (long value : values.toArray())
+            target.add(value);
+    }
+
+    /**
+     * Moves the given values from one set to another.
+     */
+    private static void moveAll(HexLongSet from, HexLongSet to, HexLongSet values) {
+        for (long value : values.toArray()) {
+            from.remove(value);
+            to.add(value);
+        }
+    }
+
+    /**
+     * Moves all values which are not kept from one set to another.
+     */
+    private static void moveMissing(HexLongSet from, HexLongSet to, HexLongSet kept) {
+        for (long value : from.toArray())
+            if (!kept.contains(value)) {
+                from.remove(value);
+                to.add(value);
+            }
+    }
+
+    /**
+     * Detaches machines which were reached directly from a removed node, unless they are still connected.
+     * @param world The world that the machines are in.
+     * @param network The network the machines belonged to.
+     * @param from The machine set of the network.
+     * @param detached Set to add the detached machines to.
+     * @param candidates Machines reached directly from the removed node.
+     * @param kept Machines found by the group which keeps the network.
+     * @param removed Packed coordinates of the removed node.
+     */
+    private static void detachFound(World world, HexNetwork network, HexLongSet from, HexLongSet detached,
+                                    HexLongSet candidates, HexLongSet kept, long removed) {
+        for (long position : candidates.toArray())
+            if (!kept.contains(position) && !touchesNetwork(world, network, position, removed) && from.remove(position))
+                detached.add(position);
+    }
+
+    /**
+     * Checks if a HEX port still touches a network through a side other than the removed node. Other machines only
+     * connect through a single side, so they can never touch it.
+     * @param world The world that the machine is in.
+     * @param network The network to check.
+     * @param position Packed coordinates of the machine.
+     * @param removed Packed coordinates of the removed node.
+     * @return Whether the machine still touches the network.
+     */
+    private static boolean touchesNetwork(World world, HexNetwork network, long position, long removed) {
+        int x = HexUtils.unpackX(position);
+        int y = HexUtils.unpackY(position);
+        int z = HexUtils.unpackZ(position);
+        if (world.getBlock(x, y, z) != HexBlocks.blockEnergyNodePortHEX)
+            return false;
+
+        HexNetworkGraph graph = HexNetworkGraph.get(world);
+        for (int i = 0; i < 6; i++) {
+            long neighbour = HexUtils.packCoordinates(x + OFFSET_X[i], y + OFFSET_Y[i], z + OFFSET_Z[i]);
+            if (neighbour != removed && graph.getNetwork(neighbour) == network)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if a node reached while attaching is already in the network graph. Such nodes are recorded as the
+     * boundary and are not analyzed any further, because their network is already known. When searching after a
+     * removal, nodes are instead claimed by the search which reaches them first.
+     * @param position Packed coordinates of the node.
+     * @return Whether the node is on the boundary.
+     */
+    private boolean isBoundary(long position) {
+        // When searching after a removal, stay inside the network and stop where another search has already been.
+        if (restrict != null) {
+            if (graph.getNetwork(position) != restrict) {
+                boundary.add(position);
+                return true;
+            }
+            int owner = owners.get(position);
+            if (owner == -1) {
+                owners.put(position, index);
+                return false;
+            }
+            met = owner;
+            return true;
+        }
+
+        if (graph != null && position != seed && graph.contains(position)) {
+            boundary.add(position);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Logs that attaching a block ran out of budget and was left to the queue.
+     * @param x X coordinate of the placed block.
+     * @param y Y coordinate of the placed block.
+     * @param z Z coordinate of the placed block.
+     */
+    private void deferAttach(int x, int y, int z) {
+        if (HexConfig.cfgGeneralNetworkDebug)
+            System.out.println("[Network Analyzer] Attaching (" + x + ", " + y + ", " + z + ") exceeded the budget after "
+                    + getNodeCount() + " nodes, queueing.");
+    }
+
+    /**
+     * Merges the results of attaching into the network graph and pushes them to the machines whose connections
+     * actually changed.
+     * @param world The world that the network is in.
+     * @param x X coordinate of the placed block.
+     * @param y Y coordinate of the placed block.
+     * @param z Z coordinate of the placed block.
+     */
+    private void pushAttached(World world, int x, int y, int z) {
+        // Collect the networks found on the boundary, including the one of the starting node.
+        ArrayList<HexNetwork> touched = new ArrayList<HexNetwork>();
+        HexNetwork seedNetwork = graph.getNetwork(seed);
+        if (seedNetwork != null)
+            touched.add(seedNetwork);
+        for (long position : boundary.toArray()) {
+            HexNetwork network = graph.getNetwork(position);
+            if (network != null && !touched.contains(network))
+                touched.add(network);
+        }
+
+        // Remember the machines of every touched network before merging.
+        int count = touched.size();
+        long[][] sourcesBefore = new long[count][];
+        long[][] drainsBefore = new long[count][];
+        long[][] portsBefore = new long[count][];
+        long[][] teleportsBefore = new long[count][];
+        for (int i = 0; i < count; i++) {
+            HexNetwork network = touched.get(i);
+            sourcesBefore[i] = network.sources.toArray();
+            drainsBefore[i] = network.drains.toArray();
+            portsBefore[i] = network.ports.toArray();
+            teleportsBefore[i] = network.teleports.toArray();
+        }
+
+        // Merge all touched networks into one.
+        HexNetwork merged = count > 0 ? touched.get(0) : graph.createNetwork();
+        for (int i = 1; i < count; i++)
+            merged = graph.union(merged, touched.get(i));
+        graph.addFrontier(merged, frontier.toArray());
+
+        // Add all newly found nodes.
+        for (long position : cables.toArray())
+            if (!boundary.contains(position))
+                graph.addNode(position, merged);
+        for (long position : pylons.toArray())
+            if (!boundary.contains(position))
+                graph.addNode(position, merged);
+
+        // Add all newly found machines.
+        HexLongSet newSources = new HexLongSet();
+        HexLongSet newDrains = new HexLongSet();
+        HexLongSet newPorts = new HexLongSet();
+        HexLongSet newTeleports = new HexLongSet();
+        for (long position : sourceSet.toArray())
+            if (merged.sources.add(position))
+                newSources.add(position);
+        for (long position : drainSet.toArray())
+            if (merged.drains.add(position))
+                newDrains.add(position);
+        for (long position : portSet.toArray())
+            if (merged.ports.add(position))
+                newPorts.add(position);
+        for (long position : teleportSet.toArray())
+            if (merged.teleports.add(position))
+                newTeleports.add(position);
+
+        // The placed block always receives the results.
+        long placed = HexUtils.packCoordinates(x, y, z);
+        if (merged.sources.contains(placed))
+            newSources.add(placed);
+        if (merged.drains.contains(placed))
+            newDrains.add(placed);
+        if (merged.teleports.contains(placed))
+            newTeleports.add(placed);
+
+        if (HexConfig.cfgGeneralNetworkDebug) {
+            System.out.println("[Network Analyzer] Attached to " + count + " network(s), merged into " + merged.id + ".");
+            System.out.println("[Network Analyzer] Pushing data to changed machines...");
+        }
+
+        merged.touch();
+
+        // Push to machines of touched networks only if their counterparts changed.
+        for (int i = 0; i < count; i++) {
+            if (merged.sources.size() != sourcesBefore[i].length)
+                pushSources(world, drainsBefore[i], merged.id);
+            if (merged.drains.size() != drainsBefore[i].length)
+                pushDrains(world, sourcesBefore[i], merged.id);
+            if (merged.ports.size() != portsBefore[i].length)
+                pushPorts(world, portsBefore[i], merged.id);
+            if (merged.teleports.size() != teleportsBefore[i].length)
+                pushTeleports(world, teleportsBefore[i], merged.id);
+        }
+
+        // Push to all new machines.
+        pushDrains(world, newSources.toArray(), merged.id);
+        pushSources(world, newDrains.toArray(), merged.id);
+        pushPorts(world, newPorts.toArray(), merged.id);
+        pushTeleports(world, newTeleports.toArray(), merged.id);
+    }
+
+    /**
+     * Pushes the network of sources to drains.
+     * @param world The world that the drains are in.
+     * @param drains Packed coordinates of the drains.
+     * @param network ID of the network to push.
+     */
+    private static void pushSources(World world, long[] drains, int network) {
+        for (long position : drains) {
+            TileEntity tileEntity = getLoadedTileEntity(world, position);
+            if (tileEntity instanceof ITileHexEnergyDrain)
+                ((ITileHexEnergyDrain) tileEntity).setDrainNetwork(network);
+        }
+    }
+
+    /**
+     * Pushes the network of drains to sources.
+     * @param world The world that the sources are in.
+     * @param sources Packed coordinates of the sources.
+     * @param network ID of the network to push.
+     */
+    private static void pushDrains(World world, long[] sources, int network) {
+        for (long position : sources) {
+            TileEntity tileEntity = getLoadedTileEntity(world, position);
+            if (tileEntity instanceof ITileHexEnergySource)
+                ((ITileHexEnergySource) tileEntity).setSourceNetwork(network);
+        }
+    }
+
+    /**
+     * Pushes the network of ports to ports.
+     * @param world The world that the ports are in.
+     * @param targets Packed coordinates of the ports to push to.
+     * @param network ID of the network to push.
+     */
+    private static void pushPorts(World world, long[] targets, int network) {
+        for (long position : targets) {
+            TileEntity tileEntity = getLoadedTileEntity(world, position);
+            if (tileEntity instanceof ITileHexEnergyPort)
+                ((ITileHexEnergyPort) tileEntity).setPortNetwork(network);
+        }
+    }
+
+    /**
+     * Pushes the network of teleports to teleports.
+     * @param world The world that the teleports are in.
+     * @param targets Packed coordinates of the teleports to push to.
+     * @param network ID of the network to push.
+     */
+    private static void pushTeleports(World world, long[] targets, int network) {
+        for (long position : targets) {
+            TileEntity tileEntity = getLoadedTileEntity(world, position);
+            if (tileEntity instanceof TilePersonalTeleportationPad)
+                ((TilePersonalTeleportationPad) tileEntity).setTeleportNetwork(network);
+        }
+    }
+
+    /**
+     * Gets a tile entity, but only if its chunk is loaded.
+     * @param world The world that the tile entity is in.
+     * @param position Packed coordinates of the tile entity.
+     * @return The tile entity, or null if it is not loaded.
+     */
+    private static TileEntity getLoadedTileEntity(World world, long position) {
+        int x = HexUtils.unpackX(position);
+        int z = HexUtils.unpackZ(position);
+        if (!HexUtils.checkChunk(world, x, z))
+            return null;
+        return world.getTileEntity(x, HexUtils.unpackY(position), z);
+    }
+
     /**
      * Pushes the results of scanning to sources, drains, ports and teleports.
      * @param world The world that the network is in.
      */
     private void pushMachines(World world) {
 
+        // Record the results of a full analysis in the network graph. Machines without any conductors have no network.
+        int network = HexNetworkGraph.NO_NETWORK;
+        if (graph == null && (cables.size() > 0 || pylons.size() > 0)) {
+            HexNetworkGraph networkGraph = HexNetworkGraph.get(world);
+            long[] nodes = getNodes();
+            HexNetwork kept = networkGraph.findKept(nodes);
+            if (kept != null) {
+                pushKept(world, networkGraph, kept, nodes);
+                return;
+            }
+            network = networkGraph.assign(nodes,
+                    sourceSet.toArray(), drainSet.toArray(), portSet.toArray(), teleportSet.toArray(), frontier.toArray()).id;
+        }
+
         // Notify about pushing to sources.
         if (HexConfig.cfgGeneralNetworkDebug) {
             System.out.println("[Network Analyzer] Done!");
@@ -726,8 +1824,9 @@ public class NetworkAnalyzer {
 
         // Go through all energySources ArrayList entries.
         for (HexDevice entry : energySources) {
-            ITileHexEnergySource energySource = (ITileHexEnergySource) world.getTileEntity(entry.x, entry.y, entry.z);
-            energySource.setDrains(energyDrains);
+            TileEntity tileEntity = getLoadedTileEntity(world, HexUtils.packCoordinates(entry.x, entry.y, entry.z));
+            if (tileEntity instanceof ITileHexEnergySource)
+                ((ITileHexEnergySource) tileEntity).setSourceNetwork(network);
         }
 
         // Notify about pushing to drains.
@@ -736,8 +1835,9 @@ public class NetworkAnalyzer {
 
         // Go through all energyDrains ArrayList entries.
         for (HexDevice entry : energyDrains) {
-            ITileHexEnergyDrain energyDrain = (ITileHexEnergyDrain) world.getTileEntity(entry.x, entry.y, entry.z);
-            energyDrain.setSources(energySources);
+            TileEntity tileEntity = getLoadedTileEntity(world, HexUtils.packCoordinates(entry.x, entry.y, entry.z));
+            if (tileEntity instanceof ITileHexEnergyDrain)
+                ((ITileHexEnergyDrain) tileEntity).setDrainNetwork(network);
         }
 
         // Notify about pushing to ports.
@@ -746,8 +1846,9 @@ public class NetworkAnalyzer {
 
         // Go through all energyPorts ArrayList entries.
         for (HexDevice entry : energyPorts) {
-            ITileHexEnergyPort energyPort = (ITileHexEnergyPort) world.getTileEntity(entry.x, entry.y, entry.z);
-            energyPort.setPorts(energyPorts);
+            TileEntity tileEntity = getLoadedTileEntity(world, HexUtils.packCoordinates(entry.x, entry.y, entry.z));
+            if (tileEntity instanceof ITileHexEnergyPort)
+                ((ITileHexEnergyPort) tileEntity).setPortNetwork(network);
         }
 
         // Notify about pushing teleports.
@@ -756,9 +1857,223 @@ public class NetworkAnalyzer {
 
         // Go through all teleports ArrayList entries.
         for (HexDevice entry : teleports) {
-            TilePersonalTeleportationPad teleport = (TilePersonalTeleportationPad) world.getTileEntity(entry.x, entry.y, entry.z);
-            teleport.setTeleports(teleports);
+            TileEntity tileEntity = getLoadedTileEntity(world, HexUtils.packCoordinates(entry.x, entry.y, entry.z));
+            if (tileEntity instanceof TilePersonalTeleportationPad)
+                ((TilePersonalTeleportationPad) tileEntity).setTeleportNetwork(network);
+        }
+    }
+
+    /**
+     * Registers the results of scanning in a network which keeps its ID, and pushes them only to the machines whose
+     * network changed. New machines receive the network, machines whose counterparts changed receive it again, and
+     * machines which are no longer connected are left without a network.
+     * @param world The world that the network is in.
+     * @param networkGraph The network graph of the world.
+     * @param network The network to keep.
+     * @param nodes Packed coordinates of all cables, cores, pylon bases and pylons found.
+     */
+    private void pushKept(World world, HexNetworkGraph networkGraph, HexNetwork network, long[] nodes) {
+        // Remember the machines of the network before replacing them.
+        long[] sourcesBefore = network.sources.toArray();
+        long[] drainsBefore = network.drains.toArray();
+        long[] portsBefore = network.ports.toArray();
+        long[] teleportsBefore = network.teleports.toArray();
+
+        networkGraph.keep(network, nodes,
+                sourceSet.toArray(), drainSet.toArray(), portSet.toArray(), teleportSet.toArray(), frontier.toArray());
+
+        HexLongSet newSources = new HexLongSet();
+        HexLongSet newDrains = new HexLongSet();
+        HexLongSet newPorts = new HexLongSet();
+        HexLongSet newTeleports = new HexLongSet();
+        boolean sourcesChanged = findNew(sourceSet, sourcesBefore, newSources);
+        boolean drainsChanged = findNew(drainSet, drainsBefore, newDrains);
+        boolean portsChanged = findNew(portSet, portsBefore, newPorts);
+        boolean teleportsChanged = findNew(teleportSet, teleportsBefore, newTeleports);
+
+        if (HexConfig.cfgGeneralNetworkDebug)
+            System.out.println("[Network Analyzer] Done! Pushing data to changed machines of network " + network.id + "...");
+
+        // Push to all new machines, and to all machines of a kind whose counterparts changed.
+        pushDrains(world, drainsChanged ? sourceSet.toArray() : newSources.toArray(), network.id);
+        pushSources(world, sourcesChanged ? drainSet.toArray() : newDrains.toArray(), network.id);
+        pushPorts(world, portsChanged ? portSet.toArray() : newPorts.toArray(), network.id);
+        pushTeleports(world, teleportsChanged ? teleportSet.toArray() : newTeleports.toArray(), network.id);
+
+        // Let the machines which are no longer connected know they are alone, unless another network has them now.
+        pushDrains(world, findLost(networkGraph, sourcesBefore, sourceSet), HexNetworkGraph.NO_NETWORK);
+        pushSources(world, findLost(networkGraph, drainsBefore, drainSet), HexNetworkGraph.NO_NETWORK);
+        pushPorts(world, findLost(networkGraph, portsBefore, portSet), HexNetworkGraph.NO_NETWORK);
+        pushTeleports(world, findLost(networkGraph, teleportsBefore, teleportSet), HexNetworkGraph.NO_NETWORK);
+    }
+
+    /**
+     * Finds the machines which were not part of a network before.
+     * @param found The machines found by the analysis.
+     * @param before Packed coordinates of the machines before.
+     * @param added Set to add the new machines to.
+     * @return Whether the machines changed in any way.
+     */
+    private static boolean findNew(HexLongSet found, long[] before, HexLongSet added) {
+        HexLongSet previous = new HexLongSet();
+        for (long position : before)
+            previous.add(position);
+        for (long position : found.toArray())
+            if (!previous.contains(position))
+                added.add(position);
+        return added.size() > 0 || found.size() != before.length;
+    }
+
+    /**
+     * Finds the machines which are no longer part of a network or any other.
+     * @param networkGraph The network graph of the world.
+     * @param before Packed coordinates of the machines before.
+     * @param found The machines found by the analysis.
+     * @return Packed coordinates of the lost machines.
+     */
+    private static long[] findLost(HexNetworkGraph networkGraph, long[] before, HexLongSet found) {
+        HexLongSet lost = new HexLongSet();
+        for (long position : before)
+            if (!found.contains(position) && !networkGraph.hasMachine(position))
+                lost.add(position);
+        return lost.toArray();
+    }
+
+    /**
+     * Adds everything reached by this analysis to the given sets.
+     * @param nodes Set to add the cables, cores, pylon bases and pylons to.
+     * @param machines Set to add the sources and drains to.
+     * @param teleports Set to add the teleports to.
+     */
+    void addVisited(HexLongSet nodes, HexLongSet machines, HexLongSet teleports) {
+        addAll(nodes, cables);
+        addAll(nodes, pylons);
+        addAll(machines, sourceSet);
+        addAll(machines, drainSet);
+        addAll(teleports, teleportSet);
+    }
+
+    /**
+     * Checks if a pylon was reached by this analysis, either as part of the network or by passing through it while it
+     * was OFF.
+     * @param position Packed coordinates of the pylon.
+     * @return Whether the pylon was reached.
+     */
+    boolean hasPylon(long position) {
+        return pylons.contains(position) || pylonsPassed.contains(position);
+    }
+
+    /**
+     * Checks if a block is part of or next to anything reached by this analysis.
+     * @param position Packed coordinates of the block.
+     * @return Whether the block is near the analysis.
+     */
+    boolean isNear(long position) {
+        if (hasReached(position))
+            return true;
+
+        int x = HexUtils.unpackX(position);
+        int y = HexUtils.unpackY(position);
+        int z = HexUtils.unpackZ(position);
+        for (int i = 0; i < 6; i++)
+            if (hasReached(HexUtils.packCoordinates(x + OFFSET_X[i], y + OFFSET_Y[i], z + OFFSET_Z[i])))
+                return true;
+        return false;
+    }
+
+    /**
+     * Finds the first network in the graph which this analysis has reached.
+     * @param graph The graph to search.
+     * @return The network, or null if no reached node is in the graph.
+     */
+    HexNetwork findNetwork(HexNetworkGraph graph) {
+        for (long position : cables.toArray()) {
+            HexNetwork network = graph.getNetwork(position);
+            if (network != null)
+                return network;
+        }
+        for (long position : pylons.toArray()) {
+            HexNetwork network = graph.getNetwork(position);
+            if (network != null)
+                return network;
         }
+        return null;
+    }
+
+    /**
+     * Checks if a block was reached by this analysis.
+     * @param position Packed coordinates of the block.
+     * @return Whether the block was reached.
+     */
+    private boolean hasReached(long position) {
+        return cables.contains(position) || pylons.contains(position)
+                || sourceSet.contains(position) || drainSet.contains(position)
+                || portSet.contains(position) || teleportSet.contains(position);
+    }
+
+    /**
+     * @return Packed coordinates of all pylons which were read as ON.
+     */
+    long[] getPylonsOn() {
+        return pylonsOn.toArray();
+    }
+
+    /**
+     * @return Packed coordinates of all pylons which were read as OFF.
+     */
+    long[] getPylonsOff() {
+        return pylonsOff.toArray();
+    }
+
+    /**
+     * @return Packed coordinates of all cables, cores, pylon bases and pylons reached.
+     */
+    long[] getNodes() {
+        long[] nodes = Arrays.copyOf(cables.toArray(), cables.size() + pylons.size());
+        System.arraycopy(pylons.toArray(), 0, nodes, cables.size(), pylons.size());
+        return nodes;
+    }
+
+    /**
+     * @return Whether the analysis had to stop at unloaded chunks.
+     */
+    boolean hasFrontier() {
+        return !frontier.isEmpty();
+    }
+
+    /**
+     * @return The number of cables, cores, pylon bases and pylons reached so far.
+     */
+    int getNodeCount() {
+        return cables.size() + pylons.size();
+    }
+
+    /**
+     * @return The sources found by the analysis.
+     */
+    public ArrayList<HexDevice> getEnergySources() {
+        return energySources;
+    }
+
+    /**
+     * @return The drains found by the analysis.
+     */
+    public ArrayList<HexDevice> getEnergyDrains() {
+        return energyDrains;
+    }
+
+    /**
+     * @return The ports found by the analysis.
+     */
+    public ArrayList<HexDevice> getEnergyPorts() {
+        return energyPorts;
+    }
+
+    /**
+     * @return The teleports found by the analysis.
+     */
+    public ArrayList<HexDevice> getTeleports() {
+        return teleports;
     }
 
     /**
@@ -773,9 +2088,22 @@ public class NetworkAnalyzer {
         HexUtils.addChatProbeTitle(player);
         player.addChatMessage(new ChatComponentTranslation("msg.probeAnalysisStart.txt"));
         // Call the analysis and wait for results.
-        analyze(world, x, y, z, block, -1);
+        queueAnalyze(x, y, z, block, -1);
+        if (!traverseLimited(world)) {
+            // The section is too large to walk right away, so show the members stored in the graph instead.
+            player.addChatMessage(new ChatComponentTranslation("msg.probeAnalysisLarge.txt"));
+            HexNetwork network = HexNetworkGraph.get(world).getNetwork(HexUtils.packCoordinates(x, y, z));
+            energySources = resolveDevices(world, network != null ? network.getSources() : null);
+            energyDrains = resolveDevices(world, network != null ? network.getDrains() : null);
+            energyPorts = resolveDevices(world, network != null ? network.getPorts() : null);
+            teleports = resolveDevices(world, network != null ? network.getTeleports() : null);
+        }
         // Push the results to all found machines.
         pushProbe(player);
+
+        // Let the player know the machines still use the members found before, until the analysis finishes.
+        if (HexNetworkQueue.isPending(world, x, y, z))
+            player.addChatMessage(new ChatComponentTranslation("msg.probeAnalysisPending.txt"));
     }
 
     /**
@@ -808,6 +2136,21 @@ public class NetworkAnalyzer {
         addChatProbeScanResults(player, teleports);
     }
 
+    /**
+     * Copies devices stored in the graph, reading their blocks from the world. Devices in unloaded chunks are left out.
+     * @param world The world that the devices are in.
+     * @param devices The devices to copy, or null.
+     * @return The devices with their blocks.
+     */
+    private static ArrayList<HexDevice> resolveDevices(World world, ArrayList<HexDevice> devices) {
+        ArrayList<HexDevice> resolved = new ArrayList<HexDevice>();
+        if (devices != null)
+            for (HexDevice entry : devices)
+                if (HexUtils.checkChunk(world, entry.x, entry.z))
+                    resolved.add(new HexDevice(entry.x, entry.y, entry.z, world.getBlock(entry.x, entry.y, entry.z)));
+        return resolved;
+    }
+
     private static void addChatProbeScanResults(EntityPlayer player, ArrayList<HexDevice> machine) {
         if (machine != null && machine.size() != 0)
             for (HexDevice entry : machine)
@@ -825,10 +2168,11 @@ public class NetworkAnalyzer {
      */
     private void addMachine(World world, int x, int y, int z) {
         Block block = world.getBlock(x, y, z);
+        long position = HexUtils.packCoordinates(x, y, z);
         if (block instanceof IBlockHexEnergySource)
-            energySources.add(new HexDevice(x, y, z, block));
+            addDevice(energySources, sourceSet, x, y, z, position, block);
         else if (block instanceof IBlockHexEnergyDrain)
-            energyDrains.add(new HexDevice(x, y, z, block));
+            addDevice(energyDrains, drainSet, x, y, z, position, block);
     }
 
     /**
@@ -839,6 +2183,6 @@ public class NetworkAnalyzer {
      * @param z Z coordinate of the machine.
      */
     private void addTeleport(World world, int x, int y, int z) {
-        teleports.add(new HexDevice(x, y, z, world.getBlock(x, y, z)));
+        addDevice(teleports, teleportSet, x, y, z, HexUtils.packCoordinates(x, y, z), world.getBlock(x, y, z));
     }
 }